@@ -0,0 +1,280 @@
+package no.hux.ja4.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * ClientHello records shaped like those of current clients: cipher and
+ * extension lists, GREASE values, key shares (including the 1216-byte
+ * X25519MLKEM768 post-quantum share) and ECH GREASE, so the parser walks
+ * realistic sizes and extension counts. Random and key bytes are filler from
+ * a fixed seed.
+ */
+final class ClientHellos {
+
+  static final String[] PROFILES = {"chrome", "firefox", "safari", "curl", "go"};
+
+  private static final int GREASE = 0x0a0a;
+  private static final int X25519 = 0x001d;
+  private static final int SECP256R1 = 0x0017;
+  private static final int X25519_MLKEM768 = 0x11ec;
+
+  private ClientHellos() {
+  }
+
+  static byte[] forProfile(String profile) {
+    return switch (profile) {
+      case "chrome" -> chrome();
+      case "firefox" -> firefox();
+      case "safari" -> safari();
+      case "curl" -> curl();
+      case "go" -> go();
+      default -> throw new IllegalArgumentException("Unknown profile: " + profile);
+    };
+  }
+
+  static byte[] chrome() {
+    return new Builder(1)
+        .ciphers(GREASE, 0x1301, 0x1302, 0x1303, 0xc02b, 0xc02f, 0xc02c, 0xc030, 0xcca9,
+            0xcca8, 0xc013, 0xc014, 0x009c, 0x009d, 0x002f, 0x0035)
+        .ext(GREASE, new byte[0])
+        .ext(0x0033, keyShares(new int[] {GREASE, X25519_MLKEM768, X25519},
+            new int[] {1, 1216, 32}))
+        .ext(0x0010, alpn("h2", "http/1.1"))
+        .ext(0x0012, new byte[0])
+        .ext(0x000b, new byte[] {1, 0})
+        .ext(0x0000, sni("www.example.com"))
+        .ext(0x0023, new byte[0])
+        .ext(0x000d, u16List(0x0403, 0x0804, 0x0401, 0x0503, 0x0805, 0x0501, 0x0806, 0x0601))
+        .ext(0x0017, new byte[0])
+        .ext(0x002d, new byte[] {1, 1})
+        .ext(0xfe0d, filler(2, 218))
+        .ext(0x44cd, alpsH2())
+        .ext(0x002b, u8List(GREASE, 0x0304, 0x0303))
+        .ext(0x001b, new byte[] {2, 0, 2})
+        .ext(0x000a, u16List(GREASE, X25519_MLKEM768, X25519, SECP256R1, 0x0018))
+        .ext(0x0005, new byte[] {1, 0, 0, 0, 0})
+        .ext(0xff01, new byte[] {0})
+        .ext(0x1a1a, new byte[] {0})
+        .build();
+  }
+
+  static byte[] firefox() {
+    return new Builder(2)
+        .ciphers(0x1301, 0x1303, 0x1302, 0xc02b, 0xc02f, 0xcca9, 0xcca8, 0xc02c, 0xc030,
+            0xc00a, 0xc009, 0xc013, 0xc014, 0x009c, 0x009d, 0x002f, 0x0035)
+        .ext(0x0000, sni("www.example.com"))
+        .ext(0x0017, new byte[0])
+        .ext(0xff01, new byte[] {0})
+        .ext(0x000a, u16List(X25519_MLKEM768, X25519, SECP256R1, 0x0018, 0x0019, 0x0100,
+            0x0101))
+        .ext(0x000b, new byte[] {1, 0})
+        .ext(0x0023, new byte[0])
+        .ext(0x0010, alpn("h2", "http/1.1"))
+        .ext(0x0005, new byte[] {1, 0, 0, 0, 0})
+        .ext(0x0022, u16List(0x0403, 0x0503, 0x0603, 0x0203))
+        .ext(0x0012, new byte[0])
+        .ext(0x0033, keyShares(new int[] {X25519_MLKEM768, X25519, SECP256R1},
+            new int[] {1216, 32, 65}))
+        .ext(0x002b, u8List(0x0304, 0x0303))
+        .ext(0x000d, u16List(0x0403, 0x0503, 0x0603, 0x0804, 0x0805, 0x0806, 0x0401, 0x0501,
+            0x0601, 0x0203, 0x0201))
+        .ext(0x002d, new byte[] {1, 1})
+        .ext(0x001c, new byte[] {0x40, 0x01})
+        .ext(0x001b, new byte[] {6, 0, 1, 0, 2, 0, 3})
+        .ext(0xfe0d, filler(3, 281))
+        .build();
+  }
+
+  static byte[] safari() {
+    return new Builder(3)
+        .ciphers(GREASE, 0x1301, 0x1302, 0x1303, 0xc02c, 0xc02b, 0xcca9, 0xc030, 0xc02f,
+            0xcca8, 0xc00a, 0xc009, 0xc014, 0xc013, 0x009d, 0x009c, 0x0035, 0x002f, 0xc008,
+            0xc012, 0x000a)
+        .ext(GREASE, new byte[0])
+        .ext(0x0000, sni("www.example.com"))
+        .ext(0x0017, new byte[0])
+        .ext(0xff01, new byte[] {0})
+        .ext(0x000a, u16List(GREASE, X25519, SECP256R1, 0x0018, 0x0019))
+        .ext(0x000b, new byte[] {1, 0})
+        .ext(0x0010, alpn("h2", "http/1.1"))
+        .ext(0x0005, new byte[] {1, 0, 0, 0, 0})
+        .ext(0x000d, u16List(0x0403, 0x0804, 0x0401, 0x0503, 0x0203, 0x0805, 0x0805, 0x0501,
+            0x0806, 0x0601, 0x0201))
+        .ext(0x0012, new byte[0])
+        .ext(0x0033, keyShares(new int[] {GREASE, X25519}, new int[] {1, 32}))
+        .ext(0x002d, new byte[] {1, 1})
+        .ext(0x002b, u8List(GREASE, 0x0304, 0x0303, 0x0302, 0x0301))
+        .ext(0x001b, new byte[] {2, 0, 1})
+        .ext(0x1a1a, new byte[] {0})
+        .ext(0x0015, new byte[120])
+        .build();
+  }
+
+  static byte[] curl() {
+    return new Builder(4)
+        .ciphers(0x1302, 0x1303, 0x1301, 0xc02c, 0xc030, 0x009f, 0xcca9, 0xcca8, 0xccaa,
+            0xc02b, 0xc02f, 0x009e, 0xc024, 0xc028, 0x006b, 0xc023, 0xc027, 0x0067, 0xc00a,
+            0xc014, 0x0039, 0xc009, 0xc013, 0x0033, 0x009d, 0x009c, 0x003d, 0x003c, 0x0035,
+            0x002f, 0x00ff)
+        .ext(0x0000, sni("www.example.com"))
+        .ext(0x000b, new byte[] {3, 0, 1, 2})
+        .ext(0x000a, u16List(X25519, SECP256R1, 0x001e, 0x0019, 0x0018, 0x0100, 0x0101,
+            0x0102, 0x0103, 0x0104))
+        .ext(0x0023, new byte[0])
+        .ext(0x0010, alpn("h2", "http/1.1"))
+        .ext(0x0016, new byte[0])
+        .ext(0x0017, new byte[0])
+        .ext(0x0031, new byte[0])
+        .ext(0x000d, u16List(0x0403, 0x0503, 0x0603, 0x0807, 0x0808, 0x081a, 0x081b, 0x081c,
+            0x0809, 0x080a, 0x080b, 0x0804, 0x0805, 0x0806, 0x0401, 0x0501, 0x0601, 0x0303,
+            0x0301, 0x0302, 0x0402, 0x0502, 0x0602))
+        .ext(0x002b, u8List(0x0304, 0x0303))
+        .ext(0x002d, new byte[] {1, 1})
+        .ext(0x0033, keyShares(new int[] {X25519}, new int[] {32}))
+        .build();
+  }
+
+  static byte[] go() {
+    return new Builder(5)
+        .ciphers(0xc02b, 0xc02f, 0xc02c, 0xc030, 0xcca9, 0xcca8, 0xc009, 0xc013, 0xc00a,
+            0xc014, 0x009c, 0x009d, 0x002f, 0x0035, 0xc012, 0x000a, 0x1301, 0x1302, 0x1303)
+        .ext(0x0000, sni("www.example.com"))
+        .ext(0x0005, new byte[] {1, 0, 0, 0, 0})
+        .ext(0x000a, u16List(X25519_MLKEM768, X25519, SECP256R1, 0x0018, 0x0019))
+        .ext(0x000b, new byte[] {1, 0})
+        .ext(0x000d, u16List(0x0804, 0x0403, 0x0807, 0x0805, 0x0806, 0x0401, 0x0501, 0x0601,
+            0x0503, 0x0603, 0x0201, 0x0203))
+        .ext(0xff01, new byte[] {0})
+        .ext(0x0012, new byte[0])
+        .ext(0x0010, alpn("h2", "http/1.1"))
+        .ext(0x0017, new byte[0])
+        .ext(0x002b, u8List(0x0304, 0x0303))
+        .ext(0x0033, keyShares(new int[] {X25519_MLKEM768, X25519}, new int[] {1216, 32}))
+        .build();
+  }
+
+  private static byte[] sni(String host) {
+    byte[] name = host.getBytes(StandardCharsets.US_ASCII);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    u16(out, name.length + 3);
+    out.write(0);
+    u16(out, name.length);
+    out.writeBytes(name);
+    return out.toByteArray();
+  }
+
+  private static byte[] alpn(String... protocols) {
+    ByteArrayOutputStream list = new ByteArrayOutputStream();
+    for (String protocol : protocols) {
+      byte[] bytes = protocol.getBytes(StandardCharsets.US_ASCII);
+      list.write(bytes.length);
+      list.writeBytes(bytes);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    u16(out, list.size());
+    out.writeBytes(list.toByteArray());
+    return out.toByteArray();
+  }
+
+  private static byte[] alpsH2() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    u16(out, 3);
+    out.write(2);
+    out.writeBytes("h2".getBytes(StandardCharsets.US_ASCII));
+    return out.toByteArray();
+  }
+
+  private static byte[] keyShares(int[] groups, int[] lengths) {
+    ByteArrayOutputStream shares = new ByteArrayOutputStream();
+    for (int i = 0; i < groups.length; i++) {
+      u16(shares, groups[i]);
+      u16(shares, lengths[i]);
+      shares.writeBytes(filler(groups[i], lengths[i]));
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    u16(out, shares.size());
+    out.writeBytes(shares.toByteArray());
+    return out.toByteArray();
+  }
+
+  private static byte[] u16List(int... values) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    u16(out, values.length * 2);
+    for (int value : values) {
+      u16(out, value);
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] u8List(int... values) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(values.length * 2);
+    for (int value : values) {
+      u16(out, value);
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] filler(long seed, int length) {
+    byte[] bytes = new byte[length];
+    new Random(seed).nextBytes(bytes);
+    return bytes;
+  }
+
+  private static void u16(ByteArrayOutputStream out, int value) {
+    out.write(value >>> 8);
+    out.write(value);
+  }
+
+  /** Assembles the handshake body and wraps it in one TLS record. */
+  private static final class Builder {
+    private final long seed;
+    private final ByteArrayOutputStream ciphers = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream extensions = new ByteArrayOutputStream();
+
+    Builder(long seed) {
+      this.seed = seed;
+    }
+
+    Builder ciphers(int... suites) {
+      for (int suite : suites) {
+        u16(ciphers, suite);
+      }
+      return this;
+    }
+
+    Builder ext(int type, byte[] data) {
+      u16(extensions, type);
+      u16(extensions, data.length);
+      extensions.writeBytes(data);
+      return this;
+    }
+
+    byte[] build() {
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      u16(body, 0x0303);
+      body.writeBytes(filler(seed, 32));
+      body.write(32);
+      body.writeBytes(filler(seed + 100, 32));
+      u16(body, ciphers.size());
+      body.writeBytes(ciphers.toByteArray());
+      body.write(1);
+      body.write(0);
+      u16(body, extensions.size());
+      body.writeBytes(extensions.toByteArray());
+
+      byte[] handshake = body.toByteArray();
+      ByteArrayOutputStream record = new ByteArrayOutputStream();
+      record.write(22);
+      u16(record, 0x0301);
+      u16(record, handshake.length + 4);
+      record.write(1);
+      record.write(handshake.length >>> 16);
+      u16(record, handshake.length & 0xFFFF);
+      record.writeBytes(handshake);
+      return record.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package no.hux.ja4.bench;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.FullHttpRequest;
+import java.util.concurrent.TimeUnit;
+import no.hux.ja4.fingerprint.Ja4HttpFingerprint;
+import no.hux.ja4.fingerprint.Ja4TlsFingerprint;
+import no.hux.ja4.server.ClientHelloInfo;
+import no.hux.ja4.server.ClientHelloParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-connection work on the event loop: parsing the ClientHello, computing
+ * JA4 from it, and computing JA4H from the request headers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FingerprintBenchmark {
+
+  @State(Scope.Thread)
+  public static class Tls {
+    @Param({"chrome", "firefox", "safari", "curl", "go"})
+    public String client;
+
+    ByteBuf hello;
+    ClientHelloInfo info;
+
+    @Setup
+    public void setUp() {
+      hello = Unpooled.wrappedBuffer(ClientHellos.forProfile(client));
+      info = ClientHelloParser.tryParse(hello);
+      if (info == null) {
+        throw new IllegalStateException("Fixture does not parse: " + client);
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Http {
+    @Param({"chrome", "firefox", "safari", "curl"})
+    public String client;
+
+    FullHttpRequest request;
+
+    @Setup
+    public void setUp() {
+      request = HttpRequests.forProfile(client);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      request.release();
+    }
+  }
+
+  @Benchmark
+  public ClientHelloInfo parseClientHello(Tls tls) {
+    // tryParse reads by absolute index, so the buffer can be reused as is.
+    return ClientHelloParser.tryParse(tls.hello);
+  }
+
+  @Benchmark
+  public String ja4(Tls tls) {
+    return Ja4TlsFingerprint.compute(tls.info);
+  }
+
+  @Benchmark
+  public String parseAndJa4(Tls tls) {
+    return Ja4TlsFingerprint.compute(ClientHelloParser.tryParse(tls.hello));
+  }
+
+  @Benchmark
+  public String ja4h(Http http) {
+    return Ja4HttpFingerprint.compute(http.request);
+  }
+}
@@ -0,0 +1,75 @@
+package no.hux.ja4.bench;
+
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+
+/** Requests for the fingerprint pixel with the header sets and order of common clients. */
+final class HttpRequests {
+
+  static final String[] PROFILES = {"chrome", "firefox", "safari", "curl"};
+
+  private static final String URI = "/3f1e8a52-6c0b-4a8e-9d55-1b2f7c9e4d10";
+  private static final String COOKIE =
+      "_ga=GA1.1.1180522934.1729000000; session=Zm9vYmFyYmF6cXV4; theme=dark; consent=1";
+
+  private HttpRequests() {
+  }
+
+  static FullHttpRequest forProfile(String profile) {
+    FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET,
+        URI);
+    HttpHeaders h = request.headers();
+    switch (profile) {
+      case "chrome" -> h.add("Host", "ja4.example.com")
+          .add("Connection", "keep-alive")
+          .add("sec-ch-ua", "\"Chromium\";v=\"131\", \"Not_A Brand\";v=\"24\"")
+          .add("sec-ch-ua-mobile", "?0")
+          .add("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 "
+              + "(KHTML, like Gecko) Chrome/131.0.0.0 Safari/537.36")
+          .add("sec-ch-ua-platform", "\"Windows\"")
+          .add("Accept", "image/avif,image/webp,image/apng,image/svg+xml,image/*,*/*;q=0.8")
+          .add("Sec-Fetch-Site", "cross-site")
+          .add("Sec-Fetch-Mode", "no-cors")
+          .add("Sec-Fetch-Dest", "image")
+          .add("Referer", "https://www.example.com/")
+          .add("Accept-Encoding", "gzip, deflate, br, zstd")
+          .add("Accept-Language", "en-US,en;q=0.9,nb;q=0.8")
+          .add("Cookie", COOKIE)
+          .add("Priority", "i");
+      case "firefox" -> h.add("Host", "ja4.example.com")
+          .add("User-Agent", "Mozilla/5.0 (X11; Linux x86_64; rv:133.0) Gecko/20100101 "
+              + "Firefox/133.0")
+          .add("Accept", "image/avif,image/webp,image/png,image/svg+xml,image/*;q=0.8,*/*;q=0.5")
+          .add("Accept-Language", "en-US,en;q=0.5")
+          .add("Accept-Encoding", "gzip, deflate, br, zstd")
+          .add("Connection", "keep-alive")
+          .add("Referer", "https://www.example.com/")
+          .add("Cookie", COOKIE)
+          .add("Sec-Fetch-Dest", "image")
+          .add("Sec-Fetch-Mode", "no-cors")
+          .add("Sec-Fetch-Site", "cross-site")
+          .add("Priority", "u=5, i");
+      case "safari" -> h.add("Host", "ja4.example.com")
+          .add("Accept", "image/webp,image/avif,image/jxl,image/heic,image/heic-sequence,"
+              + "video/*;q=0.8,image/png,image/svg+xml,image/*;q=0.8,*/*;q=0.5")
+          .add("Sec-Fetch-Site", "cross-site")
+          .add("Cookie", COOKIE)
+          .add("Sec-Fetch-Dest", "image")
+          .add("Accept-Language", "nb-NO,nb;q=0.9")
+          .add("Sec-Fetch-Mode", "no-cors")
+          .add("User-Agent", "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) "
+              + "AppleWebKit/605.1.15 (KHTML, like Gecko) Version/18.1 Safari/605.1.15")
+          .add("Referer", "https://www.example.com/")
+          .add("Accept-Encoding", "gzip, deflate, br")
+          .add("Connection", "keep-alive");
+      case "curl" -> h.add("Host", "ja4.example.com")
+          .add("User-Agent", "curl/8.10.1")
+          .add("Accept", "*/*");
+      default -> throw new IllegalArgumentException("Unknown profile: " + profile);
+    }
+    return request;
+  }
+}
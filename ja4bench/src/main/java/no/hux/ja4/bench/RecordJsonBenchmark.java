@@ -0,0 +1,37 @@
+package no.hux.ja4.bench;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import no.hux.ja4.store.FingerprintRecord;
+import no.hux.ja4.store.RecordJson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** The {@code /api/lookup} response body, {@link RecordJson#toJson}. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RecordJsonBenchmark {
+
+  FingerprintRecord full = new FingerprintRecord("3f1e8a52-6c0b-4a8e-9d55-1b2f7c9e4d10",
+      Instant.parse("2026-10-19T08:15:30.123Z"), "t13d1516h2_8daaf6152771_d8a2da3f94cd",
+      "ge11cr15enus_9f0d3f54ce2e_cd8dafe26982_7ca4b0c0b1a8", "8250_115", "2410_60",
+      "64240_2-4-8-1-3_1460_7", "203.0.113.10",
+      "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) "
+      + "Chrome/131.0.0.0 Safari/537.36");
+
+  @Benchmark
+  public String recordToJson() {
+    return RecordJson.toJson(full, 86_400L);
+  }
+}
@@ -0,0 +1,107 @@
+package no.hux.ja4.bench;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import no.hux.ja4.store.FingerprintRecord;
+import no.hux.ja4.store.FingerprintStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link FingerprintStore} under concurrent puts (fingerprint requests) and
+ * gets (lookups), on a store already filled to its size limit so every put
+ * also evicts. Session ids and records are built up front.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class StoreBenchmark {
+
+  private static final int KEYS = 1 << 18;
+  private static final String JA4 = "t13d1516h2_8daaf6152771_d8a2da3f94cd";
+  private static final String JA4H = "ge11cr15enus_9f0d3f54ce2e_cd8dafe26982_7ca4b0c0b1a8";
+
+  @Param({"100000"})
+  public int maxEntries;
+
+  FingerprintStore store;
+  String[] sessionIds;
+  FingerprintRecord[] records;
+
+  @Setup
+  public void setUp() {
+    store = new FingerprintStore(Duration.ofHours(1), maxEntries, Logger.getLogger("bench"));
+    sessionIds = new String[KEYS];
+    records = new FingerprintRecord[KEYS];
+    Instant now = Instant.now();
+    for (int i = 0; i < KEYS; i++) {
+      sessionIds[i] = UUID.randomUUID().toString();
+      records[i] = new FingerprintRecord(sessionIds[i], now, JA4, JA4H, "8250_115", null, null,
+          "203.0.113.10", "Mozilla/5.0");
+    }
+    for (int i = 0; i < maxEntries; i++) {
+      store.put(records[i % KEYS]);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    store.shutdown();
+  }
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next = (int) (System.nanoTime() & (KEYS - 1));
+
+    int advance() {
+      next = (next + 1) & (KEYS - 1);
+      return next;
+    }
+  }
+
+  @Benchmark
+  @Group("readMostly")
+  @GroupThreads(1)
+  public void readMostlyPut(Cursor cursor) {
+    store.put(records[cursor.advance()]);
+  }
+
+  @Benchmark
+  @Group("readMostly")
+  @GroupThreads(3)
+  public FingerprintRecord readMostlyGet(Cursor cursor) {
+    return store.get(sessionIds[cursor.advance()]);
+  }
+
+  @Benchmark
+  @Group("writeHeavy")
+  @GroupThreads(3)
+  public void writeHeavyPut(Cursor cursor) {
+    store.put(records[cursor.advance()]);
+  }
+
+  @Benchmark
+  @Group("writeHeavy")
+  @GroupThreads(1)
+  public FingerprintRecord writeHeavyGet(Cursor cursor) {
+    return store.get(sessionIds[cursor.advance()]);
+  }
+}
@@ -0,0 +1,44 @@
+package no.hux.ja4;
+
+/** JSON string escaping for the places that write JSON by hand. */
+public final class Json {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private Json() {
+  }
+
+  /** Appends {@code value} as a quoted JSON string, or {@code null}. */
+  public static StringBuilder appendString(StringBuilder sb, String value) {
+    if (value == null) {
+      return sb.append("null");
+    }
+    sb.append('"');
+    appendEscaped(sb, value);
+    return sb.append('"');
+  }
+
+  /** Appends {@code value} escaped for use inside a JSON string, without quotes. */
+  public static StringBuilder appendEscaped(StringBuilder sb, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+      case '"' -> sb.append("\\\"");
+      case '\\' -> sb.append("\\\\");
+      case '\b' -> sb.append("\\b");
+      case '\f' -> sb.append("\\f");
+      case '\n' -> sb.append("\\n");
+      case '\r' -> sb.append("\\r");
+      case '\t' -> sb.append("\\t");
+      default -> {
+        if (c < 0x20) {
+          sb.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+        } else {
+          sb.append(c);
+        }
+      }
+      }
+    }
+    return sb;
+  }
+}
@@ -1,10 +1,30 @@
 package no.hux.ja4;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.logging.ConsoleHandler;
+import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import no.hux.ja4.accesslog.AccessLog;
+import no.hux.ja4.accesslog.AccessLogTool;
+import no.hux.ja4.capture.CaptureReplay;
+import no.hux.ja4.capture.CaptureSidecar;
+import no.hux.ja4.loadgen.LoadGenerator;
+import no.hux.ja4.logging.AsyncLogHandler;
+import no.hux.ja4.offline.OfflineAnalyzer;
+import no.hux.ja4.offline.Refingerprinter;
+import no.hux.ja4.server.AccessLogConfig;
+import no.hux.ja4.server.AnalyzeConfig;
+import no.hux.ja4.server.CaptureConfig;
 import no.hux.ja4.server.ConfigParser;
 import no.hux.ja4.server.Ja4Server;
+import no.hux.ja4.server.LoadGenConfig;
+import no.hux.ja4.server.RefingerprintConfig;
+import no.hux.ja4.server.ReplayCaptureConfig;
 import no.hux.ja4.server.ServerConfig;
 
 public final class Main {
@@ -14,6 +34,30 @@ public final class Main {
   }
 
   public static void main(String[] args) {
+    if (args.length > 0 && "capture".equals(args[0])) {
+      runCapture(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+    if (args.length > 0 && "analyze".equals(args[0])) {
+      runAnalyze(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+    if (args.length > 0 && "loadgen".equals(args[0])) {
+      runLoadGen(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+    if (args.length > 0 && "replay-capture".equals(args[0])) {
+      runReplayCapture(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+    if (args.length > 0 && "access-log".equals(args[0])) {
+      runAccessLog(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
+    if (args.length > 0 && "refingerprint".equals(args[0])) {
+      runRefingerprint(Arrays.copyOfRange(args, 1, args.length));
+      return;
+    }
     ServerConfig config;
     try {
       config = ConfigParser.parse(args);
@@ -28,7 +72,7 @@ public final class Main {
       return;
     }
 
-    configureLogging();
+    configureLogging(config);
 
     try {
       Ja4Server server = new Ja4Server(config, LOGGER);
@@ -39,6 +83,186 @@ public final class Main {
     }
   }
 
+  private static void runCapture(String[] args) {
+    CaptureConfig config;
+    try {
+      config = ConfigParser.parseCapture(args);
+    } catch (IllegalArgumentException ex) {
+      if ("help".equals(ex.getMessage())) {
+        ConfigParser.printCaptureUsage();
+        return;
+      }
+      System.err.println(ex.getMessage());
+      ConfigParser.printCaptureUsage();
+      System.exit(1);
+      return;
+    }
+
+    configureLogging();
+
+    CaptureSidecar sidecar = new CaptureSidecar(config.getRingPath(), config.getRingSlots(),
+        config.getPorts(), config.getCaptureIfaces(), config.getCaptureEngine(),
+        config.getCaptureWorkers(), config.getCaptureSnaplen(), config.getCaptureBufferBytes(),
+        LOGGER);
+    Runtime.getRuntime().addShutdownHook(new Thread(sidecar::stop, "ja4-capture-shutdown"));
+    try {
+      if (!sidecar.run()) {
+        System.exit(2);
+      }
+    } catch (Exception ex) {
+      LOGGER.log(Level.SEVERE, "Capture sidecar failed", ex);
+      System.exit(2);
+    }
+  }
+
+  private static void runAnalyze(String[] args) {
+    AnalyzeConfig config;
+    try {
+      config = ConfigParser.parseAnalyze(args);
+    } catch (IllegalArgumentException ex) {
+      if ("help".equals(ex.getMessage())) {
+        ConfigParser.printAnalyzeUsage();
+        return;
+      }
+      System.err.println(ex.getMessage());
+      ConfigParser.printAnalyzeUsage();
+      System.exit(1);
+      return;
+    }
+
+    configureLogging();
+
+    try {
+      new OfflineAnalyzer(config.getFiles(), config.getThreads(), config.getPorts(),
+          config.getOutput(), LOGGER).run();
+    } catch (Exception ex) {
+      LOGGER.log(Level.SEVERE, "Offline analysis failed", ex);
+      System.exit(2);
+    }
+  }
+
+  private static void runRefingerprint(String[] args) {
+    RefingerprintConfig config;
+    try {
+      config = ConfigParser.parseRefingerprint(args);
+    } catch (IllegalArgumentException ex) {
+      if ("help".equals(ex.getMessage())) {
+        ConfigParser.printRefingerprintUsage();
+        return;
+      }
+      System.err.println(ex.getMessage());
+      ConfigParser.printRefingerprintUsage();
+      System.exit(1);
+      return;
+    }
+
+    configureLogging();
+
+    try {
+      new Refingerprinter(config.getInputs(), config.getThreads(), config.getOutput(), LOGGER)
+          .run();
+    } catch (Exception ex) {
+      LOGGER.log(Level.SEVERE, "Re-fingerprinting failed", ex);
+      System.exit(2);
+    }
+  }
+
+  private static void runAccessLog(String[] args) {
+    AccessLogConfig config;
+    try {
+      config = ConfigParser.parseAccessLog(args);
+    } catch (IllegalArgumentException ex) {
+      if ("help".equals(ex.getMessage())) {
+        ConfigParser.printAccessLogUsage();
+        return;
+      }
+      System.err.println(ex.getMessage());
+      ConfigParser.printAccessLogUsage();
+      System.exit(1);
+      return;
+    }
+
+    configureLogging();
+
+    byte kind = switch (config.getKind()) {
+      case "pixel" -> AccessLog.KIND_FINGERPRINT;
+      case "lookup" -> AccessLog.KIND_LOOKUP;
+      default -> 0;
+    };
+    AccessLogTool.Filter filter = new AccessLogTool.Filter(config.getSessionId(),
+        config.getClient(), config.getJa4Prefix(), config.getStatus(), kind, config.getSince(),
+        config.getUntil());
+    Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+    try {
+      new AccessLogTool(config.getInputs(), filter, config.isJson(), config.isFollow(), out,
+          LOGGER).run();
+    } catch (Exception ex) {
+      LOGGER.log(Level.SEVERE, "Reading the access log failed", ex);
+      System.exit(2);
+    }
+  }
+
+  private static void runLoadGen(String[] args) {
+    LoadGenConfig config;
+    try {
+      config = ConfigParser.parseLoadGen(args);
+    } catch (IllegalArgumentException ex) {
+      if ("help".equals(ex.getMessage())) {
+        ConfigParser.printLoadGenUsage();
+        return;
+      }
+      System.err.println(ex.getMessage());
+      ConfigParser.printLoadGenUsage();
+      System.exit(1);
+      return;
+    }
+
+    configureLogging();
+
+    try {
+      LoadGenerator generator = new LoadGenerator(config.getHost(), config.getPort(),
+          config.getRate(), config.getDurationSeconds(), config.getMaxInFlight(),
+          config.getLookupRatio(), config.getThreads(), config.getUserPassword(),
+          config.getProfiles(), config.getServerName(), config.getReportIntervalSeconds(),
+          LOGGER);
+      LoadGenerator.Result result = generator.run();
+      System.out.println(generator.formatReport(result));
+    } catch (Exception ex) {
+      LOGGER.log(Level.SEVERE, "Load generation failed", ex);
+      System.exit(2);
+    }
+  }
+
+  private static void runReplayCapture(String[] args) {
+    ReplayCaptureConfig config;
+    try {
+      config = ConfigParser.parseReplayCapture(args);
+    } catch (IllegalArgumentException ex) {
+      if ("help".equals(ex.getMessage())) {
+        ConfigParser.printReplayCaptureUsage();
+        return;
+      }
+      System.err.println(ex.getMessage());
+      ConfigParser.printReplayCaptureUsage();
+      System.exit(1);
+      return;
+    }
+
+    configureLogging();
+
+    try {
+      CaptureReplay replay = new CaptureReplay(config.getHandshakes(), config.getInterleave(),
+          config.getLoss(), config.getReorder(), config.getFlood(), config.getSeed(),
+          config.getDurationSeconds(), config.getWarmupSeconds(), config.isInline(),
+          config.getStoreEntries(), LOGGER);
+      CaptureReplay.Result result = replay.run();
+      System.out.println(replay.formatReport(result));
+    } catch (Exception ex) {
+      LOGGER.log(Level.SEVERE, "Capture replay failed", ex);
+      System.exit(2);
+    }
+  }
+
   private static void configureLogging() {
     Logger root = Logger.getLogger("");
     for (var handler : root.getHandlers()) {
@@ -49,4 +273,21 @@ public final class Main {
     }
     root.setLevel(Level.INFO);
   }
+
+  /**
+   * Replaces the console handler, which writes on the logging thread, with an
+   * {@link AsyncLogHandler} on the same stream.
+   */
+  private static void configureLogging(ServerConfig config) {
+    Logger root = Logger.getLogger("");
+    for (Handler handler : root.getHandlers()) {
+      root.removeHandler(handler);
+      handler.close();
+    }
+    AsyncLogHandler handler = new AsyncLogHandler(System.err, "json".equals(config.getLogFormat()),
+        config.getLogRatePerKey());
+    handler.setLevel(Level.INFO);
+    root.addHandler(handler);
+    root.setLevel(Level.INFO);
+  }
 }
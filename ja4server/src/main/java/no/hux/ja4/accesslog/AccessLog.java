@@ -0,0 +1,347 @@
+package no.hux.ja4.accesslog;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Audit log of every fingerprint and lookup request, written as fixed-size
+ * binary entries into memory-mapped segment files.
+ *
+ * <p>{@link #log} is called on the event loop and never blocks or does I/O:
+ * each thread claims a chunk of {@value #CHUNK_ENTRIES} entries of the
+ * current segment with one atomic add, then fills it with plain stores. A
+ * background thread maps the next segment ahead of time; the writer that
+ * finds the current one full swaps it in. If the next segment is not ready,
+ * entries are dropped and counted. The background thread also forces the
+ * current segment to disk every second and deletes the oldest segments past
+ * {@code maxSegments}.
+ *
+ * <p>Entries written to the mapping belong to the kernel's page cache, so
+ * they survive a crash of the JVM; a crash of the host loses what was written
+ * since the last force. An entry's time is stored last, with a release store,
+ * so readers skip entries that were claimed but not (completely) written.
+ * Entries of different threads interleave chunk by chunk, so a segment is only
+ * roughly in time order.
+ *
+ * <p>Segment layout, little-endian:
+ * <pre>
+ *   0  int  magic ("JA4X")       64  long entries claimed
+ *   4  int  version              256 entries of {@value #ENTRY_BYTES} bytes:
+ *   8  int  entry size                 0  long time (epoch micros, 0 = empty)
+ *  12  int  capacity (entries)         8  int  latency (micros)
+ *  16  long created (epoch millis)    12  short HTTP status
+ *                                     14  byte kind (fingerprint 1, lookup 2)
+ *                                     15  byte address length (0, 4 or 16)
+ *                                     16  16 bytes client address
+ *                                     32  session ID, then JA4, JA4H, JA4L-C, JA4L-S and JA4T,
+ *                                         ASCII, zero-padded to 48, 40, 56, 24, 24 and 32 bytes
+ * </pre>
+ *
+ * <p>Longer text is cut at its field width and characters outside ASCII are
+ * written as {@code ?}.
+ */
+public final class AccessLog {
+
+  public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+  /** Keeps the mapping well within the 2 GiB a MappedByteBuffer can address. */
+  public static final long MAX_SEGMENT_BYTES = 1L << 30;
+  public static final byte KIND_FINGERPRINT = 1;
+  public static final byte KIND_LOOKUP = 2;
+
+  static final int MAGIC = 0x4A413458;
+  static final int VERSION = 1;
+  static final String PREFIX = "ja4-access-";
+  static final String SUFFIX = ".bin";
+  static final int HEADER_BYTES = 256;
+  static final int ENTRY_BYTES = 256;
+  static final int CHUNK_ENTRIES = 32;
+  static final int ENTRY_SIZE_OFFSET = 8;
+  static final int CAPACITY_OFFSET = 12;
+  static final int CREATED_OFFSET = 16;
+  static final int CLAIMED_OFFSET = 64;
+
+  static final int TIME = 0;
+  static final int LATENCY = 8;
+  static final int STATUS = 12;
+  static final int KIND = 14;
+  static final int ADDRESS_LENGTH = 15;
+  static final int ADDRESS = 16;
+  static final int SESSION_ID = 32;
+  static final int JA4 = 80;
+  static final int JA4H = 120;
+  static final int JA4L = 176;
+  static final int JA4LS = 200;
+  static final int JA4T = 224;
+  /** Text field offsets, each ending where the next begins. */
+  static final int[] TEXT_FIELDS = {SESSION_ID, JA4, JA4H, JA4L, JA4LS, JA4T, ENTRY_BYTES};
+
+  static final VarHandle LONGS =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private static final long FORCE_INTERVAL_MILLIS = 1000L;
+  private static final DateTimeFormatter NAME_TIME = DateTimeFormatter
+      .ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+  private final Path dir;
+  private final int capacity;
+  private final int maxSegments;
+  private final Logger logger;
+  private final AtomicReference<Segment> current = new AtomicReference<>();
+  private final AtomicReference<Segment> next = new AtomicReference<>();
+  private final FastThreadLocal<Chunk> chunks = new FastThreadLocal<>() {
+    @Override
+    protected Chunk initialValue() {
+      return new Chunk();
+    }
+  };
+  private final LongAdder written = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final ScheduledExecutorService scheduler;
+  private int segmentSeq;
+  private volatile Segment previous;
+
+  /**
+   * @param segmentBytes size of a segment file, at most {@link #MAX_SEGMENT_BYTES}.
+   * @param maxSegments segments kept; the oldest are deleted. {@code 0} keeps all.
+   */
+  public AccessLog(Path dir, long segmentBytes, int maxSegments, Logger logger)
+      throws IOException {
+    long entries = (segmentBytes - HEADER_BYTES) / ENTRY_BYTES / CHUNK_ENTRIES * CHUNK_ENTRIES;
+    if (segmentBytes > MAX_SEGMENT_BYTES || entries < CHUNK_ENTRIES) {
+      throw new IllegalArgumentException("segmentBytes must be in ["
+          + (HEADER_BYTES + CHUNK_ENTRIES * ENTRY_BYTES) + ", " + MAX_SEGMENT_BYTES + "]");
+    }
+    if (maxSegments < 0) {
+      throw new IllegalArgumentException("maxSegments must be >= 0");
+    }
+    Files.createDirectories(dir);
+    this.dir = dir;
+    this.capacity = (int) entries;
+    this.maxSegments = maxSegments;
+    this.logger = logger;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "ja4-access-log");
+      thread.setDaemon(true);
+      return thread;
+    });
+    current.set(createSegment());
+    next.set(createSegment());
+  }
+
+  public void start() {
+    scheduler.scheduleWithFixedDelay(this::maintain, FORCE_INTERVAL_MILLIS,
+        FORCE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    logger.log(Level.INFO, "Writing the access log to {0}", dir);
+  }
+
+  /** Forces the current segment to disk and removes the unused next one. */
+  public void stop() {
+    // Not shutdownNow: interrupting a segment being mapped would leave its file behind.
+    scheduler.shutdown();
+    try {
+      scheduler.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    current.get().buf.force();
+    Segment unused = next.getAndSet(null);
+    if (unused != null) {
+      try {
+        Files.deleteIfExists(unused.path);
+      } catch (IOException ex) {
+        logger.log(Level.WARNING, "Failed to delete unused access log segment " + unused.path,
+            ex);
+      }
+    }
+    logger.log(Level.INFO, "Access log stopped: {0} entries written, {1} dropped",
+        new Object[] {written.sum(), dropped.sum()});
+  }
+
+  /**
+   * Appends one entry. Text arguments may be {@code null}.
+   *
+   * @param kind {@link #KIND_FINGERPRINT} or {@link #KIND_LOOKUP}.
+   * @param latencyNanos time from the decoded request to its response.
+   */
+  public void log(byte kind, int status, long latencyNanos, InetAddress client, String sessionId,
+      String ja4, String ja4h, String ja4l, String ja4ls, String ja4t) {
+    Chunk chunk = chunks.get();
+    Segment segment = current.get();
+    if (chunk.segment != segment || chunk.next == chunk.end) {
+      segment = claim(chunk, segment);
+      if (segment == null) {
+        dropped.increment();
+        return;
+      }
+    }
+    MappedByteBuffer buf = segment.buf;
+    int base = HEADER_BYTES + chunk.next++ * ENTRY_BYTES;
+    buf.putInt(base + LATENCY, (int) Math.min(Integer.MAX_VALUE, latencyNanos / 1_000L));
+    buf.putShort(base + STATUS, (short) status);
+    buf.put(base + KIND, kind);
+    if (client instanceof Inet4Address) {
+      buf.put(base + ADDRESS_LENGTH, (byte) 4);
+      // An IPv4 address's hash code is the address, without copying it.
+      buf.putInt(base + ADDRESS, Integer.reverseBytes(client.hashCode()));
+    } else if (client != null) {
+      buf.put(base + ADDRESS_LENGTH, (byte) 16);
+      buf.put(base + ADDRESS, client.getAddress());
+    }
+    putText(buf, base + SESSION_ID, JA4 - SESSION_ID, sessionId);
+    putText(buf, base + JA4, JA4H - JA4, ja4);
+    putText(buf, base + JA4H, JA4L - JA4H, ja4h);
+    putText(buf, base + JA4L, JA4LS - JA4L, ja4l);
+    putText(buf, base + JA4LS, JA4T - JA4LS, ja4ls);
+    putText(buf, base + JA4T, ENTRY_BYTES - JA4T, ja4t);
+    Instant now = Instant.now();
+    LONGS.setRelease(buf, base + TIME, now.getEpochSecond() * 1_000_000L + now.getNano() / 1_000);
+    written.increment();
+  }
+
+  public long getWritten() {
+    return written.sum();
+  }
+
+  /** Entries dropped because the next segment was not mapped in time. */
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /**
+   * Claims a new chunk for the calling thread, rolling to the next segment
+   * if {@code segment} is full.
+   *
+   * @return the segment the chunk is in, or {@code null} if none is ready.
+   */
+  private Segment claim(Chunk chunk, Segment segment) {
+    for (int attempt = 0; attempt < 2; attempt++) {
+      long start = (long) LONGS.getAndAdd(segment.buf, CLAIMED_OFFSET, (long) CHUNK_ENTRIES);
+      if (start + CHUNK_ENTRIES <= capacity) {
+        chunk.segment = segment;
+        chunk.next = (int) start;
+        chunk.end = (int) start + CHUNK_ENTRIES;
+        return segment;
+      }
+      Segment ready = next.get();
+      if (ready != null && current.compareAndSet(segment, ready)) {
+        next.compareAndSet(ready, null);
+        previous = segment;
+        try {
+          scheduler.execute(this::maintain);
+        } catch (RejectedExecutionException ex) {
+          // Stopped; the next segment is not needed.
+        }
+      }
+      Segment latest = current.get();
+      if (latest == segment) {
+        return null;
+      }
+      segment = latest;
+    }
+    return null;
+  }
+
+  private static void putText(MappedByteBuffer buf, int offset, int width, String value) {
+    if (value == null) {
+      return;
+    }
+    int length = Math.min(value.length(), width);
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      buf.put(offset + i, c < 0x80 ? (byte) c : (byte) '?');
+    }
+  }
+
+  /** Background thread: maps the next segment, forces written ones, and applies retention. */
+  private void maintain() {
+    try {
+      Segment rolled = previous;
+      if (rolled != null) {
+        previous = null;
+        rolled.buf.force();
+      }
+      current.get().buf.force();
+      if (next.get() == null) {
+        next.set(createSegment());
+        deleteOldSegments();
+      }
+    } catch (Exception ex) {
+      logger.log(Level.WARNING, "Access log maintenance failed", ex);
+    }
+  }
+
+  private Segment createSegment() throws IOException {
+    long now = System.currentTimeMillis();
+    long length = HEADER_BYTES + (long) capacity * ENTRY_BYTES;
+    Path path = null;
+    FileChannel created = null;
+    while (created == null) {
+      path = dir.resolve(PREFIX + NAME_TIME.format(Instant.ofEpochMilli(now)) + "-"
+          + String.format("%06d", segmentSeq++) + SUFFIX);
+      try {
+        created = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+      } catch (FileAlreadyExistsException ex) {
+        // Left by an earlier run started in the same second.
+      }
+    }
+    try (FileChannel channel = created) {
+      // Mapping past the end extends the file, sparsely where supported.
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+      buf.order(ByteOrder.LITTLE_ENDIAN);
+      buf.putInt(0, MAGIC);
+      buf.putInt(4, VERSION);
+      buf.putInt(ENTRY_SIZE_OFFSET, ENTRY_BYTES);
+      buf.putInt(CAPACITY_OFFSET, capacity);
+      buf.putLong(CREATED_OFFSET, now);
+      return new Segment(path, buf);
+    } catch (IOException ex) {
+      Files.deleteIfExists(path);
+      throw ex;
+    }
+  }
+
+  private void deleteOldSegments() throws IOException {
+    if (maxSegments == 0) {
+      return;
+    }
+    List<Path> segments = AccessLogReader.segments(dir);
+    // The newest two are the current and the next segment.
+    for (int i = 0; i < segments.size() - Math.max(maxSegments, 2); i++) {
+      Files.deleteIfExists(segments.get(i));
+    }
+  }
+
+  private record Segment(Path path, MappedByteBuffer buf) {
+  }
+
+  /** A thread's claimed, not yet written entries. */
+  private static final class Chunk {
+    Segment segment;
+    int next;
+    int end;
+  }
+}
@@ -0,0 +1,31 @@
+package no.hux.ja4.accesslog;
+
+import java.net.InetAddress;
+import java.time.Instant;
+
+/**
+ * One decoded {@link AccessLog} entry. Text fields absent from the entry are
+ * {@code null}.
+ *
+ * @param epochMicros when the response was logged.
+ * @param kind {@link AccessLog#KIND_FINGERPRINT} or {@link AccessLog#KIND_LOOKUP}.
+ * @param client the client address, or {@code null} if unknown.
+ */
+public record AccessLogEntry(long epochMicros, byte kind, int status, int latencyMicros,
+    InetAddress client, String sessionId, String ja4, String ja4h, String ja4l, String ja4ls,
+    String ja4t) {
+
+  public Instant time() {
+    return Instant.ofEpochSecond(Math.floorDiv(epochMicros, 1_000_000L),
+        Math.floorMod(epochMicros, 1_000_000L) * 1_000L);
+  }
+
+  /** {@code pixel}, {@code lookup}, or the kind number if it is unknown. */
+  public String kindName() {
+    return switch (kind) {
+      case AccessLog.KIND_FINGERPRINT -> "pixel";
+      case AccessLog.KIND_LOOKUP -> "lookup";
+      default -> Integer.toString(kind);
+    };
+  }
+}
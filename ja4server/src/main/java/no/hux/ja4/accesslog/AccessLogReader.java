@@ -0,0 +1,140 @@
+package no.hux.ja4.accesslog;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Reads the entries of one {@link AccessLog} segment, which may still be
+ * being written: {@link #claimed()} grows, and an entry reads as
+ * {@code null} until it is completely written.
+ */
+public final class AccessLogReader {
+
+  private final Path path;
+  private final MappedByteBuffer buf;
+  private final int capacity;
+  private final long createdMillis;
+
+  private AccessLogReader(Path path, MappedByteBuffer buf) {
+    this.path = path;
+    this.buf = buf;
+    this.capacity = buf.getInt(AccessLog.CAPACITY_OFFSET);
+    this.createdMillis = buf.getLong(AccessLog.CREATED_OFFSET);
+  }
+
+  public static AccessLogReader open(Path segment) throws IOException {
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < AccessLog.HEADER_BYTES) {
+        throw new IOException("Not an access log segment: " + segment);
+      }
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      buf.order(ByteOrder.LITTLE_ENDIAN);
+      if (buf.getInt(0) != AccessLog.MAGIC) {
+        throw new IOException("Not an access log segment: " + segment);
+      }
+      int version = buf.getInt(4);
+      if (version != AccessLog.VERSION
+          || buf.getInt(AccessLog.ENTRY_SIZE_OFFSET) != AccessLog.ENTRY_BYTES) {
+        throw new IOException("Unsupported access log version " + version + ": " + segment);
+      }
+      long capacity = buf.getInt(AccessLog.CAPACITY_OFFSET);
+      if (capacity < 0
+          || AccessLog.HEADER_BYTES + capacity * AccessLog.ENTRY_BYTES > size) {
+        throw new IOException("Access log segment is truncated: " + segment);
+      }
+      return new AccessLogReader(segment, buf);
+    }
+  }
+
+  public Path path() {
+    return path;
+  }
+
+  /** Entries the segment has room for. */
+  public int capacity() {
+    return capacity;
+  }
+
+  public long createdMillis() {
+    return createdMillis;
+  }
+
+  /**
+   * Entries claimed by writers so far. Claimed entries are not necessarily
+   * written yet, and some are never written: those a writer held when the
+   * segment rolled or the server stopped.
+   */
+  public int claimed() {
+    long claimed = (long) AccessLog.LONGS.getAcquire(buf, AccessLog.CLAIMED_OFFSET);
+    return (int) Math.min(claimed, capacity);
+  }
+
+  /** @return the entry in {@code slot}, or {@code null} if it is not written. */
+  public AccessLogEntry read(int slot) {
+    if (slot < 0 || slot >= capacity) {
+      throw new IndexOutOfBoundsException(slot);
+    }
+    int base = AccessLog.HEADER_BYTES + slot * AccessLog.ENTRY_BYTES;
+    long epochMicros = (long) AccessLog.LONGS.getAcquire(buf, base + AccessLog.TIME);
+    if (epochMicros == 0L) {
+      return null;
+    }
+    return new AccessLogEntry(epochMicros, buf.get(base + AccessLog.KIND),
+        Short.toUnsignedInt(buf.getShort(base + AccessLog.STATUS)),
+        buf.getInt(base + AccessLog.LATENCY), address(base),
+        text(base, 0), text(base, 1), text(base, 2), text(base, 3), text(base, 4),
+        text(base, 5));
+  }
+
+  private InetAddress address(int base) {
+    int length = buf.get(base + AccessLog.ADDRESS_LENGTH);
+    if (length != 4 && length != 16) {
+      return null;
+    }
+    byte[] address = new byte[length];
+    buf.get(base + AccessLog.ADDRESS, address);
+    try {
+      return InetAddress.getByAddress(address);
+    } catch (UnknownHostException ex) {
+      return null;
+    }
+  }
+
+  private String text(int base, int field) {
+    int offset = base + AccessLog.TEXT_FIELDS[field];
+    int width = AccessLog.TEXT_FIELDS[field + 1] - AccessLog.TEXT_FIELDS[field];
+    int length = 0;
+    while (length < width && buf.get(offset + length) != 0) {
+      length++;
+    }
+    if (length == 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buf.get(offset, bytes);
+    return new String(bytes, StandardCharsets.US_ASCII);
+  }
+
+  /** The segments in {@code dir}, oldest first. */
+  public static List<Path> segments(Path dir) throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.filter(AccessLogReader::isSegment).sorted().toList();
+    }
+  }
+
+  static boolean isSegment(Path path) {
+    String name = path.getFileName().toString();
+    return name.startsWith(AccessLog.PREFIX) && name.endsWith(AccessLog.SUFFIX);
+  }
+}
@@ -0,0 +1,222 @@
+package no.hux.ja4.accesslog;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import no.hux.ja4.Json;
+
+/**
+ * Decodes access log segments ({@code ja4-server.jar access-log ...}): prints
+ * the entries that match a {@link Filter}, as tab-separated text or as NDJSON,
+ * and optionally follows a directory as the server writes to it.
+ *
+ * <p>Following polls the newest segment. Entries claimed but not yet written
+ * are checked again on the next polls, so an entry written late by one event
+ * loop is still printed, a little out of order. The tail moves to a newer
+ * segment once that has entries.
+ */
+public final class AccessLogTool {
+
+  private static final long POLL_MILLIS = 200L;
+  /** Unwritten entries rechecked while following; beyond this the oldest are given up. */
+  private static final int MAX_PENDING = 4096;
+
+  private final List<Path> inputs;
+  private final Filter filter;
+  private final boolean json;
+  private final boolean follow;
+  private final Writer out;
+  private final Logger logger;
+  private final StringBuilder line = new StringBuilder(512);
+  private long printed;
+
+  /** Entry criteria; {@code null} (or {@code 0} for status and kind) matches everything. */
+  public record Filter(String sessionId, InetAddress client, String ja4Prefix, int status,
+      byte kind, Instant since, Instant until) {
+
+    boolean matches(AccessLogEntry entry) {
+      return (sessionId == null || sessionId.equals(entry.sessionId()))
+          && (client == null || client.equals(entry.client()))
+          && (ja4Prefix == null || entry.ja4() != null && entry.ja4().startsWith(ja4Prefix))
+          && (status == 0 || status == entry.status())
+          && (kind == 0 || kind == entry.kind())
+          && (since == null || !entry.time().isBefore(since))
+          && (until == null || entry.time().isBefore(until));
+    }
+  }
+
+  /**
+   * @param inputs segment files, or directories whose segments are read.
+   * @param follow keep printing new entries of the newest segment; requires
+   *        a single input.
+   */
+  public AccessLogTool(List<Path> inputs, Filter filter, boolean json, boolean follow,
+      Writer out, Logger logger) {
+    if (inputs.isEmpty()) {
+      throw new IllegalArgumentException("at least one segment or directory is required");
+    }
+    if (follow && inputs.size() != 1) {
+      throw new IllegalArgumentException("follow requires a single segment or directory");
+    }
+    this.inputs = List.copyOf(inputs);
+    this.filter = filter;
+    this.json = json;
+    this.follow = follow;
+    this.out = out;
+    this.logger = logger;
+  }
+
+  /**
+   * Prints the matching entries; when following, does not return until the
+   * thread is interrupted.
+   *
+   * @return entries printed.
+   */
+  public long run() throws IOException, InterruptedException {
+    List<Path> segments = new ArrayList<>();
+    for (Path input : inputs) {
+      if (Files.isDirectory(input)) {
+        segments.addAll(AccessLogReader.segments(input));
+      } else {
+        segments.add(input);
+      }
+    }
+    if (!follow) {
+      for (Path segment : segments) {
+        try {
+          AccessLogReader reader = AccessLogReader.open(segment);
+          for (int slot = 0; slot < reader.claimed(); slot++) {
+            print(reader.read(slot));
+          }
+        } catch (IOException ex) {
+          logger.log(Level.WARNING, "Skipping " + segment + ": " + ex.getMessage());
+        }
+      }
+      out.flush();
+      return printed;
+    }
+    follow(Files.isDirectory(inputs.get(0)) ? inputs.get(0) : null, segments);
+    return printed;
+  }
+
+  private void follow(Path dir, List<Path> segments) throws IOException, InterruptedException {
+    // The newest segment is usually the one mapped ahead and still empty:
+    // tail the newest with entries.
+    AccessLogReader reader = null;
+    for (int i = segments.size() - 1; i >= 0 && reader == null; i--) {
+      AccessLogReader candidate = AccessLogReader.open(segments.get(i));
+      if (candidate.claimed() > 0 || i == 0) {
+        reader = candidate;
+        for (int j = 0; j < i; j++) {
+          AccessLogReader earlier = AccessLogReader.open(segments.get(j));
+          for (int slot = 0; slot < earlier.claimed(); slot++) {
+            print(earlier.read(slot));
+          }
+        }
+      }
+    }
+    TreeSet<Integer> pending = new TreeSet<>();
+    int next = 0;
+    while (!Thread.currentThread().isInterrupted()) {
+      if (reader != null) {
+        for (var it = pending.iterator(); it.hasNext(); ) {
+          AccessLogEntry entry = reader.read(it.next());
+          if (entry != null) {
+            print(entry);
+            it.remove();
+          }
+        }
+        int claimed = reader.claimed();
+        for (; next < claimed; next++) {
+          AccessLogEntry entry = reader.read(next);
+          if (entry != null) {
+            print(entry);
+          } else {
+            pending.add(next);
+          }
+        }
+        while (pending.size() > MAX_PENDING) {
+          pending.pollFirst();
+        }
+      }
+      out.flush();
+
+      AccessLogReader newer = dir == null ? null : newer(dir, reader);
+      if (newer != null) {
+        if (reader != null) {
+          for (int slot : pending) {
+            print(reader.read(slot));
+          }
+        }
+        reader = newer;
+        pending.clear();
+        next = 0;
+        continue;
+      }
+      TimeUnit.MILLISECONDS.sleep(POLL_MILLIS);
+    }
+  }
+
+  /** The segment after {@code current} in {@code dir}, once it has entries. */
+  private static AccessLogReader newer(Path dir, AccessLogReader current) throws IOException {
+    Path after = null;
+    for (Path segment : AccessLogReader.segments(dir)) {
+      if (current == null || segment.getFileName().compareTo(current.path().getFileName()) > 0) {
+        after = segment;
+        break;
+      }
+    }
+    if (after == null) {
+      return null;
+    }
+    AccessLogReader reader = AccessLogReader.open(after);
+    return reader.claimed() > 0 ? reader : null;
+  }
+
+  private void print(AccessLogEntry entry) throws IOException {
+    if (entry == null || !filter.matches(entry)) {
+      return;
+    }
+    line.setLength(0);
+    String client = entry.client() == null ? null : entry.client().getHostAddress();
+    if (json) {
+      line.append("{\"time\":\"").append(entry.time()).append("\",\"kind\":\"")
+          .append(entry.kindName()).append("\",\"status\":").append(entry.status())
+          .append(",\"latencyMicros\":").append(entry.latencyMicros());
+      jsonField("ip", client);
+      jsonField("sessionId", entry.sessionId());
+      jsonField("ja4", entry.ja4());
+      jsonField("ja4h", entry.ja4h());
+      jsonField("ja4l", entry.ja4l());
+      jsonField("ja4ls", entry.ja4ls());
+      jsonField("ja4t", entry.ja4t());
+      line.append("}\n");
+    } else {
+      line.append(entry.time()).append('\t').append(entry.kindName()).append('\t')
+          .append(entry.status()).append('\t')
+          .append(String.format(Locale.ROOT, "%.3fms", entry.latencyMicros() / 1000.0));
+      for (String field : new String[] {client, entry.sessionId(), entry.ja4(), entry.ja4h(),
+          entry.ja4l(), entry.ja4ls(), entry.ja4t()}) {
+        line.append('\t').append(field == null ? "-" : field);
+      }
+      line.append('\n');
+    }
+    out.append(line);
+    printed++;
+  }
+
+  private void jsonField(String key, String value) {
+    line.append(",\"").append(key).append("\":");
+    Json.appendString(line, value);
+  }
+}
@@ -0,0 +1,101 @@
+package no.hux.ja4.admission;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether a newly accepted connection may go on to the TLS
+ * handshake, so one client cannot spend the server's CPU on handshakes by
+ * opening connections as fast as it can.
+ *
+ * <p>A connection takes a token from its source address's bucket and then
+ * from its prefix's bucket: the /24 for IPv4, the /64 for IPv6, where one
+ * client usually holds the whole prefix. Either limit may be off. Buckets live
+ * in {@link TokenBucketTable}s, so memory is fixed however many sources
+ * connect, and a decision takes a few compare-and-sets without locks. For an
+ * IPv4 client it allocates nothing; an IPv6 prefix costs a copy of the
+ * address.
+ */
+public final class ConnectionAdmission {
+
+  /** Buckets per table; twice the sources expected to be limited at once. */
+  private static final int SLOTS = 1 << 16;
+  private static final long IPV6 = 1L << 32;
+
+  private final TokenBucketTable addressBuckets;
+  private final TokenBucketTable prefixBuckets;
+  private final long originNanos = System.nanoTime();
+  private final LongAdder refusedByAddress = new LongAdder();
+  private final LongAdder refusedByPrefix = new LongAdder();
+
+  /**
+   * @param addressRate connections per second per source address; {@code 0}
+   *        disables the limit.
+   * @param prefixRate connections per second per /24 or /64; {@code 0}
+   *        disables the limit.
+   */
+  public ConnectionAdmission(int addressRate, int addressBurst, int prefixRate,
+      int prefixBurst) {
+    this.addressBuckets = addressRate > 0
+        ? new TokenBucketTable(SLOTS, addressRate, addressBurst) : null;
+    this.prefixBuckets = prefixRate > 0
+        ? new TokenBucketTable(SLOTS, prefixRate, prefixBurst) : null;
+  }
+
+  /** Whether any limit is on. */
+  public boolean isEnabled() {
+    return addressBuckets != null || prefixBuckets != null;
+  }
+
+  /**
+   * @param remote the connection's remote address; other address types are
+   *        always admitted.
+   */
+  public boolean admit(SocketAddress remote) {
+    if (!(remote instanceof InetSocketAddress inet) || inet.getAddress() == null) {
+      return true;
+    }
+    InetAddress address = inet.getAddress();
+    long micros = (System.nanoTime() - originNanos) / 1_000L;
+    if (address instanceof Inet4Address) {
+      // An IPv4 address's hash code is the address.
+      int ip = address.hashCode();
+      return admit(ip & 0xFFFFFFFFL, (ip >>> 8) & 0xFFFFFFL, micros);
+    }
+    if (prefixBuckets == null) {
+      return admit(IPV6 | address.hashCode() & 0xFFFFFFFFL, 0L, micros);
+    }
+    byte[] bytes = address.getAddress();
+    long prefix = 0L;
+    for (int i = 0; i < 8; i++) {
+      prefix = prefix << 8 | (bytes[i] & 0xFF);
+    }
+    return admit(IPV6 | address.hashCode() & 0xFFFFFFFFL, prefix, micros);
+  }
+
+  /** Connections refused by the per-address limit, since creation. */
+  public long getRefusedByAddress() {
+    return refusedByAddress.sum();
+  }
+
+  /** Connections refused by the per-prefix limit, since creation. */
+  public long getRefusedByPrefix() {
+    return refusedByPrefix.sum();
+  }
+
+  private boolean admit(long addressKey, long prefixKey, long micros) {
+    // The address first: a client over its own limit does not drain its neighbours' budget.
+    if (addressBuckets != null && !addressBuckets.tryAcquire(addressKey, micros)) {
+      refusedByAddress.increment();
+      return false;
+    }
+    if (prefixBuckets != null && !prefixBuckets.tryAcquire(prefixKey, micros)) {
+      refusedByPrefix.increment();
+      return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,412 @@
+package no.hux.ja4.admission;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * JA4 allow and block rules, read from a file and reloaded when it changes.
+ *
+ * <p>One rule per line; blank lines and text after {@code #} are ignored:
+ * <pre>
+ *   block ja4    t13d1516h2_8daaf6152771_e5627efa2ab1
+ *   block ja4_a  t13d190900
+ *   block ja4_b  8daaf6152771
+ *   block ja4_c  e5627efa2ab1
+ *   block ja4_ac t13d1516h2_e5627efa2ab1
+ *   allow ja4    t13d1516h2_8daaf6152771_02713d6af862
+ *   block any
+ * </pre>
+ *
+ * <p>An allow rule matching any part of a JA4 wins over block rules, so allow
+ * rules carve exceptions out of broad blocks, and {@code block any} with allow
+ * rules makes an allowlist. Otherwise the most specific matching block rule
+ * decides. The deciding rule's hit counter is incremented.
+ *
+ * <p>Matching parses the JA4's parts in place, packs them into numbers (the
+ * {@code a} part's ten characters into 60 bits, {@code b} and {@code c} as
+ * 48-bit hex) and probes one open-addressing table of 64-bit hashes of the
+ * packed parts, once for each part kind. It allocates nothing and takes no
+ * lock. Two different values match by mistake only if their hashes collide,
+ * with odds of about 2^-64 per rule.
+ *
+ * <p>The file is checked for changes every {@value #RELOAD_SECONDS} seconds.
+ * A file that fails to parse is logged and the previous rules are kept; hit
+ * counters of rules that survive a reload carry over.
+ */
+public final class Ja4Rules {
+
+  static final int RELOAD_SECONDS = 5;
+
+  private static final int KIND_JA4 = 1;
+  private static final int KIND_AC = 2;
+  private static final int KIND_A = 3;
+  private static final int KIND_B = 4;
+  private static final int KIND_C = 5;
+  private static final String[] KIND_NAMES = {"any", "ja4", "ja4_ac", "ja4_a", "ja4_b", "ja4_c"};
+
+  private final Path path;
+  private final Logger logger;
+  private final ScheduledExecutorService scheduler;
+  private volatile RuleSet rules;
+  private FileTime loadedModified;
+
+  /** One rule, with the number of connections it decided. */
+  public static final class Rule {
+
+    private final boolean allow;
+    private final String part;
+    private final String value;
+    private final LongAdder hits;
+
+    Rule(boolean allow, String part, String value, LongAdder hits) {
+      this.allow = allow;
+      this.part = part;
+      this.value = value;
+      this.hits = hits;
+    }
+
+    public boolean isAllow() {
+      return allow;
+    }
+
+    /** {@code ja4}, {@code ja4_a}, {@code ja4_b}, {@code ja4_c}, {@code ja4_ac} or {@code any}. */
+    public String getPart() {
+      return part;
+    }
+
+    /** The matched value; empty for {@code any}. */
+    public String getValue() {
+      return value;
+    }
+
+    public long getHits() {
+      return hits.sum();
+    }
+
+    String text() {
+      return Ja4Rules.text(allow, part, value);
+    }
+  }
+
+  /**
+   * Loads the rules; a missing or invalid file fails here rather than at the
+   * first reload.
+   */
+  public Ja4Rules(Path path, Logger logger) throws IOException {
+    this.path = path;
+    this.logger = logger;
+    this.loadedModified = Files.getLastModifiedTime(path);
+    this.rules = RuleSet.parse(Files.readAllLines(path, StandardCharsets.UTF_8), null);
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "ja4-rules-reload");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public void start() {
+    scheduler.scheduleWithFixedDelay(this::reloadIfChanged, RELOAD_SECONDS, RELOAD_SECONDS,
+        TimeUnit.SECONDS);
+    logger.log(Level.INFO, "Loaded {0} JA4 rule(s) from {1}",
+        new Object[] {String.valueOf(rules.rules.size()), path});
+  }
+
+  public void stop() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * @return the rule deciding {@code ja4}, with its hit counted, or
+   *         {@code null} if no rule matches.
+   */
+  public Rule match(String ja4) {
+    Rule rule = rules.match(ja4);
+    if (rule != null) {
+      rule.hits.increment();
+    }
+    return rule;
+  }
+
+  /** The current rules, in file order. */
+  public List<Rule> rules() {
+    return rules.rules;
+  }
+
+  /** Reloads the file if its modification time changed. */
+  void reloadIfChanged() {
+    try {
+      FileTime modified = Files.getLastModifiedTime(path);
+      if (modified.equals(loadedModified)) {
+        return;
+      }
+      loadedModified = modified;
+      rules = RuleSet.parse(Files.readAllLines(path, StandardCharsets.UTF_8), rules);
+      logger.log(Level.INFO, "Reloaded {0} JA4 rule(s) from {1}",
+          new Object[] {String.valueOf(rules.rules.size()), path});
+    } catch (IOException | IllegalArgumentException ex) {
+      logger.log(Level.WARNING, "Failed to reload JA4 rules from " + path
+          + "; keeping the previous rules: " + ex.getMessage());
+    }
+  }
+
+  /** An immutable, parsed rule file. */
+  private static final class RuleSet {
+
+    final List<Rule> rules;
+    private final long[] keys;
+    private final Rule[] values;
+    private final int mask;
+    private final Rule any;
+
+    /** @param keyed the rules other than {@code any}, with their {@code keys}. */
+    private RuleSet(List<Rule> rules, List<Rule> keyed, List<Long> ruleKeys, Rule any) {
+      this.rules = List.copyOf(rules);
+      this.any = any;
+      // At most half full.
+      int capacity = Integer.highestOneBit(Math.max(1, ruleKeys.size()) * 2 - 1) << 1;
+      this.keys = new long[capacity];
+      this.values = new Rule[capacity];
+      this.mask = capacity - 1;
+      for (int i = 0; i < ruleKeys.size(); i++) {
+        long key = ruleKeys.get(i);
+        Rule rule = keyed.get(i);
+        int slot = (int) key & mask;
+        while (values[slot] != null && keys[slot] != key) {
+          slot = (slot + 1) & mask;
+        }
+        // The same value both allowed and blocked: allow wins.
+        if (values[slot] == null || rule.allow) {
+          keys[slot] = key;
+          values[slot] = rule;
+        }
+      }
+    }
+
+    /**
+     * @param previous rules whose hit counters carry over to identical rules,
+     *        or {@code null}.
+     */
+    static RuleSet parse(List<String> lines, RuleSet previous) {
+      Map<String, LongAdder> counters = new HashMap<>();
+      if (previous != null) {
+        for (Rule rule : previous.rules) {
+          counters.put(rule.text(), rule.hits);
+        }
+      }
+      List<Rule> rules = new ArrayList<>();
+      List<Rule> keyed = new ArrayList<>();
+      List<Long> keys = new ArrayList<>();
+      Set<String> seen = new HashSet<>();
+      Rule any = null;
+      for (int n = 0; n < lines.size(); n++) {
+        String line = lines.get(n);
+        int comment = line.indexOf('#');
+        if (comment >= 0) {
+          line = line.substring(0, comment);
+        }
+        line = line.strip();
+        if (line.isEmpty()) {
+          continue;
+        }
+        String[] fields = line.split("\\s+");
+        String action = fields[0].toLowerCase(Locale.ROOT);
+        if (!"allow".equals(action) && !"block".equals(action)) {
+          throw new IllegalArgumentException("line " + (n + 1) + ": expected allow or block");
+        }
+        String part = fields.length > 1 ? fields[1].toLowerCase(Locale.ROOT) : "";
+        int kind = kindOf(part);
+        if (kind < 0 || fields.length != (kind == 0 ? 2 : 3)) {
+          throw new IllegalArgumentException("line " + (n + 1)
+              + ": expected '" + action + " <ja4|ja4_a|ja4_b|ja4_c|ja4_ac> <value>' or '"
+              + action + " any'");
+        }
+        String value = kind == 0 ? "" : fields[2].toLowerCase(Locale.ROOT);
+        long key = kind == 0 ? 0L : ruleKey(kind, value);
+        if (kind != 0 && key == 0L) {
+          throw new IllegalArgumentException("line " + (n + 1) + ": invalid " + part + " value "
+              + fields[2]);
+        }
+        boolean allow = "allow".equals(action);
+        String text = text(allow, part, value);
+        if (!seen.add(text)) {
+          continue;
+        }
+        Rule rule = new Rule(allow, part, value,
+            counters.computeIfAbsent(text, t -> new LongAdder()));
+        if (kind == 0) {
+          if (any == null || allow) {
+            any = rule;
+          }
+        } else {
+          keyed.add(rule);
+          keys.add(key);
+        }
+        rules.add(rule);
+      }
+      return new RuleSet(rules, keyed, keys, any);
+    }
+
+    Rule match(String ja4) {
+      if (ja4 == null) {
+        return any;
+      }
+      long a = packA(ja4, 0);
+      long b = ja4.length() == 36 && ja4.charAt(10) == '_' && ja4.charAt(23) == '_'
+          ? hex48(ja4, 11) : -1L;
+      long c = b >= 0 ? hex48(ja4, 24) : -1L;
+      Rule block = null;
+      if (a >= 0 && b >= 0 && c >= 0) {
+        // Most specific first; any allow wins over an earlier block.
+        for (int kind = KIND_JA4; kind <= KIND_C; kind++) {
+          Rule rule = find(key(kind, a, b, c));
+          if (rule != null) {
+            if (rule.allow) {
+              return rule;
+            }
+            if (block == null) {
+              block = rule;
+            }
+          }
+        }
+      }
+      if (any != null && (any.allow || block == null)) {
+        return any;
+      }
+      return block;
+    }
+
+    private Rule find(long key) {
+      int slot = (int) key & mask;
+      Rule rule;
+      while ((rule = values[slot]) != null) {
+        if (keys[slot] == key) {
+          return rule;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return null;
+    }
+  }
+
+  private static String text(boolean allow, String part, String value) {
+    return (allow ? "allow " : "block ") + part + (value.isEmpty() ? "" : " " + value);
+  }
+
+  private static int kindOf(String part) {
+    for (int i = 0; i < KIND_NAMES.length; i++) {
+      if (KIND_NAMES[i].equals(part)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** The table key of a rule value, or {@code 0} if the value is malformed. */
+  private static long ruleKey(int kind, String value) {
+    long a = -1L;
+    long b = 0L;
+    long c = 0L;
+    switch (kind) {
+      case KIND_JA4 -> {
+        if (value.length() != 36 || value.charAt(10) != '_' || value.charAt(23) != '_') {
+          return 0L;
+        }
+        a = packA(value, 0);
+        b = hex48(value, 11);
+        c = hex48(value, 24);
+      }
+      case KIND_AC -> {
+        if (value.length() != 23 || value.charAt(10) != '_') {
+          return 0L;
+        }
+        a = packA(value, 0);
+        c = hex48(value, 11);
+      }
+      case KIND_A -> a = value.length() == 10 ? packA(value, 0) : -1L;
+      case KIND_B -> {
+        a = 0L;
+        b = value.length() == 12 ? hex48(value, 0) : -1L;
+      }
+      case KIND_C -> {
+        a = 0L;
+        c = value.length() == 12 ? hex48(value, 0) : -1L;
+      }
+      default -> {
+        return 0L;
+      }
+    }
+    if (a < 0 || b < 0 || c < 0) {
+      return 0L;
+    }
+    return key(kind, a, b, c);
+  }
+
+  /** The table key of one part kind of a JA4 whose parts are packed. */
+  private static long key(int kind, long a, long b, long c) {
+    long key = switch (kind) {
+      case KIND_JA4 -> TokenBucketTable.mix(
+          TokenBucketTable.mix(TokenBucketTable.mix(KIND_JA4 ^ a) ^ b) ^ c);
+      case KIND_AC -> TokenBucketTable.mix(TokenBucketTable.mix(KIND_AC ^ a) ^ c);
+      case KIND_A -> TokenBucketTable.mix(KIND_A ^ a);
+      case KIND_B -> TokenBucketTable.mix(KIND_B ^ b);
+      default -> TokenBucketTable.mix(KIND_C ^ c);
+    };
+    return key == 0L ? 1L : key;
+  }
+
+  /**
+   * Packs the ten alphanumeric characters of a JA4 {@code a} part into 60
+   * bits, 1 to 36 per character; {@code -1} if there is another character.
+   */
+  private static long packA(String s, int from) {
+    if (s.length() < from + 10) {
+      return -1L;
+    }
+    long packed = 0L;
+    for (int i = from; i < from + 10; i++) {
+      char ch = s.charAt(i);
+      int v;
+      if (ch >= '0' && ch <= '9') {
+        v = ch - '0' + 1;
+      } else if (ch >= 'a' && ch <= 'z') {
+        v = ch - 'a' + 11;
+      } else {
+        return -1L;
+      }
+      packed = packed << 6 | v;
+    }
+    return packed;
+  }
+
+  /** Twelve lowercase hex digits as a number; {@code -1} if they are not. */
+  private static long hex48(String s, int from) {
+    if (s.length() < from + 12) {
+      return -1L;
+    }
+    long value = 0L;
+    for (int i = from; i < from + 12; i++) {
+      int digit = Character.digit(s.charAt(i), 16);
+      if (digit < 0 || Character.isUpperCase(s.charAt(i))) {
+        return -1L;
+      }
+      value = value << 4 | digit;
+    }
+    return value;
+  }
+}
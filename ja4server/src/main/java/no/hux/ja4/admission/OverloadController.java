@@ -0,0 +1,305 @@
+package no.hux.ja4.admission;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.netty.util.internal.PlatformDependent;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sheds work in a fixed order as the server runs out of capacity, so that
+ * the clients it still takes are served within their timeouts instead of all
+ * of them timing out together.
+ *
+ * <p>Every {@value #SAMPLE_MILLIS} ms a thread reads each signal's pressure,
+ * a fraction where {@code 1.0} means the resource is spent: event loop lag,
+ * queued loop tasks, heap and direct memory, and capture ring fill. The
+ * fingerprint store is not a signal: it is an LRU that runs full in normal
+ * operation, so its fill says nothing about load.
+ * The highest pressure picks the level:
+ * <pre>
+ *   level  pressure  shed
+ *   1      0.70      the application-level JA4L estimate
+ *   2      0.80      correlation with captured handshakes (JA4T, real JA4L)
+ *   3      0.90      lookups, answered 503 with Retry-After
+ *   4      1.00      new connections, reset at accept
+ * </pre>
+ * Each level includes the ones below it. The level rises to what the lowest
+ * of the last {@value #RISE_SAMPLES} samples calls for, so a single stall,
+ * such as the first handshake warming up the JIT, sheds nothing. It falls one
+ * step at a time once the pressure has stayed {@value #HYSTERESIS} below the
+ * current level's threshold for {@value #HOLD_MILLIS} ms, so it does not flap
+ * while the load hovers at a threshold.
+ *
+ * <p>The request path reads the level with one volatile load.
+ */
+public final class OverloadController {
+
+  public static final int NORMAL = 0;
+  public static final int SKIP_JA4L = 1;
+  public static final int SKIP_CORRELATION = 2;
+  public static final int REJECT_LOOKUPS = 3;
+  public static final int REFUSE_CONNECTIONS = 4;
+  /** Sent with rejected lookups. */
+  public static final int RETRY_AFTER_SECONDS = 5;
+
+  static final long SAMPLE_MILLIS = 100L;
+  static final double HYSTERESIS = 0.1;
+  /** Samples the pressure must stay above a threshold for the level to rise. */
+  static final int RISE_SAMPLES = 10;
+  static final long HOLD_MILLIS = 2_000L;
+  private static final double[] THRESHOLDS = {0.0, 0.70, 0.80, 0.90, 1.00};
+  private static final String[] SHED_NAMES = {null, "ja4l", "correlation", "lookup",
+      "connection"};
+  /** Fraction of the heap, after a collection, or of direct memory that counts as spent. */
+  private static final double MEMORY_LIMIT = 0.95;
+  /** Tasks queued on one event loop that count as full load. */
+  static final int QUEUED_TASKS_LIMIT = 8192;
+
+  private final List<String> names = new ArrayList<>();
+  private final List<DoubleSupplier> signals = new ArrayList<>();
+  private final LongAdder[] shed = new LongAdder[SHED_NAMES.length];
+  private final Logger logger;
+  private final ScheduledExecutorService scheduler;
+  private volatile int level;
+  private volatile double[] pressures = new double[0];
+  // Sampling thread only.
+  private final double[] recent = new double[RISE_SAMPLES];
+  private long samples;
+  private long calmSinceNanos = -1L;
+
+  public OverloadController(Logger logger) {
+    this.logger = logger;
+    for (int i = 1; i < shed.length; i++) {
+      shed[i] = new LongAdder();
+    }
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "ja4-overload");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Adds a signal; call before {@link #start()}.
+   *
+   * @param pressure returns the resource's use as a fraction of what it can
+   *        take, called from the sampling thread.
+   */
+  public synchronized void addSignal(String name, DoubleSupplier pressure) {
+    names.add(name);
+    signals.add(pressure);
+  }
+
+  public void start() {
+    scheduler.scheduleAtFixedRate(this::sample, SAMPLE_MILLIS, SAMPLE_MILLIS,
+        TimeUnit.MILLISECONDS);
+  }
+
+  public void stop() {
+    scheduler.shutdownNow();
+  }
+
+  /** The current level, {@link #NORMAL} to {@link #REFUSE_CONNECTIONS}. */
+  public int level() {
+    return level;
+  }
+
+  /**
+   * Whether work shed from {@code atLevel} on is to be skipped now; counts
+   * it if so.
+   */
+  public boolean shed(int atLevel) {
+    if (level < atLevel) {
+      return false;
+    }
+    shed[atLevel].increment();
+    return true;
+  }
+
+  /** Work skipped by what was shed ({@code ja4l}, {@code correlation}, ...), in level order. */
+  public Map<String, Long> shedCounts() {
+    Map<String, Long> counts = new LinkedHashMap<>();
+    for (int i = 1; i < shed.length; i++) {
+      counts.put(SHED_NAMES[i], shed[i].sum());
+    }
+    return counts;
+  }
+
+  /** Each signal's last sampled pressure, in the order added. */
+  public synchronized Map<String, Double> pressures() {
+    double[] sampled = pressures;
+    Map<String, Double> result = new LinkedHashMap<>();
+    for (int i = 0; i < names.size(); i++) {
+      result.put(names.get(i), i < sampled.length ? sampled[i] : 0.0);
+    }
+    return result;
+  }
+
+  private void sample() {
+    try {
+      update(System.nanoTime());
+    } catch (RuntimeException ex) {
+      logger.log(Level.WARNING, "Overload sampling failed", ex);
+    }
+  }
+
+  synchronized void update(long nowNanos) {
+    double[] sampled = new double[signals.size()];
+    double pressure = 0.0;
+    int worst = -1;
+    for (int i = 0; i < sampled.length; i++) {
+      sampled[i] = Math.max(0.0, signals.get(i).getAsDouble());
+      if (sampled[i] > pressure) {
+        pressure = sampled[i];
+        worst = i;
+      }
+    }
+    pressures = sampled;
+    recent[(int) (samples++ % RISE_SAMPLES)] = pressure;
+    double sustained = 0.0;
+    if (samples >= RISE_SAMPLES) {
+      sustained = recent[0];
+      for (double p : recent) {
+        sustained = Math.min(sustained, p);
+      }
+    }
+
+    int current = level;
+    int target = NORMAL;
+    while (target < REFUSE_CONNECTIONS && sustained >= THRESHOLDS[target + 1]) {
+      target++;
+    }
+    if (target > current) {
+      calmSinceNanos = -1L;
+      setLevel(current, target, pressure, worst);
+    } else if (current > NORMAL && pressure < THRESHOLDS[current] - HYSTERESIS) {
+      if (calmSinceNanos < 0L) {
+        calmSinceNanos = nowNanos;
+      } else if (nowNanos - calmSinceNanos >= TimeUnit.MILLISECONDS.toNanos(HOLD_MILLIS)) {
+        calmSinceNanos = nowNanos;
+        setLevel(current, current - 1, pressure, worst);
+      }
+    } else {
+      calmSinceNanos = -1L;
+    }
+  }
+
+  private void setLevel(int from, int to, double pressure, int worst) {
+    level = to;
+    if (to == NORMAL) {
+      logger.log(Level.INFO, "Load back to normal; no longer shedding");
+      return;
+    }
+    Object[] params = {SHED_NAMES[to], to, worst < 0 ? "none" : names.get(worst),
+        Math.round(pressure * 100)};
+    if (to > from) {
+      logger.log(Level.WARNING, "Overloaded: shedding up to {0}, level {1} ({2} at {3}%)",
+          params);
+    } else {
+      logger.log(Level.INFO, "Load easing: shedding up to {0}, level {1} ({2} at {3}%)", params);
+    }
+  }
+
+  /**
+   * The server's controller: lag of the slowest event loop against
+   * {@code lagLimitMillis}, tasks queued on the busiest of {@code loops}, heap
+   * and direct memory and, with capture, the capture ring's fill.
+   *
+   * @param loopLagNanos the current lag of the slowest loop.
+   * @param captureRingFill the capture ring's fill, or {@code null} without
+   *        capture.
+   */
+  public static OverloadController forServer(Logger logger, int lagLimitMillis,
+      LongSupplier loopLagNanos, EventExecutorGroup loops, DoubleSupplier captureRingFill) {
+    OverloadController overload = new OverloadController(logger);
+    double lagLimitNanos = TimeUnit.MILLISECONDS.toNanos(lagLimitMillis);
+    overload.addSignal("loop_lag", () -> loopLagNanos.getAsLong() / lagLimitNanos);
+    overload.addSignal("loop_queue", queueSignal(loops, QUEUED_TASKS_LIMIT));
+    overload.addSignal("heap", heapSignal());
+    overload.addSignal("direct_memory", directMemorySignal());
+    if (captureRingFill != null) {
+      overload.addSignal("capture_ring", captureRingFill);
+    }
+    return overload;
+  }
+
+  /**
+   * Heap use after the last collection, so garbage not yet collected does not
+   * count; before the first collection, current use.
+   */
+  public static DoubleSupplier heapSignal() {
+    List<MemoryPoolMXBean> pools = new ArrayList<>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()) {
+        pools.add(pool);
+      }
+    }
+    long heapMax = Runtime.getRuntime().maxMemory();
+    return () -> {
+      long used = 0L;
+      for (MemoryPoolMXBean pool : pools) {
+        MemoryUsage usage = pool.getCollectionUsage();
+        if (usage != null) {
+          used += usage.getUsed();
+        }
+      }
+      if (used == 0L) {
+        used = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+      }
+      return used / (double) heapMax / MEMORY_LIMIT;
+    };
+  }
+
+  /** Direct buffer memory in use, as Netty counts it or else as the JDK does. */
+  public static DoubleSupplier directMemorySignal() {
+    BufferPoolMXBean direct = null;
+    for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+      if ("direct".equals(pool.getName())) {
+        direct = pool;
+      }
+    }
+    BufferPoolMXBean jdkPool = direct;
+    long max = PlatformDependent.maxDirectMemory();
+    return () -> {
+      long used = PlatformDependent.usedDirectMemory();
+      if (used < 0L) {
+        used = jdkPool != null ? jdkPool.getMemoryUsed() : 0L;
+      }
+      return max > 0L ? used / (double) max / MEMORY_LIMIT : 0.0;
+    };
+  }
+
+  /** Tasks queued on the busiest loop of {@code group}, as a fraction of {@code limit}. */
+  public static DoubleSupplier queueSignal(EventExecutorGroup group, int limit) {
+    List<SingleThreadEventExecutor> loops = new ArrayList<>();
+    for (EventExecutor loop : group) {
+      if (loop instanceof SingleThreadEventExecutor executor) {
+        loops.add(executor);
+      }
+    }
+    return () -> {
+      int pending = 0;
+      for (SingleThreadEventExecutor loop : loops) {
+        pending = Math.max(pending, loop.pendingTasks());
+      }
+      return pending / (double) limit;
+    };
+  }
+}
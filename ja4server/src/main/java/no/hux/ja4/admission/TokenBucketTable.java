@@ -0,0 +1,143 @@
+package no.hux.ja4.admission;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size table of token buckets keyed by a {@code long}, such as an
+ * address or an address prefix, for rate limiting an unbounded key space in
+ * bounded memory.
+ *
+ * <p>Each bucket is one word: a 16-bit tag of its key and, in the other 48
+ * bits, the bucket's theoretical arrival time (the generic cell rate
+ * algorithm): the time at which the bucket will be full again. Taking a token
+ * moves it one token interval later, and is refused if that would put it more
+ * than a burst ahead of now. Every decision is a single compare-and-set, so
+ * the table is lock-free and never allocates.
+ *
+ * <p>A key maps to two adjacent slots. It uses the one carrying its tag;
+ * otherwise it takes over a slot whose bucket has refilled, which then holds
+ * no information, or failing that the slot closer to refilling. The key
+ * space therefore evicts itself: idle keys are simply overwritten. Keys are
+ * hashed with a random seed, so colliding keys cannot be chosen from outside;
+ * two keys with the same slot and tag (one in 2^15) share a bucket.
+ *
+ * <p>Times are in microseconds on any clock that does not run backwards
+ * between calls by more than the burst window, and are compared modulo 2^48
+ * (about 8.9 years).
+ */
+public final class TokenBucketTable {
+
+  private static final int TIME_BITS = 48;
+  private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+
+  private final AtomicLongArray words;
+  private final int mask;
+  private final long seed = ThreadLocalRandom.current().nextLong();
+  private final long intervalMicros;
+  private final long burstMicros;
+
+  /**
+   * @param slots table size, a power of two of at least 2.
+   * @param ratePerSecond tokens added per second, at most one million.
+   * @param burst tokens a full bucket holds.
+   */
+  public TokenBucketTable(int slots, int ratePerSecond, int burst) {
+    if (slots < 2 || Integer.bitCount(slots) != 1) {
+      throw new IllegalArgumentException("slots must be a power of two >= 2");
+    }
+    if (ratePerSecond < 1 || ratePerSecond > 1_000_000 || burst < 1) {
+      throw new IllegalArgumentException("rate must be in [1, 1000000] and burst >= 1");
+    }
+    this.words = new AtomicLongArray(slots);
+    this.mask = slots - 1;
+    this.intervalMicros = 1_000_000L / ratePerSecond;
+    this.burstMicros = burst * intervalMicros;
+  }
+
+  /** Takes a token from {@code key}'s bucket; {@code false} if it is empty. */
+  public boolean tryAcquire(long key, long nowMicros) {
+    long h = mix(key ^ seed);
+    long tag = tag(h);
+    long now = nowMicros & TIME_MASK;
+    while (true) {
+      int slot = slot(h, tag, now);
+      long word = words.get(slot);
+      long tat = tagOf(word) == tag ? word & TIME_MASK : now;
+      // A bucket that is full has its arrival time in the past: start from now.
+      long next = (ahead(tat, now) > 0 ? tat : now) + intervalMicros;
+      if (ahead(next, now) > burstMicros) {
+        return false;
+      }
+      if (words.compareAndSet(slot, word, tag << TIME_BITS | next & TIME_MASK)) {
+        return true;
+      }
+    }
+  }
+
+  /** Gives a token back to {@code key}'s bucket, up to a full bucket. */
+  public void credit(long key, long nowMicros) {
+    long h = mix(key ^ seed);
+    long tag = tag(h);
+    long now = nowMicros & TIME_MASK;
+    while (true) {
+      int slot = slot(h, tag, now);
+      long word = words.get(slot);
+      if (tagOf(word) != tag) {
+        // Not tracked, so already full.
+        return;
+      }
+      long tat = word & TIME_MASK;
+      if (ahead(tat, now) <= 0) {
+        return;
+      }
+      long next = ahead(tat, now) > intervalMicros ? tat - intervalMicros : now;
+      if (words.compareAndSet(slot, word, tag << TIME_BITS | next & TIME_MASK)) {
+        return;
+      }
+    }
+  }
+
+  /** The slot {@code key} uses: its own, an idle one, or the one closer to idle. */
+  private int slot(long h, long tag, long now) {
+    int first = (int) h & mask & ~1;
+    int second = first + 1;
+    long a = words.get(first);
+    if (tagOf(a) == tag) {
+      return first;
+    }
+    long b = words.get(second);
+    if (tagOf(b) == tag) {
+      return second;
+    }
+    long aheadA = ahead(a & TIME_MASK, now);
+    long aheadB = ahead(b & TIME_MASK, now);
+    if (aheadA <= 0 || tagOf(a) == 0) {
+      return first;
+    }
+    if (aheadB <= 0 || tagOf(b) == 0) {
+      return second;
+    }
+    return aheadA <= aheadB ? first : second;
+  }
+
+  /** How far {@code time} is after {@code now}, modulo 2^48. */
+  private static long ahead(long time, long now) {
+    return (time - now) << (64 - TIME_BITS) >> (64 - TIME_BITS);
+  }
+
+  private static long tagOf(long word) {
+    return word >>> TIME_BITS;
+  }
+
+  /** Never 0, which marks an empty slot. */
+  private static long tag(long h) {
+    return h >>> TIME_BITS | 1L;
+  }
+
+  static long mix(long x) {
+    x = (x ^ (x >>> 33)) * 0xFF51AFD7ED558CCDL;
+    x = (x ^ (x >>> 33)) * 0xC4CEB9FE1A85EC53L;
+    return x ^ (x >>> 33);
+  }
+}
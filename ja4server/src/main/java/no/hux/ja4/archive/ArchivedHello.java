@@ -0,0 +1,154 @@
+package no.hux.ja4.archive;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaders;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import no.hux.ja4.fingerprint.Ja4HttpFingerprint;
+import no.hux.ja4.fingerprint.Ja4TlsFingerprint;
+import no.hux.ja4.server.ClientHelloInfo;
+import no.hux.ja4.server.ClientHelloParser;
+
+/**
+ * One archived fingerprint request: the raw ClientHello record, the parts of
+ * the HTTP request JA4H is computed from, and the JA4 and JA4H the server
+ * computed at the time.
+ *
+ * <p>Cookie values are not archived, only their field names and the JA4H
+ * cookie-values hash, so the archive holds no session secrets.
+ */
+public record ArchivedHello(
+    long epochMillis,
+    String sessionId,
+    String ip,
+    String ja4,
+    String ja4h,
+    byte[] clientHello,
+    String method,
+    int httpVersion,
+    List<String> headerNames,
+    String acceptLanguage,
+    List<String> cookieFields,
+    String cookieValuesHash) {
+
+  /** Bound on one string when reading, well above any HTTP header the server accepts. */
+  static final int MAX_STRING_BYTES = 1 << 20;
+
+  public static ArchivedHello of(long epochMillis, String sessionId, String ip, String ja4,
+      String ja4h, byte[] clientHello, FullHttpRequest request) {
+    HttpHeaders headers = request.headers();
+    List<String> cookies = headers.getAll("Cookie");
+    return new ArchivedHello(epochMillis, sessionId, ip, ja4, ja4h, clientHello,
+        request.method().name(), Ja4HttpFingerprint.version(request.protocolVersion()),
+        Ja4HttpFingerprint.headerNames(headers), headers.get("Accept-Language"),
+        Ja4HttpFingerprint.cookieFields(cookies), Ja4HttpFingerprint.cookieValuesHash(cookies));
+  }
+
+  /** JA4 of the archived ClientHello by the current code, or {@code null}. */
+  public String computeJa4() {
+    ClientHelloInfo info = ClientHelloParser.tryParse(Unpooled.wrappedBuffer(clientHello));
+    return info == null ? null : Ja4TlsFingerprint.compute(info);
+  }
+
+  /** JA4H of the archived request by the current code. */
+  public String computeJa4h() {
+    return Ja4HttpFingerprint.compute(method, httpVersion, headerNames, acceptLanguage,
+        cookieFields, cookieValuesHash);
+  }
+
+  /**
+   * Writes the record; strings are length-prefixed UTF-8 (u32 byte count),
+   * absent ones empty.
+   */
+  void writeTo(DataOutputStream out) throws IOException {
+    out.writeLong(epochMillis);
+    writeString(out, sessionId);
+    writeString(out, ip);
+    writeString(out, ja4);
+    writeString(out, ja4h);
+    out.writeInt(clientHello.length);
+    out.write(clientHello);
+    writeString(out, method);
+    out.writeByte(httpVersion);
+    writeList(out, headerNames);
+    writeString(out, acceptLanguage);
+    writeList(out, cookieFields);
+    writeString(out, cookieValuesHash);
+  }
+
+  /**
+   * @param version the segment's format version; version 1 wrote modified
+   *        UTF-8 with a u16 length, which capped strings at 64 KiB.
+   */
+  static ArchivedHello readFrom(DataInputStream in, int version, int maxHelloBytes)
+      throws IOException {
+    long epochMillis = in.readLong();
+    String sessionId = readString(in, version);
+    String ip = orNull(readString(in, version));
+    String ja4 = orNull(readString(in, version));
+    String ja4h = orNull(readString(in, version));
+    int helloLength = in.readInt();
+    if (helloLength < 0 || helloLength > maxHelloBytes) {
+      throw new IOException("Bad ClientHello length " + helloLength);
+    }
+    byte[] hello = new byte[helloLength];
+    in.readFully(hello);
+    String method = readString(in, version);
+    int httpVersion = in.readUnsignedByte();
+    List<String> headerNames = readList(in, version);
+    String acceptLanguage = orNull(readString(in, version));
+    List<String> cookieFields = readList(in, version);
+    String cookieValuesHash = readString(in, version);
+    return new ArchivedHello(epochMillis, sessionId, ip, ja4, ja4h, hello, method, httpVersion,
+        headerNames, acceptLanguage, cookieFields, cookieValuesHash);
+  }
+
+  private static void writeList(DataOutputStream out, List<String> values) throws IOException {
+    int count = Math.min(values.size(), 0xFFFF);
+    out.writeShort(count);
+    for (int i = 0; i < count; i++) {
+      writeString(out, values.get(i));
+    }
+  }
+
+  private static List<String> readList(DataInputStream in, int version) throws IOException {
+    int count = in.readUnsignedShort();
+    List<String> values = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      values.add(readString(in, version));
+    }
+    return values;
+  }
+
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = orEmpty(value).getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in, int version) throws IOException {
+    if (version == 1) {
+      return in.readUTF();
+    }
+    int length = in.readInt();
+    if (length < 0 || length > MAX_STRING_BYTES) {
+      throw new IOException("Bad string length " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static String orEmpty(String value) {
+    return value == null ? "" : value;
+  }
+
+  private static String orNull(String value) {
+    return value.isEmpty() ? null : value;
+  }
+}
@@ -0,0 +1,201 @@
+package no.hux.ja4.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Appends {@link ArchivedHello} records to GZIP-compressed rolling segment
+ * files, for re-fingerprinting with later code and as a replay corpus.
+ *
+ * <p>{@link #offer} is called on the event loop and never blocks: records go
+ * through a bounded queue to a single writer thread, and are dropped and
+ * counted when the queue is full. A segment is written as
+ * {@code <name>.part} and renamed to {@code ja4-hello-<utc time>-<seq>.bin.gz}
+ * once closed, so readers only see complete segments. The sequence number is
+ * zero-padded so that names sort in write order. Segments roll after
+ * {@code segmentBytes} of uncompressed records or an hour, whichever is first.
+ *
+ * <p>Segment layout: magic {@code "JA4A"}, a format version (u16), then
+ * records as written by {@link ArchivedHello#writeTo} until end of stream.
+ */
+public final class HelloArchive {
+
+  public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+  static final int MAGIC = 0x4A413441;
+  static final int VERSION = 2;
+  static final String SUFFIX = ".bin.gz";
+  private static final int QUEUE_CAPACITY = 8192;
+  private static final int BUFFER_BYTES = 64 * 1024;
+  private static final long MAX_SEGMENT_AGE_MILLIS = TimeUnit.HOURS.toMillis(1);
+  private static final long DROP_REPORT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final DateTimeFormatter NAME_TIME = DateTimeFormatter
+      .ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+  private final Path dir;
+  private final long segmentBytes;
+  private final Logger logger;
+  private final BlockingQueue<ArchivedHello> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder written = new LongAdder();
+  private final Thread writer;
+  private volatile boolean running = true;
+
+  private DataOutputStream out;
+  private Path partPath;
+  private Path finalPath;
+  private long segmentOpenedMillis;
+  private int segmentSeq;
+  private long droppedReported;
+  private long lastDropReportMillis;
+
+  public HelloArchive(Path dir, long segmentBytes, Logger logger) throws IOException {
+    if (segmentBytes <= 0) {
+      throw new IllegalArgumentException("segmentBytes must be positive");
+    }
+    Files.createDirectories(dir);
+    this.dir = dir;
+    this.segmentBytes = segmentBytes;
+    this.logger = logger;
+    this.writer = new Thread(this::run, "ja4-hello-archive");
+    this.writer.setDaemon(true);
+  }
+
+  public void start() {
+    writer.start();
+    logger.log(Level.INFO, "Archiving ClientHellos to {0}", dir);
+  }
+
+  /** Queues a record; {@code false} if it was dropped because the queue is full. */
+  public boolean offer(ArchivedHello hello) {
+    if (running && queue.offer(hello)) {
+      return true;
+    }
+    dropped.increment();
+    return false;
+  }
+
+  /** Writes out queued records, closes the current segment and stops the writer. */
+  public void stop() {
+    running = false;
+    writer.interrupt();
+    try {
+      writer.join(TimeUnit.SECONDS.toMillis(10));
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    logger.log(Level.INFO, "ClientHello archive stopped: {0} record(s) written, {1} dropped",
+        new Object[] {written.sum(), dropped.sum()});
+  }
+
+  public long getWritten() {
+    return written.sum();
+  }
+
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  private void run() {
+    List<ArchivedHello> batch = new ArrayList<>(256);
+    while (running || !queue.isEmpty()) {
+      try {
+        ArchivedHello first = queue.poll(1, TimeUnit.SECONDS);
+        if (first != null) {
+          batch.add(first);
+          queue.drainTo(batch, 255);
+        }
+      } catch (InterruptedException ex) {
+        // stop() interrupts; drain what is left on the next pass
+      }
+      try {
+        long now = System.currentTimeMillis();
+        if (out != null && now - segmentOpenedMillis >= MAX_SEGMENT_AGE_MILLIS) {
+          closeSegment();
+        }
+        for (ArchivedHello hello : batch) {
+          if (out == null) {
+            openSegment(now);
+          }
+          hello.writeTo(out);
+          written.increment();
+          if (out.size() >= segmentBytes) {
+            closeSegment();
+          }
+        }
+        if (out != null) {
+          out.flush();
+        }
+      } catch (IOException ex) {
+        logger.log(Level.WARNING, "Failed to write ClientHello archive segment " + partPath, ex);
+        abandonSegment();
+      }
+      batch.clear();
+      reportDrops();
+    }
+    try {
+      closeSegment();
+    } catch (IOException ex) {
+      logger.log(Level.WARNING, "Failed to close ClientHello archive segment " + partPath, ex);
+    }
+  }
+
+  private void openSegment(long now) throws IOException {
+    String name = "ja4-hello-" + NAME_TIME.format(Instant.ofEpochMilli(now)) + "-"
+        + String.format("%06d", segmentSeq++) + SUFFIX;
+    finalPath = dir.resolve(name);
+    partPath = dir.resolve(name + ".part");
+    out = new DataOutputStream(new BufferedOutputStream(
+        new GZIPOutputStream(Files.newOutputStream(partPath), BUFFER_BYTES), BUFFER_BYTES));
+    out.writeInt(MAGIC);
+    out.writeShort(VERSION);
+    segmentOpenedMillis = now;
+  }
+
+  private void closeSegment() throws IOException {
+    if (out == null) {
+      return;
+    }
+    DataOutputStream closing = out;
+    out = null;
+    closing.close();
+    Files.move(partPath, finalPath, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private void abandonSegment() {
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException ignored) {
+        // already failing; the .part file is left for inspection
+      }
+      out = null;
+    }
+  }
+
+  private void reportDrops() {
+    long total = dropped.sum();
+    long now = System.currentTimeMillis();
+    if (total > droppedReported && now - lastDropReportMillis >= DROP_REPORT_MILLIS) {
+      logger.log(Level.WARNING, "ClientHello archive queue full: {0} record(s) dropped",
+          total - droppedReported);
+      droppedReported = total;
+      lastDropReportMillis = now;
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package no.hux.ja4.archive;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads one segment written by {@link HelloArchive}. A segment cut short
+ * (a {@code .part} file left by a crash) is read up to its last complete
+ * record and reported by {@link #isTruncated()}.
+ */
+public final class HelloArchiveReader implements Closeable {
+
+  /** Far above any real ClientHello; guards against reading garbage lengths. */
+  private static final int MAX_HELLO_BYTES = 1 << 20;
+  private static final int BUFFER_BYTES = 64 * 1024;
+
+  private final DataInputStream in;
+  private final int version;
+  private boolean truncated;
+  private boolean done;
+
+  private HelloArchiveReader(DataInputStream in, int version) {
+    this.in = in;
+    this.version = version;
+  }
+
+  public static HelloArchiveReader open(Path segment) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new GZIPInputStream(Files.newInputStream(segment), BUFFER_BYTES), BUFFER_BYTES));
+    try {
+      if (in.readInt() != HelloArchive.MAGIC) {
+        throw new IOException("Not a ClientHello archive segment: " + segment);
+      }
+      int version = in.readUnsignedShort();
+      if (version < 1 || version > HelloArchive.VERSION) {
+        throw new IOException("Unsupported archive version " + version + ": " + segment);
+      }
+      return new HelloArchiveReader(in, version);
+    } catch (IOException ex) {
+      in.close();
+      throw ex;
+    }
+  }
+
+  /** @return the next record, or {@code null} at the end of the segment. */
+  public ArchivedHello next() throws IOException {
+    if (done) {
+      return null;
+    }
+    try {
+      in.mark(1);
+      if (in.read() < 0) {
+        done = true;
+        return null;
+      }
+      in.reset();
+      return ArchivedHello.readFrom(in, version, MAX_HELLO_BYTES);
+    } catch (EOFException ex) {
+      truncated = true;
+      done = true;
+      return null;
+    }
+  }
+
+  /** Whether the segment ended inside a record or inside the compressed stream. */
+  public boolean isTruncated() {
+    return truncated;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /** Reads a whole segment, for example to load a benchmark replay corpus. */
+  public static List<ArchivedHello> readAll(Path segment) throws IOException {
+    List<ArchivedHello> records = new ArrayList<>();
+    try (HelloArchiveReader reader = open(segment)) {
+      ArchivedHello hello;
+      while ((hello = reader.next()) != null) {
+        records.add(hello);
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Expands directories to the completed segments in them, oldest first;
+   * files are kept as given, so a {@code .part} file can be named explicitly.
+   */
+  public static List<Path> segments(List<Path> inputs) throws IOException {
+    List<Path> segments = new ArrayList<>();
+    for (Path input : inputs) {
+      if (Files.isDirectory(input)) {
+        try (Stream<Path> files = Files.list(input)) {
+          files.filter(p -> p.getFileName().toString().endsWith(HelloArchive.SUFFIX))
+              .sorted().forEach(segments::add);
+        }
+      } else {
+        segments.add(input);
+      }
+    }
+    return segments;
+  }
+}
@@ -0,0 +1,395 @@
+package no.hux.ja4.capture;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Library;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Linux capture backend reading an {@code AF_PACKET} socket through a
+ * memory-mapped TPACKET_V3 block ring.
+ *
+ * <p>The kernel fills whole blocks of frames and hands them over by flipping
+ * the block status; this thread walks every frame of a block in place (no
+ * per-packet syscall or copy), decodes it straight out of the ring and gives
+ * the block back. The BPF program is compiled by libpcap from the same filter
+ * expression the pcap backend uses and attached with {@code SO_ATTACH_FILTER}
+ * before the socket is bound, so no unfiltered traffic is ever queued.
+ *
+ * <p>Several instances on the same interface can share a non-zero fanout group;
+ * the kernel then spreads flows across them with {@code PACKET_FANOUT_HASH},
+ * whose flow hash is symmetric, so a connection's SYN, SYN/ACK and ACK always
+ * reach the same member.
+ *
+ * <p>An instance is confined to the thread that runs it, apart from
+ * {@link #close()}, which only signals a running loop to exit; the socket and
+ * ring are then released by the capture thread itself.
+ */
+final class AfPacketCapture implements CaptureWorker {
+
+  static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+  static final int DEFAULT_BLOCK_COUNT = 64;
+
+  private static final int AF_PACKET = 17;
+  private static final int SOCK_RAW = 3;
+  private static final int ETH_P_ALL = 0x0003;
+  private static final int SOL_SOCKET = 1;
+  private static final int SO_ATTACH_FILTER = 26;
+  private static final int SOL_PACKET = 263;
+  private static final int PACKET_RX_RING = 5;
+  private static final int PACKET_STATISTICS = 6;
+  private static final int PACKET_VERSION = 10;
+  private static final int PACKET_FANOUT = 18;
+  private static final int PACKET_FANOUT_HASH = 0;
+  private static final int PACKET_FANOUT_FLAG_DEFRAG = 0x8000;
+  private static final int TPACKET_V3 = 2;
+  private static final int PROT_READ = 1;
+  private static final int PROT_WRITE = 2;
+  private static final int MAP_SHARED = 1;
+  private static final int POLLIN = 0x001;
+  private static final int POLLERR = 0x008;
+  private static final int POLL_TIMEOUT_MS = 100;
+
+  private static final int FRAME_SIZE = 2048;
+  private static final int BLOCK_RETIRE_TIMEOUT_MS = 10;
+  private static final int TP_STATUS_KERNEL = 0;
+  private static final int TP_STATUS_USER = 1;
+
+  // struct tpacket_block_desc: version, offset_to_priv, then tpacket_hdr_v1.
+  private static final int BLOCK_STATUS = 8;
+  private static final int BLOCK_NUM_PKTS = 12;
+  private static final int BLOCK_FIRST_PKT = 16;
+  // struct tpacket3_hdr
+  private static final int PKT_NEXT_OFFSET = 0;
+  private static final int PKT_SEC = 4;
+  private static final int PKT_NSEC = 8;
+  private static final int PKT_SNAPLEN = 12;
+  private static final int PKT_MAC = 24;
+  // struct sockaddr_ll follows the TPACKET_ALIGN()ed header; sll_pkttype is at +10.
+  private static final int PKT_SLL_PKTTYPE = 48 + 10;
+  private static final int PACKET_OUTGOING = 4;
+
+  private static final int ARPHRD_ETHER = 1;
+  private static final int ARPHRD_LOOPBACK = 772;
+  private static final int ARPHRD_NONE = 65534;
+
+  private static final VarHandle RING_INT = MethodHandles.byteBufferViewVarHandle(int[].class,
+      ByteOrder.nativeOrder());
+
+  private final String iface;
+  private final String filter;
+  private final int snaplen;
+  private final int blockSize;
+  private final int blockCount;
+  private final int fanoutGroup;
+  private final SegmentListener listener;
+  private final Logger logger;
+
+  private volatile boolean running;
+  private boolean started;
+  private int fd = -1;
+  private Pointer ring;
+  private ByteBuffer ringBuffer;
+  private TcpPacketDecoder decoder;
+  private boolean skipOutgoing;
+  // PACKET_STATISTICS resets on every read, so readings are summed here.
+  private long statPackets;
+  private long statDrops;
+
+  /**
+   * @param fanoutGroup 16-bit fanout group id shared by all workers of the
+   *        interface, or 0 when this is the interface's only worker.
+   */
+  AfPacketCapture(String iface, String filter, int snaplen, int blockSize, int blockCount,
+      int fanoutGroup, SegmentListener listener, Logger logger) {
+    this.iface = iface;
+    this.filter = filter;
+    this.snaplen = snaplen;
+    this.blockSize = blockSize;
+    this.blockCount = blockCount;
+    this.fanoutGroup = fanoutGroup;
+    this.listener = listener;
+    this.logger = logger;
+  }
+
+  static boolean isSupported() {
+    return Platform.isLinux();
+  }
+
+  /**
+   * Creates the socket, attaches the filter, maps the ring and binds to the
+   * interface. On failure everything acquired so far is released.
+   */
+  void open() throws IOException {
+    if (!isSupported()) {
+      throw new IOException("AF_PACKET capture requires Linux");
+    }
+    int arphrd = arphrdOf(iface);
+    int linkType = linkTypeOf(arphrd, iface);
+    // On loopback every packet is seen twice (once outgoing, once incoming);
+    // keep only the incoming copy, as libpcap does.
+    skipOutgoing = arphrd == ARPHRD_LOOPBACK;
+    try {
+      int ifindex = LibC.INSTANCE.if_nametoindex(iface);
+      if (ifindex == 0) {
+        throw new IOException("Unknown capture interface: " + iface);
+      }
+      // Protocol 0: no frames are queued until bind(), i.e. after the filter
+      // and ring are in place.
+      fd = LibC.INSTANCE.socket(AF_PACKET, SOCK_RAW, 0);
+      setIntOption(SOL_PACKET, PACKET_VERSION, TPACKET_V3);
+      attachFilter(linkType);
+
+      Memory req = new Memory(28);
+      req.setInt(0, blockSize);
+      req.setInt(4, blockCount);
+      req.setInt(8, FRAME_SIZE);
+      req.setInt(12, (int) ((long) blockSize * blockCount / FRAME_SIZE));
+      req.setInt(16, BLOCK_RETIRE_TIMEOUT_MS);
+      req.setInt(20, 0);
+      req.setInt(24, 0);
+      LibC.INSTANCE.setsockopt(fd, SOL_PACKET, PACKET_RX_RING, req, (int) req.size());
+
+      long ringSize = (long) blockSize * blockCount;
+      ring = LibC.INSTANCE.mmap(null, ringSize, PROT_READ | PROT_WRITE, MAP_SHARED, fd, 0L);
+      ringBuffer = ring.getByteBuffer(0, ringSize).order(ByteOrder.nativeOrder());
+
+      Memory addr = new Memory(20);
+      addr.clear();
+      addr.setShort(0, (short) AF_PACKET);
+      addr.setShort(2, Short.reverseBytes((short) ETH_P_ALL));
+      addr.setInt(4, ifindex);
+      LibC.INSTANCE.bind(fd, addr, (int) addr.size());
+      if (fanoutGroup != 0) {
+        // Defragment before hashing so all fragments of a datagram land together.
+        setIntOption(SOL_PACKET, PACKET_FANOUT, (fanoutGroup & 0xFFFF)
+            | ((PACKET_FANOUT_HASH | PACKET_FANOUT_FLAG_DEFRAG) << 16));
+      }
+      decoder = new TcpPacketDecoder(linkType);
+      running = true;
+    } catch (LastErrorException ex) {
+      release();
+      throw new IOException("AF_PACKET setup failed on " + iface + " (errno "
+          + ex.getErrorCode() + ")", ex);
+    } catch (IOException | RuntimeException ex) {
+      release();
+      throw ex;
+    }
+  }
+
+  @Override
+  public void run() {
+    synchronized (this) {
+      if (!running) {
+        release();
+        return;
+      }
+      started = true;
+    }
+    Memory pollFd = new Memory(8);
+    pollFd.setInt(0, fd);
+    int block = 0;
+    try {
+      while (running) {
+        int base = block * blockSize;
+        int status = (int) RING_INT.getAcquire(ringBuffer, base + BLOCK_STATUS);
+        if ((status & TP_STATUS_USER) == 0) {
+          pollFd.setShort(4, (short) (POLLIN | POLLERR));
+          pollFd.setShort(6, (short) 0);
+          try {
+            LibC.INSTANCE.poll(pollFd, 1, POLL_TIMEOUT_MS);
+          } catch (LastErrorException ex) {
+            // EINTR and friends: re-check the block status and keep going.
+          }
+          continue;
+        }
+        walkBlock(base);
+        // Hand the block back to the kernel only after every frame was read.
+        RING_INT.setRelease(ringBuffer, base + BLOCK_STATUS, TP_STATUS_KERNEL);
+        block = (block + 1) % blockCount;
+      }
+    } finally {
+      synchronized (this) {
+        release();
+      }
+    }
+  }
+
+  private void walkBlock(int base) {
+    ByteBuffer buf = ringBuffer;
+    int packets = buf.getInt(base + BLOCK_NUM_PKTS);
+    int offset = base + buf.getInt(base + BLOCK_FIRST_PKT);
+    for (int i = 0; i < packets; i++) {
+      long micros = (buf.getInt(offset + PKT_SEC) & 0xFFFFFFFFL) * 1_000_000L
+          + (buf.getInt(offset + PKT_NSEC) & 0xFFFFFFFFL) / 1_000L;
+      int captured = buf.getInt(offset + PKT_SNAPLEN);
+      int mac = buf.getShort(offset + PKT_MAC) & 0xFFFF;
+      boolean skip = skipOutgoing && buf.get(offset + PKT_SLL_PKTTYPE) == PACKET_OUTGOING;
+      try {
+        if (!skip && decoder.decode(buf, offset + mac, captured)) {
+          listener.onSegment(decoder, micros);
+        }
+      } catch (RuntimeException ex) {
+        logger.log(Level.FINE, "Failed to process captured packet", ex);
+      }
+      int next = buf.getInt(offset + PKT_NEXT_OFFSET);
+      if (next == 0) {
+        break;
+      }
+      offset += next;
+    }
+  }
+
+  /**
+   * Signals the capture loop to exit; it releases the socket within one poll
+   * timeout. If the loop never started, the socket is released right away.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      running = false;
+      if (!started) {
+        release();
+      }
+    }
+  }
+
+  /**
+   * Reads and accumulates {@code PACKET_STATISTICS}. {@code tp_packets}
+   * already includes {@code tp_drops}, matching libpcap's {@code ps_recv}.
+   */
+  @Override
+  public synchronized KernelStats kernelStats() {
+    if (fd >= 0) {
+      readStatistics();
+    }
+    return new KernelStats(statPackets, statDrops, 0L);
+  }
+
+  private void readStatistics() {
+    Memory stats = new Memory(12);
+    IntByReference len = new IntByReference((int) stats.size());
+    try {
+      LibC.INSTANCE.getsockopt(fd, SOL_PACKET, PACKET_STATISTICS, stats, len);
+      statPackets += stats.getInt(0) & 0xFFFFFFFFL;
+      statDrops += stats.getInt(4) & 0xFFFFFFFFL;
+    } catch (LastErrorException ex) {
+      logger.log(Level.FINE, "PACKET_STATISTICS failed on " + iface, ex);
+    }
+  }
+
+  /** Caller holds the monitor unless the socket was never shared. */
+  private void release() {
+    if (fd >= 0 && ring != null) {
+      // Keep the final counts: they are lost with the socket.
+      readStatistics();
+    }
+    if (ring != null) {
+      try {
+        LibC.INSTANCE.munmap(ring, (long) blockSize * blockCount);
+      } catch (LastErrorException ignored) {
+        // nothing useful to do while tearing down
+      }
+      ring = null;
+      ringBuffer = null;
+    }
+    if (fd >= 0) {
+      try {
+        LibC.INSTANCE.close(fd);
+      } catch (LastErrorException ignored) {
+        // already closed
+      }
+      fd = -1;
+    }
+  }
+
+  private void attachFilter(int linkType) throws IOException {
+    Pointer pcap = LibPcap.INSTANCE.pcap_open_dead(linkType, snaplen);
+    if (pcap == null) {
+      throw new IOException("pcap_open_dead failed");
+    }
+    // struct bpf_program { u_int bf_len; struct bpf_insn *bf_insns; }
+    Memory program = new Memory(16);
+    program.clear();
+    try {
+      if (LibPcap.INSTANCE.pcap_compile(pcap, program, filter, 1, 0xFFFFFFFF) != 0) {
+        throw new IOException("Invalid capture filter '" + filter + "': "
+            + LibPcap.INSTANCE.pcap_geterr(pcap));
+      }
+      try {
+        // struct sock_fprog { unsigned short len; struct sock_filter *filter; }
+        // bpf_insn and sock_filter share the same 8-byte layout.
+        Memory fprog = new Memory(16);
+        fprog.clear();
+        fprog.setShort(0, (short) program.getInt(0));
+        fprog.setPointer(8, program.getPointer(8));
+        LibC.INSTANCE.setsockopt(fd, SOL_SOCKET, SO_ATTACH_FILTER, fprog, (int) fprog.size());
+      } finally {
+        LibPcap.INSTANCE.pcap_freecode(program);
+      }
+    } finally {
+      LibPcap.INSTANCE.pcap_close(pcap);
+    }
+  }
+
+  private void setIntOption(int level, int option, int value) {
+    Memory mem = new Memory(4);
+    mem.setInt(0, value);
+    LibC.INSTANCE.setsockopt(fd, level, option, mem, 4);
+  }
+
+  private static int arphrdOf(String iface) throws IOException {
+    Path type = Path.of("/sys/class/net", iface, "type");
+    try {
+      return Integer.parseInt(Files.readString(type).trim());
+    } catch (IOException | NumberFormatException ex) {
+      throw new IOException("Cannot determine link type of " + iface, ex);
+    }
+  }
+
+  /** Maps an interface's ARPHRD type to the libpcap link type of its frames. */
+  private static int linkTypeOf(int arphrd, String iface) throws IOException {
+    return switch (arphrd) {
+    case ARPHRD_ETHER, ARPHRD_LOOPBACK -> TcpPacketDecoder.LINK_ETHERNET;
+    case ARPHRD_NONE -> TcpPacketDecoder.LINK_RAW;
+    default -> throw new IOException("Unsupported link type " + arphrd + " on " + iface);
+    };
+  }
+
+  private interface LibC extends Library {
+    LibC INSTANCE = Native.load("c", LibC.class);
+
+    int socket(int domain, int type, int protocol) throws LastErrorException;
+
+    int setsockopt(int fd, int level, int optname, Pointer optval, int optlen)
+        throws LastErrorException;
+
+    int getsockopt(int fd, int level, int optname, Pointer optval, IntByReference optlen)
+        throws LastErrorException;
+
+    int bind(int fd, Pointer addr, int addrlen) throws LastErrorException;
+
+    Pointer mmap(Pointer addr, long length, int prot, int flags, int fd, long offset)
+        throws LastErrorException;
+
+    int munmap(Pointer addr, long length) throws LastErrorException;
+
+    int poll(Pointer fds, int nfds, int timeout) throws LastErrorException;
+
+    int close(int fd) throws LastErrorException;
+
+    int if_nametoindex(String name);
+  }
+}
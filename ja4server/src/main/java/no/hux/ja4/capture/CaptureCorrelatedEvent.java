@@ -0,0 +1,37 @@
+package no.hux.ja4.capture;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A client's ACK completed a captured handshake. Off unless a recording
+ * enables it.
+ */
+@Name("no.hux.ja4.CaptureCorrelated")
+@Label("Capture Correlated")
+@Category({"JA4", "Capture"})
+@Enabled(false)
+@StackTrace(false)
+final class CaptureCorrelatedEvent extends jdk.jfr.Event {
+
+  @Label("Client Address")
+  String clientAddress;
+
+  @Label("Client Port")
+  int clientPort;
+
+  @Label("Capture Lag")
+  @Description("From the ACK's capture timestamp to its correlation")
+  @Timespan
+  long captureLag;
+
+  static String address(int ipv4) {
+    return (ipv4 >>> 24) + "." + ((ipv4 >>> 16) & 0xff) + "." + ((ipv4 >>> 8) & 0xff) + "."
+        + (ipv4 & 0xff);
+  }
+}
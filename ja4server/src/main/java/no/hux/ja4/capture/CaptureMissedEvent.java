@@ -0,0 +1,31 @@
+package no.hux.ja4.capture;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A captured handshake segment could not be correlated. Off unless a
+ * recording enables it.
+ */
+@Name("no.hux.ja4.CaptureMissed")
+@Label("Capture Missed")
+@Category({"JA4", "Capture"})
+@Enabled(false)
+@StackTrace(false)
+final class CaptureMissedEvent extends jdk.jfr.Event {
+
+  @Label("Reason")
+  @Description("syn-refused: flood admission refused the SYN; unmatched-syn-ack and "
+      + "unmatched-ack: no SYN of the flow is held")
+  String reason;
+
+  @Label("Client Address")
+  String clientAddress;
+
+  @Label("Client Port")
+  int clientPort;
+}
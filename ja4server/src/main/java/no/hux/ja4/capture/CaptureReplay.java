@@ -0,0 +1,237 @@
+package no.hux.ja4.capture;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Replays a {@link SyntheticHandshakes} trace through the capture processing
+ * code, without a live interface, to measure how many handshakes per second
+ * one capture pipeline correlates.
+ *
+ * <p>The producer decodes each frame and publishes it to a {@link SegmentRing}
+ * exactly as a {@link CaptureWorker} does, and a {@link SegmentCorrelator} on
+ * its own thread applies the summaries to a {@link TcpInfoStore} through the
+ * {@link HandshakeCorrelator}, SYN admission included. In inline mode the
+ * producer applies each summary itself, as {@link PacketCaptureService}'s
+ * {@code handlePacket} does, which gives the cost per core without the
+ * handoff. Unlike a live capture, the producer waits when the ring is full
+ * rather than dropping, so the result is the pipeline's capacity.
+ *
+ * <p>The trace is replayed in whole passes until the duration is up; each
+ * pass relabels the client addresses, so every pass is new flows. A pass is
+ * timed on the capture clock as if packets arrived
+ * {@link SyntheticHandshakes#PACKET_SPACING_MICROS} apart.
+ */
+public final class CaptureReplay {
+
+  /** Most packets a trace may hold: handshakes times 3 plus flood SYNs. */
+  public static final int MAX_PACKETS = SyntheticHandshakes.MAX_PACKETS;
+
+  private static final int LABELS = 256;
+
+  private final SyntheticHandshakes trace;
+  private final long durationNanos;
+  private final long warmupNanos;
+  private final boolean inline;
+  private final int storeEntries;
+  private final Logger logger;
+  private final com.sun.management.ThreadMXBean threads = threadBean();
+
+  private int pass;
+  private long clockMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+
+  /**
+   * Totals of one measured replay.
+   *
+   * @param correlatable handshakes replayed whose three packets were all in
+   *        the trace.
+   * @param correlated handshakes whose ACK completed a store entry.
+   * @param ringFull times the producer found the ring full and waited.
+   * @param allocatedBytes bytes allocated by the producer and correlation
+   *        threads, or -1 if the JVM cannot tell.
+   */
+  public record Result(long packets, long correlatable, long correlated, long floodSyns,
+      long synRefused, long ringFull, long allocatedBytes, long elapsedNanos) {
+
+    public double handshakesPerSecond() {
+      return correlated / Math.max(1e-9, elapsedNanos / 1e9);
+    }
+
+    public double packetsPerSecond() {
+      return packets / Math.max(1e-9, elapsedNanos / 1e9);
+    }
+
+    /** Share of correlatable handshakes that were correlated, 0 to 1. */
+    public double hitRate() {
+      return correlatable == 0 ? 0 : (double) correlated / correlatable;
+    }
+
+    /** Bytes allocated per packet, or -1 if unknown. */
+    public double bytesPerPacket() {
+      return allocatedBytes < 0 ? -1 : (double) allocatedBytes / Math.max(1, packets);
+    }
+  }
+
+  /** Packets in a trace of {@code handshakes} with {@code flood} spoofed SYNs per handshake. */
+  public static long packets(int handshakes, double flood) {
+    return SyntheticHandshakes.packets(handshakes, flood);
+  }
+
+  /**
+   * @param handshakes real handshakes in the trace, replayed repeatedly.
+   * @param interleave handshakes in progress at once.
+   * @param loss share of packets missing from the capture, 0 to 1.
+   * @param reorder share of packets swapped with their successor, 0 to 1.
+   * @param flood spoofed SYNs per real handshake.
+   * @param inline correlate on the producer thread instead of through a ring.
+   * @param storeEntries handshake store capacity.
+   */
+  public CaptureReplay(int handshakes, int interleave, double loss, double reorder, double flood,
+      long seed, int durationSeconds, int warmupSeconds, boolean inline, int storeEntries,
+      Logger logger) {
+    if (durationSeconds < 1) {
+      throw new IllegalArgumentException("duration must be >= 1 second");
+    }
+    if (warmupSeconds < 0) {
+      throw new IllegalArgumentException("warmup must be >= 0 seconds");
+    }
+    this.trace = new SyntheticHandshakes(handshakes, interleave, loss, reorder, flood, seed);
+    this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+    this.warmupNanos = TimeUnit.SECONDS.toNanos(warmupSeconds);
+    this.inline = inline;
+    this.storeEntries = storeEntries;
+    this.logger = logger;
+  }
+
+  /** Replays for the warmup, discarding the result, then for the duration. */
+  public Result run() throws InterruptedException {
+    logger.log(Level.INFO, "Replaying {0} packets per pass: {1} handshakes ({2} complete), "
+        + "{3} flood SYNs, {4} mode", new Object[] {trace.packets(), trace.handshakes(),
+        trace.correlatable(), trace.floodSyns(), inline ? "inline" : "ring"});
+    if (warmupNanos > 0) {
+      replay(warmupNanos, Long.MAX_VALUE);
+    }
+    return replay(durationNanos, Long.MAX_VALUE);
+  }
+
+  /** Replays the trace exactly once. */
+  Result replayOnce() throws InterruptedException {
+    return replay(0, 1);
+  }
+
+  public String formatReport(Result result) {
+    return String.format(Locale.ROOT,
+        "%d packets in %.1fs: %.0f packets/s, %.0f handshakes/s%n"
+            + "correlated %d of %d complete handshakes (%.2f%%), %d flood SYNs, "
+            + "%d SYNs refused by admission%n"
+            + "%s allocated per packet, ring full %d time(s)",
+        result.packets(), result.elapsedNanos() / 1e9, result.packetsPerSecond(),
+        result.handshakesPerSecond(), result.correlated(), result.correlatable(),
+        result.hitRate() * 100.0, result.floodSyns(), result.synRefused(),
+        result.allocatedBytes() < 0 ? "unknown bytes"
+            : String.format(Locale.ROOT, "%.2f bytes", result.bytesPerPacket()),
+        result.ringFull());
+  }
+
+  private Result replay(long nanos, long maxPasses) throws InterruptedException {
+    TcpInfoStore store = new TcpInfoStore(TcpInfoStore.DEFAULT_TTL_SECONDS, storeEntries, logger);
+    try {
+      CountingSink sink = new CountingSink(
+          new HandshakeCorrelator(SyntheticHandshakes.SERVER_PORT, store));
+      SegmentRing ring = inline
+          ? null : new SegmentRing(PacketCaptureService.DEFAULT_RING_CAPACITY);
+      SegmentCorrelator correlator = inline ? null : new SegmentCorrelator(ring, sink, logger);
+      long[] correlatorBytes = {0};
+      Thread thread = null;
+      if (correlator != null) {
+        thread = new Thread(() -> {
+          long before = allocatedBytes();
+          correlator.run();
+          correlatorBytes[0] = allocatedBytes() - before;
+        }, "ja4-replay-correlate");
+        thread.start();
+      }
+
+      TcpPacketDecoder decoder = new TcpPacketDecoder(TcpPacketDecoder.LINK_ETHERNET);
+      SegmentSummary summary = new SegmentSummary();
+      ByteBuffer frames = trace.buffer();
+      int packets = trace.packets();
+      long passes = 0;
+      long start = System.nanoTime();
+      long producerBefore = allocatedBytes();
+      do {
+        int label = pass++ % LABELS;
+        long micros = clockMicros;
+        for (int i = 0; i < packets; i++) {
+          trace.label(i, label);
+          micros += SyntheticHandshakes.PACKET_SPACING_MICROS;
+          if (!decoder.decode(frames, trace.offset(i), trace.length(i))) {
+            continue;
+          }
+          if (ring == null) {
+            summary.copyFrom(decoder, micros);
+            sink.test(summary);
+          } else {
+            while (!ring.offer(decoder, micros)) {
+              Thread.yield();
+            }
+          }
+        }
+        clockMicros = micros;
+        passes++;
+      } while (passes < maxPasses && System.nanoTime() - start < nanos);
+      long producerBytes = allocatedBytes() - producerBefore;
+      if (thread != null) {
+        correlator.close();
+        thread.join();
+      }
+      long elapsed = System.nanoTime() - start;
+
+      long allocated = threads == null ? -1 : producerBytes + correlatorBytes[0];
+      return new Result(passes * packets, passes * trace.correlatable(), sink.correlated,
+          passes * trace.floodSyns(), sink.correlator.refusedCount(),
+          ring == null ? 0 : ring.overflows(), allocated, elapsed);
+    } finally {
+      store.shutdown();
+    }
+  }
+
+  /** Bytes allocated by the current thread so far, or -1 if unsupported. */
+  private long allocatedBytes() {
+    return threads == null ? -1 : threads.getCurrentThreadAllocatedBytes();
+  }
+
+  private static com.sun.management.ThreadMXBean threadBean() {
+    if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+        && bean.isThreadAllocatedMemorySupported()) {
+      bean.setThreadAllocatedMemoryEnabled(true);
+      return bean;
+    }
+    return null;
+  }
+
+  /** Counts handshakes whose ACK completed a store entry; one thread at a time. */
+  private static final class CountingSink implements Predicate<SegmentSummary> {
+
+    private final HandshakeCorrelator correlator;
+    private long correlated;
+
+    CountingSink(HandshakeCorrelator correlator) {
+      this.correlator = correlator;
+    }
+
+    @Override
+    public boolean test(SegmentSummary summary) {
+      boolean updated = correlator.apply(summary);
+      if (updated && summary.isAck() && !summary.isSyn()) {
+        correlated++;
+      }
+      return updated;
+    }
+  }
+}
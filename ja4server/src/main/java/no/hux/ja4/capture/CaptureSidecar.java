@@ -0,0 +1,84 @@
+package no.hux.ja4.capture;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Standalone capture process ({@code ja4-server.jar capture ...}): runs the
+ * packet capture with its own privileges and CPU budget and publishes the
+ * handshake segments of one or more server ports into a
+ * {@link SharedSegmentRing} file. Servers started with {@code --capture-ring}
+ * read that file through a {@link SharedRingFeeder} and need neither
+ * CAP_NET_RAW nor libpcap.
+ *
+ * <p>The sidecar does no correlation of its own, so one instance serves every
+ * server on the host, each applying its own port's segments to its own store.
+ */
+public final class CaptureSidecar {
+
+  public static final Path DEFAULT_RING_PATH = Path.of("/dev/shm/ja4-capture.ring");
+  public static final int DEFAULT_RING_SLOTS = 1 << 16;
+  public static final int MAX_RING_SLOTS = SharedSegmentRing.MAX_SLOTS;
+  private static final long HEARTBEAT_MILLIS = 1000L;
+
+  private final Path ringPath;
+  private final int ringSlots;
+  private final List<Integer> ports;
+  private final List<String> ifaces;
+  private final String engine;
+  private final int workers;
+  private final int snaplen;
+  private final int bufferBytes;
+  private final Logger logger;
+  private final CountDownLatch stopped = new CountDownLatch(1);
+
+  public CaptureSidecar(Path ringPath, int ringSlots, List<Integer> ports, List<String> ifaces,
+      String engine, int workers, int snaplen, int bufferBytes, Logger logger) {
+    this.ringPath = ringPath;
+    this.ringSlots = ringSlots;
+    this.ports = List.copyOf(ports);
+    this.ifaces = List.copyOf(ifaces);
+    this.engine = engine;
+    this.workers = workers;
+    this.snaplen = snaplen;
+    this.bufferBytes = bufferBytes;
+    this.logger = logger;
+  }
+
+  /**
+   * Opens the ring file and the capture devices, then publishes until
+   * {@link #stop()} is called.
+   *
+   * @return {@code false} if capture could not start on any interface.
+   */
+  public boolean run() throws IOException, InterruptedException {
+    SharedSegmentRing ring = SharedSegmentRing.create(ringPath, ringSlots);
+    PacketCaptureService capture = new PacketCaptureService(ports, ifaces, engine, workers,
+        snaplen, bufferBytes, summary -> {
+          ring.publish(summary);
+          return true;
+        }, logger);
+    if (!capture.start()) {
+      return false;
+    }
+    logger.log(Level.INFO, "Publishing handshakes for port(s) {0} to {1} ({2} slots)",
+        new Object[] {ports, ringPath, ring.capacity()});
+    try {
+      while (!stopped.await(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS)) {
+        ring.heartbeat(System.currentTimeMillis());
+      }
+    } finally {
+      capture.stop();
+    }
+    return true;
+  }
+
+  public void stop() {
+    stopped.countDown();
+  }
+}
@@ -0,0 +1,55 @@
+package no.hux.ja4.capture;
+
+/**
+ * Packet capture counters, either cumulative since start or per second over
+ * the last reporting interval (see {@link PacketCaptureService}).
+ *
+ * @param received packets the kernel handed to the capture socket (libpcap
+ *        {@code ps_recv}).
+ * @param dropped packets the kernel dropped because the capture buffer was
+ *        full ({@code ps_drop}).
+ * @param ifDropped packets dropped by the interface or driver
+ *        ({@code ps_ifdrop}); not reported by the AF_PACKET engine.
+ * @param captured TCP segments decoded in user space.
+ * @param ringDropped decoded segments dropped because a correlation ring was
+ *        full.
+ * @param useful segments that updated the handshake store.
+ */
+public record CaptureStats(
+  long received,
+  long dropped,
+  long ifDropped,
+  long captured,
+  long ringDropped,
+  long useful) {
+
+  public static final CaptureStats EMPTY = new CaptureStats(0, 0, 0, 0, 0, 0);
+
+  public CaptureStats plus(CaptureStats other) {
+    return new CaptureStats(received + other.received, dropped + other.dropped,
+        ifDropped + other.ifDropped, captured + other.captured,
+        ringDropped + other.ringDropped, useful + other.useful);
+  }
+
+  public CaptureStats minus(CaptureStats other) {
+    return new CaptureStats(received - other.received, dropped - other.dropped,
+        ifDropped - other.ifDropped, captured - other.captured,
+        ringDropped - other.ringDropped, useful - other.useful);
+  }
+
+  public CaptureStats perSecond(double seconds) {
+    return new CaptureStats(Math.round(received / seconds), Math.round(dropped / seconds),
+        Math.round(ifDropped / seconds), Math.round(captured / seconds),
+        Math.round(ringDropped / seconds), Math.round(useful / seconds));
+  }
+
+  /** Share of captured segments that updated the store, in [0, 1]; 0 when idle. */
+  public double usefulRatio() {
+    return captured == 0 ? 0.0 : (double) useful / captured;
+  }
+
+  /** True if any packet was lost in the kernel, the driver or a ring. */
+  public boolean hasDrops() {
+    return dropped > 0 || ifDropped > 0 || ringDropped > 0;
+  }
+}
@@ -0,0 +1,24 @@
+package no.hux.ja4.capture;
+
+/**
+ * One capture thread's read loop over one interface (or one fanout member of
+ * an interface). {@link #run()} returns after {@link #close()} is called or
+ * the source is exhausted.
+ */
+interface CaptureWorker extends Runnable {
+
+  /** Signals the read loop to exit; safe to call from any thread. */
+  void close();
+
+  /**
+   * Cumulative kernel-side counters for this worker's socket; safe to call
+   * from any thread. Returns the last known values once the worker is closed.
+   */
+  KernelStats kernelStats();
+
+  /** Kernel counters of one capture socket; see {@link CaptureStats}. */
+  record KernelStats(long received, long dropped, long ifDropped) {
+
+    static final KernelStats EMPTY = new KernelStats(0, 0, 0);
+  }
+}
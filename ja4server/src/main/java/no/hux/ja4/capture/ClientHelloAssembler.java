@@ -0,0 +1,225 @@
+package no.hux.ja4.capture;
+
+import io.netty.buffer.Unpooled;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import no.hux.ja4.fingerprint.Ja4TlsFingerprint;
+import no.hux.ja4.server.ClientHelloInfo;
+import no.hux.ja4.server.ClientHelloParser;
+
+/**
+ * Reassembles the client-to-server bytes of one TCP flow just far enough to
+ * parse its TLS ClientHello, then computes JA4.
+ *
+ * <p>Out-of-order segments are held until the gap before them fills and
+ * retransmitted bytes are skipped. Buffering is bounded per flow: at most
+ * {@code maxBytes} of stream and {@code maxPendingSegments} held segments;
+ * past either bound, or on anything that is not a ClientHello, assembly gives
+ * up and {@link #isDone()} turns true without a fingerprint. A ClientHello
+ * that arrives whole in one in-order segment is parsed straight from the
+ * caller's bytes without being copied.
+ *
+ * <p>Not thread-safe; a flow's segments must be added from one thread at a
+ * time.
+ */
+public final class ClientHelloAssembler {
+
+  private static final int TLS_HANDSHAKE = 22;
+  private static final int CLIENT_HELLO = 1;
+  private static final int INITIAL_BUFFER_BYTES = 2048;
+
+  private final int maxBytes;
+  private final int maxPendingSegments;
+
+  private boolean sequenceKnown;
+  private int nextSeq;
+  private byte[] hello;
+  private int helloLength;
+  private List<Segment> pending;
+  private boolean done;
+  private String ja4;
+  private String serverName;
+
+  private record Segment(int seq, byte[] data, int payloadLength) {
+  }
+
+  public ClientHelloAssembler(int maxBytes, int maxPendingSegments) {
+    if (maxBytes < 9 || maxPendingSegments < 0) {
+      throw new IllegalArgumentException("maxBytes must be >= 9, maxPendingSegments >= 0");
+    }
+    this.maxBytes = maxBytes;
+    this.maxPendingSegments = maxPendingSegments;
+  }
+
+  /** Whether a segment's payload starts with a TLS handshake record holding a ClientHello. */
+  public static boolean looksLikeClientHello(byte[] data, int offset, int length) {
+    return length >= 6 && data[offset] == TLS_HANDSHAKE && data[offset + 1] == 3
+        && data[offset + 5] == CLIENT_HELLO;
+  }
+
+  /**
+   * Starts the stream at {@code seq} (the SYN's sequence number plus one, or
+   * the first data segment's) unless it is already known.
+   */
+  public void start(int seq) {
+    if (!sequenceKnown) {
+      sequenceKnown = true;
+      nextSeq = seq;
+    }
+  }
+
+  /** Whether assembly has finished, with or without a fingerprint. */
+  public boolean isDone() {
+    return done;
+  }
+
+  /** JA4 of the parsed ClientHello, or {@code null}. */
+  public String ja4() {
+    return ja4;
+  }
+
+  /** SNI of the parsed ClientHello, or {@code null}. */
+  public String serverName() {
+    return serverName;
+  }
+
+  /**
+   * Adds one client-to-server segment and parses the ClientHello once its
+   * bytes are complete. Ignored before {@link #start} and after completion.
+   *
+   * @param captured payload bytes present in {@code data}.
+   * @param payloadLength payload length per the IP header; larger than
+   *        {@code captured} when the snaplen cut the segment.
+   */
+  public void add(int seq, byte[] data, int offset, int captured, int payloadLength) {
+    if (done || !sequenceKnown) {
+      return;
+    }
+    int rel = seq - nextSeq;
+    if (rel > 0) {
+      if (pending == null) {
+        pending = new ArrayList<>();
+      }
+      if (pending.size() >= maxPendingSegments || rel > maxBytes) {
+        finish();
+        return;
+      }
+      pending.add(new Segment(seq, Arrays.copyOfRange(data, offset, offset + captured),
+          payloadLength));
+      return;
+    }
+    if (rel == 0 && helloLength == 0 && captured == payloadLength
+        && parseWhole(data, offset, captured)) {
+      return;
+    }
+    append(-rel, data, offset, captured, payloadLength);
+    while (!done && pending != null && drainPending()) {
+      // keep filling the gap
+    }
+    if (!done) {
+      tryParse();
+    }
+  }
+
+  /** The common case: the whole ClientHello in the first segment. */
+  private boolean parseWhole(byte[] data, int offset, int length) {
+    int needed = neededBytes(data, offset, length);
+    if (needed < 0 || length < needed) {
+      return false;
+    }
+    parse(data, offset, length);
+    return true;
+  }
+
+  private boolean drainPending() {
+    for (int k = 0; k < pending.size(); k++) {
+      Segment s = pending.get(k);
+      int rel = s.seq() - nextSeq;
+      if (rel <= 0) {
+        pending.remove(k);
+        append(-rel, s.data(), 0, s.data().length, s.payloadLength());
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Appends a segment whose first {@code skip} bytes were already buffered. */
+  private void append(int skip, byte[] data, int offset, int captured, int payloadLength) {
+    if (skip >= payloadLength) {
+      return;
+    }
+    int take = Math.max(0, captured - skip);
+    if (helloLength + take > maxBytes) {
+      finish();
+      return;
+    }
+    if (hello == null) {
+      hello = new byte[Math.min(maxBytes, Math.max(INITIAL_BUFFER_BYTES, take))];
+    } else if (helloLength + take > hello.length) {
+      hello = Arrays.copyOf(hello, Math.min(maxBytes,
+          Math.max(hello.length * 2, helloLength + take)));
+    }
+    System.arraycopy(data, offset + skip, hello, helloLength, take);
+    helloLength += take;
+    nextSeq += payloadLength - skip;
+    if (captured < payloadLength) {
+      // The snaplen cut this segment, so nothing after it can be placed:
+      // parse what arrived and stop.
+      tryParse();
+      finish();
+    }
+  }
+
+  private void tryParse() {
+    int needed = neededBytes(hello, 0, helloLength);
+    if (needed == 0 || helloLength < needed) {
+      return;
+    }
+    if (needed < 0) {
+      // Not a ClientHello; nothing more to learn from this direction.
+      finish();
+      return;
+    }
+    parse(hello, 0, helloLength);
+  }
+
+  /**
+   * Bytes the ClientHello occupies as far as the headers present tell; 0 if
+   * too few bytes arrived to tell, -1 if the stream is not a ClientHello.
+   */
+  private static int neededBytes(byte[] data, int offset, int length) {
+    if (length < 5) {
+      return 0;
+    }
+    if (data[offset] != TLS_HANDSHAKE) {
+      return -1;
+    }
+    int needed = 5 + ((data[offset + 3] & 0xFF) << 8 | (data[offset + 4] & 0xFF));
+    if (length >= 9) {
+      if (data[offset + 5] != CLIENT_HELLO) {
+        return -1;
+      }
+      needed = Math.max(needed, 9 + ((data[offset + 6] & 0xFF) << 16
+          | (data[offset + 7] & 0xFF) << 8 | (data[offset + 8] & 0xFF)));
+    }
+    return needed;
+  }
+
+  private void parse(byte[] data, int offset, int length) {
+    ClientHelloInfo info = ClientHelloParser.tryParse(Unpooled.wrappedBuffer(data, offset,
+        length));
+    if (info != null) {
+      ja4 = Ja4TlsFingerprint.compute(info);
+      serverName = info.getServerName();
+    }
+    finish();
+  }
+
+  private void finish() {
+    done = true;
+    hello = null;
+    pending = null;
+  }
+}
@@ -0,0 +1,111 @@
+package no.hux.ja4.capture;
+
+import java.time.Instant;
+
+/**
+ * Applies captured SYN / SYN-ACK / ACK summaries for one server port to a
+ * {@link TcpInfoStore}, admitting new client SYNs through a
+ * {@link SynAdmission}.
+ *
+ * <p>Shared by the in-process capture ({@link PacketCaptureService}) and the
+ * {@link SharedRingFeeder} that reads summaries published by a capture
+ * sidecar. Safe for concurrent use by several correlation threads.
+ *
+ * <p>Emits {@link CaptureCorrelatedEvent} and {@link CaptureMissedEvent} when
+ * a JFR recording enables them; otherwise they cost a flag check.
+ */
+final class HandshakeCorrelator {
+
+  private final int serverPort;
+  private final TcpInfoStore store;
+  private final SynAdmission admission;
+
+  HandshakeCorrelator(int serverPort, TcpInfoStore store) {
+    this(serverPort, store, SynAdmission.DEFAULT_RATE, SynAdmission.DEFAULT_BURST);
+  }
+
+  HandshakeCorrelator(int serverPort, TcpInfoStore store, int synRate, int synBurst) {
+    this.serverPort = serverPort;
+    this.store = store;
+    this.admission = new SynAdmission(synRate, synBurst);
+  }
+
+  /** Client SYNs refused by the flood admission, since creation. */
+  long refusedCount() {
+    return admission.refusedCount();
+  }
+
+  /**
+   * Applies one captured segment to the handshake store. Segments of other
+   * ports are ignored.
+   *
+   * @return whether the segment updated the store.
+   */
+  boolean apply(SegmentSummary d) {
+    long micros = d.getMicros();
+    int srcPort = d.getSrcPort();
+    int dstPort = d.getDstPort();
+    boolean syn = d.isSyn();
+    boolean ack = d.isAck();
+
+    if (dstPort == serverPort) {
+      int srcAddr = d.getSrcAddr();
+      long key = TcpInfoStore.key(srcAddr, srcPort);
+      if (syn && !ack) {
+        long handle = store.get(key);
+        if (handle == TcpInfoStore.NO_HANDLE) {
+          if (!admission.admitSyn(srcAddr, key, micros)) {
+            missed("syn-refused", srcAddr, srcPort);
+            return false;
+          }
+          handle = store.getOrCreate(key);
+        }
+        store.recordSyn(handle, d);
+        return true;
+      } else if (ack && !syn) {
+        long handle = store.get(key);
+        if (handle == TcpInfoStore.NO_HANDLE) {
+          admission.unmatchedAck(srcAddr, key, micros);
+          missed("unmatched-ack", srcAddr, srcPort);
+          return false;
+        }
+        if (store.recordAck(handle, micros)) {
+          admission.handshakeCompleted(srcAddr, micros);
+          correlated(srcAddr, srcPort, micros);
+          return true;
+        }
+        return false;
+      }
+    } else if (srcPort == serverPort && syn && ack) {
+      long handle = store.get(TcpInfoStore.key(d.getDstAddr(), dstPort));
+      if (handle == TcpInfoStore.NO_HANDLE) {
+        missed("unmatched-syn-ack", d.getDstAddr(), dstPort);
+        return false;
+      }
+      return store.recordSynAck(handle, d.getTtl(), micros);
+    }
+    return false;
+  }
+
+  private static void correlated(int clientAddr, int clientPort, long ackMicros) {
+    CaptureCorrelatedEvent event = new CaptureCorrelatedEvent();
+    if (event.shouldCommit()) {
+      Instant now = Instant.now();
+      long nowMicros = now.getEpochSecond() * 1_000_000L + now.getNano() / 1_000;
+      event.clientAddress = CaptureCorrelatedEvent.address(clientAddr);
+      event.clientPort = clientPort;
+      event.captureLag = Math.max(0L, nowMicros - ackMicros) * 1_000L;
+      event.commit();
+    }
+  }
+
+  private static void missed(String reason, int clientAddr, int clientPort) {
+    CaptureMissedEvent event = new CaptureMissedEvent();
+    if (event.shouldCommit()) {
+      event.reason = reason;
+      event.clientAddress = CaptureCorrelatedEvent.address(clientAddr);
+      event.clientPort = clientPort;
+      event.commit();
+    }
+  }
+}
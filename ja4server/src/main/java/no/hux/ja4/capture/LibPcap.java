@@ -0,0 +1,54 @@
+package no.hux.ja4.capture;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+
+/**
+ * The libpcap calls the capture backends make directly, where going through
+ * pcap4j would allocate per packet or hide the packet header.
+ */
+interface LibPcap extends Library {
+  LibPcap INSTANCE = Native.load("pcap", LibPcap.class);
+
+  int PCAP_ERRBUF_SIZE = 256;
+
+  Pointer pcap_create(String source, Pointer errbuf);
+
+  Pointer pcap_open_dead(int linktype, int snaplen);
+
+  int pcap_set_snaplen(Pointer p, int snaplen);
+
+  int pcap_set_promisc(Pointer p, int promisc);
+
+  int pcap_set_timeout(Pointer p, int timeoutMs);
+
+  int pcap_set_buffer_size(Pointer p, int bufferSize);
+
+  int pcap_activate(Pointer p);
+
+  int pcap_datalink(Pointer p);
+
+  int pcap_compile(Pointer p, Pointer program, String filter, int optimize, int netmask);
+
+  int pcap_setfilter(Pointer p, Pointer program);
+
+  void pcap_freecode(Pointer program);
+
+  /**
+   * @param header receives a {@code struct pcap_pkthdr *}.
+   * @param data receives a pointer to the captured bytes.
+   * @return 1 for a packet, 0 on timeout, -1 on error, -2 once broken out of.
+   */
+  int pcap_next_ex(Pointer p, Pointer header, Pointer data);
+
+  int pcap_stats(Pointer p, Pointer stats);
+
+  void pcap_breakloop(Pointer p);
+
+  String pcap_geterr(Pointer p);
+
+  String pcap_statustostr(int error);
+
+  void pcap_close(Pointer p);
+}
@@ -1,28 +1,20 @@
 package no.hux.ja4.capture;
 
-import java.io.EOFException;
+import java.io.IOException;
 import java.net.InetAddress;
-import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import no.hux.ja4.fingerprint.Ja4TcpFingerprint;
-import org.pcap4j.core.BpfProgram.BpfCompileMode;
-import org.pcap4j.core.NotOpenException;
-import org.pcap4j.core.PcapHandle;
+import java.util.stream.Collectors;
 import org.pcap4j.core.PcapNativeException;
 import org.pcap4j.core.PcapNetworkInterface;
-import org.pcap4j.core.PcapNetworkInterface.PromiscuousMode;
 import org.pcap4j.core.Pcaps;
-import org.pcap4j.packet.IpV4Packet;
-import org.pcap4j.packet.IpV4Packet.IpV4Header;
-import org.pcap4j.packet.Packet;
-import org.pcap4j.packet.TcpMaximumSegmentSizeOption;
-import org.pcap4j.packet.TcpPacket;
-import org.pcap4j.packet.TcpPacket.TcpHeader;
-import org.pcap4j.packet.TcpPacket.TcpOption;
-import org.pcap4j.packet.TcpWindowScaleOption;
 
 /**
  * Out-of-band TCP handshake sniffer that derives JA4T (and real JA4L timing)
@@ -32,187 +24,495 @@ import org.pcap4j.packet.TcpWindowScaleOption;
  * example, missing privileges or no libpcap), it logs a warning and stays
  * inactive so the server keeps serving fingerprints without JA4T/real-JA4L.
  *
- * <p>Captured data is keyed by the client {@code ip:port} in a {@link TcpInfoStore},
- * which the request handler joins against using the Netty channel's remote
- * address.
+ * <p>Captured data is keyed by the client address and port, packed into a
+ * {@code long}, in a {@link TcpInfoStore}, which the request handler joins
+ * against using the Netty channel's remote address.
+ *
+ * <p>Frames are read as raw bytes and decoded by offset with a
+ * {@link TcpPacketDecoder} rather than dissected into pcap4j packet objects,
+ * so the per-packet cost on the capture thread is one libpcap copy and no
+ * header, option or address objects.
+ *
+ * <p>Two backends feed the same correlation: {@link #ENGINE_PCAP} reads packets
+ * one at a time through libpcap, and {@link #ENGINE_AF_PACKET} (Linux only)
+ * walks a memory-mapped TPACKET_V3 ring in place via {@link AfPacketCapture}.
+ * If the AF_PACKET ring cannot be set up, capture falls back to libpcap.
+ *
+ * <p>Capture can run on several interfaces at once (e.g. every slave of a
+ * bond), each with its own thread. With the AF_PACKET engine an interface can
+ * additionally be served by several workers joined in a
+ * {@code PACKET_FANOUT_HASH} group, so a multi-queue NIC is drained in
+ * parallel while each flow stays on one worker.
+ *
+ * <p>The kernel filter passes only handshake packets (see
+ * {@link #handshakeFilter(List)}). Kernel, interface and ring drops, per-second
+ * rates and the share of captured segments that were useful are reported
+ * every {@value #STATS_INTERVAL_SECONDS} seconds and via {@link #getStats()}.
+ *
+ * <p>New client SYNs pass a {@link SynAdmission} check before they may claim a
+ * store slot, so spoofed SYN floods cannot evict real clients' handshakes.
+ *
+ * <p>Capture threads only decode and copy header summaries into a per-worker
+ * {@link SegmentRing}; a paired correlation thread drains the ring in batches
+ * and does the store work. A slow correlation step therefore costs ring slots,
+ * which are counted when they run out, instead of kernel buffer drops.
+ *
+ * <p>In the {@link CaptureSidecar} the correlation threads do not touch a
+ * store; they forward the summaries of one or more server ports into a
+ * {@link SharedSegmentRing} file for the servers to correlate.
+ *
+ * <p>For a {@link PassiveFingerprinter} the filter also passes the client's
+ * data segments (see {@link #passiveFilter(List)}), and ring slots carry up to
+ * a snaplen of payload each so ClientHellos can be reassembled off the
+ * capture thread.
  */
 public final class PacketCaptureService {
 
-  private static final int DEFAULT_SNAPLEN = 256;
+  public static final String ENGINE_PCAP = "pcap";
+  public static final String ENGINE_AF_PACKET = "afpacket";
+
+  public static final int DEFAULT_SNAPLEN = 256;
+  /** Room for Ethernet, two VLAN tags, and maximal IPv4 and TCP headers. */
+  public static final int MIN_SNAPLEN = 142;
+  /**
+   * AF_PACKET ring block size; with that engine a capture buffer must be a
+   * multiple of it, and at least two blocks.
+   */
+  public static final int AF_PACKET_BLOCK_BYTES = AfPacketCapture.DEFAULT_BLOCK_SIZE;
+  /** New-client SYNs admitted per second per source /24, see {@link SynAdmission}. */
+  public static final int DEFAULT_SYN_RATE = SynAdmission.DEFAULT_RATE;
+  /** SYNs a source /24 may send at once before the rate applies. */
+  public static final int DEFAULT_SYN_BURST = SynAdmission.DEFAULT_BURST;
   private static final int DEFAULT_TIMEOUT_MS = 50;
+  static final int DEFAULT_RING_CAPACITY = 1 << 14;
+  /** Passive slots carry payload, so their rings are shorter. */
+  static final int PASSIVE_RING_CAPACITY = 1 << 12;
+  private static final long STATS_INTERVAL_SECONDS = 10L;
 
-  private final int serverPort;
-  private final TcpInfoStore store;
+  private final List<Integer> ports;
+  private final Predicate<SegmentSummary> sink;
+  private final LongSupplier synRefused;
+  // Payload bytes kept per segment; 0 except in passive mode.
+  private final int payloadBytes;
   private final Logger logger;
-  private final String configuredIface;
+  private final List<String> configuredIfaces;
   private final InetAddress bindAddress;
   private final int snaplen;
-  private final int timeoutMs;
+  private final int bufferBytes;
+  private final String engine;
+  private final int workersPerIface;
+
+  private final List<Pipeline> pipelines = new ArrayList<>();
+  private final List<Thread> threads = new ArrayList<>();
+  private final TcpPacketDecoder decoder = new TcpPacketDecoder(TcpPacketDecoder.LINK_ETHERNET);
+  private final SegmentSummary summary;
+  private ScheduledExecutorService statsScheduler;
+  private volatile CaptureStats lastRates = CaptureStats.EMPTY;
+  private long reportedRefused;
+
+  /**
+   * One capture worker with its ring and correlator, plus the counters seen at
+   * the previous stats report.
+   */
+  private static final class Pipeline {
+    final String name;
+    final CaptureWorker worker;
+    final SegmentCorrelator correlator;
+    CaptureStats reported = CaptureStats.EMPTY;
 
-  private volatile boolean running;
-  private volatile PcapHandle handle;
-  private Thread captureThread;
+    Pipeline(String name, CaptureWorker worker, SegmentCorrelator correlator) {
+      this.name = name;
+      this.worker = worker;
+      this.correlator = correlator;
+    }
+
+    CaptureStats stats() {
+      CaptureWorker.KernelStats kernel = worker.kernelStats();
+      SegmentRing ring = correlator.getRing();
+      long ringDropped = ring.overflows();
+      return new CaptureStats(kernel.received(), kernel.dropped(), kernel.ifDropped(),
+          ring.published() + ringDropped, ringDropped, correlator.useful());
+    }
+  }
 
   public PacketCaptureService(int serverPort, InetAddress bindAddress, String configuredIface,
       TcpInfoStore store, Logger logger) {
-    this(serverPort, bindAddress, configuredIface, DEFAULT_SNAPLEN, DEFAULT_TIMEOUT_MS, store,
-        logger);
+    this(serverPort, bindAddress,
+        configuredIface == null || configuredIface.isBlank() ? List.of()
+            : List.of(configuredIface.trim()), ENGINE_PCAP, 1, store, logger);
   }
 
-  public PacketCaptureService(int serverPort, InetAddress bindAddress, String configuredIface,
-      int snaplen, int timeoutMs, TcpInfoStore store, Logger logger) {
-    this.serverPort = serverPort;
+  public PacketCaptureService(int serverPort, InetAddress bindAddress,
+      List<String> configuredIfaces, String engine, int workersPerIface, TcpInfoStore store,
+      Logger logger) {
+    this(serverPort, bindAddress, configuredIfaces, engine, workersPerIface, DEFAULT_SNAPLEN,
+        0, DEFAULT_SYN_RATE, DEFAULT_SYN_BURST, store, logger);
+  }
+
+  /**
+   * @param snaplen bytes captured per packet; at least {@link #MIN_SNAPLEN}.
+   * @param bufferBytes kernel capture buffer per worker, or 0 for the engine
+   *        default (libpcap's, or the AF_PACKET ring's 64 MiB).
+   * @param synRate new-client SYNs per second per source /24 that may claim
+   *        a store slot.
+   * @param synBurst SYNs a source /24 may send at once.
+   */
+  public PacketCaptureService(int serverPort, InetAddress bindAddress,
+      List<String> configuredIfaces, String engine, int workersPerIface, int snaplen,
+      int bufferBytes, int synRate, int synBurst, TcpInfoStore store, Logger logger) {
+    this(List.of(serverPort), bindAddress, configuredIfaces, engine, workersPerIface, snaplen,
+        bufferBytes, new HandshakeCorrelator(serverPort, store, synRate, synBurst), logger);
+  }
+
+  private PacketCaptureService(List<Integer> ports, InetAddress bindAddress,
+      List<String> configuredIfaces, String engine, int workersPerIface, int snaplen,
+      int bufferBytes, HandshakeCorrelator correlator, Logger logger) {
+    this(ports, bindAddress, configuredIfaces, engine, workersPerIface, snaplen, bufferBytes, 0,
+        correlator::apply, correlator::refusedCount, logger);
+  }
+
+  /**
+   * Capture without a local store: every summary on {@code ports} is handed
+   * to {@code sink}, which returns whether it was forwarded. Used by the
+   * {@link CaptureSidecar}.
+   */
+  PacketCaptureService(List<Integer> ports, List<String> configuredIfaces, String engine,
+      int workersPerIface, int snaplen, int bufferBytes, Predicate<SegmentSummary> sink,
+      Logger logger) {
+    this(ports, null, configuredIfaces, engine, workersPerIface, snaplen, bufferBytes, 0, sink,
+        () -> 0L, logger);
+  }
+
+  /**
+   * Passive capture for a {@link PassiveFingerprinter}: handshakes and client
+   * payload of {@code ports}, with up to {@code snaplen} payload bytes per
+   * segment carried through the rings into {@code flows}.
+   */
+  PacketCaptureService(List<Integer> ports, List<String> configuredIfaces, String engine,
+      int workersPerIface, int snaplen, int bufferBytes, PassiveFlowTable flows,
+      Logger logger) {
+    this(ports, null, configuredIfaces, engine, workersPerIface, snaplen, bufferBytes, snaplen,
+        flows::apply, flows::refusedCount, logger);
+  }
+
+  private PacketCaptureService(List<Integer> ports, InetAddress bindAddress,
+      List<String> configuredIfaces, String engine, int workersPerIface, int snaplen,
+      int bufferBytes, int payloadBytes, Predicate<SegmentSummary> sink, LongSupplier synRefused,
+      Logger logger) {
+    if (ports.isEmpty()) {
+      throw new IllegalArgumentException("at least one port is required");
+    }
+    if (workersPerIface < 1) {
+      throw new IllegalArgumentException("workersPerIface must be >= 1");
+    }
+    if (snaplen < MIN_SNAPLEN) {
+      throw new IllegalArgumentException("snaplen must be >= " + MIN_SNAPLEN);
+    }
+    if (bufferBytes < 0) {
+      throw new IllegalArgumentException("bufferBytes must be >= 0");
+    }
+    this.ports = List.copyOf(ports);
     this.bindAddress = bindAddress;
-    this.configuredIface = configuredIface;
+    this.configuredIfaces = List.copyOf(configuredIfaces);
+    this.engine = engine;
+    this.workersPerIface = workersPerIface;
     this.snaplen = snaplen;
-    this.timeoutMs = timeoutMs;
-    this.store = store;
+    this.bufferBytes = bufferBytes;
+    this.payloadBytes = payloadBytes;
+    this.summary = new SegmentSummary(payloadBytes);
+    this.sink = sink;
+    this.synRefused = synRefused;
     this.logger = logger;
   }
 
   /**
-   * Attempts to open a capture device and start the capture thread. Failures are
-   * logged and leave the service inactive; they never propagate.
+   * Kernel filter for the packets the correlation uses: SYN and SYN/ACK, plus
+   * ACKs that carry no payload and no PSH/FIN/RST. TLS records and other data
+   * segments are dropped in the kernel instead of being copied to user space.
+   * Pure ACKs acknowledging server data still pass; the ACK completing the
+   * handshake cannot be told apart without per-flow state.
+   */
+  static String handshakeFilter(List<Integer> ports) {
+    String portExpr = ports.size() == 1
+        ? "tcp port " + ports.get(0)
+        : ports.stream().map(port -> "port " + port)
+            .collect(Collectors.joining(" or ", "tcp and (", ")"));
+    // pcap-filter gives "and" and "or" equal precedence, so group explicitly.
+    return portExpr + " and ("
+        + "(tcp[tcpflags] & tcp-syn != 0)"
+        + " or ((tcp[tcpflags] & (tcp-ack|tcp-push|tcp-fin|tcp-rst)) == tcp-ack"
+        + " and ip[2:2] - ((ip[0] & 0xf) << 2) - ((tcp[12] & 0xf0) >> 2) == 0))";
+  }
+
+  /**
+   * Kernel filter for passive mode: every client-to-server segment of the
+   * ports (the SYN, the ACK and the ClientHello flight), and only the
+   * SYN/ACK, FIN and RST segments the servers send back, so response bodies
+   * stay in the kernel.
+   */
+  static String passiveFilter(List<Integer> ports) {
+    String dst = ports.stream().map(port -> "dst port " + port)
+        .collect(Collectors.joining(" or ", "(", ")"));
+    String src = ports.stream().map(port -> "src port " + port)
+        .collect(Collectors.joining(" or ", "(", ")"));
+    return "tcp and (" + dst + " or (" + src
+        + " and tcp[tcpflags] & (tcp-syn|tcp-fin|tcp-rst) != 0))";
+  }
+
+  /**
+   * Attempts to open the capture devices and start the capture threads.
+   * Failures are logged and leave the failing interface (or the whole service)
+   * inactive; they never propagate.
    *
-   * @return {@code true} if capture started, {@code false} if it could not.
+   * @return {@code true} if capture started on at least one interface.
    */
-  public boolean start() {
+  public synchronized boolean start() {
+    List<PcapNetworkInterface> devices;
     try {
-      PcapNetworkInterface nif = selectDevice();
-      if (nif == null) {
-        logger.warning("Packet capture disabled: no suitable capture device found");
-        return false;
-      }
-      PcapHandle opened = nif.openLive(snaplen, PromiscuousMode.NONPROMISCUOUS, timeoutMs);
-      opened.setFilter("tcp port " + serverPort, BpfCompileMode.OPTIMIZE);
-      this.handle = opened;
-      this.running = true;
-      this.captureThread = new Thread(this::captureLoop, "ja4-capture");
-      this.captureThread.setDaemon(true);
-      this.captureThread.start();
-      logger.log(Level.INFO, "Packet capture started on {0} (tcp port {1})",
-          new Object[] {nif.getName(), serverPort});
-      return true;
-    } catch (PcapNativeException | NotOpenException | RuntimeException ex) {
+      devices = selectDevices();
+    } catch (PcapNativeException | RuntimeException ex) {
       logger.log(Level.WARNING,
-          "Packet capture disabled (could not open device; check privileges/libpcap)", ex);
-      this.running = false;
-      this.handle = null;
+          "Packet capture disabled (could not list devices; check privileges/libpcap)", ex);
+      return false;
+    }
+    if (devices.isEmpty()) {
+      logger.warning("Packet capture disabled: no suitable capture device found");
       return false;
     }
+    String filter = payloadBytes > 0 ? passiveFilter(ports) : handshakeFilter(ports);
+    for (int i = 0; i < devices.size(); i++) {
+      startInterface(devices.get(i), filter, i);
+    }
+    if (pipelines.isEmpty()) {
+      logger.warning("Packet capture disabled: no capture device could be opened");
+      return false;
+    }
+    statsScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "ja4-capture-stats");
+      thread.setDaemon(true);
+      return thread;
+    });
+    statsScheduler.scheduleAtFixedRate(this::reportStats, STATS_INTERVAL_SECONDS,
+        STATS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    return true;
   }
 
-  public void stop() {
-    running = false;
-    PcapHandle h = handle;
-    if (h != null) {
-      try {
-        h.breakLoop();
-      } catch (NotOpenException ignored) {
-        // already closed
+  private void startInterface(PcapNetworkInterface nif, String filter, int ordinal) {
+    String name = nif.getName();
+    if (ENGINE_AF_PACKET.equals(engine)) {
+      if (startAfPacket(name, filter, ordinal)) {
+        return;
       }
-      h.close();
+      logger.log(Level.WARNING, "Falling back to libpcap capture on {0}", name);
     }
-    if (captureThread != null) {
-      captureThread.interrupt();
+    if (workersPerIface > 1) {
+      logger.log(Level.INFO, "libpcap capture runs one worker per interface on {0}", name);
+    }
+    SegmentRing ring = newRing();
+    PcapCapture capture = new PcapCapture(nif, filter, snaplen, DEFAULT_TIMEOUT_MS, bufferBytes,
+        ring::offer, logger);
+    try {
+      capture.open();
+    } catch (IOException | LinkageError | RuntimeException ex) {
+      logger.log(Level.WARNING, "Packet capture disabled on " + name
+          + " (could not open device; check privileges/libpcap)", ex);
+      return;
     }
+    launch(capture, ring, name, 0);
+    logger.log(Level.INFO, "Packet capture started on {0} (tcp port {1}, libpcap)",
+        new Object[] {name, portsLabel()});
   }
 
-  private void captureLoop() {
-    PcapHandle h = handle;
-    while (running) {
-      Packet packet;
+  private boolean startAfPacket(String iface, String filter, int ordinal) {
+    int group = workersPerIface > 1 ? fanoutGroupId(ordinal) : 0;
+    int blockSize = AfPacketCapture.DEFAULT_BLOCK_SIZE;
+    int blockCount = bufferBytes == 0
+        ? AfPacketCapture.DEFAULT_BLOCK_COUNT
+        : Math.max(2, bufferBytes / blockSize);
+    List<AfPacketCapture> opened = new ArrayList<>();
+    List<SegmentRing> rings = new ArrayList<>();
+    for (int i = 0; i < workersPerIface; i++) {
+      SegmentRing ring = newRing();
+      AfPacketCapture capture = new AfPacketCapture(iface, filter, snaplen, blockSize,
+          blockCount, group, ring::offer, logger);
       try {
-        packet = h.getNextPacketEx();
-      } catch (TimeoutException ex) {
-        continue;
-      } catch (EOFException | NotOpenException ex) {
-        break;
-      } catch (PcapNativeException ex) {
-        logger.log(Level.FINE, "Packet capture read error", ex);
-        continue;
-      }
-      try {
-        handlePacket(packet, toEpochMicros(h.getTimestamp()));
-      } catch (Exception ex) {
-        logger.log(Level.FINE, "Failed to process captured packet", ex);
+        capture.open();
+      } catch (IOException | LinkageError ex) {
+        logger.log(Level.WARNING, "AF_PACKET capture unavailable on " + iface, ex);
+        opened.forEach(AfPacketCapture::close);
+        return false;
       }
+      opened.add(capture);
+      rings.add(ring);
     }
+    for (int i = 0; i < opened.size(); i++) {
+      launch(opened.get(i), rings.get(i), iface, i);
+    }
+    logger.log(Level.INFO, "Packet capture started on {0} (tcp port {1}, AF_PACKET ring of "
+        + "{2} MiB, {3} worker(s))", new Object[] {iface, portsLabel(),
+        (long) blockSize * blockCount >> 20, opened.size()});
+    return true;
   }
 
-  void handlePacket(Packet packet, long micros) {
-    IpV4Packet ip = packet.get(IpV4Packet.class);
-    if (ip == null) {
-      // IPv6 (or non-IPv4) is not handled; the server itself binds IPv4 only.
-      return;
+  private SegmentRing newRing() {
+    return payloadBytes > 0
+        ? new SegmentRing(PASSIVE_RING_CAPACITY, payloadBytes)
+        : new SegmentRing(DEFAULT_RING_CAPACITY);
+  }
+
+  private String portsLabel() {
+    return ports.stream().map(String::valueOf).collect(Collectors.joining(","));
+  }
+
+  /**
+   * Fanout group ids are global per network namespace and bound to one device,
+   * so derive them from the pid and the interface's position in the list.
+   */
+  private static int fanoutGroupId(int ordinal) {
+    int id = (int) ((ProcessHandle.current().pid() * 31L + ordinal) & 0xFFFF);
+    return id == 0 ? 1 : id;
+  }
+
+  private void launch(CaptureWorker worker, SegmentRing ring, String iface, int index) {
+    String suffix = iface + "-" + index;
+    SegmentCorrelator correlator = new SegmentCorrelator(ring, sink, logger);
+    Thread correlatorThread = new Thread(correlator, "ja4-correlate-" + suffix);
+    correlatorThread.setDaemon(true);
+    Thread captureThread = new Thread(worker, "ja4-capture-" + suffix);
+    captureThread.setDaemon(true);
+    pipelines.add(new Pipeline(suffix, worker, correlator));
+    threads.add(correlatorThread);
+    threads.add(captureThread);
+    correlatorThread.start();
+    captureThread.start();
+  }
+
+  public synchronized void stop() {
+    if (statsScheduler != null) {
+      statsScheduler.shutdownNow();
+      statsScheduler = null;
     }
-    TcpPacket tcp = packet.get(TcpPacket.class);
-    if (tcp == null) {
-      return;
+    for (Pipeline pipeline : pipelines) {
+      pipeline.worker.close();
+    }
+    for (Pipeline pipeline : pipelines) {
+      pipeline.correlator.close();
+    }
+    for (Thread thread : threads) {
+      thread.interrupt();
+    }
+    pipelines.clear();
+    threads.clear();
+  }
+
+  /** Cumulative capture counters, summed over all workers. */
+  public synchronized CaptureStats getStats() {
+    CaptureStats total = CaptureStats.EMPTY;
+    for (Pipeline pipeline : pipelines) {
+      total = total.plus(pipeline.stats());
     }
-    IpV4Header iph = ip.getHeader();
-    TcpHeader th = tcp.getHeader();
-    int srcPort = th.getSrcPort().value() & 0xFFFF;
-    int dstPort = th.getDstPort().value() & 0xFFFF;
-    boolean syn = th.getSyn();
-    boolean ack = th.getAck();
-
-    if (dstPort == serverPort) {
-      String clientIp = iph.getSrcAddr().getHostAddress();
-      if (syn && !ack) {
-        TcpHandshakeInfo info = store.getOrCreate(clientIp, srcPort);
-        info.setSynMicros(micros);
-        info.setClientTtl(iph.getTtlAsInt());
-        info.setJa4t(buildJa4t(th));
-      } else if (ack && !syn) {
-        TcpHandshakeInfo info = store.get(clientIp, srcPort);
-        if (info != null && info.getAckMicros() == 0L && info.getSynAckMicros() != 0L) {
-          info.setAckMicros(micros);
+    return total;
+  }
+
+  /** Client SYNs refused by the flood admission, since start; 0 when forwarding. */
+  public long getSynRefused() {
+    return synRefused.getAsLong();
+  }
+
+  /** Per-second capture counters over the last reporting interval, all workers. */
+  public CaptureStats getRatesPerSecond() {
+    return lastRates;
+  }
+
+  /** Summaries waiting in the capture rings, summed over all workers. */
+  public synchronized int getRingOccupancy() {
+    int occupancy = 0;
+    for (Pipeline pipeline : pipelines) {
+      occupancy += pipeline.correlator.getRing().occupancy();
+    }
+    return occupancy;
+  }
+
+  /** Total slots of the capture rings, summed over all workers. */
+  public synchronized int getRingCapacity() {
+    int capacity = 0;
+    for (Pipeline pipeline : pipelines) {
+      capacity += pipeline.correlator.getRing().capacity();
+    }
+    return capacity;
+  }
+
+  /**
+   * Logs per-second rates for every worker at FINE, and at WARNING when the
+   * kernel, the driver or a ring dropped packets since the last report, since
+   * those drops are why a connection can lack JA4T.
+   */
+  private synchronized void reportStats() {
+    try {
+      CaptureStats totalRates = CaptureStats.EMPTY;
+      for (Pipeline pipeline : pipelines) {
+        CaptureStats current = pipeline.stats();
+        CaptureStats delta = current.minus(pipeline.reported);
+        pipeline.reported = current;
+        CaptureStats rates = delta.perSecond(STATS_INTERVAL_SECONDS);
+        totalRates = totalRates.plus(rates);
+        Level level = delta.hasDrops() ? Level.WARNING : Level.FINE;
+        if (logger.isLoggable(level)) {
+          logger.log(level, "Capture {0}: {1} pkt/s received, {2} segments/s captured, "
+              + "{3} useful ({4}%); dropped in last {5}s: kernel {6}, interface {7}, ring {8}",
+              new Object[] {pipeline.name, rates.received(), rates.captured(), rates.useful(),
+                  Math.round(delta.usefulRatio() * 100.0), STATS_INTERVAL_SECONDS,
+                  delta.dropped(), delta.ifDropped(), delta.ringDropped()});
         }
       }
-    } else if (srcPort == serverPort && syn && ack) {
-      String clientIp = iph.getDstAddr().getHostAddress();
-      TcpHandshakeInfo info = store.get(clientIp, dstPort);
-      if (info != null && info.getSynAckMicros() == 0L) {
-        info.setSynAckMicros(micros);
-        info.setServerTtl(iph.getTtlAsInt());
+      lastRates = totalRates;
+      long refused = getSynRefused();
+      if (refused != reportedRefused) {
+        logger.log(Level.WARNING, "SYN admission refused {0} handshake(s) in the last {1}s "
+            + "(SYN flood?)", new Object[] {refused - reportedRefused, STATS_INTERVAL_SECONDS});
+        reportedRefused = refused;
       }
+    } catch (RuntimeException ex) {
+      logger.log(Level.WARNING, "Failed to collect packet capture stats", ex);
     }
   }
 
-  static String buildJa4t(TcpHeader th) {
-    List<TcpOption> options = th.getOptions();
-    int[] kinds = new int[options.size()];
-    int mss = 0;
-    int windowScale = 0;
-    for (int i = 0; i < options.size(); i++) {
-      TcpOption option = options.get(i);
-      kinds[i] = option.getKind().value() & 0xFF;
-      if (option instanceof TcpMaximumSegmentSizeOption mssOption) {
-        mss = mssOption.getMaxSegSizeAsInt();
-      } else if (option instanceof TcpWindowScaleOption wscaleOption) {
-        windowScale = wscaleOption.getShiftCountAsInt();
-      }
+  /**
+   * Decodes one Ethernet frame and hands it to the correlation (or the
+   * forwarding sink). Test entry point for the capture path that bypasses the
+   * rings; not thread-safe, as it reuses one decoder and summary.
+   */
+  void handlePacket(byte[] frame, int length, long micros) {
+    TcpPacketDecoder d = decoder;
+    if (!d.decode(frame, length)) {
+      // IPv6 (or non-IPv4/TCP) is not handled; the server itself binds IPv4 only.
+      return;
     }
-    return Ja4TcpFingerprint.compute(th.getWindowAsInt(), kinds, mss, windowScale);
+    summary.copyFrom(d, micros);
+    sink.test(summary);
   }
 
-  static long toEpochMicros(Timestamp ts) {
-    if (ts == null) {
-      return 0L;
+  private List<PcapNetworkInterface> selectDevices() throws PcapNativeException {
+    List<PcapNetworkInterface> devices = new ArrayList<>();
+    if (!configuredIfaces.isEmpty()) {
+      for (String name : configuredIfaces) {
+        PcapNetworkInterface nif = Pcaps.getDevByName(name);
+        if (nif == null) {
+          logger.log(Level.WARNING, "Configured capture interface not found: {0}", name);
+        } else {
+          devices.add(nif);
+        }
+      }
+      return devices;
     }
-    long epochSeconds = ts.getTime() / 1000L;
-    return epochSeconds * 1_000_000L + ts.getNanos() / 1000L;
+    PcapNetworkInterface nif = selectDevice();
+    if (nif != null) {
+      devices.add(nif);
+    }
+    return devices;
   }
 
   private PcapNetworkInterface selectDevice() throws PcapNativeException {
-    if (configuredIface != null && !configuredIface.isBlank()) {
-      PcapNetworkInterface nif = Pcaps.getDevByName(configuredIface);
-      if (nif == null) {
-        logger.log(Level.WARNING, "Configured capture interface not found: {0}", configuredIface);
-      }
-      return nif;
-    }
     if (bindAddress != null && !bindAddress.isAnyLocalAddress()) {
       if (bindAddress.isLoopbackAddress()) {
         PcapNetworkInterface loopback = firstLoopback();
@@ -0,0 +1,76 @@
+package no.hux.ja4.capture;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import no.hux.ja4.store.FingerprintStore;
+
+/**
+ * Passive mode: fingerprints TLS clients of servers this process does not
+ * terminate (for example a load balancer on the same host or a mirror port)
+ * from captured traffic alone, with no request to this server.
+ *
+ * <p>A {@link PacketCaptureService} in passive mode captures the handshakes
+ * and the client's first segments on the given ports; a
+ * {@link PassiveFlowTable} reassembles each ClientHello and stores JA4, JA4T
+ * and JA4L in the {@link FingerprintStore} under
+ * {@code "<client ip>:<client port>"}, so they can be read from
+ * {@code /api/lookup/<ip>:<port>} like any session.
+ *
+ * <p>Like the rest of capture this is optional: if no device can be opened it
+ * logs a warning and stays inactive.
+ */
+public final class PassiveFingerprinter {
+
+  /** Enough for a full Ethernet frame; the ClientHello bytes are needed. */
+  public static final int MIN_SNAPLEN = 2048;
+
+  private final List<Integer> ports;
+  private final PassiveFlowTable flows;
+  private final PacketCaptureService capture;
+  private final Logger logger;
+
+  /**
+   * @param snaplen bytes captured per packet; raised to {@link #MIN_SNAPLEN}
+   *        if smaller.
+   * @param synRate new-client SYNs per second per source /24 that may start
+   *        a flow.
+   * @param synBurst SYNs a source /24 may send at once.
+   */
+  public PassiveFingerprinter(List<Integer> ports, List<String> ifaces, String engine,
+      int workers, int snaplen, int bufferBytes, int synRate, int synBurst,
+      FingerprintStore store, Logger logger) {
+    this.ports = List.copyOf(ports);
+    this.flows = new PassiveFlowTable(ports, store, PassiveFlowTable.DEFAULT_MAX_FLOWS, synRate,
+        synBurst);
+    this.capture = new PacketCaptureService(ports, ifaces, engine, workers,
+        Math.max(snaplen, MIN_SNAPLEN), bufferBytes, flows, logger);
+    this.logger = logger;
+  }
+
+  /** @return {@code true} if capture started on at least one interface. */
+  public boolean start() {
+    if (!capture.start()) {
+      return false;
+    }
+    logger.log(Level.INFO, "Passive fingerprinting started for port(s) {0}", ports);
+    return true;
+  }
+
+  public void stop() {
+    capture.stop();
+    logger.log(Level.INFO, "Passive fingerprinting stopped: {0} flow(s) fingerprinted, "
+        + "{1} evicted unfinished, {2} SYN(s) refused", new Object[] {
+            flows.fingerprintedCount(), flows.evictedCount(), flows.refusedCount()});
+  }
+
+  /** Flows whose fingerprints were stored, since start. */
+  public long getFingerprinted() {
+    return flows.fingerprintedCount();
+  }
+
+  /** Capture counters of the passive capture. */
+  public CaptureStats getStats() {
+    return capture.getStats();
+  }
+}
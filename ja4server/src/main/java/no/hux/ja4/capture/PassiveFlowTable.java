@@ -0,0 +1,279 @@
+package no.hux.ja4.capture;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import no.hux.ja4.fingerprint.Ja4LatencyFingerprint;
+import no.hux.ja4.fingerprint.Ja4TcpFingerprint;
+import no.hux.ja4.store.FingerprintRecord;
+import no.hux.ja4.store.FingerprintStore;
+
+/**
+ * Tracks TCP flows to server ports this process does not terminate, from the
+ * client SYN to the ClientHello, and writes one {@link FingerprintRecord} per
+ * fingerprinted flow into a {@link FingerprintStore}, keyed
+ * {@code "<client ip>:<client port>"}.
+ *
+ * <p>Clients reuse source ports, so a key can name several flows over the
+ * store's TTL. The newest flow is always under the plain key; the
+ * {@value #HISTORY} before it move to {@code "<client ip>:<client port>:<n>"},
+ * {@code n} counting back from 1, and older ones are dropped. Records carry
+ * their SYN's capture time to tell them apart.
+ *
+ * <p>A flow starts only with a client SYN admitted by a {@link SynAdmission},
+ * so a SYN flood cannot crowd real clients out of the table; flows already
+ * open when capture starts are ignored. The client's first bytes are
+ * reassembled by a {@link ClientHelloAssembler} holding at most
+ * {@link #MAX_HELLO_BYTES} per flow. A flow leaves the table as soon as its
+ * ClientHello is parsed (or given up on), on FIN or RST, after
+ * {@link #FLOW_TIMEOUT_MICROS} of capture time, or when the table is full and
+ * it is the oldest.
+ *
+ * <p>Flows are keyed by the client address and port and split over
+ * {@value #STRIPES} independently locked maps, so the correlation threads of
+ * several capture workers rarely contend.
+ */
+final class PassiveFlowTable {
+
+  static final int DEFAULT_MAX_FLOWS = 1 << 16;
+  /** Reassembly bound per flow; real ClientHellos are a few KiB at most. */
+  static final int MAX_HELLO_BYTES = 16 * 1024;
+  static final int MAX_PENDING_SEGMENTS = 8;
+  static final long FLOW_TIMEOUT_MICROS = TimeUnit.SECONDS.toMicros(10);
+  /** Earlier flows of one client endpoint kept besides the newest. */
+  static final int HISTORY = 3;
+  private static final int STRIPES = 64;
+
+  private final boolean[] serverPorts = new boolean[65536];
+  private final FingerprintStore store;
+  private final Stripe[] stripes = new Stripe[STRIPES];
+  private final SynAdmission admission;
+  private final LongAdder fingerprinted = new LongAdder();
+  private final LongAdder evicted = new LongAdder();
+
+  /** Handshake state of one client flow; guarded by its stripe. */
+  private static final class Flow {
+    final int serverAddr;
+    final int serverPort;
+    final long synMicros;
+    final int clientTtl;
+    final int window;
+    final int mss;
+    final int windowScale;
+    final byte[] optionKinds;
+    final ClientHelloAssembler hello =
+        new ClientHelloAssembler(MAX_HELLO_BYTES, MAX_PENDING_SEGMENTS);
+    long synAckMicros;
+    int serverTtl;
+    long ackMicros;
+
+    Flow(SegmentSummary syn) {
+      this.serverAddr = syn.getDstAddr();
+      this.serverPort = syn.getDstPort();
+      this.synMicros = syn.getMicros();
+      this.clientTtl = syn.getTtl();
+      this.window = syn.getWindow();
+      this.mss = syn.getMss();
+      this.windowScale = syn.getWindowScale();
+      byte[] kinds = new byte[TcpPacketDecoder.MAX_OPTION_KINDS];
+      this.optionKinds = Arrays.copyOf(kinds, syn.copyOptionKinds(kinds, 0));
+      hello.start(syn.getSequenceNumber() + 1);
+    }
+  }
+
+  /** One lock stripe: flows in SYN order, oldest first. Never serialized. */
+  @SuppressWarnings("serial")
+  private final class Stripe extends LinkedHashMap<Long, Flow> {
+    private final int capacity;
+
+    Stripe(int capacity) {
+      super(16, 0.75f, false);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Long, Flow> eldest) {
+      if (size() > capacity) {
+        evicted.increment();
+        return true;
+      }
+      return false;
+    }
+
+    /** Drops flows whose SYN is older than the timeout; they sit at the head. */
+    void expire(long micros) {
+      Iterator<Flow> it = values().iterator();
+      while (it.hasNext()) {
+        if (micros - it.next().synMicros <= FLOW_TIMEOUT_MICROS) {
+          return;
+        }
+        it.remove();
+      }
+    }
+  }
+
+  PassiveFlowTable(List<Integer> ports, FingerprintStore store) {
+    this(ports, store, DEFAULT_MAX_FLOWS, SynAdmission.DEFAULT_RATE, SynAdmission.DEFAULT_BURST);
+  }
+
+  PassiveFlowTable(List<Integer> ports, FingerprintStore store, int maxFlows, int synRate,
+      int synBurst) {
+    if (ports.isEmpty()) {
+      throw new IllegalArgumentException("at least one port is required");
+    }
+    if (maxFlows < STRIPES) {
+      throw new IllegalArgumentException("maxFlows must be >= " + STRIPES);
+    }
+    for (int port : ports) {
+      serverPorts[port] = true;
+    }
+    this.store = store;
+    this.admission = new SynAdmission(synRate, synBurst);
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe(maxFlows / STRIPES);
+    }
+  }
+
+  /** Client SYNs refused by the flood admission, since creation. */
+  long refusedCount() {
+    return admission.refusedCount();
+  }
+
+  /** Flows written to the fingerprint store, since creation. */
+  long fingerprintedCount() {
+    return fingerprinted.sum();
+  }
+
+  /** Flows dropped because their stripe was full, since creation. */
+  long evictedCount() {
+    return evicted.sum();
+  }
+
+  /**
+   * Applies one captured segment.
+   *
+   * @return whether the segment updated a flow.
+   */
+  boolean apply(SegmentSummary s) {
+    boolean toServer = serverPorts[s.getDstPort()];
+    if (!toServer && !serverPorts[s.getSrcPort()]) {
+      return false;
+    }
+    long key = toServer
+        ? TcpInfoStore.key(s.getSrcAddr(), s.getSrcPort())
+        : TcpInfoStore.key(s.getDstAddr(), s.getDstPort());
+    Stripe stripe = stripes[stripeOf(key)];
+    synchronized (stripe) {
+      return toServer ? fromClient(stripe, key, s) : fromServer(stripe, key, s);
+    }
+  }
+
+  private boolean fromClient(Stripe stripe, long key, SegmentSummary s) {
+    long micros = s.getMicros();
+    Flow flow = stripe.get(key);
+    if (flow != null && (flow.serverAddr != s.getDstAddr() || flow.serverPort != s.getDstPort())) {
+      // Same client endpoint, another upstream: not this flow.
+      flow = null;
+    }
+    if (s.isSyn()) {
+      if (s.isAck() || flow != null) {
+        return false;
+      }
+      if (!admission.admitSyn(s.getSrcAddr(), key, micros)) {
+        return false;
+      }
+      stripe.expire(micros);
+      stripe.remove(key);
+      stripe.put(key, new Flow(s));
+      return true;
+    }
+    if (flow == null) {
+      if (s.isAck() && s.getPayloadLength() == 0) {
+        admission.unmatchedAck(s.getSrcAddr(), key, micros);
+      }
+      return false;
+    }
+    if (s.isAck() && flow.synAckMicros != 0L && flow.ackMicros == 0L) {
+      flow.ackMicros = micros;
+      admission.handshakeCompleted(s.getSrcAddr(), micros);
+    }
+    if (s.getPayloadLength() > 0) {
+      flow.hello.add(s.getSequenceNumber(), s.payload(), 0, s.getCapturedPayload(),
+          s.getPayloadLength());
+    }
+    if (flow.hello.isDone()) {
+      stripe.remove(key);
+      publish(key, flow);
+    } else if (s.isFinOrRst()) {
+      stripe.remove(key);
+    }
+    return true;
+  }
+
+  private boolean fromServer(Stripe stripe, long key, SegmentSummary s) {
+    Flow flow = stripe.get(key);
+    if (flow == null || flow.serverAddr != s.getSrcAddr() || flow.serverPort != s.getSrcPort()) {
+      return false;
+    }
+    if (s.isSyn() && s.isAck() && flow.synAckMicros == 0L) {
+      flow.synAckMicros = s.getMicros();
+      flow.serverTtl = s.getTtl();
+      return true;
+    }
+    if (s.isFinOrRst()) {
+      stripe.remove(key);
+      return true;
+    }
+    return false;
+  }
+
+  private void publish(long key, Flow flow) {
+    String ja4 = flow.hello.ja4();
+    if (ja4 == null) {
+      return;
+    }
+    String ja4t = Ja4TcpFingerprint.compute(flow.window, flow.optionKinds, 0,
+        flow.optionKinds.length, flow.mss, flow.windowScale);
+    String ja4l = flow.ackMicros == 0L ? null : Ja4LatencyFingerprint.format(
+        Math.max(0L, (flow.ackMicros - flow.synAckMicros) / 2L), flow.clientTtl);
+    String ja4ls = flow.synAckMicros == 0L ? null : Ja4LatencyFingerprint.format(
+        Math.max(0L, (flow.synAckMicros - flow.synMicros) / 2L), flow.serverTtl);
+    String ip = TcpPacketDecoder.formatIpv4((int) (key >>> 16));
+    Instant timestamp = Instant.ofEpochSecond(flow.synMicros / 1_000_000L,
+        flow.synMicros % 1_000_000L * 1_000L);
+    String sessionId = sessionId(ip, (int) (key & 0xFFFF));
+    store(sessionId, new FingerprintRecord(sessionId, timestamp, ja4, null, ja4l, ja4ls, ja4t,
+        ip, null));
+    fingerprinted.increment();
+  }
+
+  /**
+   * Stores {@code record} under {@code sessionId}, shifting the endpoint's
+   * earlier flows down its history. Flows of one endpoint share a stripe, and
+   * the caller holds it, so the shift is not interleaved with another.
+   */
+  private void store(String sessionId, FingerprintRecord record) {
+    FingerprintRecord newer = record;
+    for (int i = 0; i <= HISTORY && newer != null; i++) {
+      String id = i == 0 ? sessionId : sessionId + ":" + i;
+      FingerprintRecord older = store.get(id);
+      store.put(newer.withSessionId(id));
+      newer = older;
+    }
+  }
+
+  /** Session id under which a passive flow's fingerprints are stored. */
+  static String sessionId(String clientIp, int clientPort) {
+    return clientIp + ":" + clientPort;
+  }
+
+  private static int stripeOf(long key) {
+    // Top six bits of the mixed key: one of the 64 stripes.
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> 58);
+  }
+}
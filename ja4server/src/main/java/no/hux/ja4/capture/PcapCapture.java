@@ -0,0 +1,206 @@
+package no.hux.ja4.capture;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.pcap4j.core.PcapNetworkInterface;
+
+/**
+ * libpcap capture backend: reads raw frames one at a time from a live handle
+ * and decodes them with a thread-confined {@link TcpPacketDecoder}.
+ *
+ * <p>The handle is driven through {@link LibPcap} rather than pcap4j, whose
+ * read path allocates the frame, two out-parameters and a timestamp per
+ * packet. Here each frame is copied into one reused array and its time is
+ * read from the {@code pcap_pkthdr} fields.
+ *
+ * <p>As with {@link AfPacketCapture}, {@link #close()} only signals the loop
+ * to exit; the handle is closed by the capture thread itself, within one read
+ * timeout.
+ */
+final class PcapCapture implements CaptureWorker {
+
+  // struct pcap_pkthdr { struct timeval ts; bpf_u_int32 caplen; bpf_u_int32 len; }
+  private static final int TV_USEC = Native.LONG_SIZE;
+  private static final int CAPLEN = 2 * Native.LONG_SIZE;
+
+  private final PcapNetworkInterface nif;
+  private final String filter;
+  private final int snaplen;
+  private final int timeoutMs;
+  private final int bufferBytes;
+  private final SegmentListener listener;
+  private final Logger logger;
+
+  private volatile boolean running;
+  private boolean started;
+  private Pointer handle;
+  private TcpPacketDecoder decoder;
+  private KernelStats lastStats = KernelStats.EMPTY;
+
+  /** @param bufferBytes libpcap kernel buffer size, or 0 for the libpcap default. */
+  PcapCapture(PcapNetworkInterface nif, String filter, int snaplen, int timeoutMs,
+      int bufferBytes, SegmentListener listener, Logger logger) {
+    this.nif = nif;
+    this.filter = filter;
+    this.snaplen = snaplen;
+    this.timeoutMs = timeoutMs;
+    this.bufferBytes = bufferBytes;
+    this.listener = listener;
+    this.logger = logger;
+  }
+
+  /** Opens and activates the handle and sets the filter; on failure it is closed again. */
+  void open() throws IOException {
+    Memory errbuf = new Memory(LibPcap.PCAP_ERRBUF_SIZE);
+    errbuf.clear();
+    Pointer opened = LibPcap.INSTANCE.pcap_create(nif.getName(), errbuf);
+    if (opened == null) {
+      throw new IOException("pcap_create failed on " + nif.getName() + ": "
+          + errbuf.getString(0));
+    }
+    try {
+      LibPcap.INSTANCE.pcap_set_snaplen(opened, snaplen);
+      LibPcap.INSTANCE.pcap_set_promisc(opened, 0);
+      LibPcap.INSTANCE.pcap_set_timeout(opened, timeoutMs);
+      if (bufferBytes > 0) {
+        LibPcap.INSTANCE.pcap_set_buffer_size(opened, bufferBytes);
+      }
+      int status = LibPcap.INSTANCE.pcap_activate(opened);
+      if (status < 0) {
+        throw new IOException("pcap_activate failed on " + nif.getName() + ": "
+            + LibPcap.INSTANCE.pcap_statustostr(status) + " "
+            + LibPcap.INSTANCE.pcap_geterr(opened));
+      }
+      setFilter(opened);
+      decoder = new TcpPacketDecoder(LibPcap.INSTANCE.pcap_datalink(opened));
+    } catch (IOException | RuntimeException ex) {
+      LibPcap.INSTANCE.pcap_close(opened);
+      throw ex;
+    }
+    handle = opened;
+    running = true;
+  }
+
+  private void setFilter(Pointer pcap) throws IOException {
+    // struct bpf_program { u_int bf_len; struct bpf_insn *bf_insns; }
+    Memory program = new Memory(16);
+    program.clear();
+    if (LibPcap.INSTANCE.pcap_compile(pcap, program, filter, 1, 0xFFFFFFFF) != 0) {
+      throw new IOException("Invalid capture filter '" + filter + "': "
+          + LibPcap.INSTANCE.pcap_geterr(pcap));
+    }
+    try {
+      if (LibPcap.INSTANCE.pcap_setfilter(pcap, program) != 0) {
+        throw new IOException("pcap_setfilter failed: " + LibPcap.INSTANCE.pcap_geterr(pcap));
+      }
+    } finally {
+      LibPcap.INSTANCE.pcap_freecode(program);
+    }
+  }
+
+  @Override
+  public void run() {
+    Pointer h;
+    synchronized (this) {
+      if (!running) {
+        release();
+        return;
+      }
+      started = true;
+      h = handle;
+    }
+    Memory headerRef = new Memory(Native.POINTER_SIZE);
+    Memory dataRef = new Memory(Native.POINTER_SIZE);
+    // Re-pointed at each packet's header and bytes instead of allocated per packet.
+    Pointer header = new Pointer(0L);
+    Pointer data = new Pointer(0L);
+    byte[] frame = new byte[snaplen];
+    try {
+      while (running) {
+        int status = LibPcap.INSTANCE.pcap_next_ex(h, headerRef, dataRef);
+        if (status == 0) {
+          continue;
+        }
+        if (status < 0) {
+          if (status == -1 && running) {
+            logger.log(Level.FINE, "Packet capture read error: {0}",
+                LibPcap.INSTANCE.pcap_geterr(h));
+            continue;
+          }
+          break;
+        }
+        Pointer.nativeValue(header, nativeAddress(headerRef));
+        Pointer.nativeValue(data, nativeAddress(dataRef));
+        int captured = Math.min(header.getInt(CAPLEN), frame.length);
+        data.read(0, frame, 0, captured);
+        long micros = nativeLong(header, 0) * 1_000_000L + nativeLong(header, TV_USEC);
+        try {
+          if (decoder.decode(frame, captured)) {
+            listener.onSegment(decoder, micros);
+          }
+        } catch (RuntimeException ex) {
+          logger.log(Level.FINE, "Failed to process captured packet", ex);
+        }
+      }
+    } finally {
+      synchronized (this) {
+        release();
+      }
+    }
+  }
+
+  /**
+   * Signals the capture loop to exit; it closes the handle within one read
+   * timeout. If the loop never started, the handle is closed right away.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      running = false;
+      if (!started) {
+        release();
+      } else if (handle != null) {
+        LibPcap.INSTANCE.pcap_breakloop(handle);
+      }
+    }
+  }
+
+  @Override
+  public synchronized KernelStats kernelStats() {
+    if (handle != null) {
+      readStats();
+    }
+    return lastStats;
+  }
+
+  private void readStats() {
+    // struct pcap_stat { u_int ps_recv; u_int ps_drop; u_int ps_ifdrop; }
+    Memory stat = new Memory(12);
+    if (LibPcap.INSTANCE.pcap_stats(handle, stat) == 0) {
+      lastStats = new KernelStats(stat.getInt(0) & 0xFFFFFFFFL,
+          stat.getInt(4) & 0xFFFFFFFFL, stat.getInt(8) & 0xFFFFFFFFL);
+    }
+  }
+
+  /** Caller holds the monitor unless the handle was never shared. */
+  private void release() {
+    if (handle != null) {
+      // Keep the final counts: they are lost with the handle.
+      readStats();
+      LibPcap.INSTANCE.pcap_close(handle);
+      handle = null;
+    }
+  }
+
+  private static long nativeAddress(Pointer ref) {
+    return Native.POINTER_SIZE == 8 ? ref.getLong(0) : ref.getInt(0) & 0xFFFFFFFFL;
+  }
+
+  private static long nativeLong(Pointer p, long offset) {
+    return Native.LONG_SIZE == 8 ? p.getLong(offset) : p.getInt(offset);
+  }
+}
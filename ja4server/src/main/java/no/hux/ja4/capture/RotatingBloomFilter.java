@@ -0,0 +1,101 @@
+package no.hux.ja4.capture;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Fixed-size Bloom filter over {@code long} keys that forgets old entries:
+ * keys are added to the current generation, lookups consult the current and
+ * the previous one, and once a period has elapsed the previous generation is
+ * cleared and becomes the current one. A key is therefore remembered for at
+ * least one and at most two periods.
+ *
+ * <p>Safe for concurrent use. Bits are set with atomic ORs; a key added while
+ * a rotation clears the array it lands in may be lost, which only turns into a
+ * false negative.
+ */
+final class RotatingBloomFilter {
+
+  private static final int HASHES = 3;
+  private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+  private final int bitMask;
+  private final long periodMicros;
+
+  private volatile long[] current;
+  private volatile long[] previous;
+  private volatile long epochStartMicros;
+
+  /**
+   * @param bits filter size per generation; rounded up to a power of two.
+   * @param periodMicros generation length, in the clock of the callers' timestamps.
+   */
+  RotatingBloomFilter(int bits, long periodMicros) {
+    int size = Integer.highestOneBit(Math.max(64, bits));
+    if (size < bits) {
+      size <<= 1;
+    }
+    this.bitMask = size - 1;
+    this.periodMicros = periodMicros;
+    this.current = new long[size / 64];
+    this.previous = new long[size / 64];
+  }
+
+  void add(long key, long nowMicros) {
+    rotateIfDue(nowMicros);
+    long[] bits = current;
+    long h = mix(key);
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32) | 1;
+    for (int i = 0; i < HASHES; i++) {
+      int bit = (h1 + i * h2) & bitMask;
+      LONGS.getAndBitwiseOr(bits, bit >>> 6, 1L << bit);
+    }
+  }
+
+  boolean mightContain(long key, long nowMicros) {
+    rotateIfDue(nowMicros);
+    long h = mix(key);
+    return contains(current, h) || contains(previous, h);
+  }
+
+  private boolean contains(long[] bits, long h) {
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32) | 1;
+    for (int i = 0; i < HASHES; i++) {
+      int bit = (h1 + i * h2) & bitMask;
+      if (((long) LONGS.getAcquire(bits, bit >>> 6) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void rotateIfDue(long nowMicros) {
+    if (nowMicros - epochStartMicros < periodMicros) {
+      return;
+    }
+    synchronized (this) {
+      if (nowMicros - epochStartMicros < periodMicros) {
+        return;
+      }
+      long[] recycled = previous;
+      Arrays.fill(recycled, 0L);
+      previous = current;
+      current = recycled;
+      epochStartMicros = nowMicros;
+    }
+  }
+
+  private static long mix(long key) {
+    // Murmur3 finalizer.
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
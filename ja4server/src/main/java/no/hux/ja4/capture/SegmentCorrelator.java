@@ -0,0 +1,77 @@
+package no.hux.ja4.capture;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Consumer side of a {@link SegmentRing}: drains summaries in batches into the
+ * handshake correlation so store lookups and writes never run on the capture
+ * thread. Parks briefly when the ring is empty; the producer never signals.
+ */
+final class SegmentCorrelator implements Runnable {
+
+  static final int BATCH = 256;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private final SegmentRing ring;
+  private final Predicate<SegmentSummary> sink;
+  private final Consumer<SegmentSummary> guardedSink = this::correlate;
+  private final Logger logger;
+  // Written by the correlation thread only.
+  private final AtomicLong useful = new AtomicLong();
+
+  private volatile boolean running = true;
+
+  /** @param sink applies one summary; returns whether it updated the store. */
+  SegmentCorrelator(SegmentRing ring, Predicate<SegmentSummary> sink, Logger logger) {
+    this.ring = ring;
+    this.sink = sink;
+    this.logger = logger;
+  }
+
+  SegmentRing getRing() {
+    return ring;
+  }
+
+  /** Summaries that updated the handshake store, since creation. */
+  long useful() {
+    return useful.getAcquire();
+  }
+
+  @Override
+  public void run() {
+    while (running) {
+      if (drainBatch() == 0) {
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+      }
+    }
+    // Whatever the capture thread published before stopping is still valid.
+    while (drainBatch() > 0) {
+      // keep draining
+    }
+  }
+
+  private int drainBatch() {
+    return ring.drain(guardedSink, BATCH);
+  }
+
+  private void correlate(SegmentSummary summary) {
+    try {
+      if (sink.test(summary)) {
+        useful.setRelease(useful.getPlain() + 1);
+      }
+    } catch (RuntimeException ex) {
+      // Drop the one segment; the slot must still be freed.
+      logger.log(Level.FINE, "Failed to correlate captured segment", ex);
+    }
+  }
+
+  void close() {
+    running = false;
+  }
+}
@@ -0,0 +1,18 @@
+package no.hux.ja4.capture;
+
+/**
+ * Receives decoded TCP segments from a capture backend.
+ *
+ * <p>The decoder passed in is owned by the calling capture thread and is only
+ * valid for the duration of the call; implementations must copy out any field
+ * they need to keep.
+ */
+@FunctionalInterface
+interface SegmentListener {
+
+  /**
+   * @param segment the decoder holding the segment that was just decoded.
+   * @param micros capture timestamp in epoch microseconds.
+   */
+  void onSegment(TcpPacketDecoder segment, long micros);
+}
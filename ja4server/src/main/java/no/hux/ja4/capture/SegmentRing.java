@@ -0,0 +1,111 @@
+package no.hux.ja4.capture;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Bounded single-producer / single-consumer handoff of {@link SegmentSummary}
+ * slots from one capture thread to one correlation thread.
+ *
+ * <p>All slots are allocated up front and overwritten in place, so the capture
+ * side pays one header copy and a release store per segment. When the
+ * consumer falls behind, {@link #offer} drops the segment and counts it rather
+ * than blocking the capture thread, which would only move the drop into the
+ * kernel where it is invisible.
+ *
+ * <p>{@code tail} is written only by the producer and {@code head} only by the
+ * consumer; each side caches the other's counter and re-reads it only when the
+ * cached value says the ring is full (or empty).
+ */
+final class SegmentRing {
+
+  private final SegmentSummary[] slots;
+  private final int mask;
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong overflows = new AtomicLong();
+
+  // Producer-local view of head.
+  private long headCache;
+
+  /** @param capacity slot count; rounded up to a power of two. */
+  SegmentRing(int capacity) {
+    this(capacity, 0);
+  }
+
+  /**
+   * @param capacity slot count; rounded up to a power of two.
+   * @param payloadCapacity payload bytes each slot keeps; 0 for headers only.
+   */
+  SegmentRing(int capacity, int payloadCapacity) {
+    if (capacity < 1 || capacity > 1 << 24) {
+      throw new IllegalArgumentException("capacity must be in [1, " + (1 << 24) + "]");
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.slots = new SegmentSummary[size];
+    for (int i = 0; i < size; i++) {
+      slots[i] = new SegmentSummary(payloadCapacity);
+    }
+    this.mask = size - 1;
+  }
+
+  /**
+   * Copies the decoded segment into the next free slot. Producer thread only.
+   *
+   * @return {@code false} if the ring was full and the segment was dropped.
+   */
+  boolean offer(TcpPacketDecoder segment, long micros) {
+    long t = tail.getPlain();
+    if (t - headCache >= slots.length) {
+      headCache = head.getAcquire();
+      if (t - headCache >= slots.length) {
+        overflows.setRelease(overflows.getPlain() + 1);
+        return false;
+      }
+    }
+    slots[(int) (t & mask)].copyFrom(segment, micros);
+    tail.setRelease(t + 1);
+    return true;
+  }
+
+  /**
+   * Hands up to {@code max} published summaries to {@code sink} in order and
+   * frees their slots in one step afterwards. Consumer thread only.
+   *
+   * @return the number of summaries drained.
+   */
+  int drain(Consumer<SegmentSummary> sink, int max) {
+    long h = head.getPlain();
+    int n = (int) Math.min(tail.getAcquire() - h, max);
+    for (int i = 0; i < n; i++) {
+      sink.accept(slots[(int) ((h + i) & mask)]);
+    }
+    if (n > 0) {
+      head.setRelease(h + n);
+    }
+    return n;
+  }
+
+  /** Published but not yet drained summaries; approximate when read concurrently. */
+  int occupancy() {
+    long h = head.getAcquire();
+    return (int) Math.max(0L, tail.getAcquire() - h);
+  }
+
+  int capacity() {
+    return slots.length;
+  }
+
+  /** Segments accepted into the ring, since creation. */
+  long published() {
+    return tail.getAcquire();
+  }
+
+  /** Segments dropped because the ring was full, since creation. */
+  long overflows() {
+    return overflows.getAcquire();
+  }
+}
@@ -0,0 +1,194 @@
+package no.hux.ja4.capture;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-size copy of the TCP/IP header fields the handshake correlation needs,
+ * taken from a {@link TcpPacketDecoder} so it can outlive the captured frame.
+ *
+ * <p>Instances are preallocated as the slots of a {@link SegmentRing} and
+ * overwritten in place; they are never handed out beyond one
+ * {@link SegmentRing#drain} callback.
+ *
+ * <p>A summary can also keep the segment's first payload bytes, up to a
+ * capacity fixed at construction; passive fingerprinting needs them to
+ * reassemble ClientHellos. The binary form carries headers only.
+ */
+final class SegmentSummary {
+
+  /** Size of the fixed binary form written by {@link #writeTo}. */
+  static final int ENCODED_BYTES = 28 + TcpPacketDecoder.MAX_OPTION_KINDS;
+
+  private static final byte[] NO_PAYLOAD = new byte[0];
+
+  private final byte[] optionKinds = new byte[TcpPacketDecoder.MAX_OPTION_KINDS];
+  private final byte[] payload;
+
+  private long micros;
+  private int srcAddr;
+  private int dstAddr;
+  private int srcPort;
+  private int dstPort;
+  private int flags;
+  private int ttl;
+  private int window;
+  private int mss;
+  private int windowScale;
+  private int optionCount;
+  private int sequenceNumber;
+  private int payloadLength;
+  private int capturedPayload;
+
+  SegmentSummary() {
+    this(0);
+  }
+
+  /** @param payloadCapacity payload bytes kept per segment; 0 for headers only. */
+  SegmentSummary(int payloadCapacity) {
+    this.payload = payloadCapacity == 0 ? NO_PAYLOAD : new byte[payloadCapacity];
+  }
+
+  void copyFrom(TcpPacketDecoder d, long micros) {
+    this.micros = micros;
+    this.srcAddr = d.getSrcAddr();
+    this.dstAddr = d.getDstAddr();
+    this.srcPort = d.getSrcPort();
+    this.dstPort = d.getDstPort();
+    this.flags = d.getFlags();
+    this.ttl = d.getTtl();
+    // Only a SYN's window and options feed a fingerprint.
+    if (d.isSyn()) {
+      this.window = d.getWindow();
+      this.mss = d.getMss();
+      this.windowScale = d.getWindowScale();
+      this.optionCount = d.copyOptionKinds(optionKinds, 0);
+    }
+    if (payload.length > 0) {
+      this.sequenceNumber = d.getSequenceNumber();
+      this.payloadLength = d.getPayloadLength();
+      this.capturedPayload = d.copyPayload(payload, 0, payload.length);
+    }
+  }
+
+  long getMicros() {
+    return micros;
+  }
+
+  int getSrcAddr() {
+    return srcAddr;
+  }
+
+  int getDstAddr() {
+    return dstAddr;
+  }
+
+  int getSrcPort() {
+    return srcPort;
+  }
+
+  int getDstPort() {
+    return dstPort;
+  }
+
+  boolean isSyn() {
+    return (flags & TcpPacketDecoder.FLAG_SYN) != 0;
+  }
+
+  boolean isAck() {
+    return (flags & TcpPacketDecoder.FLAG_ACK) != 0;
+  }
+
+  boolean isFinOrRst() {
+    return (flags & (TcpPacketDecoder.FLAG_FIN | TcpPacketDecoder.FLAG_RST)) != 0;
+  }
+
+  int getTtl() {
+    return ttl;
+  }
+
+  /** Window of the SYN; undefined for other segments. */
+  int getWindow() {
+    return window;
+  }
+
+  /** MSS option of the SYN, or 0 if absent; undefined for other segments. */
+  int getMss() {
+    return mss;
+  }
+
+  /** Window Scale shift of the SYN, or 0 if absent; undefined for other segments. */
+  int getWindowScale() {
+    return windowScale;
+  }
+
+  /**
+   * Copies the SYN's option kinds into {@code dst} at {@code offset}; returns
+   * the number copied.
+   */
+  int copyOptionKinds(byte[] dst, int offset) {
+    System.arraycopy(optionKinds, 0, dst, offset, optionCount);
+    return optionCount;
+  }
+
+  /** Sequence number; only kept when the summary has payload capacity. */
+  int getSequenceNumber() {
+    return sequenceNumber;
+  }
+
+  /** Payload length per the IP header; only kept with payload capacity. */
+  int getPayloadLength() {
+    return payloadLength;
+  }
+
+  /**
+   * Payload bytes held in {@link #payload()}: at most the capacity, and fewer
+   * than {@link #getPayloadLength()} when the snaplen cut the segment.
+   */
+  int getCapturedPayload() {
+    return capturedPayload;
+  }
+
+  /** The payload area; valid up to {@link #getCapturedPayload()}. */
+  byte[] payload() {
+    return payload;
+  }
+
+  /**
+   * Writes the summary in a fixed binary layout at {@code offset}, using the
+   * buffer's byte order. Ports, window and MSS are unsigned 16-bit fields.
+   */
+  void writeTo(ByteBuffer buf, int offset) {
+    buf.putLong(offset, micros);
+    buf.putInt(offset + 8, srcAddr);
+    buf.putInt(offset + 12, dstAddr);
+    buf.putShort(offset + 16, (short) srcPort);
+    buf.putShort(offset + 18, (short) dstPort);
+    buf.put(offset + 20, (byte) flags);
+    buf.put(offset + 21, (byte) ttl);
+    buf.putShort(offset + 22, (short) window);
+    buf.putShort(offset + 24, (short) mss);
+    buf.put(offset + 26, (byte) windowScale);
+    buf.put(offset + 27, (byte) optionCount);
+    buf.put(offset + 28, optionKinds, 0, optionCount);
+  }
+
+  /**
+   * Reads a summary written by {@link #writeTo}. The option count is clamped,
+   * since the bytes may come from another process.
+   */
+  void readFrom(ByteBuffer buf, int offset) {
+    this.micros = buf.getLong(offset);
+    this.srcAddr = buf.getInt(offset + 8);
+    this.dstAddr = buf.getInt(offset + 12);
+    this.srcPort = Short.toUnsignedInt(buf.getShort(offset + 16));
+    this.dstPort = Short.toUnsignedInt(buf.getShort(offset + 18));
+    this.flags = Byte.toUnsignedInt(buf.get(offset + 20));
+    this.ttl = Byte.toUnsignedInt(buf.get(offset + 21));
+    this.window = Short.toUnsignedInt(buf.getShort(offset + 22));
+    this.mss = Short.toUnsignedInt(buf.getShort(offset + 24));
+    this.windowScale = Byte.toUnsignedInt(buf.get(offset + 26));
+    this.optionCount = Math.min(Byte.toUnsignedInt(buf.get(offset + 27)),
+        TcpPacketDecoder.MAX_OPTION_KINDS);
+    buf.get(offset + 28, optionKinds, 0, optionCount);
+  }
+}
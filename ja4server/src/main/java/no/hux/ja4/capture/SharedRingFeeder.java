@@ -0,0 +1,174 @@
+package no.hux.ja4.capture;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Server-side counterpart of the {@link CaptureSidecar}: follows the
+ * sidecar's {@link SharedSegmentRing} file and applies the summaries for this
+ * server's port to the local {@link TcpInfoStore}, so the server gets JA4T and
+ * real JA4L without capture privileges of its own.
+ *
+ * <p>One thread maps the file read-only, waits for it to appear if the
+ * sidecar is not up yet, and remaps it when a restarted sidecar replaces or
+ * resizes it. Segments of other ports (other servers sharing the sidecar) are
+ * skipped by the correlation.
+ */
+public final class SharedRingFeeder implements Runnable {
+
+  private static final int BATCH = SegmentCorrelator.BATCH;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+  private static final long RETRY_MILLIS = 1000L;
+  private static final long CHECK_INTERVAL_MILLIS = 10_000L;
+  /** The sidecar refreshes its heartbeat every second. */
+  private static final long STALE_HEARTBEAT_MILLIS = 30_000L;
+
+  private final Path path;
+  private final HandshakeCorrelator correlator;
+  private final Predicate<SegmentSummary> sink;
+  private final SegmentSummary scratch = new SegmentSummary();
+  private final Logger logger;
+
+  private volatile boolean running = true;
+  private volatile double ringFill;
+  private Thread thread;
+
+  private SharedSegmentRing ring;
+  private Object fileKey;
+  private long nextCheckMillis;
+  private long reportedLost;
+  private long reportedRefused;
+  private boolean warnedStale;
+
+  /**
+   * @param synRate new-client SYNs per second per source /24 that may claim
+   *        a store slot.
+   * @param synBurst SYNs a source /24 may send at once.
+   */
+  public SharedRingFeeder(Path path, int serverPort, int synRate, int synBurst,
+      TcpInfoStore store, Logger logger) {
+    this.path = path;
+    this.correlator = new HandshakeCorrelator(serverPort, store, synRate, synBurst);
+    this.sink = correlator::apply;
+    this.logger = logger;
+  }
+
+  public synchronized void start() {
+    if (thread != null) {
+      return;
+    }
+    thread = new Thread(this, "ja4-capture-feed");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  public synchronized void stop() {
+    running = false;
+    if (thread != null) {
+      thread.interrupt();
+      thread = null;
+    }
+  }
+
+  /** Client SYNs refused by the flood admission, since start. */
+  public long getSynRefused() {
+    return correlator.refusedCount();
+  }
+
+  /** Fraction of the ring published by the sidecar and not yet read here. */
+  public double getRingFill() {
+    return ringFill;
+  }
+
+  @Override
+  public void run() {
+    logger.log(Level.INFO, "Reading captured handshakes from {0}", path);
+    while (running) {
+      try {
+        if (ring == null && !attach()) {
+          LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(RETRY_MILLIS));
+          continue;
+        }
+        if (ring.poll(scratch, sink, BATCH) == 0) {
+          LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        ringFill = ring.backlog() / (double) ring.capacity();
+        long now = System.currentTimeMillis();
+        if (now >= nextCheckMillis) {
+          nextCheckMillis = now + CHECK_INTERVAL_MILLIS;
+          check(now);
+        }
+      } catch (RuntimeException ex) {
+        // Drop the mapping and start over rather than spin on a bad file.
+        logger.log(Level.WARNING, "Failed to read capture ring " + path, ex);
+        ring = null;
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(RETRY_MILLIS));
+      }
+    }
+  }
+
+  private boolean attach() {
+    try {
+      fileKey = fileKey();
+      ring = SharedSegmentRing.open(path);
+    } catch (NoSuchFileException ex) {
+      return false;
+    } catch (IOException ex) {
+      logger.log(Level.FINE, "Capture ring not ready: " + path, ex);
+      return false;
+    }
+    reportedLost = 0L;
+    warnedStale = false;
+    logger.log(Level.INFO, "Attached to capture ring {0} ({1} slots)",
+        new Object[] {path, ring.capacity()});
+    return true;
+  }
+
+  private Object fileKey() throws IOException {
+    return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+  }
+
+  private void check(long nowMillis) {
+    boolean replaced;
+    try {
+      replaced = !Objects.equals(fileKey, fileKey());
+    } catch (IOException ex) {
+      replaced = true;
+    }
+    if (replaced || ring.isStale()) {
+      logger.log(Level.INFO, "Capture ring {0} was replaced or resized; remapping", path);
+      ring = null;
+      return;
+    }
+    long lost = ring.lost();
+    if (lost != reportedLost) {
+      logger.log(Level.WARNING, "Lost {0} captured segment(s) in the last {1}s: the capture "
+          + "ring was overwritten before this server read them",
+          new Object[] {lost - reportedLost, CHECK_INTERVAL_MILLIS / 1000});
+      reportedLost = lost;
+    }
+    long refused = correlator.refusedCount();
+    if (refused != reportedRefused) {
+      logger.log(Level.WARNING, "SYN admission refused {0} handshake(s) in the last {1}s "
+          + "(SYN flood?)", new Object[] {refused - reportedRefused, CHECK_INTERVAL_MILLIS / 1000});
+      reportedRefused = refused;
+    }
+    boolean stale = nowMillis - ring.heartbeatMillis() > STALE_HEARTBEAT_MILLIS;
+    if (stale && !warnedStale) {
+      logger.log(Level.WARNING, "Capture sidecar writing {0} looks stopped; JA4T will be "
+          + "missing until it is back", path);
+    } else if (!stale && warnedStale) {
+      logger.log(Level.INFO, "Capture sidecar writing {0} is back", path);
+    }
+    warnedStale = stale;
+  }
+}
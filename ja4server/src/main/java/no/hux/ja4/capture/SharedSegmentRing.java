@@ -0,0 +1,297 @@
+package no.hux.ja4.capture;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+/**
+ * Memory-mapped ring file through which a {@link CaptureSidecar} broadcasts
+ * {@link SegmentSummary segment summaries} to any number of server processes
+ * on the same host.
+ *
+ * <p>There is one writer per file. It never waits for readers: slot
+ * {@code seq & (slots - 1)} is simply overwritten, and a reader that falls more
+ * than a ring behind skips ahead and counts the segments it lost. Every
+ * reader keeps its own position, so servers attach and detach freely.
+ *
+ * <p>Layout, in native byte order:
+ * <pre>
+ *   0  int  magic ("JA4R")      64  long cursor (segments published)
+ *   4  int  version
+ *   8  int  slot count          128 slots of {@value #SLOT_SIZE} bytes:
+ *  12  int  slot size                 0  long stamp (seq + 1 once written)
+ *  16  long writer instance id        8  summary ({@link SegmentSummary#writeTo})
+ *  24  long writer heartbeat (epoch millis)
+ * </pre>
+ *
+ * <p>A slot is written seqlock-style: the stamp is cleared, the summary
+ * written, then the stamp set to {@code seq + 1} and the cursor advanced, both
+ * with release stores. A reader accepts a slot only if the stamp reads
+ * {@code seq + 1} both before and after it copies the summary.
+ *
+ * <p>A restarted writer reuses the file in place with a new instance id and
+ * the cursor back at zero; readers notice and resynchronize. The file is
+ * never shrunk, since a mapping past the end of a file faults on access.
+ *
+ * <p>The default path sits in world-writable {@code /dev/shm}, so the writer
+ * never follows a symbolic link there and only takes over a regular file it
+ * owns that no one else can write. A new file is created {@code 0640}: the
+ * server reads the ring through the file's group. The file is reused rather
+ * than replaced so that attached readers see the restart.
+ */
+final class SharedSegmentRing {
+
+  static final int SLOT_SIZE = 128;
+  /** Keeps the mapping within the 2 GiB a single MappedByteBuffer can address. */
+  static final int MAX_SLOTS = 1 << 22;
+
+  private static final int MAGIC = 0x4A413452;
+  private static final int VERSION = 1;
+  private static final int SLOT_COUNT_OFFSET = 8;
+  private static final int SLOT_SIZE_OFFSET = 12;
+  private static final int INSTANCE_OFFSET = 16;
+  private static final int HEARTBEAT_OFFSET = 24;
+  private static final int CURSOR_OFFSET = 64;
+  private static final int HEADER_BYTES = 128;
+  private static final int STAMP_BYTES = 8;
+
+  private static final Set<PosixFilePermission> RING_PERMISSIONS =
+      PosixFilePermissions.fromString("rw-r-----");
+
+  private static final VarHandle LONGS =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  private final Path path;
+  private final MappedByteBuffer buf;
+  private final int slots;
+  private final int mask;
+
+  // Reader state; one reading thread per mapping.
+  private long instanceId;
+  private long next;
+  private long lost;
+
+  private SharedSegmentRing(Path path, MappedByteBuffer buf, int slots) {
+    this.path = path;
+    this.buf = buf;
+    this.slots = slots;
+    this.mask = slots - 1;
+  }
+
+  /**
+   * Creates (or takes over) the ring file for writing.
+   *
+   * @param slotCount slot count; rounded up to a power of two.
+   * @throws IOException if the path is a symbolic link, or an existing file is
+   *     not a regular file owned by this user and writable by it alone.
+   */
+  static SharedSegmentRing create(Path path, int slotCount) throws IOException {
+    if (slotCount < 1 || slotCount > MAX_SLOTS) {
+      throw new IllegalArgumentException("slotCount must be in [1, " + MAX_SLOTS + "]");
+    }
+    int size = Integer.highestOneBit(slotCount);
+    if (size < slotCount) {
+      size <<= 1;
+    }
+    long length = HEADER_BYTES + (long) size * SLOT_SIZE;
+    Set<OpenOption> options = Set.of(StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE, LinkOption.NOFOLLOW_LINKS);
+    boolean posix = path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    FileAttribute<?>[] attributes = posix
+        ? new FileAttribute<?>[] {PosixFilePermissions.asFileAttribute(RING_PERMISSIONS)}
+        : new FileAttribute<?>[0];
+    try (FileChannel channel = FileChannel.open(path, options, attributes)) {
+      if (posix) {
+        checkOwnership(path);
+      }
+      // Mapping past the end extends the file; a longer file is left as is.
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+      buf.order(ByteOrder.nativeOrder());
+      SharedSegmentRing ring = new SharedSegmentRing(path, buf, size);
+      ring.initHeader();
+      return ring;
+    }
+  }
+
+  /**
+   * Rejects a ring file that someone else could rewrite under the readers. The
+   * channel is already open without following links, so the path names the
+   * file being checked.
+   */
+  private static void checkOwnership(Path path) throws IOException {
+    PosixFileAttributes attrs =
+        Files.readAttributes(path, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    UserPrincipal self = path.getFileSystem().getUserPrincipalLookupService()
+        .lookupPrincipalByName(System.getProperty("user.name"));
+    Set<PosixFilePermission> perms = attrs.permissions();
+    if (!attrs.isRegularFile() || !attrs.owner().equals(self)
+        || perms.contains(PosixFilePermission.GROUP_WRITE)
+        || perms.contains(PosixFilePermission.OTHERS_WRITE)) {
+      throw new FileSystemException(path.toString(), null,
+          "Ring file must be a regular file owned by " + self.getName()
+              + " and writable by it alone");
+    }
+  }
+
+  /** Maps an existing ring file read-only, positioned at its current cursor. */
+  static SharedSegmentRing open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_BYTES) {
+        throw new IOException("Not a capture ring file (too short): " + path);
+      }
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+      header.order(ByteOrder.nativeOrder());
+      if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+          || header.getInt(SLOT_SIZE_OFFSET) != SLOT_SIZE) {
+        throw new IOException("Not a capture ring file (bad header): " + path);
+      }
+      int size = header.getInt(SLOT_COUNT_OFFSET);
+      long length = HEADER_BYTES + (long) size * SLOT_SIZE;
+      if (size < 1 || size > MAX_SLOTS || Integer.bitCount(size) != 1
+          || channel.size() < length) {
+        throw new IOException("Not a capture ring file (bad geometry): " + path);
+      }
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+      buf.order(ByteOrder.nativeOrder());
+      SharedSegmentRing ring = new SharedSegmentRing(path, buf, size);
+      ring.resync();
+      return ring;
+    }
+  }
+
+  private void initHeader() {
+    // Cursor first: a reader that still sees the old instance id then finds
+    // the cursor behind its position and resynchronizes either way.
+    LONGS.setRelease(buf, CURSOR_OFFSET, 0L);
+    buf.putInt(0, MAGIC);
+    buf.putInt(4, VERSION);
+    buf.putInt(SLOT_COUNT_OFFSET, slots);
+    buf.putInt(SLOT_SIZE_OFFSET, SLOT_SIZE);
+    heartbeat(System.currentTimeMillis());
+    long id;
+    do {
+      id = ThreadLocalRandom.current().nextLong();
+    } while (id == 0L);
+    LONGS.setRelease(buf, INSTANCE_OFFSET, id);
+  }
+
+  Path getPath() {
+    return path;
+  }
+
+  int capacity() {
+    return slots;
+  }
+
+  /**
+   * Appends one summary, overwriting the oldest slot. Synchronized because
+   * every correlation thread of the sidecar publishes into the one file.
+   */
+  synchronized void publish(SegmentSummary summary) {
+    long seq = (long) LONGS.getOpaque(buf, CURSOR_OFFSET);
+    int base = slotOffset(seq);
+    LONGS.setOpaque(buf, base, 0L);
+    VarHandle.storeStoreFence();
+    summary.writeTo(buf, base + STAMP_BYTES);
+    LONGS.setRelease(buf, base, seq + 1);
+    LONGS.setRelease(buf, CURSOR_OFFSET, seq + 1);
+  }
+
+  /** Writer liveness, checked by readers; see {@link #heartbeatMillis()}. */
+  void heartbeat(long epochMillis) {
+    LONGS.setRelease(buf, HEARTBEAT_OFFSET, epochMillis);
+  }
+
+  long heartbeatMillis() {
+    return (long) LONGS.getAcquire(buf, HEARTBEAT_OFFSET);
+  }
+
+  /** Segments the writer has published since it (re)started. */
+  long published() {
+    return (long) LONGS.getAcquire(buf, CURSOR_OFFSET);
+  }
+
+  /** Segments published but not yet polled, at most a ring's worth. Reader thread only. */
+  long backlog() {
+    return Math.min(Math.max(0L, published() - next), slots);
+  }
+
+  /**
+   * Whether a restarted writer laid the file out with a different slot count,
+   * so this mapping must be replaced by a fresh {@link #open}.
+   */
+  boolean isStale() {
+    return buf.getInt(SLOT_COUNT_OFFSET) != slots;
+  }
+
+  /**
+   * Copies up to {@code max} unread summaries into {@code scratch} one at a
+   * time and hands each to {@code sink}. Reader thread only.
+   *
+   * @return the number of summaries handed to the sink.
+   */
+  int poll(SegmentSummary scratch, Predicate<SegmentSummary> sink, int max) {
+    long id = (long) LONGS.getAcquire(buf, INSTANCE_OFFSET);
+    long cursor = (long) LONGS.getAcquire(buf, CURSOR_OFFSET);
+    if (id != instanceId || cursor < next) {
+      // The writer restarted; earlier positions mean nothing now.
+      instanceId = id;
+      next = cursor;
+      return 0;
+    }
+    if (cursor - next > slots) {
+      lost += cursor - next - slots;
+      next = cursor - slots;
+    }
+    int n = 0;
+    while (next < cursor && n < max) {
+      long seq = next++;
+      int base = slotOffset(seq);
+      if ((long) LONGS.getAcquire(buf, base) != seq + 1) {
+        lost++;
+        continue;
+      }
+      scratch.readFrom(buf, base + STAMP_BYTES);
+      VarHandle.loadLoadFence();
+      if ((long) LONGS.getOpaque(buf, base) != seq + 1) {
+        // Overwritten while copying.
+        lost++;
+        continue;
+      }
+      sink.test(scratch);
+      n++;
+    }
+    return n;
+  }
+
+  /** Segments this reader skipped because the writer lapped it. */
+  long lost() {
+    return lost;
+  }
+
+  private void resync() {
+    instanceId = (long) LONGS.getAcquire(buf, INSTANCE_OFFSET);
+    next = (long) LONGS.getAcquire(buf, CURSOR_OFFSET);
+  }
+
+  private int slotOffset(long seq) {
+    return HEADER_BYTES + (int) (seq & mask) * SLOT_SIZE;
+  }
+}
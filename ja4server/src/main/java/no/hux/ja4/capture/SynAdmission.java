@@ -0,0 +1,98 @@
+package no.hux.ja4.capture;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import no.hux.ja4.admission.TokenBucketTable;
+
+/**
+ * Decides which client SYNs may claim a slot in the {@link TcpInfoStore}, so
+ * a SYN flood cannot push real clients' handshakes out of the bounded store.
+ *
+ * <ul>
+ *   <li>Each source /24 draws from a token bucket ({@code --capture-syn-rate}
+ *       SYNs per second, default {@link #DEFAULT_RATE}, and bursts of
+ *       {@code --capture-syn-burst}, default {@link #DEFAULT_BURST}). Buckets
+ *       live in a fixed {@link TokenBucketTable}, where idle prefixes are
+ *       simply overwritten.</li>
+ *   <li>Sources that recently completed a handshake (their ACK was seen) are
+ *       remembered in a rotating Bloom filter and bypass the buckets.</li>
+ *   <li>Flows whose SYN was refused are remembered in a second, short-lived
+ *       filter. If such a flow's ACK shows up, the client is real: its source
+ *       is marked verified and its prefix gets a token back.</li>
+ * </ul>
+ *
+ * <p>Only captured SYNs are checked. A connection the server has accepted
+ * completed its handshake, so it is not spoofed, and claims its store entry
+ * at accept time without a token, as a verified source would.
+ *
+ * <p>All state is preallocated, so memory stays fixed and each SYN or ACK
+ * costs a constant amount of work however many sources a flood spoofs. The
+ * store additionally evicts half-open entries before completed ones.
+ *
+ * <p>Timestamps are capture timestamps in epoch microseconds. Safe for
+ * concurrent use by the correlation threads.
+ */
+final class SynAdmission {
+
+  static final int DEFAULT_RATE = 64;
+  static final int DEFAULT_BURST = 256;
+
+  private static final int BUCKETS = 1 << 14;
+  private static final int VERIFIED_BITS = 1 << 20;
+  private static final long VERIFIED_PERIOD_MICROS = TimeUnit.MINUTES.toMicros(5);
+  private static final int REFUSED_BITS = 1 << 20;
+  private static final long REFUSED_PERIOD_MICROS = TimeUnit.SECONDS.toMicros(10);
+
+  // Keyed by /24 prefix (source address >>> 8).
+  private final TokenBucketTable prefixBuckets;
+  private final RotatingBloomFilter verifiedSources =
+      new RotatingBloomFilter(VERIFIED_BITS, VERIFIED_PERIOD_MICROS);
+  private final RotatingBloomFilter refusedFlows =
+      new RotatingBloomFilter(REFUSED_BITS, REFUSED_PERIOD_MICROS);
+  private final LongAdder refused = new LongAdder();
+
+  SynAdmission() {
+    this(DEFAULT_RATE, DEFAULT_BURST);
+  }
+
+  SynAdmission(int ratePerSecond, int burst) {
+    this.prefixBuckets = new TokenBucketTable(BUCKETS, ratePerSecond, burst);
+  }
+
+  /**
+   * Called for a SYN whose flow has no store entry yet.
+   *
+   * @param flowKey the store key of the flow ({@link TcpInfoStore#key(int, int)}).
+   * @return whether the SYN may claim a store slot.
+   */
+  boolean admitSyn(int srcAddr, long flowKey, long micros) {
+    if (verifiedSources.mightContain(srcAddr, micros)
+        || prefixBuckets.tryAcquire(srcAddr >>> 8, micros)) {
+      return true;
+    }
+    refusedFlows.add(flowKey, micros);
+    refused.increment();
+    return false;
+  }
+
+  /** Called when a flow's handshake-completing ACK was recorded. */
+  void handshakeCompleted(int srcAddr, long micros) {
+    verifiedSources.add(srcAddr, micros);
+  }
+
+  /**
+   * Called for a client ACK with no store entry. If the flow's SYN was
+   * refused, the client has proven it is not spoofed.
+   */
+  void unmatchedAck(int srcAddr, long flowKey, long micros) {
+    if (refusedFlows.mightContain(flowKey, micros)) {
+      verifiedSources.add(srcAddr, micros);
+      prefixBuckets.credit(srcAddr >>> 8, micros);
+    }
+  }
+
+  /** SYNs refused since creation. */
+  long refusedCount() {
+    return refused.sum();
+  }
+}
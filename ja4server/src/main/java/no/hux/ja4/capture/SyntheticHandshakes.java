@@ -0,0 +1,281 @@
+package no.hux.ja4.capture;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * A synthetic capture of TCP handshakes to one server port, for replaying
+ * through the capture path without a live interface.
+ *
+ * <p>Every handshake is a client SYN, a server SYN/ACK and the client's ACK as
+ * Ethernet/IPv4/TCP frames, laid out back to back in one buffer at a fixed
+ * stride the way a capture ring holds them. Clients alternate between a Linux
+ * and a Windows SYN (options, window, TTL), so both JA4T shapes are exercised.
+ * The trace can be shaped like real capture:
+ *
+ * <ul>
+ *   <li><em>interleave</em>: how many handshakes are in progress at once; each
+ *       packet belongs to a random one of them. 1 replays them one by one.</li>
+ *   <li><em>loss</em>: share of packets the capture misses. Handshakes missing
+ *       any packet are not counted as correlatable.</li>
+ *   <li><em>reorder</em>: share of packets swapped with the next one, as
+ *       several capture queues deliver them.</li>
+ *   <li><em>flood</em>: spoofed SYNs from random sources that never complete,
+ *       per real handshake.</li>
+ * </ul>
+ *
+ * <p>{@link #label(int, int)} rewrites the top byte of a client address in
+ * place, so repeated passes over the same trace present new flows to the
+ * store rather than retransmissions of old ones.
+ */
+final class SyntheticHandshakes {
+
+  static final int SERVER_PORT = 8443;
+  /** Capture clock advance per packet. */
+  static final long PACKET_SPACING_MICROS = 1L;
+
+  private static final int STRIDE = 80;
+  /** Most packets whose frames fit in one array, short of the VM's array size limit. */
+  static final int MAX_PACKETS = (Integer.MAX_VALUE - 8) / STRIDE;
+  private static final int ETH = 14;
+  private static final int IP = 20;
+  private static final int SERVER_ADDR = 0xC0000201; // 192.0.2.1
+  private static final int SRC_MAC_TAIL = 0x01;
+  private static final int DST_MAC_TAIL = 0x02;
+
+  private static final int SYN = 0;
+  private static final int SYN_ACK = 1;
+  private static final int ACK = 2;
+
+  // MSS 1460, SACK permitted, timestamps, NOP, window scale 7.
+  private static final byte[] LINUX_SYN_OPTIONS = {2, 4, 0x05, (byte) 0xB4, 4, 2, 8, 10,
+      0, 0, 0, 1, 0, 0, 0, 0, 1, 3, 3, 7};
+  // MSS 1460, NOP, window scale 8, NOP, NOP, SACK permitted.
+  private static final byte[] WINDOWS_SYN_OPTIONS = {2, 4, 0x05, (byte) 0xB4, 1, 3, 3, 8,
+      1, 1, 4, 2};
+  private static final byte[] SYN_ACK_OPTIONS = LINUX_SYN_OPTIONS;
+
+  private final byte[] frames;
+  private final ByteBuffer buffer;
+  private final int[] lengths;
+  // Index into frames of the top byte of each packet's client address.
+  private final int[] labelPositions;
+  private final int packets;
+  private final int handshakes;
+  private final int correlatable;
+  private final int floodSyns;
+
+  /** Packets in a trace of {@code handshakes} with {@code flood} spoofed SYNs per handshake. */
+  static long packets(int handshakes, double flood) {
+    return handshakes * 3L + Math.round(handshakes * flood);
+  }
+
+  /**
+   * @param handshakes real handshakes in the trace.
+   * @param interleave handshakes in progress at once, at least 1.
+   * @param loss share of packets missing from the capture, 0 to 1.
+   * @param reorder share of packets swapped with their successor, 0 to 1.
+   * @param flood spoofed SYNs per real handshake, at least 0.
+   */
+  SyntheticHandshakes(int handshakes, int interleave, double loss, double reorder, double flood,
+      long seed) {
+    if (handshakes < 1 || handshakes > 1 << 24) {
+      throw new IllegalArgumentException("handshakes must be in [1, " + (1 << 24) + "]");
+    }
+    if (interleave < 1) {
+      throw new IllegalArgumentException("interleave must be >= 1");
+    }
+    if (!(loss >= 0 && loss <= 1) || !(reorder >= 0 && reorder <= 1)) {
+      throw new IllegalArgumentException("loss and reorder must be between 0 and 1");
+    }
+    if (!(flood >= 0) || handshakes * flood > 1 << 24) {
+      throw new IllegalArgumentException("flood must be >= 0 and yield at most "
+          + (1 << 24) + " SYNs");
+    }
+    long packets = packets(handshakes, flood);
+    if (packets > MAX_PACKETS) {
+      throw new IllegalArgumentException(packets + " packets exceed the trace limit of "
+          + MAX_PACKETS + "; lower handshakes or flood");
+    }
+    Random random = new Random(seed);
+    int floods = (int) Math.round(handshakes * flood);
+    int capacity = (int) packets;
+    this.frames = new byte[capacity * STRIDE];
+    this.buffer = ByteBuffer.wrap(frames);
+    this.lengths = new int[capacity];
+    this.labelPositions = new int[capacity];
+    this.handshakes = handshakes;
+
+    int[] active = new int[Math.min(interleave, handshakes)];
+    int[] stages = new int[active.length];
+    int[] ports = new int[handshakes];
+    int[] sequences = new int[handshakes];
+    boolean[] missed = new boolean[handshakes];
+    int activeCount = 0;
+    int nextFlow = 0;
+    int legitLeft = handshakes * 3;
+    int floodLeft = floods;
+    int count = 0;
+    while (legitLeft + floodLeft > 0) {
+      while (activeCount < active.length && nextFlow < handshakes) {
+        ports[nextFlow] = 32768 + random.nextInt(28232);
+        sequences[nextFlow] = random.nextInt();
+        stages[activeCount] = SYN;
+        active[activeCount++] = nextFlow++;
+      }
+      boolean lost = random.nextDouble() < loss;
+      if (random.nextInt(legitLeft + floodLeft) < floodLeft) {
+        floodLeft--;
+        if (!lost) {
+          writeFlood(count++, random);
+        }
+        continue;
+      }
+      legitLeft--;
+      int i = random.nextInt(activeCount);
+      int flow = active[i];
+      int stage = stages[i];
+      if (lost) {
+        missed[flow] = true;
+      } else {
+        writeHandshakePacket(count++, flow, stage, ports[flow], sequences[flow]);
+      }
+      if (stage == ACK) {
+        active[i] = active[--activeCount];
+        stages[i] = stages[activeCount];
+      } else {
+        stages[i] = stage + 1;
+      }
+    }
+    this.packets = count;
+    this.floodSyns = floods;
+    int complete = 0;
+    for (boolean m : missed) {
+      if (!m) {
+        complete++;
+      }
+    }
+    this.correlatable = complete;
+
+    byte[] scratch = new byte[STRIDE];
+    for (int p = 0; p + 1 < count; p++) {
+      if (random.nextDouble() < reorder) {
+        swap(p, p + 1, scratch);
+        p++;
+      }
+    }
+  }
+
+  /** Packets in the trace, after loss. */
+  int packets() {
+    return packets;
+  }
+
+  /** Real handshakes in the trace, including those with lost packets. */
+  int handshakes() {
+    return handshakes;
+  }
+
+  /** Handshakes whose three packets all made it into the trace. */
+  int correlatable() {
+    return correlatable;
+  }
+
+  /** Spoofed SYNs generated, before loss. */
+  int floodSyns() {
+    return floodSyns;
+  }
+
+  /** All frames; packet {@code i} starts at {@link #offset(int)}. */
+  ByteBuffer buffer() {
+    return buffer;
+  }
+
+  int offset(int packet) {
+    return packet * STRIDE;
+  }
+
+  int length(int packet) {
+    return lengths[packet];
+  }
+
+  /** Sets the top byte of packet {@code packet}'s client address. */
+  void label(int packet, int label) {
+    frames[labelPositions[packet]] = (byte) label;
+  }
+
+  private void writeHandshakePacket(int packet, int flow, int stage, int clientPort, int seq) {
+    // Spread clients over the low 24 bits (odd multiplier: a bijection), so
+    // consecutive handshakes come from different /24s like real visitors.
+    int client = (flow * 0x9E3779 + 0x5BD1E9) & 0xFFFFFF;
+    boolean windows = (flow & 1) != 0;
+    switch (stage) {
+      case SYN -> writeFrame(packet, client, SERVER_ADDR, clientPort, SERVER_PORT, seq, 0,
+          TcpPacketDecoder.FLAG_SYN, 64240, windows ? 128 : 64,
+          windows ? WINDOWS_SYN_OPTIONS : LINUX_SYN_OPTIONS, true);
+      case SYN_ACK -> writeFrame(packet, SERVER_ADDR, client, SERVER_PORT, clientPort,
+          ~seq, seq + 1, TcpPacketDecoder.FLAG_SYN | TcpPacketDecoder.FLAG_ACK, 65160, 64,
+          SYN_ACK_OPTIONS, false);
+      default -> writeFrame(packet, client, SERVER_ADDR, clientPort, SERVER_PORT, seq + 1,
+          ~seq + 1, TcpPacketDecoder.FLAG_ACK, 502, windows ? 128 : 64, new byte[0], true);
+    }
+  }
+
+  private void writeFlood(int packet, Random random) {
+    writeFrame(packet, random.nextInt() & 0xFFFFFF, SERVER_ADDR, 1024 + random.nextInt(64512),
+        SERVER_PORT, random.nextInt(), 0, TcpPacketDecoder.FLAG_SYN, 1024, 64 + random.nextInt(64),
+        new byte[] {2, 4, 0x05, (byte) 0xB4}, true);
+  }
+
+  private void writeFrame(int packet, int srcAddr, int dstAddr, int srcPort, int dstPort,
+      int seq, int ackNumber, int flags, int window, int ttl, byte[] options,
+      boolean fromClient) {
+    int base = offset(packet);
+    int ip = base + ETH;
+    int tcp = ip + IP;
+    int tcpLength = 20 + options.length;
+    frames[base + 5] = DST_MAC_TAIL;
+    frames[base + 11] = SRC_MAC_TAIL;
+    putShort(base + 12, 0x0800);
+    frames[ip] = 0x45;
+    putShort(ip + 2, IP + tcpLength);
+    putShort(ip + 4, packet);
+    putShort(ip + 6, 0x4000); // DF
+    frames[ip + 8] = (byte) ttl;
+    frames[ip + 9] = 6;
+    putInt(ip + 12, srcAddr);
+    putInt(ip + 16, dstAddr);
+    putShort(tcp, srcPort);
+    putShort(tcp + 2, dstPort);
+    putInt(tcp + 4, seq);
+    putInt(tcp + 8, ackNumber);
+    frames[tcp + 12] = (byte) ((tcpLength / 4) << 4);
+    frames[tcp + 13] = (byte) flags;
+    putShort(tcp + 14, window);
+    System.arraycopy(options, 0, frames, tcp + 20, options.length);
+    lengths[packet] = ETH + IP + tcpLength;
+    labelPositions[packet] = fromClient ? ip + 12 : ip + 16;
+  }
+
+  private void swap(int a, int b, byte[] scratch) {
+    System.arraycopy(frames, offset(a), scratch, 0, STRIDE);
+    System.arraycopy(frames, offset(b), frames, offset(a), STRIDE);
+    System.arraycopy(scratch, 0, frames, offset(b), STRIDE);
+    int length = lengths[a];
+    lengths[a] = lengths[b];
+    lengths[b] = length;
+    int position = labelPositions[a] - offset(a);
+    labelPositions[a] = labelPositions[b] - offset(b) + offset(a);
+    labelPositions[b] = position + offset(b);
+  }
+
+  private void putShort(int index, int value) {
+    frames[index] = (byte) (value >>> 8);
+    frames[index + 1] = (byte) value;
+  }
+
+  private void putInt(int index, int value) {
+    putShort(index, value >>> 16);
+    putShort(index + 2, value);
+  }
+}
@@ -1,30 +1,91 @@
 package no.hux.ja4.capture;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import no.hux.ja4.fingerprint.Ja4LatencyFingerprint;
+import no.hux.ja4.fingerprint.Ja4TcpFingerprint;
 
 /**
  * Short-lived store correlating captured TCP handshake data to Netty
- * connections by the client {@code ip:port} key.
+ * connections by the client IPv4 address and port.
  *
- * <p>Entries are written by the capture thread when a SYN is seen and consumed
+ * <p>Entries are written by the capture threads when a SYN is seen and consumed
  * by the request handler on the first HTTP request. They are evicted after a
  * short TTL (a handshake-to-request window is sub-second in practice) and the
- * map is size-capped so handshake floods from scanners cannot exhaust memory.
+ * table is size-capped so handshake floods from scanners cannot exhaust memory.
+ *
+ * <p>Keys are packed into a {@code long} ({@code ipv4 << 16 | port}, see
+ * {@link #key(int, int)}) so neither the capture threads nor the event loop
+ * build address strings. The table is set-associative: a key hashes to one
+ * bucket of {@value #WAYS} slots and lives in any slot of that bucket. Lookups
+ * scan the bucket with plain acquire reads and take no lock. Inserts and field
+ * updates lock a stripe covering the bucket; an insert fills a free slot or
+ * overwrites the bucket's least advanced, oldest entry, so a full table
+ * degrades to evicting half-open handshakes of the colliding bucket rather
+ * than growing or dropping handshakes that completed.
+ *
+ * <p>The table is a slab: every field lives in a preallocated primitive array
+ * indexed by slot, so recording a handshake allocates nothing and memory use
+ * is fixed at construction. JA4T and JA4L strings are formatted only when a
+ * request reads them. Callers hold a <em>handle</em> (slot plus generation)
+ * rather than a record; each reuse of a slot bumps its generation, and reads
+ * through an outdated handle return {@code null} instead of another client's
+ * data.
  */
 public final class TcpInfoStore {
 
   public static final int DEFAULT_MAX_ENTRIES = 100_000;
   public static final long DEFAULT_TTL_SECONDS = 10L;
 
-  private final Map<String, TcpHandshakeInfo> store;
+  /** Returned by {@link #key(InetSocketAddress)} for non-IPv4 addresses. */
+  public static final long NO_KEY = -1L;
+
+  /** Returned by {@link #get(long)} when the key is absent. */
+  public static final long NO_HANDLE = 0L;
+
+  static final int WAYS = 8;
+  private static final int LOCK_STRIPES = 256;
+  private static final int OPTION_STRIDE = TcpPacketDecoder.MAX_OPTION_KINDS;
+
+  private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+  private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+  // Generation per slot: odd while the slot is being (re)assigned, even and
+  // never 0 once it holds an entry, so (generation, slot) handles are never 0.
+  //
+  // Both counters below follow the same seqlock write protocol, under the
+  // slot's stripe lock: store the odd value, storeStoreFence so no field write
+  // moves above it, write the fields, then release-store the next even value.
+  // Readers acquire the counter, read the fields, loadLoadFence, and re-read it.
+  private final int[] generations;
+  // SYN field version per slot: odd while a SYN (re)writes the fields below,
+  // so a reader formatting JA4T or the client TTL detects a torn read the way
+  // it detects a reassigned slot.
+  private final int[] synVersions;
+  private final long[] keys;
+  private final long[] createdNanos;
+  private final long[] synMicros;
+  private final long[] synAckMicros;
+  private final long[] ackMicros;
+  private final byte[] clientTtls;
+  private final byte[] serverTtls;
+  private final char[] windows;
+  private final char[] mssValues;
+  private final byte[] windowScales;
+  private final byte[] optionCounts;
+  private final byte[] optionKinds;
+
+  private final Object[] locks;
+  private final int bucketMask;
   private final long ttlNanos;
-  private final int maxEntries;
   private final Logger logger;
   private final ScheduledExecutorService scheduler;
 
@@ -32,19 +93,41 @@ public final class TcpInfoStore {
     this(DEFAULT_TTL_SECONDS, DEFAULT_MAX_ENTRIES, logger);
   }
 
+  /**
+   * @param maxEntries capacity; rounded up to a power of two of at least one
+   *        bucket.
+   */
   public TcpInfoStore(long ttlSeconds, int maxEntries, Logger logger) {
     if (maxEntries < 1) {
       throw new IllegalArgumentException("maxEntries must be >= 1");
     }
+    if (maxEntries > 1 << 24) {
+      throw new IllegalArgumentException("maxEntries must be <= " + (1 << 24));
+    }
     this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(1L, ttlSeconds));
-    this.maxEntries = maxEntries;
     this.logger = logger;
-    this.store = new LinkedHashMap<>(16, 0.75f, false) {
-      @Override
-      protected boolean removeEldestEntry(Map.Entry<String, TcpHandshakeInfo> eldest) {
-        return size() > TcpInfoStore.this.maxEntries;
-      }
-    };
+    int buckets = ceilPowerOfTwo(Math.max(1, (maxEntries + WAYS - 1) / WAYS));
+    int capacity = buckets * WAYS;
+    this.generations = new int[capacity];
+    this.synVersions = new int[capacity];
+    this.keys = new long[capacity];
+    Arrays.fill(keys, NO_KEY);
+    this.createdNanos = new long[capacity];
+    this.synMicros = new long[capacity];
+    this.synAckMicros = new long[capacity];
+    this.ackMicros = new long[capacity];
+    this.clientTtls = new byte[capacity];
+    this.serverTtls = new byte[capacity];
+    this.windows = new char[capacity];
+    this.mssValues = new char[capacity];
+    this.windowScales = new byte[capacity];
+    this.optionCounts = new byte[capacity];
+    this.optionKinds = new byte[capacity * OPTION_STRIDE];
+    this.bucketMask = buckets - 1;
+    this.locks = new Object[Math.min(buckets, LOCK_STRIPES)];
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new Object();
+    }
     this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
       Thread thread = new Thread(r, "ja4-capture-cleanup");
       thread.setDaemon(true);
@@ -55,50 +138,355 @@ public final class TcpInfoStore {
         TimeUnit.SECONDS);
   }
 
-  public static String key(String ip, int port) {
-    return ip + ":" + port;
+  /** Packs a big-endian IPv4 address and a port into a store key. */
+  public static long key(int ipv4, int port) {
+    return (ipv4 & 0xFFFF_FFFFL) << 16 | (port & 0xFFFF);
+  }
+
+  /**
+   * Packs a socket address into a store key, or returns {@link #NO_KEY} when it
+   * is not IPv4 (capture only decodes IPv4).
+   */
+  public static long key(InetSocketAddress address) {
+    if (!(address.getAddress() instanceof Inet4Address v4)) {
+      return NO_KEY;
+    }
+    byte[] b = v4.getAddress();
+    int ip = (b[0] & 0xFF) << 24 | (b[1] & 0xFF) << 16 | (b[2] & 0xFF) << 8 | (b[3] & 0xFF);
+    return key(ip, address.getPort());
+  }
+
+  /**
+   * Returns the handle for {@code key}, claiming an empty slot when absent.
+   * Used by the capture threads to accumulate handshake observations and by
+   * the event loop to latch the entry at connect time.
+   */
+  public long getOrCreate(long key) {
+    int base = bucketBase(key);
+    long found = find(base, key);
+    if (found != NO_HANDLE) {
+      return found;
+    }
+    synchronized (lockFor(base)) {
+      // Another writer may have inserted the key since the unlocked scan.
+      found = find(base, key);
+      if (found != NO_HANDLE) {
+        return found;
+      }
+      // Free slot first; otherwise the least advanced handshake, oldest first,
+      // so half-open entries from a SYN flood go before completed ones.
+      int victim = base;
+      boolean occupied = true;
+      for (int i = base; i < base + WAYS && occupied; i++) {
+        if (keys[i] == NO_KEY) {
+          victim = i;
+          occupied = false;
+        } else {
+          int order = Integer.compare(retention(i), retention(victim));
+          if (order < 0 || order == 0 && createdNanos[i] - createdNanos[victim] < 0) {
+            victim = i;
+          }
+        }
+      }
+      return claim(victim, key);
+    }
+  }
+
+  /** Returns the handle for {@code key}, or {@link #NO_HANDLE} if absent. */
+  public long get(long key) {
+    return find(bucketBase(key), key);
+  }
+
+  /**
+   * Records the client SYN. A retransmitted SYN overwrites the earlier values,
+   * which are the same in practice; a reader racing the rewrite gets
+   * {@code null} or -1 rather than a mix of both.
+   */
+  void recordSyn(long handle, SegmentSummary syn) {
+    int slot = slotOf(handle);
+    synchronized (lockFor(slot)) {
+      if (generations[slot] != generationOf(handle)) {
+        return;
+      }
+      int version = synVersions[slot];
+      INTS.setOpaque(synVersions, slot, version + 1);
+      VarHandle.storeStoreFence();
+      clientTtls[slot] = (byte) syn.getTtl();
+      windows[slot] = (char) syn.getWindow();
+      mssValues[slot] = (char) syn.getMss();
+      windowScales[slot] = (byte) syn.getWindowScale();
+      optionCounts[slot] = (byte) syn.copyOptionKinds(optionKinds, slot * OPTION_STRIDE);
+      // Release: readers that see the timestamp also see the fields above.
+      LONGS.setRelease(synMicros, slot, syn.getMicros());
+      INTS.setRelease(synVersions, slot, version + 2);
+    }
+  }
+
+  /**
+   * Records the server SYN/ACK, unless one was already seen.
+   *
+   * @return whether the SYN/ACK was recorded.
+   */
+  boolean recordSynAck(long handle, int ttl, long micros) {
+    int slot = slotOf(handle);
+    synchronized (lockFor(slot)) {
+      if (generations[slot] != generationOf(handle) || synAckMicros[slot] != 0L) {
+        return false;
+      }
+      serverTtls[slot] = (byte) ttl;
+      LONGS.setRelease(synAckMicros, slot, micros);
+      return true;
+    }
   }
 
   /**
-   * Returns the handshake info for {@code ip:port}, creating an empty entry when
-   * absent. Used by the capture thread to accumulate handshake observations.
+   * Records the client's handshake-completing ACK, once a SYN/ACK was seen.
+   *
+   * @return whether the ACK was recorded.
    */
-  public TcpHandshakeInfo getOrCreate(String ip, int port) {
-    String k = key(ip, port);
-    synchronized (store) {
-      // Re-insert to move the entry to the tail (newest) so it survives
-      // eldest-entry eviction while the handshake is in progress.
-      TcpHandshakeInfo existing = store.remove(k);
-      if (existing == null) {
-        existing = new TcpHandshakeInfo(System.nanoTime());
+  boolean recordAck(long handle, long micros) {
+    int slot = slotOf(handle);
+    synchronized (lockFor(slot)) {
+      if (generations[slot] != generationOf(handle) || ackMicros[slot] != 0L
+          || synAckMicros[slot] == 0L) {
+        return false;
       }
-      store.put(k, existing);
-      return existing;
+      LONGS.setRelease(ackMicros, slot, micros);
+      return true;
+    }
+  }
+
+  /** Formats JA4T from the recorded SYN, or {@code null} if none was seen. */
+  public String ja4t(long handle) {
+    int slot = slotOf(handle);
+    int generation = generationOf(handle);
+    int version = (int) INTS.getAcquire(synVersions, slot);
+    if ((int) INTS.getAcquire(generations, slot) != generation || (version & 1) != 0
+        || (long) LONGS.getAcquire(synMicros, slot) == 0L) {
+      return null;
+    }
+    String ja4t = Ja4TcpFingerprint.compute(windows[slot], optionKinds, slot * OPTION_STRIDE,
+        optionCounts[slot], mssValues[slot], windowScales[slot] & 0xFF);
+    return validate(slot, generation, version) ? ja4t : null;
+  }
+
+  /**
+   * Formats the client-side JA4L-C ({@code <latency>_<ttl>}) once the client's
+   * handshake-completing ACK has been observed.
+   *
+   * <p>Latency is half of the (ACK - SYN/ACK) delta in microseconds, matching the
+   * FoxIO reference, paired with the TTL of the client's SYN. Returns {@code null}
+   * until both timestamps are available.
+   */
+  public String ja4lC(long handle) {
+    int slot = slotOf(handle);
+    int generation = generationOf(handle);
+    int version = (int) INTS.getAcquire(synVersions, slot);
+    if ((int) INTS.getAcquire(generations, slot) != generation || (version & 1) != 0) {
+      return null;
+    }
+    long ack = (long) LONGS.getAcquire(ackMicros, slot);
+    long synAck = (long) LONGS.getAcquire(synAckMicros, slot);
+    int ttl = clientTtls[slot] & 0xFF;
+    if (synAck == 0L || ack == 0L || !validate(slot, generation, version)) {
+      return null;
     }
+    return Ja4LatencyFingerprint.format(Math.max(0L, (ack - synAck) / 2L), ttl);
   }
 
-  /** Returns the handshake info for {@code ip:port}, or {@code null} if absent. */
-  public TcpHandshakeInfo get(String ip, int port) {
-    synchronized (store) {
-      return store.get(key(ip, port));
+  /**
+   * Formats the server-side JA4L-S ({@code <latency>_<ttl>}) once the server's
+   * SYN/ACK has been observed for an already-seen client SYN.
+   *
+   * <p>Latency is half of the (SYN/ACK - SYN) delta in microseconds, matching the
+   * FoxIO reference, paired with the TTL of the server's SYN/ACK. Returns
+   * {@code null} until both timestamps are available.
+   */
+  public String ja4lS(long handle) {
+    int slot = slotOf(handle);
+    int generation = generationOf(handle);
+    if ((int) INTS.getAcquire(generations, slot) != generation) {
+      return null;
+    }
+    long synAck = (long) LONGS.getAcquire(synAckMicros, slot);
+    long syn = (long) LONGS.getAcquire(synMicros, slot);
+    int ttl = serverTtls[slot] & 0xFF;
+    if (syn == 0L || synAck == 0L || !validate(slot, generation)) {
+      return null;
+    }
+    return Ja4LatencyFingerprint.format(Math.max(0L, (synAck - syn) / 2L), ttl);
+  }
+
+  /** Microseconds from the client's SYN to the server's SYN/ACK, or -1 until both are seen. */
+  public long synToSynAckMicros(long handle) {
+    int slot = slotOf(handle);
+    int generation = generationOf(handle);
+    if ((int) INTS.getAcquire(generations, slot) != generation) {
+      return -1L;
+    }
+    long syn = (long) LONGS.getAcquire(synMicros, slot);
+    long synAck = (long) LONGS.getAcquire(synAckMicros, slot);
+    if (syn == 0L || synAck == 0L || !validate(slot, generation)) {
+      return -1L;
+    }
+    return Math.max(0L, synAck - syn);
+  }
+
+  /** Microseconds from the server's SYN/ACK to the client's ACK, or -1 until both are seen. */
+  public long synAckToAckMicros(long handle) {
+    int slot = slotOf(handle);
+    int generation = generationOf(handle);
+    if ((int) INTS.getAcquire(generations, slot) != generation) {
+      return -1L;
+    }
+    long synAck = (long) LONGS.getAcquire(synAckMicros, slot);
+    long ack = (long) LONGS.getAcquire(ackMicros, slot);
+    if (synAck == 0L || ack == 0L || !validate(slot, generation)) {
+      return -1L;
+    }
+    return Math.max(0L, ack - synAck);
+  }
+
+  /** TTL of the client's SYN, or -1 if no SYN was recorded under this handle. */
+  public int clientTtl(long handle) {
+    int slot = slotOf(handle);
+    int generation = generationOf(handle);
+    int version = (int) INTS.getAcquire(synVersions, slot);
+    if ((int) INTS.getAcquire(generations, slot) != generation || (version & 1) != 0
+        || (long) LONGS.getAcquire(synMicros, slot) == 0L) {
+      return -1;
     }
+    int ttl = clientTtls[slot] & 0xFF;
+    return validate(slot, generation, version) ? ttl : -1;
   }
 
   public int size() {
-    synchronized (store) {
-      return store.size();
+    int size = 0;
+    for (int i = 0; i < keys.length; i++) {
+      if ((long) LONGS.getAcquire(keys, i) != NO_KEY) {
+        size++;
+      }
     }
+    return size;
   }
 
   public void shutdown() {
     scheduler.shutdownNow();
   }
 
+  private long find(int base, long key) {
+    for (int i = base; i < base + WAYS; i++) {
+      if ((long) LONGS.getAcquire(keys, i) != key) {
+        continue;
+      }
+      int generation = (int) INTS.getAcquire(generations, i);
+      if ((generation & 1) == 0 && (long) LONGS.getAcquire(keys, i) == key
+          && validate(i, generation)) {
+        return handle(generation, i);
+      }
+    }
+    return NO_HANDLE;
+  }
+
+  /**
+   * Eviction class of an occupied slot: 2 once the client's ACK was seen
+   * (spoofed sources never send it), 1 after the server's SYN/ACK, else 0.
+   * Caller holds the slot's stripe lock.
+   */
+  private int retention(int slot) {
+    if (ackMicros[slot] != 0L) {
+      return 2;
+    }
+    return synAckMicros[slot] != 0L ? 1 : 0;
+  }
+
+  /** Assigns {@code slot} to {@code key}; caller holds the slot's stripe lock. */
+  private long claim(int slot, long key) {
+    int generation = generations[slot];
+    INTS.setOpaque(generations, slot, generation + 1);
+    VarHandle.storeStoreFence();
+    synMicros[slot] = 0L;
+    synAckMicros[slot] = 0L;
+    ackMicros[slot] = 0L;
+    createdNanos[slot] = System.nanoTime();
+    LONGS.setRelease(keys, slot, key);
+    int next = generation + 2;
+    if (next == 0) {
+      next = 2;
+    }
+    INTS.setRelease(generations, slot, next);
+    return handle(next, slot);
+  }
+
+  /** Empties {@code slot}; caller holds the slot's stripe lock. */
+  private void release(int slot) {
+    int generation = generations[slot];
+    INTS.setOpaque(generations, slot, generation + 1);
+    VarHandle.storeStoreFence();
+    LONGS.setRelease(keys, slot, NO_KEY);
+    INTS.setRelease(generations, slot, generation + 2 == 0 ? 2 : generation + 2);
+  }
+
+  /** True if {@code slot} was not reassigned while the caller read it. */
+  private boolean validate(int slot, int generation) {
+    VarHandle.loadLoadFence();
+    return (int) INTS.getVolatile(generations, slot) == generation;
+  }
+
+  /**
+   * True if {@code slot} was neither reassigned nor had its SYN fields
+   * rewritten while the caller read them.
+   */
+  private boolean validate(int slot, int generation, int synVersion) {
+    VarHandle.loadLoadFence();
+    return (int) INTS.getVolatile(synVersions, slot) == synVersion
+        && (int) INTS.getVolatile(generations, slot) == generation;
+  }
+
+  private Object lockFor(int slot) {
+    return locks[(slot / WAYS) % locks.length];
+  }
+
+  private static long handle(int generation, int slot) {
+    return (long) generation << 32 | slot;
+  }
+
+  private static int slotOf(long handle) {
+    return (int) handle;
+  }
+
+  private static int generationOf(long handle) {
+    return (int) (handle >>> 32);
+  }
+
+  private int bucketBase(long key) {
+    // Murmur3 finalizer: consecutive client ports must not share a bucket.
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return ((int) h & bucketMask) * WAYS;
+  }
+
+  private static int ceilPowerOfTwo(int value) {
+    int high = Integer.highestOneBit(value);
+    return high == value ? value : high << 1;
+  }
+
   private void cleanup() {
     try {
       long cutoff = System.nanoTime() - ttlNanos;
-      synchronized (store) {
-        store.entrySet().removeIf(e -> e.getValue().getCreatedNanos() < cutoff);
+      for (int i = 0; i < keys.length; i++) {
+        if ((long) LONGS.getAcquire(keys, i) == NO_KEY) {
+          continue;
+        }
+        synchronized (lockFor(i)) {
+          if (keys[i] != NO_KEY && createdNanos[i] - cutoff < 0) {
+            release(i);
+          }
+        }
       }
     } catch (Exception ex) {
       logger.log(Level.WARNING, "Failed to clean up TCP handshake store", ex);
@@ -0,0 +1,363 @@
+package no.hux.ja4.capture;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocation-free decoder for captured IPv4/TCP frames.
+ *
+ * <p>Reads the link, IPv4 and TCP headers directly from the captured bytes by
+ * offset instead of dissecting them into a pcap4j object tree, so the capture
+ * thread pays no per-packet allocation for addresses, option lists or header
+ * objects. A decoder is reused for every frame and is therefore confined to a
+ * single thread; the accessors describe the most recently decoded frame.
+ *
+ * <p>Multi-byte fields are assembled byte by byte, so the decoder is
+ * independent of the {@link ByteBuffer}'s byte order and works equally on heap
+ * buffers wrapping libpcap copies and on direct buffers over a kernel ring.
+ */
+public final class TcpPacketDecoder {
+
+  /** libpcap {@code DLT_NULL}: 4-byte host-order address family (BSD/macOS loopback). */
+  public static final int LINK_NULL = 0;
+  /** libpcap {@code DLT_EN10MB}: Ethernet II, optionally 802.1Q/802.1ad tagged. */
+  public static final int LINK_ETHERNET = 1;
+  /** libpcap {@code DLT_RAW}: the frame starts at the IP header. */
+  public static final int LINK_RAW = 12;
+  /** libpcap {@code DLT_LOOP}: 4-byte network-order address family (OpenBSD loopback). */
+  public static final int LINK_LOOP = 108;
+  /** libpcap {@code DLT_LINUX_SLL}: Linux "cooked" capture (the {@code any} device). */
+  public static final int LINK_LINUX_SLL = 113;
+  /** libpcap {@code DLT_IPV4}: the frame starts at the IPv4 header. */
+  public static final int LINK_IPV4 = 228;
+  /** libpcap {@code DLT_LINUX_SLL2}: Linux "cooked" capture v2. */
+  public static final int LINK_LINUX_SLL2 = 276;
+
+  public static final int FLAG_FIN = 0x01;
+  public static final int FLAG_SYN = 0x02;
+  public static final int FLAG_RST = 0x04;
+  public static final int FLAG_PSH = 0x08;
+  public static final int FLAG_ACK = 0x10;
+
+  /** TCP options occupy at most 40 bytes, so at most 40 single-byte kinds. */
+  public static final int MAX_OPTION_KINDS = 40;
+
+  private static final int ETHERTYPE_IPV4 = 0x0800;
+  private static final int ETHERTYPE_VLAN = 0x8100;
+  private static final int ETHERTYPE_QINQ = 0x88A8;
+  private static final int AF_INET = 2;
+  private static final int IPPROTO_TCP = 6;
+
+  private static final int OPTION_EOL = 0;
+  private static final int OPTION_NOP = 1;
+  private static final int OPTION_MSS = 2;
+  private static final int OPTION_WINDOW_SCALE = 3;
+
+  private final int linkType;
+  private final byte[] optionKinds = new byte[MAX_OPTION_KINDS];
+  /** Wrapper of the last byte[] frame, kept while callers reuse the array. */
+  private ByteBuffer wrapped = ByteBuffer.allocate(0);
+
+  private int srcAddr;
+  private int dstAddr;
+  private int ttl;
+  private int srcPort;
+  private int dstPort;
+  private int sequenceNumber;
+  private int flags;
+  private int window;
+  private int mss;
+  private int windowScale;
+  private int optionCount;
+  private int payloadOffset;
+  private int payloadLength;
+  // The frame last decoded and the end of its captured bytes, for copyPayload.
+  private ByteBuffer frame;
+  private int capturedEnd;
+
+  public TcpPacketDecoder(int linkType) {
+    this.linkType = linkType;
+  }
+
+  public int getLinkType() {
+    return linkType;
+  }
+
+  /**
+   * Decodes a captured frame.
+   *
+   * @param frame buffer holding the frame; only absolute reads are used, so its
+   *        position and limit are left untouched.
+   * @param offset index of the first byte of the frame (the link header).
+   * @param length number of captured bytes of the frame.
+   * @return {@code true} if the frame is an unfragmented IPv4/TCP segment whose
+   *         headers were fully captured; {@code false} for anything else
+   *         (IPv6, non-TCP, fragments, truncated or malformed headers), in
+   *         which case the accessors are undefined.
+   */
+  public boolean decode(ByteBuffer frame, int offset, int length) {
+    int end = offset + length;
+    int ip = ipOffset(frame, offset, end);
+    if (ip < 0 || ip + 20 > end) {
+      return false;
+    }
+    int versionIhl = u8(frame, ip);
+    if ((versionIhl >>> 4) != 4) {
+      return false;
+    }
+    int ipHeaderLength = (versionIhl & 0x0F) * 4;
+    if (ipHeaderLength < 20 || u8(frame, ip + 9) != IPPROTO_TCP) {
+      return false;
+    }
+    // Only first fragments carry the TCP header; later fragments (non-zero
+    // offset) would be misread as one.
+    if ((u16(frame, ip + 6) & 0x1FFF) != 0) {
+      return false;
+    }
+    int tcp = ip + ipHeaderLength;
+    if (tcp + 20 > end) {
+      return false;
+    }
+    int tcpHeaderLength = (u8(frame, tcp + 12) >>> 4) * 4;
+    if (tcpHeaderLength < 20 || tcp + tcpHeaderLength > end) {
+      return false;
+    }
+
+    srcAddr = s32(frame, ip + 12);
+    dstAddr = s32(frame, ip + 16);
+    ttl = u8(frame, ip + 8);
+    srcPort = u16(frame, tcp);
+    dstPort = u16(frame, tcp + 2);
+    sequenceNumber = s32(frame, tcp + 4);
+    flags = u8(frame, tcp + 13);
+    window = u16(frame, tcp + 14);
+    decodeOptions(frame, tcp + 20, tcp + tcpHeaderLength);
+
+    // Payload length comes from the IP total length rather than the captured
+    // length, so it stays correct when the snaplen cut the payload short.
+    int totalLength = u16(frame, ip + 2);
+    payloadOffset = tcp + tcpHeaderLength;
+    payloadLength = Math.max(0, totalLength - ipHeaderLength - tcpHeaderLength);
+    this.frame = frame;
+    this.capturedEnd = end;
+    return true;
+  }
+
+  /**
+   * Decodes the first {@code length} bytes of {@code frame} in place. A caller
+   * that reads every frame into the same array gets no allocation per packet.
+   */
+  public boolean decode(byte[] frame, int length) {
+    if (wrapped.array() != frame) {
+      wrapped = ByteBuffer.wrap(frame);
+    }
+    return decode(wrapped, 0, length);
+  }
+
+  private int ipOffset(ByteBuffer frame, int offset, int end) {
+    switch (linkType) {
+    case LINK_ETHERNET -> {
+      int type = offset + 12;
+      if (type + 2 > end) {
+        return -1;
+      }
+      int etherType = u16(frame, type);
+      // Skip up to two VLAN tags (802.1ad outer + 802.1Q inner).
+      for (int i = 0; i < 2 && (etherType == ETHERTYPE_VLAN || etherType == ETHERTYPE_QINQ);
+          i++) {
+        type += 4;
+        if (type + 2 > end) {
+          return -1;
+        }
+        etherType = u16(frame, type);
+      }
+      return etherType == ETHERTYPE_IPV4 ? type + 2 : -1;
+    }
+    case LINK_NULL -> {
+      if (offset + 4 > end) {
+        return -1;
+      }
+      // Host byte order; accept either so captures read on another host work.
+      int family = s32(frame, offset);
+      return family == AF_INET || Integer.reverseBytes(family) == AF_INET ? offset + 4 : -1;
+    }
+    case LINK_LOOP -> {
+      if (offset + 4 > end) {
+        return -1;
+      }
+      return s32(frame, offset) == AF_INET ? offset + 4 : -1;
+    }
+    case LINK_LINUX_SLL -> {
+      if (offset + 16 > end) {
+        return -1;
+      }
+      return u16(frame, offset + 14) == ETHERTYPE_IPV4 ? offset + 16 : -1;
+    }
+    case LINK_LINUX_SLL2 -> {
+      if (offset + 20 > end) {
+        return -1;
+      }
+      return u16(frame, offset) == ETHERTYPE_IPV4 ? offset + 20 : -1;
+    }
+    case LINK_RAW, LINK_IPV4 -> {
+      return offset;
+    }
+    default -> {
+      return -1;
+    }
+    }
+  }
+
+  private void decodeOptions(ByteBuffer frame, int start, int end) {
+    optionCount = 0;
+    mss = 0;
+    windowScale = 0;
+    int index = start;
+    while (index < end && optionCount < MAX_OPTION_KINDS) {
+      int kind = u8(frame, index);
+      optionKinds[optionCount++] = (byte) kind;
+      // EOL padding bytes are single-byte kinds and are each reported, matching
+      // the FoxIO reference (e.g. macOS SYNs end in "...-4-0-0").
+      if (kind == OPTION_EOL || kind == OPTION_NOP) {
+        index++;
+        continue;
+      }
+      if (index + 1 >= end) {
+        return;
+      }
+      int optionLength = u8(frame, index + 1);
+      if (optionLength < 2 || index + optionLength > end) {
+        return;
+      }
+      if (kind == OPTION_MSS && optionLength == 4) {
+        mss = u16(frame, index + 2);
+      } else if (kind == OPTION_WINDOW_SCALE && optionLength == 3) {
+        windowScale = u8(frame, index + 2);
+      }
+      index += optionLength;
+    }
+  }
+
+  private static int u8(ByteBuffer buf, int index) {
+    return buf.get(index) & 0xFF;
+  }
+
+  private static int u16(ByteBuffer buf, int index) {
+    return ((buf.get(index) & 0xFF) << 8) | (buf.get(index + 1) & 0xFF);
+  }
+
+  private static int s32(ByteBuffer buf, int index) {
+    return ((buf.get(index) & 0xFF) << 24) | ((buf.get(index + 1) & 0xFF) << 16)
+        | ((buf.get(index + 2) & 0xFF) << 8) | (buf.get(index + 3) & 0xFF);
+  }
+
+  /** Source IPv4 address as a big-endian int (first octet in the high byte). */
+  public int getSrcAddr() {
+    return srcAddr;
+  }
+
+  /** Destination IPv4 address as a big-endian int (first octet in the high byte). */
+  public int getDstAddr() {
+    return dstAddr;
+  }
+
+  public int getTtl() {
+    return ttl;
+  }
+
+  public int getSrcPort() {
+    return srcPort;
+  }
+
+  public int getDstPort() {
+    return dstPort;
+  }
+
+  /** Raw 32-bit sequence number; compare with wrap-around arithmetic. */
+  public int getSequenceNumber() {
+    return sequenceNumber;
+  }
+
+  /** TCP flag bits (the low byte of the flags field); see the {@code FLAG_*} constants. */
+  public int getFlags() {
+    return flags;
+  }
+
+  public boolean isSyn() {
+    return (flags & FLAG_SYN) != 0;
+  }
+
+  public boolean isAck() {
+    return (flags & FLAG_ACK) != 0;
+  }
+
+  public int getWindow() {
+    return window;
+  }
+
+  /** MSS option value, or 0 if absent. */
+  public int getMss() {
+    return mss;
+  }
+
+  /** Window Scale shift count, or 0 if absent. */
+  public int getWindowScale() {
+    return windowScale;
+  }
+
+  public int getOptionCount() {
+    return optionCount;
+  }
+
+  /** Option kind at position {@code index} (0-based) in observed order. */
+  public int getOptionKind(int index) {
+    return optionKinds[index] & 0xFF;
+  }
+
+  /** Returns a fresh array of the observed option kinds (allocates). */
+  public int[] copyOptionKinds() {
+    int[] kinds = new int[optionCount];
+    for (int i = 0; i < optionCount; i++) {
+      kinds[i] = optionKinds[i] & 0xFF;
+    }
+    return kinds;
+  }
+
+  /**
+   * Copies the observed option kinds into {@code dst} at {@code offset}
+   * without allocating; {@code dst} needs {@link #MAX_OPTION_KINDS} bytes of
+   * room. Returns the number of kinds copied.
+   */
+  public int copyOptionKinds(byte[] dst, int offset) {
+    System.arraycopy(optionKinds, 0, dst, offset, optionCount);
+    return optionCount;
+  }
+
+  /** Index of the first TCP payload byte within the frame buffer. */
+  public int getPayloadOffset() {
+    return payloadOffset;
+  }
+
+  /** TCP payload length per the IP header (may exceed the captured bytes). */
+  public int getPayloadLength() {
+    return payloadLength;
+  }
+
+  /**
+   * Copies up to {@code max} captured payload bytes into {@code dst}. Only
+   * valid while the decoded frame's buffer is; a snaplen may have cut the
+   * payload shorter than {@link #getPayloadLength()}.
+   *
+   * @return the number of bytes copied.
+   */
+  public int copyPayload(byte[] dst, int offset, int max) {
+    int n = Math.max(0, Math.min(Math.min(payloadLength, capturedEnd - payloadOffset), max));
+    frame.get(payloadOffset, dst, offset, n);
+    return n;
+  }
+
+  /** Formats a big-endian IPv4 address int as dotted-quad text. */
+  public static String formatIpv4(int addr) {
+    return ((addr >>> 24) & 0xFF) + "." + ((addr >>> 16) & 0xFF) + "." + ((addr >>> 8) & 0xFF)
+        + "." + (addr & 0xFF);
+  }
+}
@@ -2,32 +2,46 @@ package no.hux.ja4.fingerprint;
 
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpVersion;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 
 public final class Ja4HttpFingerprint {
-  
+
+  private static final String NO_HASH = "000000000000";
+
   private Ja4HttpFingerprint() {
   }
 
   public static String compute(FullHttpRequest request) {
+    HttpHeaders headers = request.headers();
+    List<String> cookies = headers.getAll("Cookie");
+    return compute(request.method().name(), version(request.protocolVersion()),
+        headerNames(headers), headers.get("Accept-Language"), cookieFields(cookies),
+        cookieValuesHash(cookies));
+  }
+
+  /**
+   * Computes JA4H from the parts of a request it depends on, so archived
+   * requests can be fingerprinted again without the request itself.
+   *
+   * @param headerNames every header name in arrival order, as sent.
+   * @param acceptLanguage the Accept-Language value, or {@code null}.
+   * @param cookieFields cookie field names in any order; see {@link #cookieFields}.
+   * @param cookieValuesHash see {@link #cookieValuesHash}.
+   */
+  public static String compute(String methodName, int version, List<String> headerNames,
+      String acceptLanguage, List<String> cookieFields, String cookieValuesHash) {
     // JA4H: <method><version><cookie><referer><header_count><lang>_<headers_hash>_<cookie_fields_hash>_<cookie_values_hash>
-    String method = request.method().name().toLowerCase(Locale.ROOT);
+    String method = methodName.toLowerCase(Locale.ROOT);
     method = method.length() >= 2 ? method.substring(0, 2) : method;
 
-    // HTTP version (10/11/20) and cookie/referer flags go into the a-part.
-    int version = request.protocolVersion().majorVersion() >= 2 ? 20
-        : request.protocolVersion().minorVersion() == 0 ? 10 : 11;
-
-    HttpHeaders headers = request.headers();
-    boolean hasCookie = !headers.getAll("Cookie").isEmpty();
-    boolean hasReferer = headers.contains("Referer");
-
-    List<String> headerNames = new ArrayList<>();
-    for (var entry : headers) {
-      String name = entry.getKey();
+    boolean hasCookie = false;
+    boolean hasReferer = false;
+    List<String> hashedNames = new ArrayList<>();
+    for (String name : headerNames) {
       if (name == null) {
         continue;
       }
@@ -35,56 +49,84 @@ public final class Ja4HttpFingerprint {
         continue;
       }
       String lower = name.toLowerCase(Locale.ROOT);
+      hasCookie |= "cookie".equals(lower);
+      hasReferer |= "referer".equals(lower);
       if (lower.startsWith("cookie") || "referer".equals(lower)) {
         continue;
       }
-      headerNames.add(name);
+      hashedNames.add(name);
     }
 
-    int headerCount = Math.min(headerNames.size(), 99);
+    int headerCount = Math.min(hashedNames.size(), 99);
     String headerLen = String.format("%02d", headerCount);
     // Hash of header names (excluding cookies and referer).
-    String headersHash = Ja4Utils.shaEncode(headerNames);
+    String headersHash = Ja4Utils.shaEncode(hashedNames);
 
     // Accept-Language is normalized to a 4-char token for the a-part.
     String lang = "0000";
-    String acceptLang = headers.get("Accept-Language");
-    if (acceptLang != null && !acceptLang.isBlank()) {
-      lang = httpLanguage(acceptLang);
+    if (acceptLanguage != null && !acceptLanguage.isBlank()) {
+      lang = httpLanguage(acceptLanguage);
     }
 
-    List<String> cookieFields = new ArrayList<>();
-    List<String> cookieValues = new ArrayList<>();
-    for (String cookieHeader : headers.getAll("Cookie")) {
-      String[] parts = cookieHeader.split(";");
-      for (String part : parts) {
+    // Hashes of cookie field names and values go into the c-part.
+    List<String> sortedFields = new ArrayList<>(cookieFields);
+    sortedFields.sort(Comparator.naturalOrder());
+    String cookieFieldsHash = sortedFields.isEmpty() ? NO_HASH
+        : Ja4Utils.shaEncode(sortedFields);
+
+    String cookieFlag = hasCookie ? "c" : "n";
+    String refererFlag = hasReferer ? "r" : "n";
+
+    return method + version + cookieFlag + refererFlag + headerLen + lang + "_" + headersHash + "_"
+        + cookieFieldsHash + "_" + cookieValuesHash;
+  }
+
+  /** HTTP version code of the a-part: 10, 11 or 20. */
+  public static int version(HttpVersion version) {
+    return version.majorVersion() >= 2 ? 20 : version.minorVersion() == 0 ? 10 : 11;
+  }
+
+  /** Every header name in arrival order. */
+  public static List<String> headerNames(HttpHeaders headers) {
+    List<String> names = new ArrayList<>(headers.size());
+    for (var entry : headers) {
+      names.add(entry.getKey());
+    }
+    return names;
+  }
+
+  /** Cookie field names of the given Cookie header values, in order. */
+  public static List<String> cookieFields(List<String> cookieHeaders) {
+    List<String> fields = new ArrayList<>();
+    for (String cookieHeader : cookieHeaders) {
+      for (String part : cookieHeader.split(";")) {
         String trimmed = part.trim();
         if (trimmed.isEmpty()) {
           continue;
         }
-        cookieValues.add(trimmed);
         int eqIdx = trimmed.indexOf('=');
         String field = eqIdx >= 0 ? trimmed.substring(0, eqIdx).trim() : trimmed;
         if (!field.isEmpty()) {
-          cookieFields.add(field);
+          fields.add(field);
         }
       }
     }
+    return fields;
+  }
 
-    cookieFields.sort(Comparator.naturalOrder());
-    cookieValues.sort(Comparator.naturalOrder());
-
-    // Hashes of cookie field names and values go into the c-part.
-    String cookieFieldsHash = cookieFields.isEmpty() ? "000000000000"
-        : Ja4Utils.shaEncode(cookieFields);
-    String cookieValuesHash = cookieValues.isEmpty() ? "000000000000"
-        : Ja4Utils.shaEncode(cookieValues);
-
-    String cookieFlag = hasCookie ? "c" : "n";
-    String refererFlag = hasReferer ? "r" : "n";
-
-    return method + version + cookieFlag + refererFlag + headerLen + lang + "_" + headersHash + "_"
-        + cookieFieldsHash + "_" + cookieValuesHash;
+  /** The d-part: hash of the sorted cookie name=value pairs. */
+  public static String cookieValuesHash(List<String> cookieHeaders) {
+    List<String> values = new ArrayList<>();
+    for (String cookieHeader : cookieHeaders) {
+      for (String part : cookieHeader.split(";")) {
+        String trimmed = part.trim();
+        if (!trimmed.isEmpty()) {
+          values.add(trimmed);
+        }
+      }
+    }
+    values.sort(Comparator.naturalOrder());
+    return values.isEmpty() ? NO_HASH : Ja4Utils.shaEncode(values);
   }
 
   private static String httpLanguage(String header) {
@@ -26,6 +26,11 @@ public final class Ja4LatencyFingerprint {
     long elapsedMicros = Math.max(0L, (firstRequest - accepted) / 1_000L);
     // JA4L defines latency as half of the observed client->server timing delta.
     long latency = elapsedMicros / 2L;
-    return latency + "_0";
+    return format(latency, 0);
+  }
+
+  /** Formats a JA4L value: {@code <latency>_<ttl>}, latency in microseconds. */
+  public static String format(long latencyMicros, int ttl) {
+    return latencyMicros + "_" + ttl;
   }
 }
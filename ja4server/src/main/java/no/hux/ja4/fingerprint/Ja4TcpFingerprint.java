@@ -1,7 +1,5 @@
 package no.hux.ja4.fingerprint;
 
-import java.util.StringJoiner;
-
 /**
  * Builds the JA4T (TCP client) fingerprint from values observed in a TCP SYN
  * packet.
@@ -40,17 +38,36 @@ public final class Ja4TcpFingerprint {
    * @return the JA4T string, never {@code null}.
    */
   public static String compute(int windowSize, int[] optionKinds, int mss, int windowScale) {
-    String options;
-    if (optionKinds == null || optionKinds.length == 0) {
-      options = "00";
+    int count = optionKinds == null ? 0 : optionKinds.length;
+    byte[] kinds = new byte[count];
+    for (int i = 0; i < count; i++) {
+      kinds[i] = (byte) optionKinds[i];
+    }
+    return compute(windowSize, kinds, 0, count, mss, windowScale);
+  }
+
+  /**
+   * Computes the JA4T fingerprint from option kinds stored as bytes, without
+   * intermediate arrays. The option section comes from a shared cache of
+   * known layouts, so a typical call builds one string.
+   *
+   * @param optionKinds buffer holding {@code count} option kinds at
+   *        {@code offset}, in observed order.
+   */
+  public static String compute(int windowSize, byte[] optionKinds, int offset, int count,
+      int mss, int windowScale) {
+    String options = TcpOptionLayoutCache.get(optionKinds, offset, count);
+    StringBuilder sb = new StringBuilder(options.length() + 20);
+    sb.append(windowSize).append('_').append(options).append('_');
+    if (mss < 10) {
+      sb.append('0');
+    }
+    sb.append(mss).append('_');
+    if (windowScale == 0) {
+      sb.append("00");
     } else {
-      StringJoiner joiner = new StringJoiner("-");
-      for (int kind : optionKinds) {
-        joiner.add(Integer.toString(kind));
-      }
-      options = joiner.toString();
+      sb.append(windowScale);
     }
-    String scale = windowScale == 0 ? "00" : Integer.toString(windowScale);
-    return windowSize + "_" + options + "_" + String.format("%02d", mss) + "_" + scale;
+    return sb.toString();
   }
 }
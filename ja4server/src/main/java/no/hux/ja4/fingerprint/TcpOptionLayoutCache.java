@@ -0,0 +1,87 @@
+package no.hux.ja4.fingerprint;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded cache of rendered JA4T option sections ({@code 2-4-8-1-3}), keyed
+ * by the option-kind sequence. Real traffic shows a few hundred distinct SYN
+ * option layouts, so almost every JA4T reuses a string rendered before.
+ *
+ * <p>Sequences of up to {@value #MAX_CACHED_KINDS} kinds are packed into two
+ * {@code long}s (eight kinds, then seven kinds plus the count) and looked up
+ * in a direct-mapped table of immutable entries; a colliding layout replaces
+ * the previous one. Longer sequences are rendered uncached. Lookups take no
+ * lock.
+ */
+final class TcpOptionLayoutCache {
+
+  static final int MAX_CACHED_KINDS = 15;
+  private static final int SIZE = 1024;
+
+  private static final AtomicReferenceArray<Entry> ENTRIES = new AtomicReferenceArray<>(SIZE);
+
+  private record Entry(long head, long tail, String rendered) {
+  }
+
+  private TcpOptionLayoutCache() {
+  }
+
+  /** Returns the option section for {@code count} kinds at {@code kinds[offset]}. */
+  static String get(byte[] kinds, int offset, int count) {
+    if (count == 0) {
+      return "00";
+    }
+    if (count > MAX_CACHED_KINDS) {
+      return render(kinds, offset, count);
+    }
+    long head = 0L;
+    long tail = count;
+    for (int i = 0; i < count; i++) {
+      long kind = kinds[offset + i] & 0xFFL;
+      if (i < 8) {
+        head |= kind << (i * 8);
+      } else {
+        tail |= kind << ((i - 7) * 8);
+      }
+    }
+    int index = index(head, tail);
+    Entry entry = ENTRIES.get(index);
+    if (entry != null && entry.head == head && entry.tail == tail) {
+      return entry.rendered;
+    }
+    // Render from the packed key so the entry matches it even if the source
+    // bytes change underneath us.
+    String rendered = render(head, tail, count);
+    ENTRIES.set(index, new Entry(head, tail, rendered));
+    return rendered;
+  }
+
+  private static String render(long head, long tail, int count) {
+    StringBuilder sb = new StringBuilder(count * 4);
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        sb.append('-');
+      }
+      long packed = i < 8 ? head >>> (i * 8) : tail >>> ((i - 7) * 8);
+      sb.append((int) (packed & 0xFF));
+    }
+    return sb.toString();
+  }
+
+  private static String render(byte[] kinds, int offset, int count) {
+    StringBuilder sb = new StringBuilder(count * 4);
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        sb.append('-');
+      }
+      sb.append(kinds[offset + i] & 0xFF);
+    }
+    return sb.toString();
+  }
+
+  private static int index(long head, long tail) {
+    long h = head * 0x9E3779B97F4A7C15L ^ tail * 0xC2B2AE3D27D4EB4FL;
+    h ^= h >>> 29;
+    return (int) h & (SIZE - 1);
+  }
+}
@@ -0,0 +1,160 @@
+package no.hux.ja4.loadgen;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import java.util.List;
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+
+/**
+ * One kind of client for the load generator: protocol versions, cipher order,
+ * named groups, signature schemes, ALPN and SNI of its ClientHello, and the
+ * header set of its pixel request, so the server sees a mix of JA4 and JA4H
+ * values. The JDK TLS stack decides the extension order itself, so profiles
+ * differ in extension content and count rather than order.
+ */
+record ClientProfile(String name, String[] protocols, List<String> ciphers, List<String> alpn,
+    String[] namedGroups, String[] signatureSchemes, boolean sni, List<String[]> headers) {
+
+  private static final List<String> TLS13 = List.of("TLS_AES_128_GCM_SHA256",
+      "TLS_AES_256_GCM_SHA384", "TLS_CHACHA20_POLY1305_SHA256");
+  private static final String[] MODERN_SIGNATURES = {"ecdsa_secp256r1_sha256",
+      "rsa_pss_rsae_sha256", "rsa_pkcs1_sha256", "ecdsa_secp384r1_sha384",
+      "rsa_pss_rsae_sha384", "rsa_pkcs1_sha384", "rsa_pss_rsae_sha512", "rsa_pkcs1_sha512"};
+
+  static final List<ClientProfile> ALL = List.of(
+      new ClientProfile("chrome", new String[] {"TLSv1.3", "TLSv1.2"},
+          concat(TLS13, "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256",
+              "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256", "TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384",
+              "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384",
+              "TLS_ECDHE_ECDSA_WITH_CHACHA20_POLY1305_SHA256",
+              "TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256", "TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA",
+              "TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA"),
+          List.of("h2", "http/1.1"), new String[] {"x25519", "secp256r1", "secp384r1"},
+          MODERN_SIGNATURES, true,
+          List.of(header("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) "
+              + "AppleWebKit/537.36 (KHTML, like Gecko) Chrome/131.0.0.0 Safari/537.36"),
+              header("sec-ch-ua-mobile", "?0"), header("Accept", "image/avif,image/webp,*/*"),
+              header("Sec-Fetch-Site", "cross-site"), header("Sec-Fetch-Mode", "no-cors"),
+              header("Sec-Fetch-Dest", "image"), header("Referer", "https://www.example.com/"),
+              header("Accept-Encoding", "gzip, deflate, br, zstd"),
+              header("Accept-Language", "en-US,en;q=0.9"))),
+      new ClientProfile("firefox", new String[] {"TLSv1.3", "TLSv1.2"},
+          concat(List.of("TLS_AES_128_GCM_SHA256", "TLS_CHACHA20_POLY1305_SHA256",
+              "TLS_AES_256_GCM_SHA384"), "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256",
+              "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256",
+              "TLS_ECDHE_ECDSA_WITH_CHACHA20_POLY1305_SHA256",
+              "TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256",
+              "TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384", "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384",
+              "TLS_ECDHE_ECDSA_WITH_AES_256_CBC_SHA", "TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA"),
+          List.of("h2", "http/1.1"),
+          new String[] {"x25519", "secp256r1", "secp384r1", "secp521r1", "ffdhe2048",
+              "ffdhe3072"},
+          new String[] {"ecdsa_secp256r1_sha256", "ecdsa_secp384r1_sha384",
+              "ecdsa_secp521r1_sha512", "rsa_pss_rsae_sha256", "rsa_pss_rsae_sha384",
+              "rsa_pss_rsae_sha512", "rsa_pkcs1_sha256", "rsa_pkcs1_sha384", "rsa_pkcs1_sha512",
+              "ecdsa_sha1", "rsa_pkcs1_sha1"},
+          true,
+          List.of(header("User-Agent", "Mozilla/5.0 (X11; Linux x86_64; rv:133.0) "
+              + "Gecko/20100101 Firefox/133.0"), header("Accept", "image/avif,image/webp,*/*"),
+              header("Accept-Language", "nb-NO,nb;q=0.9,en;q=0.5"),
+              header("Accept-Encoding", "gzip, deflate, br, zstd"),
+              header("Referer", "https://www.example.com/"), header("Sec-Fetch-Dest", "image"),
+              header("Sec-Fetch-Mode", "no-cors"), header("Sec-Fetch-Site", "cross-site"))),
+      new ClientProfile("curl", new String[] {"TLSv1.3", "TLSv1.2"},
+          concat(List.of("TLS_AES_256_GCM_SHA384", "TLS_CHACHA20_POLY1305_SHA256",
+              "TLS_AES_128_GCM_SHA256"), "TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384",
+              "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384",
+              "TLS_ECDHE_ECDSA_WITH_CHACHA20_POLY1305_SHA256",
+              "TLS_ECDHE_RSA_WITH_CHACHA20_POLY1305_SHA256",
+              "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256", "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256",
+              "TLS_ECDHE_ECDSA_WITH_AES_256_CBC_SHA384", "TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA384",
+              "TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA256", "TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA256",
+              "TLS_EMPTY_RENEGOTIATION_INFO_SCSV"),
+          List.of("http/1.1"), new String[] {"x25519", "secp256r1", "x448", "secp521r1",
+              "secp384r1"},
+          MODERN_SIGNATURES, true,
+          List.of(header("User-Agent", "curl/8.10.1"), header("Accept", "*/*"))),
+      new ClientProfile("tls12-bot", new String[] {"TLSv1.2"},
+          List.of("TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA", "TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA",
+              "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256", "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256",
+              "TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA", "TLS_ECDHE_ECDSA_WITH_AES_256_CBC_SHA"),
+          List.of(), new String[] {"secp256r1", "secp384r1"},
+          new String[] {"rsa_pkcs1_sha256", "ecdsa_secp256r1_sha256", "rsa_pkcs1_sha1",
+              "ecdsa_sha1"},
+          false,
+          List.of(header("User-Agent", "python-requests/2.32.3"),
+              header("Accept-Encoding", "gzip, deflate"), header("Accept", "*/*"))),
+      new ClientProfile("tls13-minimal", new String[] {"TLSv1.3"},
+          List.of("TLS_AES_128_GCM_SHA256"), List.of(), new String[] {"x25519"},
+          new String[] {"ecdsa_secp256r1_sha256", "rsa_pss_rsae_sha256"}, false,
+          List.<String[]>of(header("User-Agent", "Go-http-client/1.1"))));
+
+  static ClientProfile named(String name) {
+    for (ClientProfile profile : ALL) {
+      if (profile.name.equals(name)) {
+        return profile;
+      }
+    }
+    throw new IllegalArgumentException("Unknown client profile: " + name);
+  }
+
+  SslContext newContext() throws SSLException {
+    SslContextBuilder builder = SslContextBuilder.forClient().sslProvider(SslProvider.JDK)
+        .trustManager(InsecureTrustManagerFactory.INSTANCE).protocols(protocols)
+        .ciphers(ciphers, SupportedCipherSuiteFilter.INSTANCE);
+    if (!alpn.isEmpty()) {
+      builder.applicationProtocolConfig(new ApplicationProtocolConfig(
+          ApplicationProtocolConfig.Protocol.ALPN,
+          ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+          ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT, alpn));
+    }
+    return builder.build();
+  }
+
+  SslHandler newHandler(SslContext context, ByteBufAllocator alloc, String serverName) {
+    SslHandler handler = context.newHandler(alloc);
+    SSLEngine engine = handler.engine();
+    SSLParameters params = engine.getSSLParameters();
+    params.setNamedGroups(namedGroups);
+    params.setSignatureSchemes(signatureSchemes);
+    if (sni && serverName != null) {
+      params.setServerNames(List.of(new SNIHostName(serverName)));
+    }
+    engine.setSSLParameters(params);
+    return handler;
+  }
+
+  FullHttpRequest newRequest(String host, String uri) {
+    FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET,
+        uri);
+    request.headers().set("Host", host);
+    for (String[] header : headers) {
+      request.headers().add(header[0], header[1]);
+    }
+    request.headers().set("Connection", "close");
+    return request;
+  }
+
+  private static String[] header(String name, String value) {
+    return new String[] {name, value};
+  }
+
+  private static List<String> concat(List<String> head, String... tail) {
+    String[] all = head.toArray(new String[head.size() + tail.length]);
+    System.arraycopy(tail, 0, all, head.size(), tail.length);
+    return List.of(all);
+  }
+}
@@ -0,0 +1,53 @@
+package no.hux.ja4.loadgen;
+
+import java.util.concurrent.atomic.AtomicLong;
+import no.hux.ja4.metrics.Histogram;
+
+/**
+ * Latency histogram of one load generator phase: a {@link Histogram} with 64
+ * linear sub-buckets per power of two, so any recorded value is reported
+ * within 1.6% of its true value, plus the exact maximum. Recording is
+ * lock-free and safe from any thread.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 6;
+
+  private final Histogram histogram = new Histogram(SUB_BUCKET_BITS);
+  private final AtomicLong max = new AtomicLong();
+
+  /** Records one latency; negative values count as 0, huge ones as {@link Histogram#MAX_VALUE}. */
+  public void record(long nanos) {
+    histogram.record(nanos);
+    max.accumulateAndGet(Math.max(0, Math.min(nanos, Histogram.MAX_VALUE)), Math::max);
+  }
+
+  public long count() {
+    return histogram.snapshot().count();
+  }
+
+  public long max() {
+    return max.get();
+  }
+
+  public double mean() {
+    Histogram.Snapshot snapshot = histogram.snapshot();
+    long n = snapshot.count();
+    return n == 0 ? 0 : (double) snapshot.sum() / n;
+  }
+
+  /**
+   * @param percentile in {@code [0, 100]}.
+   * @return the highest value equivalent to the given percentile, or 0 if
+   *         nothing was recorded.
+   */
+  public long percentile(double percentile) {
+    return Math.min(histogram.snapshot().valueAtPercentile(percentile), max.get());
+  }
+
+  /** Adds the counts of {@code other} to this histogram. */
+  public void add(LatencyHistogram other) {
+    histogram.add(other.histogram);
+    max.accumulateAndGet(other.max.get(), Math::max);
+  }
+}
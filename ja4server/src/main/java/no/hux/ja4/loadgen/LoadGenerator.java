@@ -0,0 +1,446 @@
+package no.hux.ja4.loadgen;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultiThreadIoEventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioIoHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslHandshakeCompletionEvent;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.net.ssl.SSLException;
+
+/**
+ * Load generator ({@code ja4-server.jar loadgen ...}) for capacity planning:
+ * drives the whole server pipeline (TCP accept, ClientHello capture, TLS
+ * handshake, JA4H, store put) with fresh connections, and the lookup API on
+ * top, then reports throughput and latency percentiles per phase.
+ *
+ * <p>Connections are opened open-loop at a fixed rate: a 1 ms tick starts
+ * however many connections are due, whether or not earlier ones finished, so
+ * a slow server shows up as latency rather than as a lower offered rate. When
+ * {@code maxInFlight} connections are open, due connections are skipped and
+ * counted instead. Each connection picks a random {@link ClientProfile},
+ * loads the pixel for a random session ID and closes (as the server does
+ * after the pixel); a share of them is followed by a lookup of that session
+ * on a new connection.
+ *
+ * <p>The server certificate is not verified; this is meant for a local or
+ * test instance.
+ */
+public final class LoadGenerator {
+
+  /** Latency phases; TOTAL is connect start to pixel response. */
+  public enum Phase {
+    CONNECT, HANDSHAKE, PIXEL, LOOKUP, TOTAL
+  }
+
+  private static final int MAX_RESPONSE_BYTES = 64 * 1024;
+  private static final int TIMEOUT_SECONDS = 30;
+  private static final long DRAIN_NANOS = TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS + 5);
+  private static final String LOOKUP_USER_AGENT = "ja4-loadgen";
+
+  private final String host;
+  private final int port;
+  private final double rate;
+  private final long durationNanos;
+  private final int maxInFlight;
+  private final double lookupRatio;
+  private final int threads;
+  private final String authorization;
+  private final List<ClientProfile> profiles;
+  private final String serverName;
+  private final int reportIntervalSeconds;
+  private final Logger logger;
+
+  private final LatencyHistogram[] latencies = new LatencyHistogram[Phase.values().length];
+  private final LongAdder[] errors = new LongAdder[Phase.values().length];
+  private final LongAdder connections = new LongAdder();
+  private final LongAdder pixels = new LongAdder();
+  private final LongAdder lookups = new LongAdder();
+  private final LongAdder lookupMisses = new LongAdder();
+  private final LongAdder skipped = new LongAdder();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicLong started = new AtomicLong();
+
+  private SslContext[] contexts;
+  private EventLoopGroup group;
+  private long startNanos;
+
+  /** Totals of one run. */
+  public record Result(long connections, long pixelRequests, long lookups, long lookupMisses,
+      long errors, long skipped, long elapsedNanos) {
+
+    public double connectionsPerSecond() {
+      return connections / Math.max(1e-9, elapsedNanos / 1e9);
+    }
+
+    public double requestsPerSecond() {
+      return (pixelRequests + lookups) / Math.max(1e-9, elapsedNanos / 1e9);
+    }
+  }
+
+  /**
+   * @param rate pixel connections opened per second.
+   * @param lookupRatio share of pixel requests followed by a lookup, 0 to 1.
+   * @param userPassword {@code user:password} for the lookup API, or {@code null}.
+   * @param profileNames client profiles to mix; empty for all of them.
+   * @param serverName SNI sent by the profiles that send one, or {@code null}.
+   */
+  public LoadGenerator(String host, int port, double rate, int durationSeconds, int maxInFlight,
+      double lookupRatio, int threads, String userPassword, List<String> profileNames,
+      String serverName, int reportIntervalSeconds, Logger logger) {
+    if (rate <= 0) {
+      throw new IllegalArgumentException("rate must be > 0");
+    }
+    if (durationSeconds < 1) {
+      throw new IllegalArgumentException("duration must be >= 1 second");
+    }
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be >= 1");
+    }
+    if (lookupRatio < 0 || lookupRatio > 1) {
+      throw new IllegalArgumentException("lookupRatio must be between 0 and 1");
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be >= 1");
+    }
+    this.host = host;
+    this.port = port;
+    this.rate = rate;
+    this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+    this.maxInFlight = maxInFlight;
+    this.lookupRatio = lookupRatio;
+    this.threads = threads;
+    this.authorization = userPassword == null ? null : "Basic " + Base64.getEncoder()
+        .encodeToString(userPassword.getBytes(StandardCharsets.UTF_8));
+    List<ClientProfile> selected = new ArrayList<>();
+    for (String name : profileNames) {
+      selected.add(ClientProfile.named(name));
+    }
+    this.profiles = selected.isEmpty() ? ClientProfile.ALL : List.copyOf(selected);
+    this.serverName = serverName;
+    this.reportIntervalSeconds = reportIntervalSeconds;
+    this.logger = logger;
+    for (int i = 0; i < latencies.length; i++) {
+      latencies[i] = new LatencyHistogram();
+      errors[i] = new LongAdder();
+    }
+  }
+
+  public Result run() throws SSLException, InterruptedException {
+    contexts = new SslContext[profiles.size()];
+    for (int i = 0; i < contexts.length; i++) {
+      contexts[i] = profiles.get(i).newContext();
+    }
+    group = new MultiThreadIoEventLoopGroup(threads, NioIoHandler.newFactory());
+    logger.log(Level.INFO, "Load: {0} connection(s)/s to {1}:{2} for {3}s, lookup ratio {4}, "
+        + "profiles {5}", new Object[] {rate, host, String.valueOf(port),
+            durationNanos / 1_000_000_000L, lookupRatio, profileNames()});
+    startNanos = System.nanoTime();
+    ScheduledFuture<?> ticker = group.next().scheduleAtFixedRate(this::tick, 0, 1,
+        TimeUnit.MILLISECONDS);
+    ScheduledFuture<?> reporter = reportIntervalSeconds <= 0 ? null
+        : group.next().scheduleAtFixedRate(new Progress(), reportIntervalSeconds,
+            reportIntervalSeconds, TimeUnit.SECONDS);
+    long elapsed;
+    try {
+      TimeUnit.NANOSECONDS.sleep(durationNanos);
+      ticker.cancel(false);
+      elapsed = System.nanoTime() - startNanos;
+      long drainDeadline = System.nanoTime() + DRAIN_NANOS;
+      while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+        TimeUnit.MILLISECONDS.sleep(50);
+      }
+    } finally {
+      ticker.cancel(false);
+      if (reporter != null) {
+        reporter.cancel(false);
+      }
+      group.shutdownGracefully(0, 1, TimeUnit.SECONDS).awaitUninterruptibly();
+    }
+
+    long errorTotal = 0;
+    for (LongAdder e : errors) {
+      errorTotal += e.sum();
+    }
+    Result result = new Result(connections.sum(), pixels.sum(), lookups.sum(),
+        lookupMisses.sum(), errorTotal, skipped.sum(), elapsed);
+    logger.info(String.format(Locale.ROOT,
+        "Load finished: %.1f connection(s)/s, %.1f request(s)/s, %d error(s), %d skipped",
+        result.connectionsPerSecond(), result.requestsPerSecond(), result.errors(),
+        result.skipped()));
+    return result;
+  }
+
+  public LatencyHistogram latency(Phase phase) {
+    return latencies[phase.ordinal()];
+  }
+
+  public long errors(Phase phase) {
+    return errors[phase.ordinal()].sum();
+  }
+
+  /** Per-phase table of counts, errors and latency percentiles in milliseconds. */
+  public String formatReport(Result result) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format(Locale.ROOT,
+        "%d connections (%.1f/s), %d pixel + %d lookup requests (%.1f/s), %d lookup(s) not "
+            + "found, %d skipped at the in-flight limit%n%n",
+        result.connections(), result.connectionsPerSecond(), result.pixelRequests(),
+        result.lookups(), result.requestsPerSecond(), result.lookupMisses(), result.skipped()));
+    sb.append(String.format(Locale.ROOT, "%-10s %9s %7s %9s %9s %9s %9s %9s %9s%n", "phase",
+        "count", "errors", "mean", "p50", "p90", "p99", "p99.9", "max"));
+    for (Phase phase : Phase.values()) {
+      LatencyHistogram h = latency(phase);
+      sb.append(String.format(Locale.ROOT,
+          "%-10s %9d %7d %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+          phase.name().toLowerCase(Locale.ROOT), h.count(), errors(phase), h.mean() / 1e6,
+          h.percentile(50) / 1e6, h.percentile(90) / 1e6, h.percentile(99) / 1e6,
+          h.percentile(99.9) / 1e6, h.max() / 1e6));
+    }
+    sb.append("(latencies in ms)");
+    return sb.toString();
+  }
+
+  private List<String> profileNames() {
+    List<String> names = new ArrayList<>();
+    for (ClientProfile profile : profiles) {
+      names.add(profile.name());
+    }
+    return names;
+  }
+
+  private void tick() {
+    long elapsed = Math.min(System.nanoTime() - startNanos, durationNanos);
+    long due = (long) (elapsed / 1e9 * rate);
+    while (started.get() < due) {
+      started.incrementAndGet();
+      if (inFlight.get() >= maxInFlight) {
+        skipped.increment();
+        continue;
+      }
+      int profile = ThreadLocalRandom.current().nextInt(profiles.size());
+      open(profile, randomSessionId(), false);
+    }
+  }
+
+  private void open(int profile, String sessionId, boolean lookup) {
+    inFlight.incrementAndGet();
+    connections.increment();
+    Exchange exchange = new Exchange(profile, sessionId, lookup, System.nanoTime());
+    ChannelFuture connect = new Bootstrap().group(group).channel(NioSocketChannel.class)
+        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, TIMEOUT_SECONDS * 1000)
+        .option(ChannelOption.TCP_NODELAY, true)
+        .handler(new ChannelInitializer<SocketChannel>() {
+          @Override
+          protected void initChannel(SocketChannel ch) {
+            ch.pipeline().addLast("ssl", exchange.profile.newHandler(exchange.context, ch.alloc(),
+                serverName));
+            ch.pipeline().addLast("timeout", new ReadTimeoutHandler(TIMEOUT_SECONDS));
+            ch.pipeline().addLast("codec", new HttpClientCodec());
+            ch.pipeline().addLast("aggregator", new HttpObjectAggregator(MAX_RESPONSE_BYTES));
+            ch.pipeline().addLast("exchange", exchange);
+          }
+        }).connect(host, port);
+    connect.addListener(future -> {
+      if (!future.isSuccess()) {
+        errors[Phase.CONNECT.ordinal()].increment();
+        inFlight.decrementAndGet();
+      }
+    });
+  }
+
+  /** Version 4 UUID from a non-blocking source; session IDs need not be secret here. */
+  private static String randomSessionId() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long msb = (random.nextLong() & ~0xF000L) | 0x4000L;
+    long lsb = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+    return new UUID(msb, lsb).toString();
+  }
+
+  private void record(Phase phase, long nanos) {
+    latencies[phase.ordinal()].record(nanos);
+  }
+
+  /** One connection: handshake, one request, one response, close. */
+  private final class Exchange extends SimpleChannelInboundHandler<FullHttpResponse> {
+    private final int profileIndex;
+    private final ClientProfile profile;
+    private final SslContext context;
+    private final String sessionId;
+    private final boolean lookup;
+    private final long openedNanos;
+    private long connectedNanos;
+    private long requestNanos;
+    private boolean finished;
+
+    Exchange(int profileIndex, String sessionId, boolean lookup, long openedNanos) {
+      this.profileIndex = profileIndex;
+      this.profile = profiles.get(profileIndex);
+      this.context = contexts[profileIndex];
+      this.sessionId = sessionId;
+      this.lookup = lookup;
+      this.openedNanos = openedNanos;
+    }
+
+    private Phase requestPhase() {
+      return lookup ? Phase.LOOKUP : Phase.PIXEL;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+      connectedNanos = System.nanoTime();
+      record(Phase.CONNECT, connectedNanos - openedNanos);
+      super.channelActive(ctx);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+      if (evt instanceof SslHandshakeCompletionEvent handshake) {
+        if (!handshake.isSuccess()) {
+          fail(ctx, Phase.HANDSHAKE);
+          return;
+        }
+        long now = System.nanoTime();
+        record(Phase.HANDSHAKE, now - connectedNanos);
+        requestNanos = now;
+        ctx.writeAndFlush(lookup ? lookupRequest() : profile.newRequest(hostHeader(),
+            "/" + sessionId));
+        return;
+      }
+      super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse response) {
+      if (finished) {
+        return;
+      }
+      finished = true;
+      long now = System.nanoTime();
+      int status = response.status().code();
+      if (lookup) {
+        if (status == HttpResponseStatus.NOT_FOUND.code()) {
+          lookupMisses.increment();
+        } else if (status != HttpResponseStatus.OK.code()) {
+          errors[Phase.LOOKUP.ordinal()].increment();
+          ctx.close();
+          return;
+        }
+        lookups.increment();
+        record(Phase.LOOKUP, now - requestNanos);
+      } else {
+        if (status != HttpResponseStatus.OK.code()) {
+          errors[Phase.PIXEL.ordinal()].increment();
+          ctx.close();
+          return;
+        }
+        pixels.increment();
+        record(Phase.PIXEL, now - requestNanos);
+        record(Phase.TOTAL, now - openedNanos);
+      }
+      ctx.close();
+      if (!lookup && lookupRatio > 0 && ThreadLocalRandom.current().nextDouble() < lookupRatio) {
+        open(profileIndex, sessionId, true);
+      }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      fail(ctx, connectedNanos == 0 ? Phase.CONNECT
+          : requestNanos == 0 ? Phase.HANDSHAKE : requestPhase());
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      if (!finished) {
+        finished = true;
+        errors[(requestNanos == 0 ? Phase.HANDSHAKE : requestPhase()).ordinal()].increment();
+      }
+      inFlight.decrementAndGet();
+      super.channelInactive(ctx);
+    }
+
+    private void fail(ChannelHandlerContext ctx, Phase phase) {
+      if (!finished) {
+        finished = true;
+        errors[phase.ordinal()].increment();
+      }
+      ctx.close();
+    }
+
+    private FullHttpRequest lookupRequest() {
+      FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET,
+          "/api/lookup/" + sessionId);
+      request.headers().set("Host", hostHeader());
+      request.headers().set("User-Agent", LOOKUP_USER_AGENT);
+      request.headers().set("Accept", "application/json");
+      if (authorization != null) {
+        request.headers().set("Authorization", authorization);
+      }
+      request.headers().set("Connection", "close");
+      return request;
+    }
+  }
+
+  private String hostHeader() {
+    return (serverName != null ? serverName : host) + ":" + port;
+  }
+
+  /** Logs offered and completed rates since the last report. */
+  private final class Progress implements Runnable {
+    private long lastNanos = System.nanoTime();
+    private long lastConnections;
+    private long lastRequests;
+
+    @Override
+    public void run() {
+      long now = System.nanoTime();
+      long connectionsNow = connections.sum();
+      long requestsNow = pixels.sum() + lookups.sum();
+      double seconds = Math.max(1e-9, (now - lastNanos) / 1e9);
+      long errorTotal = 0;
+      for (LongAdder e : errors) {
+        errorTotal += e.sum();
+      }
+      logger.info(String.format(Locale.ROOT,
+          "%.0fs: %.1f connection(s)/s, %.1f request(s)/s, %d in flight, %d error(s), "
+              + "total p99 %.3f ms",
+          (now - startNanos) / 1e9, (connectionsNow - lastConnections) / seconds,
+          (requestsNow - lastRequests) / seconds, inFlight.get(), errorTotal,
+          latency(Phase.TOTAL).percentile(99) / 1e6));
+      lastNanos = now;
+      lastConnections = connectionsNow;
+      lastRequests = requestsNow;
+    }
+  }
+}
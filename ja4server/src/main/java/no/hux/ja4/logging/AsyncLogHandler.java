@@ -0,0 +1,272 @@
+package no.hux.ja4.logging;
+
+import io.netty.util.internal.PlatformDependent;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * A {@code java.util.logging} handler that writes on its own thread, so a
+ * handler logging on the event loop never waits for the console.
+ *
+ * <p>{@link #publish} rate-limits each message key, the logger name plus the
+ * unformatted message pattern, so callers pass variable parts as parameters:
+ * the first {@code perKeyPerSecond} records of a key in a second pass, and of
+ * the rest only every {@value #SAMPLE_EVERY}th. The next record of a key that
+ * passes carries how many were suppressed before it.
+ *
+ * <p>Keys live in a fixed table, each hashed to two adjacent slots. A new key
+ * takes a free slot or one idle for {@value #IDLE_SECONDS} seconds, or else
+ * shares the budget of the slot used least recently, so a stream of distinct
+ * messages can neither grow memory nor leave later keys without a budget.
+ *
+ * <p>Passed records go through a bounded lock-free queue to the writer
+ * thread; when the queue is full they are dropped and counted. The handler
+ * allocates nothing to suppress or drop a record of a known key, and never
+ * formats a message or stack trace on the caller's thread: that only happens
+ * on the writer thread.
+ *
+ * <p>Records are written as JSON lines (see {@link JsonLogFormatter}) or in
+ * {@link SimpleFormatter}'s text format.
+ */
+public final class AsyncLogHandler extends Handler {
+
+  public static final int DEFAULT_PER_KEY_PER_SECOND = 20;
+  static final int SAMPLE_EVERY = 100;
+  /** Key table size, a power of two. */
+  private static final int KEY_SLOTS = 1024;
+  /** Seconds without a record after which a key's slot may be reused. */
+  static final long IDLE_SECONDS = 60L;
+  private static final int QUEUE_CAPACITY = 8192;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+  private final boolean json;
+  private final int perKeyPerSecond;
+  private final Writer out;
+  private final Queue<Entry> queue = PlatformDependent.newFixedMpscQueue(QUEUE_CAPACITY);
+  private final AtomicReferenceArray<KeyBudget> budgets = new AtomicReferenceArray<>(KEY_SLOTS);
+  private final LongAdder suppressed = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder written = new LongAdder();
+  private final JsonLogFormatter jsonFormatter = new JsonLogFormatter();
+  private final SimpleFormatter textFormatter = new SimpleFormatter();
+  private final Thread writer;
+  private volatile boolean running = true;
+
+  /**
+   * @param json write JSON lines instead of text.
+   * @param perKeyPerSecond records of one key passed each second before
+   *        sampling starts; {@code 0} passes every record.
+   */
+  public AsyncLogHandler(OutputStream out, boolean json, int perKeyPerSecond) {
+    if (perKeyPerSecond < 0) {
+      throw new IllegalArgumentException("perKeyPerSecond must be >= 0");
+    }
+    this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    this.json = json;
+    this.perKeyPerSecond = perKeyPerSecond;
+    this.writer = new Thread(this::run, "ja4-log-writer");
+    this.writer.setDaemon(true);
+    this.writer.start();
+  }
+
+  @Override
+  public void publish(LogRecord record) {
+    if (!running || !isLoggable(record)) {
+      return;
+    }
+    int suppressedBefore = 0;
+    if (perKeyPerSecond > 0) {
+      long nowSecond = record.getMillis() / 1000L;
+      KeyBudget budget = budget(record.getLoggerName(), record.getMessage(), nowSecond);
+      suppressedBefore = budget.admit(nowSecond, perKeyPerSecond);
+      if (suppressedBefore < 0) {
+        suppressed.increment();
+        return;
+      }
+    }
+    if (!json) {
+      // The text format names the calling method, which is inferred lazily
+      // from the current stack: do it before the record changes threads.
+      record.getSourceClassName();
+    }
+    if (!queue.offer(new Entry(record, suppressedBefore))) {
+      dropped.increment();
+    }
+  }
+
+  /** Writes out queued records. */
+  @Override
+  public void flush() {
+    while (writer.isAlive() && !queue.isEmpty()) {
+      LockSupport.unpark(writer);
+      Thread.onSpinWait();
+    }
+  }
+
+  /** Writes out queued records and stops the writer. */
+  @Override
+  public void close() {
+    running = false;
+    LockSupport.unpark(writer);
+    try {
+      writer.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Records suppressed by the per-key rate limit, since creation. */
+  public long getSuppressed() {
+    return suppressed.sum();
+  }
+
+  /** Records dropped because the queue was full, since creation. */
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  public long getWritten() {
+    return written.sum();
+  }
+
+  /**
+   * The budget of the key ({@code loggerName}, {@code pattern}); allocates
+   * only when the key takes over a slot.
+   */
+  private KeyBudget budget(String loggerName, String pattern, long nowSecond) {
+    int h = Objects.hashCode(loggerName) * 31 + Objects.hashCode(pattern);
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    int first = h & (KEY_SLOTS - 1);
+    int second = (first + 1) & (KEY_SLOTS - 1);
+    while (true) {
+      KeyBudget a = budgets.get(first);
+      KeyBudget b = budgets.get(second);
+      if (a != null && a.matches(loggerName, pattern)) {
+        return a;
+      }
+      if (b != null && b.matches(loggerName, pattern)) {
+        return b;
+      }
+      int slot;
+      KeyBudget old;
+      if (a == null || a.idle(nowSecond)) {
+        slot = first;
+        old = a;
+      } else if (b == null || b.idle(nowSecond)) {
+        slot = second;
+        old = b;
+      } else {
+        // Both slots busy with other keys: share the one used least recently.
+        return Long.compare(a.lastSecond(), b.lastSecond()) <= 0 ? a : b;
+      }
+      KeyBudget budget = new KeyBudget(loggerName, pattern);
+      if (budgets.compareAndSet(slot, old, budget)) {
+        return budget;
+      }
+    }
+  }
+
+  private void run() {
+    while (running || !queue.isEmpty()) {
+      Entry entry = queue.poll();
+      if (entry == null) {
+        try {
+          out.flush();
+        } catch (IOException ex) {
+          reportError(null, ex, ErrorManager.FLUSH_FAILURE);
+        }
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+        continue;
+      }
+      try {
+        out.write(json ? jsonFormatter.format(entry.record, entry.suppressedBefore)
+            : text(entry));
+        written.increment();
+      } catch (Exception ex) {
+        reportError(null, ex, ErrorManager.WRITE_FAILURE);
+      }
+    }
+    try {
+      out.flush();
+    } catch (IOException ex) {
+      reportError(null, ex, ErrorManager.FLUSH_FAILURE);
+    }
+  }
+
+  private String text(Entry entry) {
+    String line = textFormatter.format(entry.record);
+    if (entry.suppressedBefore == 0) {
+      return line;
+    }
+    return line + "(" + entry.suppressedBefore + " similar message(s) suppressed before this)"
+        + System.lineSeparator();
+  }
+
+  private record Entry(LogRecord record, int suppressedBefore) {
+  }
+
+  /** Records of one key in the current second, and those suppressed since the last pass. */
+  private static final class KeyBudget {
+
+    private final String loggerName;
+    private final String pattern;
+    private final AtomicLong second = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicInteger suppressed = new AtomicInteger();
+
+    KeyBudget(String loggerName, String pattern) {
+      this.loggerName = loggerName;
+      this.pattern = pattern;
+    }
+
+    boolean matches(String loggerName, String pattern) {
+      return Objects.equals(this.pattern, pattern) && Objects.equals(this.loggerName, loggerName);
+    }
+
+    long lastSecond() {
+      return second.get();
+    }
+
+    /** No record for {@link #IDLE_SECONDS}; a slot taken but never used counts as busy. */
+    boolean idle(long nowSecond) {
+      long last = second.get();
+      return last != Long.MIN_VALUE && nowSecond - last >= IDLE_SECONDS;
+    }
+
+    /**
+     * @return {@code -1} to suppress the record, otherwise the number of
+     *         records suppressed since the last one passed.
+     */
+    int admit(long nowSecond, int perSecond) {
+      long current = second.get();
+      if (current != nowSecond && second.compareAndSet(current, nowSecond)) {
+        // Racing records of the old second may still count against the new one.
+        count.set(0);
+      }
+      int n = count.incrementAndGet();
+      if (n <= perSecond || (n - perSecond) % SAMPLE_EVERY == 0) {
+        return suppressed.getAndSet(0);
+      }
+      suppressed.incrementAndGet();
+      return -1;
+    }
+  }
+}
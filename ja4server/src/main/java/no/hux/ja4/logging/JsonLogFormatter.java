@@ -0,0 +1,56 @@
+package no.hux.ja4.logging;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.format.DateTimeFormatter;
+import java.util.logging.Formatter;
+import java.util.logging.LogRecord;
+import no.hux.ja4.Json;
+
+/**
+ * Formats a log record as one JSON object per line:
+ *
+ * <pre>
+ * {"time":"2026-01-01T12:00:00.123Z","level":"WARNING","logger":"no.hux.ja4.Main",
+ *  "thread":21,"message":"TLS handshake failed","suppressed":3,
+ *  "error":{"class":"javax.net.ssl.SSLHandshakeException","message":"...","stack":"..."}}
+ * </pre>
+ *
+ * <p>{@code suppressed} and {@code error} are only present when non-empty;
+ * {@code stack} is the full {@link Throwable#printStackTrace} text, causes
+ * included.
+ */
+final class JsonLogFormatter extends Formatter {
+
+  @Override
+  public String format(LogRecord record) {
+    return format(record, 0);
+  }
+
+  String format(LogRecord record, int suppressed) {
+    StringBuilder sb = new StringBuilder(256);
+    sb.append("{\"time\":\"").append(DateTimeFormatter.ISO_INSTANT.format(record.getInstant()))
+        .append("\",\"level\":\"").append(record.getLevel().getName())
+        .append("\",\"logger\":");
+    Json.appendString(sb, record.getLoggerName());
+    sb.append(",\"thread\":").append(record.getLongThreadID());
+    sb.append(",\"message\":");
+    Json.appendString(sb, formatMessage(record));
+    if (suppressed > 0) {
+      sb.append(",\"suppressed\":").append(suppressed);
+    }
+    Throwable thrown = record.getThrown();
+    if (thrown != null) {
+      StringWriter stack = new StringWriter();
+      thrown.printStackTrace(new PrintWriter(stack));
+      sb.append(",\"error\":{\"class\":");
+      Json.appendString(sb, thrown.getClass().getName());
+      sb.append(",\"message\":");
+      Json.appendString(sb, thrown.getMessage());
+      sb.append(",\"stack\":");
+      Json.appendString(sb, stack.toString());
+      sb.append('}');
+    }
+    return sb.append('}').append('\n').toString();
+  }
+}
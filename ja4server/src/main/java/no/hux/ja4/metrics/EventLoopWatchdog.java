@@ -0,0 +1,208 @@
+package no.hux.ja4.metrics;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.EventExecutorGroup;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Detects event loops that are blocked by the task they run.
+ *
+ * <p>A watchdog thread wakes every fifth of the threshold and hands each loop
+ * without a pending heartbeat a new one; the heartbeat records how long it
+ * waited in the loop's queue. A heartbeat that has waited longer than the
+ * threshold means the loop is stalled: while it is still stuck, the watchdog
+ * samples the loop thread's stack, logs it, and counts the stall against the
+ * first frame outside the JDK and Netty, which is usually the culprit.
+ *
+ * <p>Each loop has at most one heartbeat in flight, so a stalled loop's queue
+ * does not fill with them.
+ */
+public final class EventLoopWatchdog {
+
+  /** Distinct culprit frames counted; further ones count as {@code other}. */
+  private static final int MAX_FRAMES = 64;
+  private static final int LOGGED_FRAMES = 32;
+  private static final long LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+  private static final String[] FRAMEWORK_PREFIXES = {"java.", "javax.", "jdk.", "sun.",
+      "io.netty."};
+
+  private final List<Heartbeat> heartbeats = new ArrayList<>();
+  private final long thresholdNanos;
+  private final long intervalMillis;
+  private final Logger logger;
+  private final Histogram lag = new Histogram();
+  private final LongAdder stalls = new LongAdder();
+  private final Map<String, LongAdder> stallFrames = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService scheduler;
+
+  public EventLoopWatchdog(EventExecutorGroup group, Duration threshold, Logger logger) {
+    if (threshold.toMillis() < 5) {
+      throw new IllegalArgumentException("threshold must be >= 5 ms");
+    }
+    this.thresholdNanos = threshold.toNanos();
+    this.intervalMillis = threshold.toMillis() / 5;
+    this.logger = logger;
+    int index = 0;
+    for (EventExecutor loop : group) {
+      heartbeats.add(new Heartbeat(loop, index++));
+    }
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "ja4-loop-watchdog");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  public void start() {
+    scheduler.scheduleAtFixedRate(this::check, intervalMillis, intervalMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  public void shutdown() {
+    scheduler.shutdownNow();
+  }
+
+  /** Time heartbeats waited in the loops' queues. */
+  public Histogram lag() {
+    return lag;
+  }
+
+  /**
+   * The worst lag among the loops now: how long a pending heartbeat has
+   * waited so far, or else how long the last one waited.
+   */
+  public long currentLagNanos() {
+    long now = System.nanoTime();
+    long worst = 0L;
+    for (Heartbeat heartbeat : heartbeats) {
+      long lag = heartbeat.pending ? now - heartbeat.submittedAt : heartbeat.lastLag;
+      worst = Math.max(worst, lag);
+    }
+    return worst;
+  }
+
+  /** Heartbeats that waited longer than the threshold, since start. */
+  public long stalls() {
+    return stalls.sum();
+  }
+
+  /** Stalls by the culprit frame of their sampled stack, sorted by frame. */
+  public Map<String, Long> stallFrames() {
+    Map<String, Long> counts = new TreeMap<>();
+    stallFrames.forEach((frame, count) -> counts.put(frame, count.sum()));
+    return counts;
+  }
+
+  void check() {
+    try {
+      long now = System.nanoTime();
+      for (Heartbeat heartbeat : heartbeats) {
+        if (!heartbeat.pending) {
+          heartbeat.submittedAt = now;
+          heartbeat.sampled = false;
+          heartbeat.pending = true;
+          heartbeat.loop.execute(heartbeat);
+        } else if (!heartbeat.sampled && now - heartbeat.submittedAt >= thresholdNanos) {
+          heartbeat.sampled = true;
+          stalled(heartbeat, now);
+        }
+      }
+    } catch (RejectedExecutionException ex) {
+      // The loops are shutting down.
+      scheduler.shutdown();
+    } catch (Exception ex) {
+      logger.log(Level.WARNING, "Event loop watchdog check failed", ex);
+    }
+  }
+
+  private void stalled(Heartbeat heartbeat, long now) {
+    stalls.increment();
+    Thread thread = heartbeat.thread;
+    StackTraceElement[] stack = thread != null ? thread.getStackTrace()
+        : new StackTraceElement[0];
+    String frame = culprit(stack);
+    if (!stallFrames.containsKey(frame) && stallFrames.size() >= MAX_FRAMES) {
+      frame = "other";
+    }
+    stallFrames.computeIfAbsent(frame, f -> new LongAdder()).increment();
+
+    if (heartbeat.loggedAt != 0L && now - heartbeat.loggedAt < LOG_INTERVAL_NANOS) {
+      return;
+    }
+    heartbeat.loggedAt = now;
+    StringBuilder frames = new StringBuilder();
+    for (int i = 0; i < Math.min(stack.length, LOGGED_FRAMES); i++) {
+      frames.append("\n\tat ").append(stack[i]);
+    }
+    if (stack.length > LOGGED_FRAMES) {
+      frames.append("\n\t...");
+    }
+    logger.log(Level.WARNING, "Event loop {0} ({1}) stalled for {2} ms in {3}{4}", new Object[] {
+        heartbeat.index, thread != null ? thread.getName() : "thread not yet seen",
+        TimeUnit.NANOSECONDS.toMillis(now - heartbeat.submittedAt), frame, frames});
+  }
+
+  /** The first frame outside the JDK and Netty, or the top frame if there is none. */
+  static String culprit(StackTraceElement[] stack) {
+    if (stack.length == 0) {
+      return "unknown";
+    }
+    for (StackTraceElement element : stack) {
+      if (!isFramework(element.getClassName())) {
+        return element.getClassName() + "." + element.getMethodName();
+      }
+    }
+    return stack[0].getClassName() + "." + stack[0].getMethodName();
+  }
+
+  private static boolean isFramework(String className) {
+    for (String prefix : FRAMEWORK_PREFIXES) {
+      if (className.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private final class Heartbeat implements Runnable {
+
+    final EventExecutor loop;
+    final int index;
+    // Written by the watchdog before the heartbeat is queued.
+    volatile long submittedAt;
+    volatile boolean pending;
+    volatile Thread thread;
+    volatile long lastLag;
+    // Watchdog thread only.
+    boolean sampled;
+    long loggedAt;
+
+    Heartbeat(EventExecutor loop, int index) {
+      this.loop = loop;
+      this.index = index;
+    }
+
+    @Override
+    public void run() {
+      if (thread == null) {
+        thread = Thread.currentThread();
+      }
+      long waited = System.nanoTime() - submittedAt;
+      lag.record(waited);
+      lastLag = waited;
+      pending = false;
+    }
+  }
+}
@@ -0,0 +1,192 @@
+package no.hux.ja4.metrics;
+
+import io.netty.util.concurrent.FastThreadLocal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram in nanoseconds with one shard per recording thread.
+ *
+ * <p>Buckets are log-linear like HdrHistogram's: each power of two is split
+ * into {@code 2^subBucketBits} linear sub-buckets (16 by default), so a
+ * bucket's bounds are within {@code 2^-subBucketBits} (6.25%) of each other
+ * from 1 ns up to about half an hour, and the bucket of a value is found with
+ * a few shifts. Each thread writes only its own shard, with plain
+ * increments published by ordered stores: recording takes no lock, no CAS and
+ * allocates nothing once the thread's shard exists. {@link #snapshot()} sums
+ * the shards; it may miss recordings in flight but never tears a count.
+ */
+public final class Histogram {
+
+  static final int DEFAULT_SUB_BUCKET_BITS = 4;
+  static final int MAX_SUB_BUCKET_BITS = 10;
+  private static final int MAX_EXPONENT = 40;
+  public static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+  private final int subBucketBits;
+  private final int buckets;
+  // Shard slots after the buckets.
+  private final int sum;
+
+  private final List<AtomicLongArray> shards = new CopyOnWriteArrayList<>();
+  private final FastThreadLocal<AtomicLongArray> local = new FastThreadLocal<>() {
+    @Override
+    protected AtomicLongArray initialValue() {
+      AtomicLongArray shard = new AtomicLongArray(sum + 1);
+      shards.add(shard);
+      return shard;
+    }
+  };
+
+  public Histogram() {
+    this(DEFAULT_SUB_BUCKET_BITS);
+  }
+
+  /** @param subBucketBits log2 of the sub-buckets per power of two, 1 to 10. */
+  public Histogram(int subBucketBits) {
+    if (subBucketBits < 1 || subBucketBits > MAX_SUB_BUCKET_BITS) {
+      throw new IllegalArgumentException("subBucketBits must be in [1, "
+          + MAX_SUB_BUCKET_BITS + "]");
+    }
+    this.subBucketBits = subBucketBits;
+    this.buckets = index(MAX_VALUE, subBucketBits) + 1;
+    this.sum = buckets;
+  }
+
+  /** Records one latency; negative values count as 0, huge ones as {@link #MAX_VALUE}. */
+  public void record(long nanos) {
+    long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+    AtomicLongArray shard = local.get();
+    int index = index(value, subBucketBits);
+    // Single writer per shard: ordered stores suffice.
+    shard.lazySet(index, shard.get(index) + 1);
+    shard.lazySet(sum, shard.get(sum) + value);
+  }
+
+  /** Adds everything recorded in {@code other}, which has the same precision. */
+  public void add(Histogram other) {
+    if (other.subBucketBits != subBucketBits) {
+      throw new IllegalArgumentException("histograms differ in precision");
+    }
+    Snapshot snapshot = other.snapshot();
+    AtomicLongArray shard = local.get();
+    for (int i = 0; i < buckets; i++) {
+      if (snapshot.counts[i] != 0) {
+        shard.lazySet(i, shard.get(i) + snapshot.counts[i]);
+      }
+    }
+    shard.lazySet(sum, shard.get(sum) + snapshot.sum);
+  }
+
+  /** Records the time since {@code startNanos}, a {@link System#nanoTime()} reading. */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  /** Sums all shards. */
+  public Snapshot snapshot() {
+    long[] counts = new long[buckets];
+    long total = 0;
+    for (AtomicLongArray shard : shards) {
+      for (int i = 0; i < buckets; i++) {
+        counts[i] += shard.get(i);
+      }
+      total += shard.get(sum);
+    }
+    return new Snapshot(counts, total, subBucketBits);
+  }
+
+  /** Bucket counts and the sum of recorded values at one point in time. */
+  public static final class Snapshot {
+
+    private final long[] counts;
+    private final long sum;
+    private final int subBucketBits;
+
+    Snapshot(long[] counts, long sum, int subBucketBits) {
+      this.counts = counts;
+      this.sum = sum;
+      this.subBucketBits = subBucketBits;
+    }
+
+    public long count() {
+      long total = 0;
+      for (long c : counts) {
+        total += c;
+      }
+      return total;
+    }
+
+    /** Sum of recorded values, in nanoseconds. */
+    public long sum() {
+      return sum;
+    }
+
+    /**
+     * Values recorded at or below {@code nanos}. The bucket that straddles
+     * {@code nanos} contributes in proportion to the part of it below, so the
+     * result is exact up to how values spread within that one bucket.
+     */
+    public long countAtOrBelow(long nanos) {
+      long total = 0;
+      for (int i = 0; i < counts.length; i++) {
+        long high = highestEquivalent(i, subBucketBits);
+        if (high <= nanos) {
+          total += counts[i];
+          continue;
+        }
+        long low = i == 0 ? 0 : highestEquivalent(i - 1, subBucketBits) + 1;
+        if (low <= nanos) {
+          total += counts[i] * (nanos - low + 1) / (high - low + 1);
+        }
+        break;
+      }
+      return total;
+    }
+
+    /**
+     * The highest value equivalent to the {@code percentile}th recorded
+     * value, or 0 if nothing was recorded.
+     *
+     * @param percentile in {@code [0, 100]}.
+     */
+    public long valueAtPercentile(double percentile) {
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count()));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return highestEquivalent(i, subBucketBits);
+        }
+      }
+      return 0;
+    }
+  }
+
+  /** Bucket of {@code value}; below {@code 2^(bits + 1)} there is one per nanosecond. */
+  static int index(long value, int bits) {
+    int subBuckets = 1 << bits;
+    int linearLimit = subBuckets * 2;
+    if (value < linearLimit) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - bits;
+    int sub = (int) (value >>> shift) - subBuckets;
+    return linearLimit + (shift - 1) * subBuckets + sub;
+  }
+
+  /** Highest value in bucket {@code index}. */
+  static long highestEquivalent(int index, int bits) {
+    int subBuckets = 1 << bits;
+    int linearLimit = subBuckets * 2;
+    if (index < linearLimit) {
+      return index;
+    }
+    int k = index - linearLimit;
+    int shift = k / subBuckets + 1;
+    long sub = k % subBuckets + subBuckets;
+    return ((sub + 1) << shift) - 1;
+  }
+}
@@ -0,0 +1,413 @@
+package no.hux.ja4.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import no.hux.ja4.accesslog.AccessLog;
+import no.hux.ja4.admission.ConnectionAdmission;
+import no.hux.ja4.admission.Ja4Rules;
+import no.hux.ja4.admission.OverloadController;
+import no.hux.ja4.capture.CaptureStats;
+import no.hux.ja4.capture.TcpInfoStore;
+import no.hux.ja4.logging.AsyncLogHandler;
+import no.hux.ja4.store.FingerprintStore;
+
+/**
+ * Counters and latency histograms of one server, rendered in the Prometheus
+ * text exposition format for the {@code /metrics} endpoint.
+ *
+ * <p>Handlers record on the event loop: counters are {@link LongAdder}s
+ * (striped per CPU under contention) and histograms keep a shard per thread,
+ * so recording is lock-free and allocation-free. Store sizes and capture
+ * counters are read from their owners only when scraped.
+ */
+public final class ServerMetrics {
+
+  /** Upper bounds of the exposed histogram buckets, in seconds. */
+  private static final double[] BUCKET_BOUNDS = {0.000001, 0.0000025, 0.000005, 0.00001,
+      0.000025, 0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1,
+      0.25, 0.5, 1, 2.5, 5, 10};
+
+  private final LongAdder connectionsAccepted = new LongAdder();
+  private final Histogram clientHelloParse = new Histogram();
+  private final LongAdder clientHelloFailures = new LongAdder();
+  private final Histogram tlsHandshake = new Histogram();
+  private final LongAdder tlsHandshakeFailures = new LongAdder();
+  private final Histogram ja4Compute = new Histogram();
+  private final Histogram ja4hCompute = new Histogram();
+  private final Histogram acceptToClientHello = new Histogram();
+  private final Histogram clientHelloToHandshake = new Histogram();
+  private final Histogram handshakeToRequest = new Histogram();
+  private final Histogram requestToResponse = new Histogram();
+  private final Histogram synToSynAck = new Histogram();
+  private final Histogram synAckToAck = new Histogram();
+  private final Histogram storePut = new Histogram();
+  private final Histogram storeGet = new Histogram();
+  private final LongAdder lookupHits = new LongAdder();
+  private final LongAdder lookupMisses = new LongAdder();
+  private final LongAdder lookupsInvalid = new LongAdder();
+  private final LongAdder responses200 = new LongAdder();
+  private final LongAdder responses400 = new LongAdder();
+  private final LongAdder responses404 = new LongAdder();
+  private final LongAdder responses500 = new LongAdder();
+  private final LongAdder responsesOther = new LongAdder();
+
+  private volatile FingerprintStore store;
+  private volatile TcpInfoStore tcpInfoStore;
+  private volatile Supplier<CaptureStats> captureStats;
+  private volatile LongSupplier synRefused;
+  private volatile EventLoopWatchdog watchdog;
+  private volatile AsyncLogHandler logHandler;
+  private volatile AccessLog accessLog;
+  private volatile ConnectionAdmission admission;
+  private volatile Ja4Rules ja4Rules;
+  private volatile OverloadController overload;
+
+  public void connectionAccepted() {
+    connectionsAccepted.increment();
+  }
+
+  /** Time spent parsing one connection's ClientHello, over all its reads. */
+  public Histogram clientHelloParse() {
+    return clientHelloParse;
+  }
+
+  public void clientHelloFailed() {
+    clientHelloFailures.increment();
+  }
+
+  /** Accept to TLS handshake completion. */
+  public Histogram tlsHandshake() {
+    return tlsHandshake;
+  }
+
+  public void tlsHandshakeFailed() {
+    tlsHandshakeFailures.increment();
+  }
+
+  public Histogram ja4Compute() {
+    return ja4Compute;
+  }
+
+  public Histogram ja4hCompute() {
+    return ja4hCompute;
+  }
+
+  /** Accept to the parsed ClientHello. */
+  public Histogram acceptToClientHello() {
+    return acceptToClientHello;
+  }
+
+  /** Parsed ClientHello to TLS handshake completion. */
+  public Histogram clientHelloToHandshake() {
+    return clientHelloToHandshake;
+  }
+
+  /** TLS handshake completion to the connection's first decoded request. */
+  public Histogram handshakeToRequest() {
+    return handshakeToRequest;
+  }
+
+  /** Decoded request to its flushed response. */
+  public Histogram requestToResponse() {
+    return requestToResponse;
+  }
+
+  /** Captured client SYN to server SYN/ACK. */
+  public Histogram synToSynAck() {
+    return synToSynAck;
+  }
+
+  /** Captured server SYN/ACK to client ACK. */
+  public Histogram synAckToAck() {
+    return synAckToAck;
+  }
+
+  public Histogram storePut() {
+    return storePut;
+  }
+
+  public Histogram storeGet() {
+    return storeGet;
+  }
+
+  public void lookupHit() {
+    lookupHits.increment();
+  }
+
+  public void lookupMiss() {
+    lookupMisses.increment();
+  }
+
+  public void lookupInvalid() {
+    lookupsInvalid.increment();
+  }
+
+  public void response(int status) {
+    switch (status) {
+      case 200 -> responses200.increment();
+      case 400 -> responses400.increment();
+      case 404 -> responses404.increment();
+      case 500 -> responses500.increment();
+      default -> responsesOther.increment();
+    }
+  }
+
+  /** Exposes the size and evictions of the fingerprint store. */
+  public void bindStore(FingerprintStore store) {
+    this.store = store;
+  }
+
+  /** Exposes the size of the handshake store. */
+  public void bindTcpInfoStore(TcpInfoStore tcpInfoStore) {
+    this.tcpInfoStore = tcpInfoStore;
+  }
+
+  /**
+   * Exposes capture counters.
+   *
+   * @param stats cumulative capture counters, or {@code null} when another
+   *        process captures.
+   */
+  public void bindCapture(Supplier<CaptureStats> stats, LongSupplier synRefused) {
+    this.captureStats = stats;
+    this.synRefused = synRefused;
+  }
+
+  /** Exposes event loop lag and stalls. */
+  public void bindWatchdog(EventLoopWatchdog watchdog) {
+    this.watchdog = watchdog;
+  }
+
+  /** Exposes how many log records were written, suppressed and dropped. */
+  public void bindLogHandler(AsyncLogHandler logHandler) {
+    this.logHandler = logHandler;
+  }
+
+  /** Exposes how many connections the per-address and per-prefix limits refused. */
+  public void bindAdmission(ConnectionAdmission admission) {
+    this.admission = admission;
+  }
+
+  /** Exposes each JA4 rule's hits. */
+  public void bindJa4Rules(Ja4Rules ja4Rules) {
+    this.ja4Rules = ja4Rules;
+  }
+
+  /** Exposes the shedding level, the pressure behind it and the work shed. */
+  public void bindOverload(OverloadController overload) {
+    this.overload = overload;
+  }
+
+  /** Exposes how many access log entries were written and dropped. */
+  public void bindAccessLog(AccessLog accessLog) {
+    this.accessLog = accessLog;
+  }
+
+  /** Renders every metric in the Prometheus text format, version 0.0.4. */
+  public String render() {
+    StringBuilder sb = new StringBuilder(8192);
+    counter(sb, "ja4_connections_accepted_total", "TCP connections accepted.",
+        connectionsAccepted.sum());
+    ConnectionAdmission limits = admission;
+    if (limits != null) {
+      header(sb, "ja4_connections_refused_total",
+          "Connections reset before TLS by the per-address or per-prefix rate limit.", "counter");
+      sample(sb, "ja4_connections_refused_total", "limit=\"address\"",
+          limits.getRefusedByAddress());
+      sample(sb, "ja4_connections_refused_total", "limit=\"prefix\"",
+          limits.getRefusedByPrefix());
+    }
+    Ja4Rules rules = ja4Rules;
+    if (rules != null) {
+      header(sb, "ja4_rule_hits_total",
+          "Connections decided by each JA4 rule; blocked ones are reset before TLS.", "counter");
+      for (Ja4Rules.Rule rule : rules.rules()) {
+        sample(sb, "ja4_rule_hits_total", "action=\"" + (rule.isAllow() ? "allow" : "block")
+            + "\",part=\"" + rule.getPart() + "\",value=\"" + rule.getValue() + "\"",
+            rule.getHits());
+      }
+    }
+    OverloadController shedding = overload;
+    if (shedding != null) {
+      gauge(sb, "ja4_overload_level",
+          "Load shedding level: 0 none, 1 JA4L estimate, 2 capture correlation, 3 lookups, "
+              + "4 new connections.", shedding.level());
+      header(sb, "ja4_overload_pressure",
+          "Each overload signal's use of its resource; 1 is spent.", "gauge");
+      for (Map.Entry<String, Double> signal : shedding.pressures().entrySet()) {
+        sb.append("ja4_overload_pressure{signal=\"").append(signal.getKey()).append("\"} ")
+            .append(format(signal.getValue())).append('\n');
+      }
+      header(sb, "ja4_overload_shed_total", "Work skipped or refused by load shedding.",
+          "counter");
+      for (Map.Entry<String, Long> shed : shedding.shedCounts().entrySet()) {
+        sample(sb, "ja4_overload_shed_total", "what=\"" + shed.getKey() + "\"",
+            shed.getValue());
+      }
+    }
+    histogram(sb, "ja4_client_hello_parse_seconds",
+        "Time spent parsing a connection's TLS ClientHello.", null, clientHelloParse);
+    counter(sb, "ja4_client_hello_failures_total",
+        "ClientHellos that failed to parse or exceeded the capture limit.",
+        clientHelloFailures.sum());
+    histogram(sb, "ja4_tls_handshake_seconds",
+        "Time from TCP accept to TLS handshake completion.", null, tlsHandshake);
+    counter(sb, "ja4_tls_handshake_failures_total", "Failed TLS handshakes.",
+        tlsHandshakeFailures.sum());
+
+    header(sb, "ja4_fingerprint_compute_seconds", "Time spent computing a fingerprint.",
+        "histogram");
+    buckets(sb, "ja4_fingerprint_compute_seconds", "kind=\"ja4\"", ja4Compute);
+    buckets(sb, "ja4_fingerprint_compute_seconds", "kind=\"ja4h\"", ja4hCompute);
+    header(sb, "ja4_connection_phase_seconds",
+        "Time between consecutive phases of a fingerprinted connection.", "histogram");
+    buckets(sb, "ja4_connection_phase_seconds", "phase=\"client_hello\"", acceptToClientHello);
+    buckets(sb, "ja4_connection_phase_seconds", "phase=\"tls_handshake\"",
+        clientHelloToHandshake);
+    buckets(sb, "ja4_connection_phase_seconds", "phase=\"request\"", handshakeToRequest);
+    buckets(sb, "ja4_connection_phase_seconds", "phase=\"response\"", requestToResponse);
+    buckets(sb, "ja4_connection_phase_seconds", "phase=\"syn_ack\"", synToSynAck);
+    buckets(sb, "ja4_connection_phase_seconds", "phase=\"ack\"", synAckToAck);
+    header(sb, "ja4_store_operation_seconds", "Fingerprint store latency.", "histogram");
+    buckets(sb, "ja4_store_operation_seconds", "op=\"put\"", storePut);
+    buckets(sb, "ja4_store_operation_seconds", "op=\"get\"", storeGet);
+
+    FingerprintStore fingerprints = store;
+    if (fingerprints != null) {
+      gauge(sb, "ja4_store_entries", "Fingerprint records held.", fingerprints.size());
+      header(sb, "ja4_store_evictions_total", "Fingerprint records removed before lookup.",
+          "counter");
+      sample(sb, "ja4_store_evictions_total", "reason=\"capacity\"", fingerprints.getEvicted());
+      sample(sb, "ja4_store_evictions_total", "reason=\"expired\"", fingerprints.getExpired());
+    }
+
+    header(sb, "ja4_lookups_total", "Lookup API requests by result.", "counter");
+    sample(sb, "ja4_lookups_total", "result=\"hit\"", lookupHits.sum());
+    sample(sb, "ja4_lookups_total", "result=\"miss\"", lookupMisses.sum());
+    sample(sb, "ja4_lookups_total", "result=\"invalid\"", lookupsInvalid.sum());
+    header(sb, "ja4_http_responses_total", "HTTP responses by status code.", "counter");
+    sample(sb, "ja4_http_responses_total", "code=\"200\"", responses200.sum());
+    sample(sb, "ja4_http_responses_total", "code=\"400\"", responses400.sum());
+    sample(sb, "ja4_http_responses_total", "code=\"404\"", responses404.sum());
+    sample(sb, "ja4_http_responses_total", "code=\"500\"", responses500.sum());
+    sample(sb, "ja4_http_responses_total", "code=\"other\"", responsesOther.sum());
+
+    TcpInfoStore handshakes = tcpInfoStore;
+    if (handshakes != null) {
+      gauge(sb, "ja4_tcp_handshakes", "Captured TCP handshakes held.", handshakes.size());
+    }
+    Supplier<CaptureStats> stats = captureStats;
+    if (stats != null) {
+      CaptureStats capture = stats.get();
+      header(sb, "ja4_capture_packets_total",
+          "Captured packets: received by the capture, copied to the rings, and correlated "
+              + "into the handshake store.", "counter");
+      sample(sb, "ja4_capture_packets_total", "stage=\"received\"", capture.received());
+      sample(sb, "ja4_capture_packets_total", "stage=\"captured\"", capture.captured());
+      sample(sb, "ja4_capture_packets_total", "stage=\"correlated\"", capture.useful());
+      header(sb, "ja4_capture_drops_total", "Packets dropped before correlation.", "counter");
+      sample(sb, "ja4_capture_drops_total", "where=\"kernel\"", capture.dropped());
+      sample(sb, "ja4_capture_drops_total", "where=\"interface\"", capture.ifDropped());
+      sample(sb, "ja4_capture_drops_total", "where=\"ring\"", capture.ringDropped());
+    }
+    EventLoopWatchdog loops = watchdog;
+    if (loops != null) {
+      histogram(sb, "ja4_event_loop_lag_seconds",
+          "Time a watchdog heartbeat waited in an event loop's queue.", null, loops.lag());
+      counter(sb, "ja4_event_loop_stalls_total",
+          "Heartbeats that waited longer than the stall threshold.", loops.stalls());
+      header(sb, "ja4_event_loop_stall_frames_total",
+          "Stalls by the first frame outside the JDK and Netty in the stalled loop's stack.",
+          "counter");
+      for (Map.Entry<String, Long> frame : loops.stallFrames().entrySet()) {
+        sample(sb, "ja4_event_loop_stall_frames_total", "frame=\"" + frame.getKey() + "\"",
+            frame.getValue());
+      }
+    }
+    AsyncLogHandler log = logHandler;
+    if (log != null) {
+      header(sb, "ja4_log_records_total",
+          "Log records written, suppressed by the per-key rate limit, or dropped on a full queue.",
+          "counter");
+      sample(sb, "ja4_log_records_total", "outcome=\"written\"", log.getWritten());
+      sample(sb, "ja4_log_records_total", "outcome=\"suppressed\"", log.getSuppressed());
+      sample(sb, "ja4_log_records_total", "outcome=\"dropped\"", log.getDropped());
+    }
+    AccessLog access = accessLog;
+    if (access != null) {
+      header(sb, "ja4_access_log_entries_total",
+          "Access log entries written, or dropped because the next segment was not ready.",
+          "counter");
+      sample(sb, "ja4_access_log_entries_total", "outcome=\"written\"", access.getWritten());
+      sample(sb, "ja4_access_log_entries_total", "outcome=\"dropped\"", access.getDropped());
+    }
+    LongSupplier refused = synRefused;
+    if (refused != null) {
+      counter(sb, "ja4_capture_syn_refused_total", "Client SYNs refused by flood admission.",
+          refused.getAsLong());
+    }
+    return sb.toString();
+  }
+
+  private static void counter(StringBuilder sb, String name, String help, long value) {
+    header(sb, name, help, "counter");
+    sample(sb, name, null, value);
+  }
+
+  private static void gauge(StringBuilder sb, String name, String help, long value) {
+    header(sb, name, help, "gauge");
+    sample(sb, name, null, value);
+  }
+
+  private static void histogram(StringBuilder sb, String name, String help, String labels,
+      Histogram histogram) {
+    header(sb, name, help, "histogram");
+    buckets(sb, name, labels, histogram);
+  }
+
+  private static void header(StringBuilder sb, String name, String help, String type) {
+    sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void buckets(StringBuilder sb, String name, String labels,
+      Histogram histogram) {
+    Histogram.Snapshot snapshot = histogram.snapshot();
+    String prefix = labels == null ? "" : labels + ",";
+    for (double bound : BUCKET_BOUNDS) {
+      sample(sb, name + "_bucket", prefix + "le=\"" + format(bound) + "\"",
+          snapshot.countAtOrBelow(Math.round(bound * 1e9)));
+    }
+    long count = snapshot.count();
+    sample(sb, name + "_bucket", prefix + "le=\"+Inf\"", count);
+    sb.append(name).append("_sum");
+    if (labels != null) {
+      sb.append('{').append(labels).append('}');
+    }
+    sb.append(' ').append(format(snapshot.sum() / 1e9)).append('\n');
+    sample(sb, name + "_count", labels, count);
+  }
+
+  private static void sample(StringBuilder sb, String name, String labels, long value) {
+    sb.append(name);
+    if (labels != null) {
+      sb.append('{').append(labels).append('}');
+    }
+    sb.append(' ').append(value).append('\n');
+  }
+
+  private static String format(double value) {
+    String s = String.format(Locale.ROOT, "%.9f", value);
+    int end = s.length();
+    while (s.charAt(end - 1) == '0') {
+      end--;
+    }
+    if (s.charAt(end - 1) == '.') {
+      end--;
+    }
+    return s.substring(0, end);
+  }
+}
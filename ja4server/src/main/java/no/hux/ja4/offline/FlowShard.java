@@ -0,0 +1,208 @@
+package no.hux.ja4.offline;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import no.hux.ja4.capture.ClientHelloAssembler;
+import no.hux.ja4.capture.TcpPacketDecoder;
+
+/**
+ * Owns every flow whose endpoints hash to it, so flows are tracked without
+ * locks and each flow's segments are applied in file order. Reader threads
+ * feed it {@link PacketBatch batches}; finished flows are written as NDJSON.
+ *
+ * <p>A flow is written once: when its ClientHello has been parsed, or else
+ * when it ends (FIN or RST), has been idle for {@link #IDLE_MICROS} of capture
+ * time, or its file ends.
+ */
+final class FlowShard implements Runnable {
+
+  static final int QUEUE_BATCHES = 8;
+  static final long IDLE_MICROS = TimeUnit.SECONDS.toMicros(120);
+  private static final int SWEEP_INTERVAL = 1 << 16;
+  private static final int FLUSH_CHARS = 64 * 1024;
+
+  /** Flows are scoped to their file, so parallel files never mix. */
+  private record FlowKey(int fileIndex, long low, long high) {
+  }
+
+  private final BlockingQueue<PacketBatch> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+  private final Queue<PacketBatch> freeBatches;
+  private final List<String> fileNames;
+  private final long[] fileMaxMicros;
+  private final NdjsonWriter writer;
+  private final LongAdder flowsWritten;
+  private final Logger logger;
+  private final Map<FlowKey, FlowState> flows = new HashMap<>();
+  private final StringBuilder out = new StringBuilder(FLUSH_CHARS + 1024);
+  private int sinceSweep;
+
+  FlowShard(Queue<PacketBatch> freeBatches, List<String> fileNames, NdjsonWriter writer,
+      LongAdder flowsWritten, Logger logger) {
+    this.freeBatches = freeBatches;
+    this.fileNames = fileNames;
+    this.fileMaxMicros = new long[fileNames.size()];
+    this.writer = writer;
+    this.flowsWritten = flowsWritten;
+    this.logger = logger;
+  }
+
+  void submit(PacketBatch batch) throws InterruptedException {
+    queue.put(batch);
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (true) {
+        PacketBatch batch = queue.take();
+        int kind = batch.kind;
+        try {
+          if (kind == PacketBatch.KIND_PACKETS) {
+            for (int i = 0; i < batch.count; i++) {
+              apply(batch, i);
+            }
+          } else if (kind == PacketBatch.KIND_END_OF_FILE) {
+            evict(batch.fileIndex, -1L);
+          }
+        } catch (RuntimeException ex) {
+          logger.log(Level.WARNING, "Failed to analyze a batch of "
+              + fileNames.get(batch.fileIndex), ex);
+        }
+        freeBatches.offer(batch);
+        if (kind == PacketBatch.KIND_END) {
+          break;
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } finally {
+      writer.write(out);
+      out.setLength(0);
+    }
+  }
+
+  private void apply(PacketBatch b, int i) {
+    long src = b.src[i];
+    long dst = b.dst[i];
+    int flags = b.flags[i];
+    boolean syn = (flags & TcpPacketDecoder.FLAG_SYN) != 0;
+    boolean ack = (flags & TcpPacketDecoder.FLAG_ACK) != 0;
+    long micros = b.micros[i];
+    int file = b.fileIndex;
+    if (micros > fileMaxMicros[file]) {
+      fileMaxMicros[file] = micros;
+    }
+
+    FlowKey key = src < dst ? new FlowKey(file, src, dst) : new FlowKey(file, dst, src);
+    FlowState flow = flows.get(key);
+    if (flow == null) {
+      if (syn && !ack) {
+        flow = new FlowState(file, src, dst, micros);
+      } else if (ClientHelloAssembler.looksLikeClientHello(b.payload, b.payloadOffset[i],
+          b.capturedLength[i])) {
+        flow = new FlowState(file, src, dst, micros);
+        flow.startSequence(b.seq[i]);
+      } else {
+        return;
+      }
+      flows.put(key, flow);
+    }
+    flow.lastMicros = micros;
+
+    boolean fromClient = src == flow.client;
+    if (syn && !ack) {
+      if (fromClient) {
+        flow.recordSyn(b, i);
+      }
+    } else if (syn) {
+      if (!fromClient) {
+        flow.recordSynAck(micros, b.ttl[i]);
+      }
+    } else if (ack && fromClient) {
+      flow.recordAck(micros);
+    }
+    if (fromClient && b.payloadLength[i] > 0 && !flow.isHelloDone()) {
+      flow.addClientPayload(b.seq[i], b.payload, b.payloadOffset[i], b.capturedLength[i],
+          b.payloadLength[i]);
+    }
+
+    if ((flags & (TcpPacketDecoder.FLAG_FIN | TcpPacketDecoder.FLAG_RST)) != 0) {
+      flows.remove(key);
+      emit(flow);
+    } else if (flow.isHelloDone()) {
+      // Written now, but kept until it ends so a retransmitted ClientHello
+      // does not start a second record.
+      emit(flow);
+    }
+    if (++sinceSweep >= SWEEP_INTERVAL) {
+      sinceSweep = 0;
+      evict(-1, IDLE_MICROS);
+    }
+  }
+
+  /**
+   * Writes and drops flows of {@code fileIndex} (or of every file when -1)
+   * idle for more than {@code idleMicros}; -1 drops them all.
+   */
+  private void evict(int fileIndex, long idleMicros) {
+    Iterator<FlowState> it = flows.values().iterator();
+    while (it.hasNext()) {
+      FlowState flow = it.next();
+      if (fileIndex >= 0 && flow.fileIndex != fileIndex) {
+        continue;
+      }
+      if (fileMaxMicros[flow.fileIndex] - flow.lastMicros > idleMicros) {
+        it.remove();
+        emit(flow);
+      }
+    }
+  }
+
+  private void emit(FlowState flow) {
+    if (flow.written || !flow.hasFingerprint()) {
+      return;
+    }
+    flow.written = true;
+    StringBuilder sb = out;
+    sb.append('{');
+    NdjsonWriter.appendField(sb, "file", fileNames.get(flow.fileIndex));
+    sb.append(',');
+    NdjsonWriter.appendField(sb, "timestamp", NdjsonWriter.isoMicros(flow.firstMicros));
+    sb.append(',');
+    NdjsonWriter.appendField(sb, "clientIp",
+        TcpPacketDecoder.formatIpv4(PacketBatch.address(flow.client)));
+    sb.append(',');
+    NdjsonWriter.appendNumericField(sb, "clientPort", PacketBatch.port(flow.client));
+    sb.append(',');
+    NdjsonWriter.appendField(sb, "serverIp",
+        TcpPacketDecoder.formatIpv4(PacketBatch.address(flow.server)));
+    sb.append(',');
+    NdjsonWriter.appendNumericField(sb, "serverPort", PacketBatch.port(flow.server));
+    sb.append(',');
+    NdjsonWriter.appendField(sb, "serverName", flow.serverName());
+    sb.append(',');
+    sb.append("\"fingerprints\":{");
+    NdjsonWriter.appendField(sb, "ja4", flow.ja4());
+    sb.append(',');
+    NdjsonWriter.appendField(sb, "ja4l", flow.ja4lC());
+    sb.append(',');
+    NdjsonWriter.appendField(sb, "ja4ls", flow.ja4lS());
+    sb.append(',');
+    NdjsonWriter.appendField(sb, "ja4t", flow.ja4t());
+    sb.append("}}\n");
+    flowsWritten.increment();
+    if (sb.length() >= FLUSH_CHARS) {
+      writer.write(sb);
+      sb.setLength(0);
+    }
+  }
+}
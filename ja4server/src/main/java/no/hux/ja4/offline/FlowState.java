@@ -0,0 +1,136 @@
+package no.hux.ja4.offline;
+
+import java.util.Arrays;
+import no.hux.ja4.capture.ClientHelloAssembler;
+import no.hux.ja4.capture.TcpPacketDecoder;
+import no.hux.ja4.fingerprint.Ja4LatencyFingerprint;
+import no.hux.ja4.fingerprint.Ja4TcpFingerprint;
+
+/**
+ * One TCP flow in an offline capture: the client's SYN fields, handshake
+ * timestamps, and the client's first bytes reassembled just far enough to
+ * parse its TLS ClientHello.
+ *
+ * <p>The client is the sender of the SYN or, for flows whose handshake
+ * predates the capture, of the first segment that looks like a ClientHello.
+ * Only the client-to-server direction is reassembled, by a
+ * {@link ClientHelloAssembler}.
+ */
+final class FlowState {
+
+  /** Bytes buffered at most while waiting for a complete ClientHello. */
+  static final int MAX_HELLO_BYTES = 1 << 16;
+  private static final int MAX_PENDING_SEGMENTS = 32;
+
+  final int fileIndex;
+  final long client;
+  final long server;
+  private final ClientHelloAssembler hello =
+      new ClientHelloAssembler(MAX_HELLO_BYTES, MAX_PENDING_SEGMENTS);
+  long firstMicros;
+  long lastMicros;
+  /** Set once the flow's record has been written. */
+  boolean written;
+
+  private long synMicros;
+  private int clientTtl;
+  private int window;
+  private int mss;
+  private int windowScale;
+  private byte[] optionKinds;
+  private int optionCount;
+  private long synAckMicros;
+  private int serverTtl;
+  private long ackMicros;
+
+  FlowState(int fileIndex, long client, long server, long micros) {
+    this.fileIndex = fileIndex;
+    this.client = client;
+    this.server = server;
+    this.firstMicros = micros;
+    this.lastMicros = micros;
+  }
+
+  void recordSyn(PacketBatch b, int i) {
+    if (synMicros != 0L) {
+      return;
+    }
+    synMicros = b.micros[i];
+    clientTtl = b.ttl[i];
+    window = b.window[i];
+    mss = b.mss[i];
+    windowScale = b.windowScale[i];
+    optionCount = b.optionCount[i];
+    int from = i * TcpPacketDecoder.MAX_OPTION_KINDS;
+    optionKinds = Arrays.copyOfRange(b.optionKinds, from, from + optionCount);
+    startSequence(b.seq[i] + 1);
+  }
+
+  void recordSynAck(long micros, int ttl) {
+    if (synAckMicros == 0L && synMicros != 0L) {
+      synAckMicros = micros;
+      serverTtl = ttl;
+    }
+  }
+
+  /** The client's first ACK after the SYN/ACK completes the handshake. */
+  void recordAck(long micros) {
+    if (ackMicros == 0L && synAckMicros != 0L) {
+      ackMicros = micros;
+    }
+  }
+
+  /** Starts reassembly at {@code seq} if no SYN fixed the sequence yet. */
+  void startSequence(int seq) {
+    hello.start(seq);
+  }
+
+  boolean isHelloDone() {
+    return hello.isDone();
+  }
+
+  /** Whether the flow yielded anything worth a record. */
+  boolean hasFingerprint() {
+    return synMicros != 0L || hello.ja4() != null;
+  }
+
+  /**
+   * Adds one client-to-server segment to the reassembly and parses the
+   * ClientHello once its bytes are complete.
+   */
+  void addClientPayload(int seq, byte[] data, int offset, int captured, int payloadLength) {
+    hello.add(seq, data, offset, captured, payloadLength);
+  }
+
+  String ja4() {
+    return hello.ja4();
+  }
+
+  String serverName() {
+    return hello.serverName();
+  }
+
+  String ja4t() {
+    if (synMicros == 0L) {
+      return null;
+    }
+    return Ja4TcpFingerprint.compute(window, optionKinds, 0, optionCount, mss, windowScale);
+  }
+
+  /** JA4L-C from the SYN/ACK to ACK delta, as the live capture computes it. */
+  String ja4lC() {
+    if (synAckMicros == 0L || ackMicros == 0L) {
+      return null;
+    }
+    return Ja4LatencyFingerprint.format(Math.max(0L, (ackMicros - synAckMicros) / 2L), clientTtl);
+  }
+
+  /** JA4L-S from the SYN to SYN/ACK delta. */
+  String ja4lS() {
+    if (synMicros == 0L || synAckMicros == 0L) {
+      return null;
+    }
+    return Ja4LatencyFingerprint.format(Math.max(0L, (synAckMicros - synMicros) / 2L),
+        serverTtl);
+  }
+}
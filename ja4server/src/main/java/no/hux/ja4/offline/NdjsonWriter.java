@@ -0,0 +1,48 @@
+package no.hux.ja4.offline;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import no.hux.ja4.Json;
+
+/**
+ * Shared NDJSON sink for the flow shards. Each shard formats lines into its
+ * own builder with the {@code append*} helpers and hands over whole chunks,
+ * so the lock is taken once per chunk rather than once per flow.
+ */
+final class NdjsonWriter {
+
+  private final Writer out;
+
+  NdjsonWriter(Writer out) {
+    this.out = out;
+  }
+
+  synchronized void write(CharSequence lines) {
+    try {
+      out.append(lines);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  synchronized void flush() throws IOException {
+    out.flush();
+  }
+
+  static void appendField(StringBuilder sb, String key, String value) {
+    sb.append('"').append(key).append("\":");
+    Json.appendString(sb, value);
+  }
+
+  static void appendNumericField(StringBuilder sb, String key, long value) {
+    sb.append('"').append(key).append("\":").append(value);
+  }
+
+  static String isoMicros(long micros) {
+    return DateTimeFormatter.ISO_INSTANT.format(
+        Instant.ofEpochSecond(micros / 1_000_000L, (micros % 1_000_000L) * 1_000L));
+  }
+}
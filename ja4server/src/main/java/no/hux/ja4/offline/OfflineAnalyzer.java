@@ -0,0 +1,213 @@
+package no.hux.ja4.offline;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import no.hux.ja4.capture.TcpPacketDecoder;
+
+/**
+ * Offline mode ({@code ja4-server.jar analyze ...}): computes JA4, JA4T and
+ * JA4L for every TCP flow in a set of pcap / pcapng files and writes one
+ * NDJSON line per flow.
+ *
+ * <p>Files are read in parallel, one reader thread per file. Readers only
+ * decode headers and route each segment, by a hash of its unordered
+ * endpoints, to one of N {@link FlowShard} threads, so both directions of a
+ * flow meet on the same shard and the flow tables need no locking. Segments
+ * travel in {@link PacketBatch batches} that are recycled through a shared
+ * pool.
+ *
+ * <p>Like the live capture, only IPv4 is decoded. Records are written as flows
+ * finish, so their order is not the capture order.
+ */
+public final class OfflineAnalyzer {
+
+  private final List<Path> files;
+  private final int threads;
+  private final boolean[] portFilter;
+  private final Path output;
+  private final Logger logger;
+
+  private final Queue<PacketBatch> freeBatches = new ConcurrentLinkedQueue<>();
+  private final LongAdder packets = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private final LongAdder flowsWritten = new LongAdder();
+  private FlowShard[] shards;
+
+  /** Totals of one run. */
+  public record Result(int files, long bytes, long packets, long flows, long elapsedNanos) {
+  }
+
+  /**
+   * @param threads flow shard threads, and the maximum number of files read
+   *        at once.
+   * @param ports server ports to analyze; empty for every TCP flow.
+   * @param output NDJSON destination, or {@code null} for standard output.
+   */
+  public OfflineAnalyzer(List<Path> files, int threads, List<Integer> ports, Path output,
+      Logger logger) {
+    if (files.isEmpty()) {
+      throw new IllegalArgumentException("at least one capture file is required");
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be >= 1");
+    }
+    this.files = List.copyOf(files);
+    this.threads = threads;
+    if (ports.isEmpty()) {
+      this.portFilter = null;
+    } else {
+      this.portFilter = new boolean[65536];
+      for (int port : ports) {
+        portFilter[port] = true;
+      }
+    }
+    this.output = output;
+    this.logger = logger;
+  }
+
+  public Result run() throws IOException, InterruptedException {
+    long started = System.nanoTime();
+    Writer out = output == null
+        ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+        : Files.newBufferedWriter(output, StandardCharsets.UTF_8);
+    NdjsonWriter writer = new NdjsonWriter(new BufferedWriter(out, 1 << 20));
+    List<String> names = new ArrayList<>();
+    for (Path file : files) {
+      names.add(file.toString());
+    }
+
+    shards = new FlowShard[threads];
+    List<Thread> shardThreads = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      shards[i] = new FlowShard(freeBatches, names, writer, flowsWritten, logger);
+      Thread thread = new Thread(shards[i], "ja4-analyze-flows-" + i);
+      thread.setDaemon(true);
+      shardThreads.add(thread);
+      thread.start();
+    }
+
+    AtomicInteger readerIds = new AtomicInteger();
+    ExecutorService readers = Executors.newFixedThreadPool(Math.min(threads, files.size()),
+        r -> {
+          Thread thread = new Thread(r, "ja4-analyze-read-" + readerIds.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        });
+    try {
+      List<Future<?>> pending = new ArrayList<>();
+      for (int i = 0; i < files.size(); i++) {
+        int fileIndex = i;
+        pending.add(readers.submit(() -> {
+          readFile(fileIndex);
+          return null;
+        }));
+      }
+      for (Future<?> future : pending) {
+        try {
+          future.get();
+        } catch (ExecutionException ex) {
+          logger.log(Level.WARNING, "Capture file reader failed", ex.getCause());
+        }
+      }
+    } finally {
+      readers.shutdownNow();
+    }
+
+    for (FlowShard shard : shards) {
+      shard.submit(obtain(PacketBatch.KIND_END, 0));
+    }
+    for (Thread thread : shardThreads) {
+      thread.join();
+    }
+    writer.flush();
+    if (output != null) {
+      out.close();
+    }
+
+    Result result = new Result(files.size(), bytes.sum(), packets.sum(), flowsWritten.sum(),
+        System.nanoTime() - started);
+    double seconds = Math.max(1e-9, result.elapsedNanos() / 1e9);
+    logger.info(String.format(Locale.ROOT,
+        "Analyzed %d file(s): %.1f MiB, %d packets, %d flows in %.1fs (%.1f MiB/s)",
+        result.files(), result.bytes() / 1048576.0, result.packets(), result.flows(), seconds,
+        result.bytes() / 1048576.0 / seconds));
+    return result;
+  }
+
+  private void readFile(int fileIndex) throws InterruptedException {
+    Path path = files.get(fileIndex);
+    PacketBatch[] open = new PacketBatch[shards.length];
+    Map<Integer, TcpPacketDecoder> decoders = new HashMap<>();
+    long count = 0;
+    try (PcapFileReader reader = PcapFileReader.open(path)) {
+      while (reader.next()) {
+        count++;
+        TcpPacketDecoder d = decoders.computeIfAbsent(reader.linkType(), TcpPacketDecoder::new);
+        ByteBuffer frame = reader.buffer();
+        int offset = reader.offset();
+        int end = offset + reader.length();
+        if (!d.decode(frame, offset, reader.length())) {
+          continue;
+        }
+        if (portFilter != null && !portFilter[d.getSrcPort()] && !portFilter[d.getDstPort()]) {
+          continue;
+        }
+        int shard = shardOf(d);
+        PacketBatch batch = open[shard];
+        if (batch == null) {
+          batch = open[shard] = obtain(PacketBatch.KIND_PACKETS, fileIndex);
+        }
+        if (!batch.add(d, reader.micros(), frame, end)) {
+          shards[shard].submit(batch);
+          batch = open[shard] = obtain(PacketBatch.KIND_PACKETS, fileIndex);
+          batch.add(d, reader.micros(), frame, end);
+        }
+      }
+      bytes.add(Files.size(path));
+    } catch (IOException ex) {
+      logger.log(Level.WARNING, "Failed to read " + path + "; using the packets read so far", ex);
+    } finally {
+      packets.add(count);
+      for (int i = 0; i < open.length; i++) {
+        if (open[i] != null) {
+          shards[i].submit(open[i]);
+        }
+        shards[i].submit(obtain(PacketBatch.KIND_END_OF_FILE, fileIndex));
+      }
+    }
+  }
+
+  /** Same shard for both directions: the endpoint hash is symmetric. */
+  private int shardOf(TcpPacketDecoder d) {
+    long a = PacketBatch.endpoint(d.getSrcAddr(), d.getSrcPort());
+    long b = PacketBatch.endpoint(d.getDstAddr(), d.getDstPort());
+    long h = (a ^ b) * 0x9E3779B97F4A7C15L;
+    return (int) ((h >>> 32) % shards.length);
+  }
+
+  private PacketBatch obtain(int kind, int fileIndex) {
+    PacketBatch batch = freeBatches.poll();
+    return (batch != null ? batch : new PacketBatch()).reset(kind, fileIndex);
+  }
+}
@@ -0,0 +1,99 @@
+package no.hux.ja4.offline;
+
+import java.nio.ByteBuffer;
+import no.hux.ja4.capture.TcpPacketDecoder;
+
+/**
+ * Decoded TCP segments of one file bound for one {@link FlowShard}, stored as
+ * parallel arrays plus one payload area so a reader thread can hand a thousand
+ * segments over with a single queue operation.
+ *
+ * <p>A batch can instead carry a control marker: the end of one file, or the
+ * end of the whole run. Fields are package-private and read directly by the
+ * shard; a batch is owned by one thread at a time.
+ */
+final class PacketBatch {
+
+  // Every reader holds one open batch per shard, so keep them modest.
+  static final int CAPACITY = 1024;
+  static final int PAYLOAD_BYTES = 1 << 18;
+
+  static final int KIND_PACKETS = 0;
+  static final int KIND_END_OF_FILE = 1;
+  static final int KIND_END = 2;
+
+  int kind;
+  int fileIndex;
+  int count;
+  int payloadUsed;
+
+  final long[] micros = new long[CAPACITY];
+  /** Endpoints packed as {@code address << 16 | port}; see {@link #endpoint}. */
+  final long[] src = new long[CAPACITY];
+  final long[] dst = new long[CAPACITY];
+  final int[] flags = new int[CAPACITY];
+  final int[] seq = new int[CAPACITY];
+  final int[] ttl = new int[CAPACITY];
+  final int[] window = new int[CAPACITY];
+  final int[] mss = new int[CAPACITY];
+  final int[] windowScale = new int[CAPACITY];
+  final int[] optionCount = new int[CAPACITY];
+  final byte[] optionKinds = new byte[CAPACITY * TcpPacketDecoder.MAX_OPTION_KINDS];
+  /** Payload length per the IP header, which may exceed the captured bytes. */
+  final int[] payloadLength = new int[CAPACITY];
+  final int[] capturedLength = new int[CAPACITY];
+  final int[] payloadOffset = new int[CAPACITY];
+  final byte[] payload = new byte[PAYLOAD_BYTES];
+
+  static long endpoint(int address, int port) {
+    return (Integer.toUnsignedLong(address) << 16) | port;
+  }
+
+  static int address(long endpoint) {
+    return (int) (endpoint >>> 16);
+  }
+
+  static int port(long endpoint) {
+    return (int) (endpoint & 0xFFFF);
+  }
+
+  PacketBatch reset(int kind, int fileIndex) {
+    this.kind = kind;
+    this.fileIndex = fileIndex;
+    this.count = 0;
+    this.payloadUsed = 0;
+    return this;
+  }
+
+  /**
+   * Appends the segment just decoded from {@code frame}.
+   *
+   * @param frameEnd index just past the captured bytes of the frame.
+   * @return {@code false} if the batch is full; nothing was added.
+   */
+  boolean add(TcpPacketDecoder d, long timestamp, ByteBuffer frame, int frameEnd) {
+    int captured = Math.max(0, Math.min(d.getPayloadLength(), frameEnd - d.getPayloadOffset()));
+    if (count == CAPACITY || payloadUsed + captured > PAYLOAD_BYTES) {
+      return false;
+    }
+    int i = count++;
+    micros[i] = timestamp;
+    src[i] = endpoint(d.getSrcAddr(), d.getSrcPort());
+    dst[i] = endpoint(d.getDstAddr(), d.getDstPort());
+    flags[i] = d.getFlags();
+    seq[i] = d.getSequenceNumber();
+    ttl[i] = d.getTtl();
+    if (d.isSyn()) {
+      window[i] = d.getWindow();
+      mss[i] = d.getMss();
+      windowScale[i] = d.getWindowScale();
+      optionCount[i] = d.copyOptionKinds(optionKinds, i * TcpPacketDecoder.MAX_OPTION_KINDS);
+    }
+    payloadLength[i] = d.getPayloadLength();
+    capturedLength[i] = captured;
+    payloadOffset[i] = payloadUsed;
+    frame.get(d.getPayloadOffset(), payload, payloadUsed, captured);
+    payloadUsed += captured;
+    return true;
+  }
+}
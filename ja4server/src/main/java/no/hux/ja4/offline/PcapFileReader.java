@@ -0,0 +1,310 @@
+package no.hux.ja4.offline;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import no.hux.ja4.capture.TcpPacketDecoder;
+
+/**
+ * Streaming reader for classic pcap and pcapng files, without libpcap.
+ *
+ * <p>The file is read through one large buffer and each record is exposed in
+ * place: after {@link #next()} returns {@code true}, the frame occupies
+ * {@link #length()} bytes of {@link #buffer()} starting at {@link #offset()},
+ * until the next call. Both byte orders, microsecond and nanosecond pcap, and
+ * pcapng's per-interface link types and timestamp resolutions are handled;
+ * pcapng blocks other than packet blocks are skipped.
+ */
+final class PcapFileReader implements Closeable {
+
+  static final int BUFFER_BYTES = 8 << 20;
+
+  private static final int PCAP_MAGIC_MICROS = 0xA1B2C3D4;
+  private static final int PCAP_MAGIC_NANOS = 0xA1B23C4D;
+  private static final int PCAPNG_SHB = 0x0A0D0D0A;
+  private static final int PCAPNG_BYTE_ORDER_MAGIC = 0x1A2B3C4D;
+  private static final int PCAPNG_IDB = 1;
+  private static final int PCAPNG_PB = 2;
+  private static final int PCAPNG_SPB = 3;
+  private static final int PCAPNG_EPB = 6;
+  private static final int OPTION_END = 0;
+  private static final int OPTION_IF_TSRESOL = 9;
+  private static final long MICROS_PER_SECOND = 1_000_000L;
+  /** LINKTYPE_RAW in files; live captures report it as DLT_RAW. */
+  private static final int LINKTYPE_RAW = 101;
+
+  private final Path path;
+  private final FileChannel channel;
+  private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_BYTES);
+  private final boolean pcapng;
+
+  // Classic pcap.
+  private int fileLinkType;
+  private boolean nanos;
+
+  // pcapng: link type and timestamp units per second, by interface id.
+  private final List<Integer> ifLinkTypes = new ArrayList<>();
+  private final List<Long> ifUnits = new ArrayList<>();
+
+  private int consumed;
+  private int linkType;
+  private long micros;
+  private int offset;
+  private int length;
+
+  private PcapFileReader(Path path, FileChannel channel) throws IOException {
+    this.path = path;
+    this.channel = channel;
+    buf.flip();
+    if (!ensure(4)) {
+      throw new IOException("Empty capture file: " + path);
+    }
+    int magic = buf.order(ByteOrder.BIG_ENDIAN).getInt(buf.position());
+    this.pcapng = magic == PCAPNG_SHB;
+    if (!pcapng) {
+      readPcapHeader();
+    }
+  }
+
+  static PcapFileReader open(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      return new PcapFileReader(path, channel);
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+  }
+
+  private void readPcapHeader() throws IOException {
+    if (!ensure(24)) {
+      throw new IOException("Truncated pcap header: " + path);
+    }
+    int p = buf.position();
+    int magic = buf.order(ByteOrder.LITTLE_ENDIAN).getInt(p);
+    if (magic == PCAP_MAGIC_MICROS || magic == PCAP_MAGIC_NANOS) {
+      nanos = magic == PCAP_MAGIC_NANOS;
+    } else {
+      int swapped = Integer.reverseBytes(magic);
+      if (swapped != PCAP_MAGIC_MICROS && swapped != PCAP_MAGIC_NANOS) {
+        throw new IOException("Not a pcap or pcapng file: " + path);
+      }
+      nanos = swapped == PCAP_MAGIC_NANOS;
+      buf.order(ByteOrder.BIG_ENDIAN);
+    }
+    // The upper bits of the link type field carry FCS information.
+    fileLinkType = buf.getInt(p + 20) & 0xFFFF;
+    buf.position(p + 24);
+  }
+
+  /**
+   * Advances to the next packet record.
+   *
+   * @return {@code false} at the end of the file.
+   * @throws IOException on read errors or a malformed file.
+   */
+  boolean next() throws IOException {
+    buf.position(buf.position() + consumed);
+    consumed = 0;
+    return pcapng ? nextPcapng() : nextPcap();
+  }
+
+  private boolean nextPcap() throws IOException {
+    if (!ensure(16)) {
+      return false;
+    }
+    int p = buf.position();
+    long seconds = Integer.toUnsignedLong(buf.getInt(p));
+    long fraction = Integer.toUnsignedLong(buf.getInt(p + 4));
+    int captured = buf.getInt(p + 8);
+    if (captured < 0 || captured > BUFFER_BYTES - 16) {
+      throw new IOException("Bad pcap record length " + captured + " in " + path);
+    }
+    if (!ensure(16 + captured)) {
+      return false;
+    }
+    p = buf.position();
+    linkType = fileLinkType;
+    micros = seconds * MICROS_PER_SECOND + (nanos ? fraction / 1000L : fraction);
+    offset = p + 16;
+    length = captured;
+    consumed = 16 + captured;
+    return true;
+  }
+
+  private boolean nextPcapng() throws IOException {
+    while (ensure(12)) {
+      int p = buf.position();
+      int type = buf.getInt(p);
+      if (type == PCAPNG_SHB) {
+        int byteOrder = buf.order(ByteOrder.BIG_ENDIAN).getInt(p + 8);
+        if (byteOrder == Integer.reverseBytes(PCAPNG_BYTE_ORDER_MAGIC)) {
+          buf.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (byteOrder != PCAPNG_BYTE_ORDER_MAGIC) {
+          throw new IOException("Bad pcapng section header in " + path);
+        }
+        // Interface ids are scoped to their section.
+        ifLinkTypes.clear();
+        ifUnits.clear();
+      }
+      int blockLength = buf.getInt(p + 4);
+      if (blockLength < 12 || (blockLength & 3) != 0 || blockLength > BUFFER_BYTES) {
+        throw new IOException("Bad pcapng block length " + blockLength + " in " + path);
+      }
+      if (!ensure(blockLength)) {
+        return false;
+      }
+      p = buf.position();
+      switch (type) {
+      case PCAPNG_IDB -> readInterface(p, blockLength);
+      case PCAPNG_EPB -> {
+        if (packet(p, buf.getInt(p + 8), buf.getInt(p + 12), buf.getInt(p + 16),
+            buf.getInt(p + 20), p + 28, blockLength)) {
+          return true;
+        }
+      }
+      case PCAPNG_PB -> {
+        if (packet(p, Short.toUnsignedInt(buf.getShort(p + 8)), buf.getInt(p + 12),
+            buf.getInt(p + 16), buf.getInt(p + 20), p + 28, blockLength)) {
+          return true;
+        }
+      }
+      case PCAPNG_SPB -> {
+        // No interface id or timestamp: always interface 0, time unknown.
+        int captured = Math.min(buf.getInt(p + 8), blockLength - 16);
+        if (!ifLinkTypes.isEmpty() && captured >= 0) {
+          linkType = ifLinkTypes.get(0);
+          micros = 0L;
+          offset = p + 12;
+          length = captured;
+          consumed = blockLength;
+          return true;
+        }
+      }
+      default -> {
+        // Name resolution, statistics, custom blocks, ...
+      }
+      }
+      buf.position(p + blockLength);
+    }
+    return false;
+  }
+
+  private boolean packet(int p, int ifId, int tsHigh, int tsLow, int captured, int data,
+      int blockLength) {
+    if (ifId < 0 || ifId >= ifLinkTypes.size() || captured < 0
+        || data + captured > p + blockLength) {
+      return false;
+    }
+    long ts = (Integer.toUnsignedLong(tsHigh) << 32) | Integer.toUnsignedLong(tsLow);
+    linkType = ifLinkTypes.get(ifId);
+    micros = toMicros(ts, ifUnits.get(ifId));
+    offset = data;
+    length = captured;
+    consumed = blockLength;
+    return true;
+  }
+
+  private void readInterface(int p, int blockLength) {
+    ifLinkTypes.add(Short.toUnsignedInt(buf.getShort(p + 8)));
+    long units = MICROS_PER_SECOND;
+    int option = p + 16;
+    int end = p + blockLength - 4;
+    while (option + 4 <= end) {
+      int code = Short.toUnsignedInt(buf.getShort(option));
+      int optionLength = Short.toUnsignedInt(buf.getShort(option + 2));
+      if (code == OPTION_END) {
+        break;
+      }
+      if (code == OPTION_IF_TSRESOL && optionLength >= 1 && option + 5 <= end) {
+        int resolution = buf.get(option + 4);
+        int exponent = resolution & 0x7F;
+        if ((resolution & 0x80) != 0) {
+          units = exponent < 63 ? 1L << exponent : MICROS_PER_SECOND;
+        } else {
+          units = exponent <= 18 ? pow10(exponent) : MICROS_PER_SECOND;
+        }
+      }
+      option += 4 + ((optionLength + 3) & ~3);
+    }
+    ifUnits.add(units);
+  }
+
+  private static long pow10(int exponent) {
+    long value = 1L;
+    for (int i = 0; i < exponent; i++) {
+      value *= 10L;
+    }
+    return value;
+  }
+
+  static long toMicros(long ts, long unitsPerSecond) {
+    if (unitsPerSecond == MICROS_PER_SECOND) {
+      return ts;
+    }
+    if (unitsPerSecond % MICROS_PER_SECOND == 0) {
+      return ts / (unitsPerSecond / MICROS_PER_SECOND);
+    }
+    return ts / unitsPerSecond * MICROS_PER_SECOND
+        + ts % unitsPerSecond * MICROS_PER_SECOND / unitsPerSecond;
+  }
+
+  /**
+   * Makes at least {@code n} bytes available from the buffer position,
+   * compacting and refilling as needed.
+   *
+   * @return {@code false} if the file ends first.
+   */
+  private boolean ensure(int n) throws IOException {
+    if (buf.remaining() >= n) {
+      return true;
+    }
+    buf.compact();
+    try {
+      while (buf.position() < n) {
+        if (channel.read(buf) < 0) {
+          return false;
+        }
+      }
+      return true;
+    } finally {
+      buf.flip();
+    }
+  }
+
+  /**
+   * Link type of the current record, as a {@code TcpPacketDecoder.LINK_*}
+   * value (the file's {@code LINKTYPE_*}, with raw IP mapped to DLT_RAW).
+   */
+  int linkType() {
+    return linkType == LINKTYPE_RAW ? TcpPacketDecoder.LINK_RAW : linkType;
+  }
+
+  /** Capture time of the current record in epoch microseconds; 0 if unknown. */
+  long micros() {
+    return micros;
+  }
+
+  ByteBuffer buffer() {
+    return buf;
+  }
+
+  int offset() {
+    return offset;
+  }
+
+  int length() {
+    return length;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,166 @@
+package no.hux.ja4.offline;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import no.hux.ja4.archive.ArchivedHello;
+import no.hux.ja4.archive.HelloArchiveReader;
+
+/**
+ * Bulk re-fingerprinting ({@code ja4-server.jar refingerprint ...}): runs the
+ * current JA4 and JA4H code over ClientHello archive segments and writes one
+ * NDJSON line per record, with the fingerprints stored at capture time next
+ * to the new ones, so the effect of a fingerprint change can be measured on
+ * real traffic.
+ *
+ * <p>Segments are independent, so each is one task on a fixed thread pool.
+ * Lines are formatted per task and handed to the shared writer in chunks.
+ */
+public final class Refingerprinter {
+
+  private static final int CHUNK_CHARS = 64 * 1024;
+
+  private final List<Path> inputs;
+  private final int threads;
+  private final Path output;
+  private final Logger logger;
+
+  private final LongAdder records = new LongAdder();
+  private final LongAdder changed = new LongAdder();
+
+  /** Totals of one run. */
+  public record Result(int segments, long records, long changed, long elapsedNanos) {
+  }
+
+  /**
+   * @param inputs segment files, or directories whose segments are read.
+   * @param output NDJSON destination, or {@code null} for standard output.
+   */
+  public Refingerprinter(List<Path> inputs, int threads, Path output, Logger logger) {
+    if (inputs.isEmpty()) {
+      throw new IllegalArgumentException("at least one archive segment or directory is required");
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be >= 1");
+    }
+    this.inputs = List.copyOf(inputs);
+    this.threads = threads;
+    this.output = output;
+    this.logger = logger;
+  }
+
+  public Result run() throws IOException, InterruptedException {
+    long started = System.nanoTime();
+    List<Path> segments = HelloArchiveReader.segments(inputs);
+    Writer out = output == null
+        ? new OutputStreamWriter(System.out, StandardCharsets.UTF_8)
+        : Files.newBufferedWriter(output, StandardCharsets.UTF_8);
+    NdjsonWriter writer = new NdjsonWriter(new BufferedWriter(out, 1 << 20));
+
+    AtomicInteger workerIds = new AtomicInteger();
+    ExecutorService workers = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(threads, segments.size())), r -> {
+          Thread thread = new Thread(r, "ja4-refingerprint-" + workerIds.getAndIncrement());
+          thread.setDaemon(true);
+          return thread;
+        });
+    try {
+      List<Future<?>> pending = new ArrayList<>();
+      for (Path segment : segments) {
+        pending.add(workers.submit(() -> {
+          refingerprint(segment, writer);
+          return null;
+        }));
+      }
+      for (Future<?> future : pending) {
+        try {
+          future.get();
+        } catch (ExecutionException ex) {
+          logger.log(Level.WARNING, "Re-fingerprinting task failed", ex.getCause());
+        }
+      }
+    } finally {
+      workers.shutdownNow();
+    }
+    writer.flush();
+    if (output != null) {
+      out.close();
+    }
+
+    Result result = new Result(segments.size(), records.sum(), changed.sum(),
+        System.nanoTime() - started);
+    double seconds = Math.max(1e-9, result.elapsedNanos() / 1e9);
+    logger.info(String.format(Locale.ROOT,
+        "Re-fingerprinted %d segment(s): %d records, %d changed, in %.1fs (%.0f records/s)",
+        result.segments(), result.records(), result.changed(), seconds,
+        result.records() / seconds));
+    return result;
+  }
+
+  private void refingerprint(Path segment, NdjsonWriter writer) {
+    StringBuilder sb = new StringBuilder(CHUNK_CHARS + 1024);
+    String name = segment.toString();
+    try (HelloArchiveReader reader = HelloArchiveReader.open(segment)) {
+      ArchivedHello hello;
+      while ((hello = reader.next()) != null) {
+        String ja4 = hello.computeJa4();
+        String ja4h = hello.computeJa4h();
+        boolean differs = !Objects.equals(ja4, hello.ja4()) || !Objects.equals(ja4h, hello.ja4h());
+        records.increment();
+        if (differs) {
+          changed.increment();
+        }
+        sb.append('{');
+        NdjsonWriter.appendField(sb, "segment", name);
+        sb.append(',');
+        NdjsonWriter.appendField(sb, "timestamp",
+            Instant.ofEpochMilli(hello.epochMillis()).toString());
+        sb.append(',');
+        NdjsonWriter.appendField(sb, "sessionId", hello.sessionId());
+        sb.append(',');
+        NdjsonWriter.appendField(sb, "ip", hello.ip());
+        sb.append(',');
+        NdjsonWriter.appendField(sb, "ja4", ja4);
+        sb.append(',');
+        NdjsonWriter.appendField(sb, "ja4h", ja4h);
+        sb.append(',');
+        NdjsonWriter.appendField(sb, "archivedJa4", hello.ja4());
+        sb.append(',');
+        NdjsonWriter.appendField(sb, "archivedJa4h", hello.ja4h());
+        sb.append(",\"changed\":").append(differs).append("}\n");
+        if (sb.length() >= CHUNK_CHARS) {
+          writer.write(sb);
+          sb.setLength(0);
+        }
+      }
+      if (reader.isTruncated()) {
+        logger.log(Level.WARNING, "Archive segment {0} is truncated; used the records before "
+            + "the cut", segment);
+      }
+    } catch (IOException ex) {
+      logger.log(Level.WARNING, "Failed to read " + segment + "; using the records read so far",
+          ex);
+    } finally {
+      if (sb.length() > 0) {
+        writer.write(sb);
+      }
+    }
+  }
+}
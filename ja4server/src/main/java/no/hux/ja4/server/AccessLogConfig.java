@@ -0,0 +1,84 @@
+package no.hux.ja4.server;
+
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+/** Options of the {@code access-log} command. */
+public final class AccessLogConfig {
+
+  private final List<Path> inputs;
+  private final String sessionId;
+  private final InetAddress client;
+  private final String ja4Prefix;
+  private final int status;
+  private final String kind;
+  private final Instant since;
+  private final Instant until;
+  private final boolean json;
+  private final boolean follow;
+
+  public AccessLogConfig(List<Path> inputs, String sessionId, InetAddress client,
+      String ja4Prefix, int status, String kind, Instant since, Instant until, boolean json,
+      boolean follow) {
+    this.inputs = List.copyOf(inputs);
+    this.sessionId = sessionId;
+    this.client = client;
+    this.ja4Prefix = ja4Prefix;
+    this.status = status;
+    this.kind = kind;
+    this.since = since;
+    this.until = until;
+    this.json = json;
+    this.follow = follow;
+  }
+
+  /** Access log segments, or directories of them. */
+  public List<Path> getInputs() {
+    return inputs;
+  }
+
+  /** Session ID to match, or {@code null} for any. */
+  public String getSessionId() {
+    return sessionId;
+  }
+
+  /** Client address to match, or {@code null} for any. */
+  public InetAddress getClient() {
+    return client;
+  }
+
+  /** JA4 prefix to match, or {@code null} for any. */
+  public String getJa4Prefix() {
+    return ja4Prefix;
+  }
+
+  /** HTTP status to match, or 0 for any. */
+  public int getStatus() {
+    return status;
+  }
+
+  /** {@code pixel}, {@code lookup} or {@code all}. */
+  public String getKind() {
+    return kind;
+  }
+
+  /** Earliest entry time printed, or {@code null}. */
+  public Instant getSince() {
+    return since;
+  }
+
+  /** Entry time printed entries are before, or {@code null}. */
+  public Instant getUntil() {
+    return until;
+  }
+
+  public boolean isJson() {
+    return json;
+  }
+
+  public boolean isFollow() {
+    return follow;
+  }
+}
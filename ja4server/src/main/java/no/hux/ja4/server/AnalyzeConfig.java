@@ -0,0 +1,38 @@
+package no.hux.ja4.server;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/** Options of the {@code analyze} offline command. */
+public final class AnalyzeConfig {
+
+  private final List<Path> files;
+  private final int threads;
+  private final List<Integer> ports;
+  private final Path output;
+
+  public AnalyzeConfig(List<Path> files, int threads, List<Integer> ports, Path output) {
+    this.files = List.copyOf(files);
+    this.threads = threads;
+    this.ports = List.copyOf(ports);
+    this.output = output;
+  }
+
+  public List<Path> getFiles() {
+    return files;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  /** Ports whose flows are analyzed; empty for all. */
+  public List<Integer> getPorts() {
+    return ports;
+  }
+
+  /** NDJSON output file, or {@code null} for standard output. */
+  public Path getOutput() {
+    return output;
+  }
+}
@@ -9,6 +9,7 @@ import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.util.Base64;
@@ -17,9 +18,17 @@ public final class BasicAuthHandler extends ChannelInboundHandlerAdapter {
 
   private final byte[] expectedAuthHeaderBytes;
   private final String protectedPath;
+  private final String realm;
 
   public BasicAuthHandler(ServerConfig config, String protectedPath) {
-    String token = config.getApiUserPassword();
+    this(config.getApiUserPassword(), protectedPath, "lookuprealm");
+  }
+
+  /**
+   * @param token {@code user:password} required for {@code protectedPath} and
+   *        the paths under it.
+   */
+  public BasicAuthHandler(String token, String protectedPath, String realm) {
     if (token.indexOf(":") == -1) {
       throw new IllegalArgumentException("ApiUserPassword is not on the form user:password");
     }
@@ -27,6 +36,7 @@ public final class BasicAuthHandler extends ChannelInboundHandlerAdapter {
         + Base64.getEncoder().encodeToString(token.getBytes(StandardCharsets.UTF_8));
     this.expectedAuthHeaderBytes = expectedAuthHeader.getBytes(StandardCharsets.UTF_8);
     this.protectedPath = protectedPath;
+    this.realm = realm;
   }
 
   @Override
@@ -36,7 +46,7 @@ public final class BasicAuthHandler extends ChannelInboundHandlerAdapter {
       return;
     }
 
-    if (!request.uri().startsWith(protectedPath)) {
+    if (!isProtected(request.uri())) {
       ctx.fireChannelRead(msg);
       return;
     }
@@ -55,11 +65,21 @@ public final class BasicAuthHandler extends ChannelInboundHandlerAdapter {
     ctx.fireChannelRead(msg);
   }
 
+  /**
+   * Decides on the percent-decoded path, as {@link RequestHandler} routes on
+   * it, so an encoded spelling of a protected path is protected too.
+   */
+  boolean isProtected(String uri) {
+    String path = new QueryStringDecoder(uri).path();
+    return path.startsWith(protectedPath)
+        && (path.length() == protectedPath.length() || path.charAt(protectedPath.length()) == '/');
+  }
+
   private void sendUnauthorized(ChannelHandlerContext ctx) {
     FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,
         HttpResponseStatus.UNAUTHORIZED);
 
-    response.headers().set(HttpHeaderNames.WWW_AUTHENTICATE, "Basic realm=\"lookuprealm\"");
+    response.headers().set(HttpHeaderNames.WWW_AUTHENTICATE, "Basic realm=\"" + realm + "\"");
     response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
 
     ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
@@ -0,0 +1,63 @@
+package no.hux.ja4.server;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/** Options of the {@code capture} sidecar command. */
+public final class CaptureConfig {
+
+  private final Path ringPath;
+  private final int ringSlots;
+  private final List<Integer> ports;
+  private final List<String> captureIfaces;
+  private final String captureEngine;
+  private final int captureWorkers;
+  private final int captureSnaplen;
+  private final int captureBufferBytes;
+
+  public CaptureConfig(Path ringPath, int ringSlots, List<Integer> ports,
+      List<String> captureIfaces, String captureEngine, int captureWorkers, int captureSnaplen,
+      int captureBufferBytes) {
+    this.ringPath = ringPath;
+    this.ringSlots = ringSlots;
+    this.ports = List.copyOf(ports);
+    this.captureIfaces = List.copyOf(captureIfaces);
+    this.captureEngine = captureEngine.toLowerCase(Locale.ROOT);
+    this.captureWorkers = captureWorkers;
+    this.captureSnaplen = captureSnaplen;
+    this.captureBufferBytes = captureBufferBytes;
+  }
+
+  public Path getRingPath() {
+    return ringPath;
+  }
+
+  public int getRingSlots() {
+    return ringSlots;
+  }
+
+  public List<Integer> getPorts() {
+    return ports;
+  }
+
+  public List<String> getCaptureIfaces() {
+    return captureIfaces;
+  }
+
+  public String getCaptureEngine() {
+    return captureEngine;
+  }
+
+  public int getCaptureWorkers() {
+    return captureWorkers;
+  }
+
+  public int getCaptureSnaplen() {
+    return captureSnaplen;
+  }
+
+  public int getCaptureBufferBytes() {
+    return captureBufferBytes;
+  }
+}
@@ -1,25 +1,45 @@
 package no.hux.ja4.server;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOption;
 import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import no.hux.ja4.admission.Ja4Rules;
 import no.hux.ja4.fingerprint.Ja4TlsFingerprint;
+import no.hux.ja4.metrics.ServerMetrics;
 
 public final class ClientHelloCaptureHandler extends ChannelInboundHandlerAdapter {
 
   private static final int MAX_CAPTURE_BYTES = 64 * 1024;
   private final AttributeKey<ConnectionState> stateKey;
   private final Logger logger;
+  private final boolean keepRawHello;
+  private final ServerMetrics metrics;
+  private final Ja4Rules rules;
   private ByteBuf cumulation;
   private boolean done;
+  // Parse time over all reads of this connection's ClientHello.
+  private long parseNanos;
+  private int reads;
 
-  public ClientHelloCaptureHandler(AttributeKey<ConnectionState> stateKey, Logger logger) {
+  /**
+   * @param keepRawHello also keep the ClientHello bytes on the connection, for the archive.
+   * @param rules JA4 rules; a connection whose JA4 a block rule decides is reset before the
+   *        TLS handshake starts. {@code null} checks no rules.
+   */
+  public ClientHelloCaptureHandler(AttributeKey<ConnectionState> stateKey, Logger logger,
+      boolean keepRawHello, ServerMetrics metrics, Ja4Rules rules) {
     this.stateKey = stateKey;
     this.logger = logger;
+    this.keepRawHello = keepRawHello;
+    this.metrics = metrics;
+    this.rules = rules;
   }
 
   @Override
@@ -30,19 +50,49 @@ public final class ClientHelloCaptureHandler extends ChannelInboundHandlerAdapte
       }
       if (cumulation.readableBytes() + buf.readableBytes() > MAX_CAPTURE_BYTES) {
         logger.log(Level.WARNING, "ClientHello capture exceeded {0} bytes", MAX_CAPTURE_BYTES);
+        metrics.clientHelloFailed();
         done = true;
         releaseBuffer();
         ctx.pipeline().remove(this);
+        ctx.fireChannelRead(msg);
+        return;
       } else {
         cumulation.writeBytes(buf, buf.readerIndex(), buf.readableBytes());
       }
+      reads++;
       try {
+        long start = System.nanoTime();
         ClientHelloInfo info = ClientHelloParser.tryParse(cumulation);
+        parseNanos += System.nanoTime() - start;
         if (info != null) {
+          metrics.clientHelloParse().record(parseNanos);
+          captured();
           ConnectionState state = ctx.channel().attr(stateKey).get();
           if (state != null) {
+            state.setClientHelloAtNanos(System.nanoTime());
             state.setClientHelloInfo(info);
-            state.setJa4(Ja4TlsFingerprint.compute(info));
+            FingerprintComputedEvent event = new FingerprintComputedEvent();
+            event.begin();
+            start = System.nanoTime();
+            String ja4 = Ja4TlsFingerprint.compute(info);
+            state.setJa4(ja4);
+            metrics.ja4Compute().recordSince(start);
+            if (event.shouldCommit()) {
+              event.kind = "ja4";
+              event.commit();
+            }
+            if (rules != null && blocked(ja4)) {
+              // The hello never reaches the SslHandler, so no handshake work is done.
+              done = true;
+              releaseBuffer();
+              ReferenceCountUtil.release(msg);
+              ctx.channel().config().setOption(ChannelOption.SO_LINGER, 0);
+              ctx.close();
+              return;
+            }
+            if (keepRawHello) {
+              state.setRawClientHello(ByteBufUtil.getBytes(cumulation));
+            }
           }
           done = true;
           releaseBuffer();
@@ -50,6 +100,7 @@ public final class ClientHelloCaptureHandler extends ChannelInboundHandlerAdapte
         }
       } catch (Exception ex) {
         logger.log(Level.WARNING, "Failed to parse TLS ClientHello", ex);
+        metrics.clientHelloFailed();
         done = true;
         releaseBuffer();
       }
@@ -69,6 +120,29 @@ public final class ClientHelloCaptureHandler extends ChannelInboundHandlerAdapte
     super.handlerRemoved(ctx);
   }
 
+  private boolean blocked(String ja4) {
+    Ja4Rules.Rule rule = rules.match(ja4);
+    if (rule == null || rule.isAllow()) {
+      return false;
+    }
+    if (logger.isLoggable(Level.FINE)) {
+      logger.log(Level.FINE, "Reset a connection with JA4 {0} by rule ''{1} {2}''",
+          new Object[] {ja4, rule.getPart(), rule.getValue()});
+    }
+    return true;
+  }
+
+  private void captured() {
+    ClientHelloCapturedEvent event = new ClientHelloCapturedEvent();
+    if (event.shouldCommit()) {
+      event.bytes = cumulation.readableBytes();
+      event.parseTime = parseNanos;
+      event.reads = reads;
+      event.fragmented = reads > 1;
+      event.commit();
+    }
+  }
+
   private void releaseBuffer() {
     if (cumulation != null) {
       cumulation.release();
@@ -0,0 +1,35 @@
+package no.hux.ja4.server;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/** A connection's ClientHello was parsed. Off unless a recording enables it. */
+@Name("no.hux.ja4.ClientHelloCaptured")
+@Label("ClientHello Captured")
+@Category({"JA4", "Server"})
+@Enabled(false)
+@StackTrace(false)
+final class ClientHelloCapturedEvent extends jdk.jfr.Event {
+
+  @Label("Bytes")
+  @DataAmount
+  int bytes;
+
+  @Label("Parse Time")
+  @Description("Time spent parsing, summed over all reads of the ClientHello")
+  @Timespan
+  long parseTime;
+
+  @Label("Reads")
+  int reads;
+
+  @Label("Fragmented")
+  @Description("The ClientHello spanned more than one read")
+  boolean fragmented;
+}
@@ -1,10 +1,23 @@
 package no.hux.ja4.server;
 
+import io.netty.util.NetUtil;
+import java.net.InetAddress;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import no.hux.ja4.accesslog.AccessLog;
+import no.hux.ja4.archive.HelloArchive;
+import no.hux.ja4.capture.CaptureReplay;
+import no.hux.ja4.capture.CaptureSidecar;
+import no.hux.ja4.capture.PacketCaptureService;
+import no.hux.ja4.capture.TcpInfoStore;
+import no.hux.ja4.logging.AsyncLogHandler;
 
 public final class ConfigParser {
 
@@ -12,33 +25,7 @@ public final class ConfigParser {
   }
 
   public static ServerConfig parse(String[] args) {
-    Map<String, String> options = new HashMap<>();
-
-    for (int i = 0; i < args.length; i++) {
-      String arg = args[i];
-      if ("--help".equals(arg) || "-h".equals(arg)) {
-        throw new IllegalArgumentException("help");
-      }
-      if (arg.startsWith("--")) {
-        String key;
-        String value;
-        int idx = arg.indexOf('=');
-        if (idx > 2) {
-          key = arg.substring(2, idx);
-          value = arg.substring(idx + 1);
-        } else {
-          key = arg.substring(2);
-          if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
-            value = args[++i];
-          } else {
-            value = "true";
-          }
-        }
-        options.put(key.toLowerCase(Locale.ROOT), value);
-      } else {
-        throw new IllegalArgumentException("Unexpected argument: " + arg);
-      }
-    }
+    Map<String, String> options = parseOptions(args, null);
 
     String host = options.getOrDefault("host", "0.0.0.0");
     int port = parseInt(options.getOrDefault("port", "8443"), "port");
@@ -60,15 +47,320 @@ public final class ConfigParser {
     int idleTimeoutSeconds = parseInt(options.getOrDefault("idle-timeout-seconds", "60"),
         "idle-timeout-seconds");
     boolean enablePcap = parseBoolean(options.getOrDefault("enable-pcap", "false"), "enable-pcap");
-    String captureIface = options.get("capture-iface");
+    List<String> captureIfaces = parseList(options.get("capture-iface"));
+    String captureEngine = options.getOrDefault("capture-engine",
+        PacketCaptureService.ENGINE_PCAP);
+    int captureWorkers = parseInt(options.getOrDefault("capture-workers", "1"), "capture-workers");
+    int captureSnaplen = parseInt(options.getOrDefault("capture-snaplen",
+        String.valueOf(PacketCaptureService.DEFAULT_SNAPLEN)), "capture-snaplen");
+    int captureBufferBytes = parseInt(options.getOrDefault("capture-buffer-bytes", "0"),
+        "capture-buffer-bytes");
+    int captureSynRate = parseInt(options.getOrDefault("capture-syn-rate",
+        String.valueOf(PacketCaptureService.DEFAULT_SYN_RATE)), "capture-syn-rate");
+    int captureSynBurst = parseInt(options.getOrDefault("capture-syn-burst",
+        String.valueOf(PacketCaptureService.DEFAULT_SYN_BURST)), "capture-syn-burst");
+    Path captureRing = options.containsKey("capture-ring")
+        ? Path.of(options.get("capture-ring")) : null;
+    List<Integer> passivePorts = new ArrayList<>();
+    for (String passivePort : parseList(options.get("passive-ports"))) {
+      passivePorts.add(parseInt(passivePort, "passive-ports"));
+    }
+    Path archiveDir = options.containsKey("archive-dir")
+        ? Path.of(options.get("archive-dir")) : null;
+    long archiveSegmentBytes = parseLong(options.getOrDefault("archive-segment-bytes",
+        String.valueOf(HelloArchive.DEFAULT_SEGMENT_BYTES)), "archive-segment-bytes");
+    boolean enableMetrics = parseBoolean(options.getOrDefault("enable-metrics", "false"),
+        "enable-metrics");
+    String metricsUserPassword = options.get("metrics-userpass");
+    boolean lookupTimings = parseBoolean(options.getOrDefault("lookup-timings", "false"),
+        "lookup-timings");
+    int loopStallThresholdMillis = parseInt(options.getOrDefault("loop-stall-threshold-ms", "100"),
+        "loop-stall-threshold-ms");
+    String logFormat = options.getOrDefault("log-format", "text");
+    int logRatePerKey = parseInt(options.getOrDefault("log-rate-per-key",
+        String.valueOf(AsyncLogHandler.DEFAULT_PER_KEY_PER_SECOND)), "log-rate-per-key");
+    Path accessLogDir = options.containsKey("access-log-dir")
+        ? Path.of(options.get("access-log-dir")) : null;
+    long accessLogSegmentBytes = parseLong(options.getOrDefault("access-log-segment-bytes",
+        String.valueOf(AccessLog.DEFAULT_SEGMENT_BYTES)), "access-log-segment-bytes");
+    int accessLogMaxSegments = parseInt(options.getOrDefault("access-log-max-segments", "32"),
+        "access-log-max-segments");
+    int connRatePerIp = parseInt(options.getOrDefault("conn-rate-per-ip", "0"),
+        "conn-rate-per-ip");
+    int connBurstPerIp = parseInt(options.getOrDefault("conn-burst-per-ip",
+        String.valueOf(connRatePerIp)), "conn-burst-per-ip");
+    int connRatePerPrefix = parseInt(options.getOrDefault("conn-rate-per-prefix", "0"),
+        "conn-rate-per-prefix");
+    int connBurstPerPrefix = parseInt(options.getOrDefault("conn-burst-per-prefix",
+        String.valueOf(connRatePerPrefix)), "conn-burst-per-prefix");
+    Path ja4RulesPath = options.containsKey("ja4-rules")
+        ? Path.of(options.get("ja4-rules")) : null;
+    int shedLoadLagMillis = parseInt(options.getOrDefault("shed-load-lag-ms", "0"),
+        "shed-load-lag-ms");
 
     ServerConfig config = new ServerConfig(host, port, env, cert, key, letsEncryptDir, domain, ttl,
         maxContentLength, maxStoreEntries, requireUuidSessionId, apiUserPassword,
-        idleTimeoutSeconds, enablePcap, captureIface);
+        idleTimeoutSeconds, enablePcap, captureIfaces, captureEngine, captureWorkers,
+        captureSnaplen, captureBufferBytes, captureSynRate, captureSynBurst, captureRing,
+        passivePorts, archiveDir, archiveSegmentBytes, enableMetrics, metricsUserPassword,
+        lookupTimings,
+        loopStallThresholdMillis, logFormat, logRatePerKey, accessLogDir, accessLogSegmentBytes,
+        accessLogMaxSegments, connRatePerIp, connBurstPerIp, connRatePerPrefix,
+        connBurstPerPrefix, ja4RulesPath, shedLoadLagMillis);
     validate(config);
     return config;
   }
 
+  /** Parses the options of the {@code capture} sidecar command. */
+  public static CaptureConfig parseCapture(String[] args) {
+    Map<String, String> options = parseOptions(args, null);
+
+    Path ring = Path.of(options.getOrDefault("ring",
+        CaptureSidecar.DEFAULT_RING_PATH.toString()));
+    int ringSlots = parseInt(options.getOrDefault("ring-slots",
+        String.valueOf(CaptureSidecar.DEFAULT_RING_SLOTS)), "ring-slots");
+    List<Integer> ports = new ArrayList<>();
+    for (String port : parseList(options.getOrDefault("port", "8443"))) {
+      ports.add(parseInt(port, "port"));
+    }
+    List<String> captureIfaces = parseList(options.get("capture-iface"));
+    String captureEngine = options.getOrDefault("capture-engine",
+        PacketCaptureService.ENGINE_PCAP);
+    int captureWorkers = parseInt(options.getOrDefault("capture-workers", "1"), "capture-workers");
+    int captureSnaplen = parseInt(options.getOrDefault("capture-snaplen",
+        String.valueOf(PacketCaptureService.DEFAULT_SNAPLEN)), "capture-snaplen");
+    int captureBufferBytes = parseInt(options.getOrDefault("capture-buffer-bytes", "0"),
+        "capture-buffer-bytes");
+
+    CaptureConfig config = new CaptureConfig(ring, ringSlots, ports, captureIfaces,
+        captureEngine, captureWorkers, captureSnaplen, captureBufferBytes);
+    validateCapture(config);
+    return config;
+  }
+
+  /** Parses the options of the {@code analyze} command; the rest are capture files. */
+  public static AnalyzeConfig parseAnalyze(String[] args) {
+    List<String> files = new ArrayList<>();
+    Map<String, String> options = parseOptions(args, files);
+
+    int threads = parseInt(options.getOrDefault("threads",
+        String.valueOf(Runtime.getRuntime().availableProcessors())), "threads");
+    List<Integer> ports = new ArrayList<>();
+    for (String port : parseList(options.get("port"))) {
+      ports.add(parseInt(port, "port"));
+    }
+    String output = options.get("output");
+    Path outputPath = output == null || "-".equals(output) ? null : Path.of(output);
+
+    List<Path> paths = new ArrayList<>();
+    for (String file : files) {
+      paths.add(Path.of(file));
+    }
+    AnalyzeConfig config = new AnalyzeConfig(paths, threads, ports, outputPath);
+    if (paths.isEmpty()) {
+      throw new IllegalArgumentException("At least one capture file is required");
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be >= 1");
+    }
+    for (int port : ports) {
+      if (port < 1 || port > 65535) {
+        throw new IllegalArgumentException("Port must be between 1 and 65535");
+      }
+    }
+    return config;
+  }
+
+  /** Parses the options of the {@code refingerprint} command; the rest are segments. */
+  public static RefingerprintConfig parseRefingerprint(String[] args) {
+    List<String> inputs = new ArrayList<>();
+    Map<String, String> options = parseOptions(args, inputs);
+
+    int threads = parseInt(options.getOrDefault("threads",
+        String.valueOf(Runtime.getRuntime().availableProcessors())), "threads");
+    String output = options.get("output");
+    Path outputPath = output == null || "-".equals(output) ? null : Path.of(output);
+
+    List<Path> paths = new ArrayList<>();
+    for (String input : inputs) {
+      paths.add(Path.of(input));
+    }
+    if (paths.isEmpty()) {
+      throw new IllegalArgumentException("At least one archive segment or directory is required");
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be >= 1");
+    }
+    return new RefingerprintConfig(paths, threads, outputPath);
+  }
+
+  /** Parses the options of the {@code access-log} command; the rest are segments. */
+  public static AccessLogConfig parseAccessLog(String[] args) {
+    List<String> inputs = new ArrayList<>();
+    Map<String, String> options = parseOptions(args, inputs);
+
+    String ip = options.get("ip");
+    InetAddress client = null;
+    if (ip != null) {
+      if (!NetUtil.isValidIpV4Address(ip) && !NetUtil.isValidIpV6Address(ip)) {
+        throw new IllegalArgumentException("Invalid ip: " + ip);
+      }
+      client = NetUtil.createInetAddressFromIpAddressString(ip);
+    }
+    int status = parseInt(options.getOrDefault("status", "0"), "status");
+    String kind = options.getOrDefault("kind", "all").toLowerCase(Locale.ROOT);
+    Instant since = parseInstant(options.get("since"), "since");
+    Instant until = parseInstant(options.get("until"), "until");
+    boolean json = parseBoolean(options.getOrDefault("json", "false"), "json");
+    boolean follow = parseBoolean(options.getOrDefault("follow", "false"), "follow");
+
+    List<Path> paths = new ArrayList<>();
+    for (String input : inputs) {
+      paths.add(Path.of(input));
+    }
+    if (paths.isEmpty()) {
+      throw new IllegalArgumentException(
+          "At least one access log segment or directory is required");
+    }
+    if (follow && paths.size() != 1) {
+      throw new IllegalArgumentException("follow requires a single segment or directory");
+    }
+    if (status != 0 && (status < 100 || status > 999)) {
+      throw new IllegalArgumentException("status must be between 100 and 999");
+    }
+    if (!"all".equals(kind) && !"pixel".equals(kind) && !"lookup".equals(kind)) {
+      throw new IllegalArgumentException("kind must be pixel, lookup or all");
+    }
+    return new AccessLogConfig(paths, options.get("session"), client, options.get("ja4"), status,
+        kind, since, until, json, follow);
+  }
+
+  /** Parses the options of the {@code loadgen} command. */
+  public static LoadGenConfig parseLoadGen(String[] args) {
+    Map<String, String> options = parseOptions(args, null);
+
+    String host = options.getOrDefault("host", "127.0.0.1");
+    int port = parseInt(options.getOrDefault("port", "8443"), "port");
+    double rate = parseDouble(options.getOrDefault("rate", "50"), "rate");
+    int durationSeconds = parseInt(options.getOrDefault("duration-seconds", "30"),
+        "duration-seconds");
+    int maxInFlight = parseInt(options.getOrDefault("max-in-flight", "1000"), "max-in-flight");
+    double lookupRatio = parseDouble(options.getOrDefault("lookup-ratio", "0.1"),
+        "lookup-ratio");
+    int threads = parseInt(options.getOrDefault("threads",
+        String.valueOf(Runtime.getRuntime().availableProcessors())), "threads");
+    List<String> profiles = parseList(options.get("profiles"));
+    int reportIntervalSeconds = parseInt(options.getOrDefault("report-interval-seconds", "5"),
+        "report-interval-seconds");
+
+    if (port < 1 || port > 65535) {
+      throw new IllegalArgumentException("Port must be between 1 and 65535");
+    }
+    if (!(rate > 0)) {
+      throw new IllegalArgumentException("rate must be > 0");
+    }
+    if (durationSeconds < 1) {
+      throw new IllegalArgumentException("duration-seconds must be >= 1");
+    }
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("max-in-flight must be >= 1");
+    }
+    if (!(lookupRatio >= 0 && lookupRatio <= 1)) {
+      throw new IllegalArgumentException("lookup-ratio must be between 0 and 1");
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be >= 1");
+    }
+    return new LoadGenConfig(host, port, rate, durationSeconds, maxInFlight, lookupRatio,
+        threads, options.get("userpass"), profiles, options.get("sni"), reportIntervalSeconds);
+  }
+
+  /** Parses the options of the {@code replay-capture} command. */
+  public static ReplayCaptureConfig parseReplayCapture(String[] args) {
+    Map<String, String> options = parseOptions(args, null);
+
+    int handshakes = parseInt(options.getOrDefault("handshakes", "65536"), "handshakes");
+    int interleave = parseInt(options.getOrDefault("interleave", "64"), "interleave");
+    double loss = parseDouble(options.getOrDefault("loss", "0"), "loss");
+    double reorder = parseDouble(options.getOrDefault("reorder", "0"), "reorder");
+    double flood = parseDouble(options.getOrDefault("flood", "0"), "flood");
+    long seed = parseLong(options.getOrDefault("seed", "1"), "seed");
+    int durationSeconds = parseInt(options.getOrDefault("duration-seconds", "10"),
+        "duration-seconds");
+    int warmupSeconds = parseInt(options.getOrDefault("warmup-seconds", "5"), "warmup-seconds");
+    boolean inline = parseBoolean(options.getOrDefault("inline", "false"), "inline");
+    int storeEntries = parseInt(options.getOrDefault("store-entries",
+        String.valueOf(TcpInfoStore.DEFAULT_MAX_ENTRIES)), "store-entries");
+
+    if (handshakes < 1 || handshakes > 1 << 24) {
+      throw new IllegalArgumentException("handshakes must be between 1 and " + (1 << 24));
+    }
+    if (interleave < 1) {
+      throw new IllegalArgumentException("interleave must be >= 1");
+    }
+    if (!(loss >= 0 && loss <= 1)) {
+      throw new IllegalArgumentException("loss must be between 0 and 1");
+    }
+    if (!(reorder >= 0 && reorder <= 1)) {
+      throw new IllegalArgumentException("reorder must be between 0 and 1");
+    }
+    if (!(flood >= 0) || handshakes * flood > 1 << 24) {
+      throw new IllegalArgumentException("flood must be >= 0 and yield at most "
+          + (1 << 24) + " SYNs");
+    }
+    if (CaptureReplay.packets(handshakes, flood) > CaptureReplay.MAX_PACKETS) {
+      throw new IllegalArgumentException("handshakes * 3 + flood SYNs must be at most "
+          + CaptureReplay.MAX_PACKETS);
+    }
+    if (durationSeconds < 1) {
+      throw new IllegalArgumentException("duration-seconds must be >= 1");
+    }
+    if (warmupSeconds < 0) {
+      throw new IllegalArgumentException("warmup-seconds must be >= 0");
+    }
+    if (storeEntries < 1 || storeEntries > 1 << 24) {
+      throw new IllegalArgumentException("store-entries must be between 1 and " + (1 << 24));
+    }
+    return new ReplayCaptureConfig(handshakes, interleave, loss, reorder, flood, seed,
+        durationSeconds, warmupSeconds, inline, storeEntries);
+  }
+
+  /**
+   * @param positional receives non-option arguments; {@code null} if the
+   *        command takes none.
+   */
+  private static Map<String, String> parseOptions(String[] args, List<String> positional) {
+    Map<String, String> options = new HashMap<>();
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      if ("--help".equals(arg) || "-h".equals(arg)) {
+        throw new IllegalArgumentException("help");
+      }
+      if (arg.startsWith("--")) {
+        String key;
+        String value;
+        int idx = arg.indexOf('=');
+        if (idx > 2) {
+          key = arg.substring(2, idx);
+          value = arg.substring(idx + 1);
+        } else {
+          key = arg.substring(2);
+          if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+            value = args[++i];
+          } else {
+            value = "true";
+          }
+        }
+        options.put(key.toLowerCase(Locale.ROOT), value);
+      } else if (positional != null) {
+        positional.add(arg);
+      } else {
+        throw new IllegalArgumentException("Unexpected argument: " + arg);
+      }
+    }
+    return options;
+  }
+
   public static void printUsage() {
     String usage = """
         Usage: java -jar ja4-server.jar [options]
@@ -88,7 +380,164 @@ public final class ConfigParser {
           --require-uuid-session-id <bool> Reject session IDs that are not valid UUIDs (default: false)
           --idle-timeout-seconds <seconds> Close idle connections after N seconds, 0 disables (default: 60)
           --enable-pcap <bool>            Capture TCP handshakes for JA4T + real JA4L (needs root/CAP_NET_RAW + libpcap; default: false)
-          --capture-iface <name>          Capture interface name (default: auto-select from bind address)
+          --capture-iface <name[,name]>   Capture interface name(s), comma-separated (default: auto-select from bind address)
+          --capture-engine <pcap|afpacket> Capture backend; afpacket is a Linux mmap ring (default: pcap)
+          --capture-workers <count>       Capture threads per interface, flows split by hash (afpacket only; default: 1)
+          --capture-snaplen <bytes>       Bytes captured per packet, at least 142 (default: 256)
+          --capture-buffer-bytes <bytes>  Kernel capture buffer per worker, 0 = engine default; whole MiB, at least 2, with afpacket (default: 0)
+          --capture-syn-rate <per second> New-client SYNs per second per source /24 admitted to the handshake store (default: 64)
+          --capture-syn-burst <count>     SYNs a source /24 may send at once (default: 256)
+          --capture-ring <path>           Read handshakes from a capture sidecar's ring file instead of capturing in-process
+          --passive-ports <port[,port]>   Also fingerprint TLS clients of these ports, served by other processes, from capture alone (needs root/CAP_NET_RAW + libpcap)
+          --archive-dir <path>            Archive each raw ClientHello and its request's header names to compressed segments here
+          --archive-segment-bytes <bytes> Roll archive segments after this many uncompressed bytes (default: 67108864)
+          --enable-metrics <bool>         Serve Prometheus metrics at /metrics (default: false)
+          --metrics-userpass <username:password> Add Basic Authentication protection of /metrics
+          --lookup-timings <bool>         Return each connection's phase timings from lookups (default: false)
+          --loop-stall-threshold-ms <ms>  Log a stack sample when an event loop lags this long, 0 disables, at least 5 (default: 100)
+          --log-format <text|json>        Log line format (default: text)
+          --log-rate-per-key <count>      Log records of one message per second before sampling 1 in 100, 0 disables (default: 20)
+          --access-log-dir <path>         Write a binary access log entry per pixel and lookup request to memory-mapped segments here
+          --access-log-segment-bytes <bytes> Access log segment file size, at most 1 GiB (default: 67108864)
+          --access-log-max-segments <count> Access log segments kept, 0 keeps all (default: 32)
+          --conn-rate-per-ip <per second> New connections per second per client address, closed before TLS beyond it, 0 disables (default: 0)
+          --conn-burst-per-ip <count>     Connections a client address may open at once (default: the rate)
+          --conn-rate-per-prefix <per second> New connections per second per /24 (IPv4) or /64 (IPv6), 0 disables (default: 0)
+          --conn-burst-per-prefix <count> Connections a prefix may open at once (default: the rate)
+          --ja4-rules <path>              JA4 allow/block rules; blocked clients are reset before the TLS handshake, reloaded on change
+          --shed-load-lag-ms <ms>         Shed work under load; the event loop lag at which new connections are refused, 0 disables (default: 0)
+          --help                          Show this help
+
+        Capture sidecar: java -jar ja4-server.jar capture --help
+        Offline pcap analysis: java -jar ja4-server.jar analyze --help
+        Archive re-fingerprinting: java -jar ja4-server.jar refingerprint --help
+        Access log decoding: java -jar ja4-server.jar access-log --help
+        Load generator: java -jar ja4-server.jar loadgen --help
+        Capture pipeline benchmark: java -jar ja4-server.jar replay-capture --help
+        """;
+    System.out.println(usage);
+  }
+
+  public static void printAnalyzeUsage() {
+    String usage = """
+        Usage: java -jar ja4-server.jar analyze [options] <file.pcap|file.pcapng>...
+
+        Computes JA4, JA4T and JA4L for every IPv4 TCP flow in the capture files and writes
+        one NDJSON line per flow.
+
+        Options:
+          --threads <count>               Flow threads, and files read at once (default: CPU count)
+          --port <port[,port]>            Only flows to/from these ports (default: all)
+          --output <path|->               NDJSON output file, - for stdout (default: stdout)
+          --help                          Show this help
+        """;
+    System.out.println(usage);
+  }
+
+  public static void printRefingerprintUsage() {
+    String usage = """
+        Usage: java -jar ja4-server.jar refingerprint [options] <segment|archive dir>...
+
+        Recomputes JA4 and JA4H with the current code for every record in ClientHello archive
+        segments (see --archive-dir) and writes one NDJSON line per record, with the archived
+        fingerprints alongside.
+
+        Options:
+          --threads <count>               Segments processed at once (default: CPU count)
+          --output <path|->               NDJSON output file, - for stdout (default: stdout)
+          --help                          Show this help
+        """;
+    System.out.println(usage);
+  }
+
+  public static void printAccessLogUsage() {
+    String usage = """
+        Usage: java -jar ja4-server.jar access-log [options] <segment|access log dir>...
+
+        Decodes binary access log segments (see --access-log-dir) and prints one line per pixel
+        or lookup request: time, kind, status, latency, client address, session ID, JA4, JA4H,
+        JA4L-C, JA4L-S and JA4T, tab-separated, - when absent.
+
+        Options:
+          --session <id>                  Only entries of this session ID
+          --ip <address>                  Only entries of this client address
+          --ja4 <prefix>                  Only entries whose JA4 starts with this
+          --status <code>                 Only entries with this HTTP status
+          --kind <pixel|lookup|all>       Only entries of this request kind (default: all)
+          --since <instant>               Only entries at or after this ISO-8601 time, e.g. 2026-01-01T12:00:00Z
+          --until <instant>               Only entries before this ISO-8601 time
+          --json <bool>                   Print NDJSON instead of text (default: false)
+          --follow <bool>                 Keep printing new entries, moving on to new segments of a directory (default: false)
+          --help                          Show this help
+        """;
+    System.out.println(usage);
+  }
+
+  public static void printLoadGenUsage() {
+    String usage = """
+        Usage: java -jar ja4-server.jar loadgen [options]
+
+        Opens TLS connections to a running server at a fixed rate with a mix of client profiles,
+        loads the pixel for a random session ID on each, looks a share of them up, and reports
+        connections/s, requests/s and latency percentiles per phase.
+
+        Options:
+          --host <host>                   Server host (default: 127.0.0.1)
+          --port <port>                   Server port (default: 8443)
+          --rate <per second>             Pixel connections opened per second (default: 50)
+          --duration-seconds <seconds>    How long to open connections (default: 30)
+          --max-in-flight <count>         Skip due connections while this many are open (default: 1000)
+          --lookup-ratio <0..1>           Share of pixel requests followed by a lookup (default: 0.1)
+          --threads <count>               Client event loop threads (default: CPU count)
+          --userpass <username:password>  Basic Authentication for the lookup API
+          --profiles <name[,name]>        Client profiles: chrome, firefox, curl, tls12-bot, tls13-minimal (default: all)
+          --sni <host>                    Server name to send as SNI (default: none)
+          --report-interval-seconds <s>   Progress log interval, 0 disables (default: 5)
+          --help                          Show this help
+        """;
+    System.out.println(usage);
+  }
+
+  public static void printReplayCaptureUsage() {
+    String usage = """
+        Usage: java -jar ja4-server.jar replay-capture [options]
+
+        Replays synthetic SYN / SYN-ACK / ACK traffic through the capture decoding, ring and
+        handshake correlation, without a live interface, and reports handshakes/s, the share
+        of complete handshakes correlated and the bytes allocated per packet.
+
+        Options:
+          --handshakes <count>            Handshakes in the synthetic trace, replayed repeatedly (default: 65536)
+          --interleave <count>            Handshakes in progress at once, 1 for one by one (default: 64)
+          --loss <0..1>                   Share of packets missing from the capture (default: 0)
+          --reorder <0..1>                Share of packets swapped with the next one (default: 0)
+          --flood <ratio>                 Spoofed SYNs per real handshake (default: 0)
+          --seed <number>                 Random seed of the trace (default: 1)
+          --duration-seconds <seconds>    Measured replay time (default: 10)
+          --warmup-seconds <seconds>      Unmeasured replay first, for the JIT (default: 5)
+          --inline <bool>                 Correlate on the replay thread instead of through a ring (default: false)
+          --store-entries <count>         Handshake store capacity (default: 100000)
+          --help                          Show this help
+        """;
+    System.out.println(usage);
+  }
+
+  public static void printCaptureUsage() {
+    String usage = """
+        Usage: java -jar ja4-server.jar capture [options]
+
+        Captures TCP handshakes (needs root/CAP_NET_RAW + libpcap) and publishes them to a
+        shared ring file for servers started with --capture-ring.
+
+        Options:
+          --ring <path>                   Ring file to publish to (default: /dev/shm/ja4-capture.ring)
+          --ring-slots <count>            Segments kept in the ring, rounded up to a power of two (default: 65536)
+          --port <port[,port]>            Server port(s) to capture, comma-separated (default: 8443)
+          --capture-iface <name[,name]>   Capture interface name(s), comma-separated (default: first running non-loopback)
+          --capture-engine <pcap|afpacket> Capture backend; afpacket is a Linux mmap ring (default: pcap)
+          --capture-workers <count>       Capture threads per interface, flows split by hash (afpacket only; default: 1)
+          --capture-snaplen <bytes>       Bytes captured per packet, at least 142 (default: 256)
+          --capture-buffer-bytes <bytes>  Kernel capture buffer per worker, 0 = engine default; whole MiB, at least 2, with afpacket (default: 0)
           --help                          Show this help
         """;
     System.out.println(usage);
@@ -102,6 +551,14 @@ public final class ConfigParser {
     }
   }
 
+  private static double parseDouble(String value, String name) {
+    try {
+      return Double.parseDouble(value);
+    } catch (NumberFormatException ex) {
+      throw new IllegalArgumentException("Invalid " + name + ": " + value);
+    }
+  }
+
   private static long parseLong(String value, String name) {
     try {
       return Long.parseLong(value);
@@ -110,6 +567,40 @@ public final class ConfigParser {
     }
   }
 
+  private static List<String> parseList(String value) {
+    List<String> items = new ArrayList<>();
+    if (value == null) {
+      return items;
+    }
+    for (String item : value.split(",")) {
+      String trimmed = item.trim();
+      if (!trimmed.isEmpty()) {
+        items.add(trimmed);
+      }
+    }
+    return items;
+  }
+
+  private static void validateConnRate(int rate, int burst, String suffix) {
+    if (rate < 0 || rate > 1_000_000) {
+      throw new IllegalArgumentException("conn-rate-" + suffix + " must be between 0 and 1000000");
+    }
+    if (rate > 0 && burst < 1) {
+      throw new IllegalArgumentException("conn-burst-" + suffix + " must be >= 1");
+    }
+  }
+
+  private static Instant parseInstant(String value, String name) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Instant.parse(value);
+    } catch (DateTimeParseException ex) {
+      throw new IllegalArgumentException("Invalid " + name + ": " + value);
+    }
+  }
+
   private static boolean parseBoolean(String value, String name) {
     if ("true".equalsIgnoreCase(value) || "1".equals(value)) {
       return true;
@@ -130,6 +621,62 @@ public final class ConfigParser {
     if (config.getIdleTimeoutSeconds() < 0) {
       throw new IllegalArgumentException("idle-timeout-seconds must be >= 0");
     }
+    if (config.getLoopStallThresholdMillis() != 0 && config.getLoopStallThresholdMillis() < 5) {
+      throw new IllegalArgumentException("loop-stall-threshold-ms must be 0 or >= 5");
+    }
+    if (!"text".equals(config.getLogFormat()) && !"json".equals(config.getLogFormat())) {
+      throw new IllegalArgumentException("log-format must be text or json");
+    }
+    if (config.getLogRatePerKey() < 0) {
+      throw new IllegalArgumentException("log-rate-per-key must be >= 0");
+    }
+    validateCaptureOptions(config.getCaptureWorkers(), config.getCaptureSnaplen(),
+        config.getCaptureBufferBytes(), config.getCaptureEngine());
+    for (int passivePort : config.getPassivePorts()) {
+      if (passivePort < 1 || passivePort > 65535) {
+        throw new IllegalArgumentException("passive-ports must be between 1 and 65535");
+      }
+      if (passivePort == config.getPort()) {
+        throw new IllegalArgumentException("passive-ports must not include the server's own port");
+      }
+    }
+    if (config.getArchiveSegmentBytes() < 1) {
+      throw new IllegalArgumentException("archive-segment-bytes must be >= 1");
+    }
+    if (config.getAccessLogSegmentBytes() < 64 * 1024
+        || config.getAccessLogSegmentBytes() > AccessLog.MAX_SEGMENT_BYTES) {
+      throw new IllegalArgumentException(
+          "access-log-segment-bytes must be between 65536 and " + AccessLog.MAX_SEGMENT_BYTES);
+    }
+    if (config.getAccessLogMaxSegments() < 0) {
+      throw new IllegalArgumentException("access-log-max-segments must be >= 0");
+    }
+    if (config.getCaptureSynRate() < 1 || config.getCaptureSynRate() > 1_000_000) {
+      throw new IllegalArgumentException("capture-syn-rate must be between 1 and 1000000");
+    }
+    if (config.getCaptureSynBurst() < 1) {
+      throw new IllegalArgumentException("capture-syn-burst must be >= 1");
+    }
+    validateConnRate(config.getConnRatePerIp(), config.getConnBurstPerIp(), "per-ip");
+    validateConnRate(config.getConnRatePerPrefix(), config.getConnBurstPerPrefix(),
+        "per-prefix");
+    if (config.getShedLoadLagMillis() != 0) {
+      if (config.getShedLoadLagMillis() < 10) {
+        throw new IllegalArgumentException("shed-load-lag-ms must be 0 or >= 10");
+      }
+      if (config.getLoopStallThresholdMillis() == 0) {
+        throw new IllegalArgumentException(
+            "shed-load-lag-ms requires the event loop watchdog (loop-stall-threshold-ms > 0)");
+      }
+    }
+    if (config.getMetricsUserPassword() != null) {
+      if (!config.isEnableMetrics()) {
+        throw new IllegalArgumentException("metrics-userpass requires --enable-metrics true");
+      }
+      if (config.getMetricsUserPassword().indexOf(':') < 0) {
+        throw new IllegalArgumentException("metrics-userpass must be username:password");
+      }
+    }
     if (config.isProd() && config.getCertPath() == null && config.getDomain() == null) {
       throw new IllegalArgumentException("Production mode requires --domain or --cert/--key");
     }
@@ -137,4 +684,45 @@ public final class ConfigParser {
       throw new IllegalArgumentException("Both --cert and --key must be provided together");
     }
   }
+
+  private static void validateCapture(CaptureConfig config) {
+    if (config.getPorts().isEmpty()) {
+      throw new IllegalArgumentException("At least one port is required");
+    }
+    for (int port : config.getPorts()) {
+      if (port < 1 || port > 65535) {
+        throw new IllegalArgumentException("Port must be between 1 and 65535");
+      }
+    }
+    if (config.getRingSlots() < 1 || config.getRingSlots() > CaptureSidecar.MAX_RING_SLOTS) {
+      throw new IllegalArgumentException("ring-slots must be between 1 and "
+          + CaptureSidecar.MAX_RING_SLOTS);
+    }
+    validateCaptureOptions(config.getCaptureWorkers(), config.getCaptureSnaplen(),
+        config.getCaptureBufferBytes(), config.getCaptureEngine());
+  }
+
+  private static void validateCaptureOptions(int workers, int snaplen, int bufferBytes,
+      String engine) {
+    if (workers < 1) {
+      throw new IllegalArgumentException("capture-workers must be >= 1");
+    }
+    if (snaplen < PacketCaptureService.MIN_SNAPLEN || snaplen > 65535) {
+      throw new IllegalArgumentException("capture-snaplen must be between "
+          + PacketCaptureService.MIN_SNAPLEN + " and 65535");
+    }
+    if (bufferBytes < 0) {
+      throw new IllegalArgumentException("capture-buffer-bytes must be >= 0");
+    }
+    int block = PacketCaptureService.AF_PACKET_BLOCK_BYTES;
+    if (PacketCaptureService.ENGINE_AF_PACKET.equals(engine) && bufferBytes != 0
+        && (bufferBytes < 2 * block || bufferBytes % block != 0)) {
+      throw new IllegalArgumentException("capture-buffer-bytes must be 0 or a multiple of "
+          + block + " and at least " + 2 * block + " with the afpacket engine");
+    }
+    if (!PacketCaptureService.ENGINE_PCAP.equals(engine)
+        && !PacketCaptureService.ENGINE_AF_PACKET.equals(engine)) {
+      throw new IllegalArgumentException("capture-engine must be pcap or afpacket");
+    }
+  }
 }
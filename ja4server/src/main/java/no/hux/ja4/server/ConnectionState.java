@@ -3,11 +3,18 @@ package no.hux.ja4.server;
 public final class ConnectionState {
 
   private final long acceptedAtNanos;
+  private volatile long clientHelloAtNanos;
   private volatile long handshakeAtNanos;
   private volatile long firstRequestAtNanos;
   private volatile ClientHelloInfo clientHelloInfo;
   private volatile String ja4;
-  private volatile no.hux.ja4.capture.TcpHandshakeInfo handshake;
+  private volatile byte[] rawClientHello;
+  private volatile long handshakeHandle;
+  private volatile String tcpJa4t;
+  private volatile String tcpJa4lC;
+  private volatile String tcpJa4lS;
+  private volatile long tcpSynToSynAckMicros = -1L;
+  private volatile long tcpSynAckToAckMicros = -1L;
 
   public ConnectionState(long acceptedAtNanos) {
     this.acceptedAtNanos = acceptedAtNanos;
@@ -17,6 +24,15 @@ public final class ConnectionState {
     return acceptedAtNanos;
   }
 
+  /** When the ClientHello was complete and parsed, or {@code 0} if it was not. */
+  public long getClientHelloAtNanos() {
+    return clientHelloAtNanos;
+  }
+
+  public void setClientHelloAtNanos(long clientHelloAtNanos) {
+    this.clientHelloAtNanos = clientHelloAtNanos;
+  }
+
   public long getHandshakeAtNanos() {
     return handshakeAtNanos;
   }
@@ -54,16 +70,72 @@ public final class ConnectionState {
   }
 
   /**
-   * Out-of-band TCP handshake data for this connection, latched at connect time
-   * so the request handler can read JA4T / real JA4L regardless of when (or how
-   * often) requests arrive on a keep-alive connection. {@code null} when packet
-   * capture is disabled.
+   * The TLS record bytes the ClientHello was parsed from; only kept when a
+   * ClientHello archive is configured, and cleared once archived.
+   */
+  public byte[] getRawClientHello() {
+    return rawClientHello;
+  }
+
+  public void setRawClientHello(byte[] rawClientHello) {
+    this.rawClientHello = rawClientHello;
+  }
+
+  /**
+   * Handle of this connection's out-of-band TCP handshake entry in the
+   * {@link no.hux.ja4.capture.TcpInfoStore}, latched at connect time so the
+   * request handler can read JA4T / real JA4L without a key lookup. {@code 0}
+   * ({@code TcpInfoStore.NO_HANDLE}) when packet capture is disabled.
+   */
+  public long getHandshakeHandle() {
+    return handshakeHandle;
+  }
+
+  public void setHandshakeHandle(long handshakeHandle) {
+    this.handshakeHandle = handshakeHandle;
+  }
+
+  /**
+   * JA4T formatted from the handshake entry by the first request that saw the
+   * SYN. Cached here because the store entry is reused after its TTL, while
+   * keep-alive requests can come later.
+   */
+  public void setTcpJa4t(String ja4t) {
+    this.tcpJa4t = ja4t;
+  }
+
+  /**
+   * JA4L-C / JA4L-S formatted from the handshake entry by the first request
+   * that saw the completed handshake, cached like {@link #setTcpJa4t}.
    */
-  public no.hux.ja4.capture.TcpHandshakeInfo getHandshake() {
-    return handshake;
+  public void setTcpJa4l(String ja4lC, String ja4lS) {
+    this.tcpJa4lC = ja4lC;
+    this.tcpJa4lS = ja4lS;
+  }
+
+  public String getTcpJa4t() {
+    return tcpJa4t;
+  }
+
+  public String getTcpJa4lC() {
+    return tcpJa4lC;
+  }
+
+  public String getTcpJa4lS() {
+    return tcpJa4lS;
+  }
+
+  /** Captured handshake deltas, cached like the TCP fingerprints; {@code -1} when not seen. */
+  public void setTcpDeltas(long synToSynAckMicros, long synAckToAckMicros) {
+    this.tcpSynToSynAckMicros = synToSynAckMicros;
+    this.tcpSynAckToAckMicros = synAckToAckMicros;
+  }
+
+  public long getTcpSynToSynAckMicros() {
+    return tcpSynToSynAckMicros;
   }
 
-  public void setHandshake(no.hux.ja4.capture.TcpHandshakeInfo handshake) {
-    this.handshake = handshake;
+  public long getTcpSynAckToAckMicros() {
+    return tcpSynAckToAckMicros;
   }
 }
@@ -4,30 +4,46 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.util.AttributeKey;
 import java.net.InetSocketAddress;
+import no.hux.ja4.admission.OverloadController;
 import no.hux.ja4.capture.TcpInfoStore;
+import no.hux.ja4.metrics.ServerMetrics;
 
 public final class ConnectionStateHandler extends ChannelInboundHandlerAdapter {
 
   private final AttributeKey<ConnectionState> stateKey;
   private final TcpInfoStore tcpInfoStore;
+  private final OverloadController overload;
+  private final ServerMetrics metrics;
 
-  public ConnectionStateHandler(AttributeKey<ConnectionState> stateKey, TcpInfoStore tcpInfoStore) {
+  /**
+   * @param overload skips latching the handshake entry while correlation is
+   *        shed; {@code null} when shedding is off.
+   */
+  public ConnectionStateHandler(AttributeKey<ConnectionState> stateKey, TcpInfoStore tcpInfoStore,
+      OverloadController overload, ServerMetrics metrics) {
     this.stateKey = stateKey;
     this.tcpInfoStore = tcpInfoStore;
+    this.overload = overload;
+    this.metrics = metrics;
   }
 
   @Override
   public void channelActive(ChannelHandlerContext ctx) throws Exception {
     ConnectionState state = new ConnectionState(System.nanoTime());
+    metrics.connectionAccepted();
     if (tcpInfoStore != null
+        && (overload == null || overload.level() < OverloadController.SKIP_CORRELATION)
         && ctx.channel().remoteAddress() instanceof InetSocketAddress remote) {
-      // Latch a reference to the (possibly still-populating) handshake record
-      // while the SYN is fresh in the store. Holding the reference keeps the
-      // correlation valid for the connection's whole lifetime, so later TTL
-      // eviction can't break JA4T/JA4L on keep-alive connections; the capture
-      // thread fills in the fields on this same object as packets arrive.
-      state.setHandshake(
-          tcpInfoStore.getOrCreate(remote.getAddress().getHostAddress(), remote.getPort()));
+      // Latch a handle to the (possibly still-populating) handshake entry
+      // while the SYN is fresh in the store, so the request handler skips the
+      // key lookup; the capture thread fills in the same slot as packets
+      // arrive. This bypasses the capture's SYN admission on purpose: an
+      // accepted connection completed its handshake, so its source is not
+      // spoofed, and the per-address connection limits, when set, cover it.
+      long key = TcpInfoStore.key(remote);
+      if (key != TcpInfoStore.NO_KEY) {
+        state.setHandshakeHandle(tcpInfoStore.getOrCreate(key));
+      }
     }
     ctx.channel().attr(stateKey).set(state);
     super.channelActive(ctx);
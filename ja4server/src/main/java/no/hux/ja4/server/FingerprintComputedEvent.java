@@ -0,0 +1,28 @@
+package no.hux.ja4.server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A fingerprint was computed; the event's duration is the computation. Off
+ * unless a recording enables it.
+ */
+@Name("no.hux.ja4.FingerprintComputed")
+@Label("Fingerprint Computed")
+@Category({"JA4", "Server"})
+@Enabled(false)
+@StackTrace(false)
+final class FingerprintComputedEvent extends jdk.jfr.Event {
+
+  @Label("Kind")
+  @Description("ja4, ja4h, or tcp for JA4T and JA4L from the handshake store")
+  String kind;
+
+  @Label("Cache Hit")
+  @Description("Taken from the connection instead of computed")
+  boolean cacheHit;
+}
@@ -2,30 +2,40 @@ package no.hux.ja4.server;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.ssl.SslHandshakeCompletionEvent;
 import io.netty.util.AttributeKey;
+import javax.net.ssl.SSLSession;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import no.hux.ja4.metrics.ServerMetrics;
 
 public final class HandshakeTimingHandler extends ChannelInboundHandlerAdapter {
 
   private final AttributeKey<ConnectionState> stateKey;
   private final Logger logger;
+  private final ServerMetrics metrics;
 
-  public HandshakeTimingHandler(AttributeKey<ConnectionState> stateKey, Logger logger) {
+  public HandshakeTimingHandler(AttributeKey<ConnectionState> stateKey, Logger logger,
+      ServerMetrics metrics) {
     this.stateKey = stateKey;
     this.logger = logger;
+    this.metrics = metrics;
   }
 
   @Override
   public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
     if (evt instanceof SslHandshakeCompletionEvent event) {
       ConnectionState state = ctx.channel().attr(stateKey).get();
+      long now = System.nanoTime();
+      completed(ctx, event, state, now);
       if (event.isSuccess()) {
         if (state != null) {
-          state.setHandshakeAtNanos(System.nanoTime());
+          state.setHandshakeAtNanos(now);
+          metrics.tlsHandshake().record(now - state.getAcceptedAtNanos());
         }
       } else {
+        metrics.tlsHandshakeFailed();
         Throwable cause = event.cause();
         Level level = RequestHandler.isBenignNetworkException(cause) ? Level.FINE : Level.WARNING;
         logger.log(level, "TLS handshake failed", cause);
@@ -33,4 +43,25 @@ public final class HandshakeTimingHandler extends ChannelInboundHandlerAdapter {
     }
     super.userEventTriggered(ctx, evt);
   }
+
+  private static void completed(ChannelHandlerContext ctx, SslHandshakeCompletionEvent completion,
+      ConnectionState state, long nowNanos) {
+    TlsHandshakeCompletedEvent event = new TlsHandshakeCompletedEvent();
+    if (!event.shouldCommit()) {
+      return;
+    }
+    event.success = completion.isSuccess();
+    if (state != null) {
+      event.handshakeTime = nowNanos - state.getAcceptedAtNanos();
+    }
+    SslHandler ssl = ctx.pipeline().get(SslHandler.class);
+    if (completion.isSuccess() && ssl != null) {
+      SSLSession session = ssl.engine().getSession();
+      event.protocol = session.getProtocol();
+      event.cipherSuite = session.getCipherSuite();
+    } else if (completion.cause() != null) {
+      event.failure = completion.cause().getClass().getName();
+    }
+    event.commit();
+  }
 }
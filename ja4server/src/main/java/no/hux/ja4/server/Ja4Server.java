@@ -21,14 +21,28 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import no.hux.ja4.accesslog.AccessLog;
+import no.hux.ja4.admission.ConnectionAdmission;
+import no.hux.ja4.admission.Ja4Rules;
+import no.hux.ja4.admission.OverloadController;
+import no.hux.ja4.archive.HelloArchive;
 import no.hux.ja4.capture.PacketCaptureService;
+import no.hux.ja4.capture.PassiveFingerprinter;
+import no.hux.ja4.capture.SharedRingFeeder;
 import no.hux.ja4.capture.TcpInfoStore;
+import no.hux.ja4.logging.AsyncLogHandler;
+import no.hux.ja4.metrics.EventLoopWatchdog;
+import no.hux.ja4.metrics.ServerMetrics;
 import no.hux.ja4.store.FingerprintStore;
 
 public final class Ja4Server {
+
   private final ServerConfig config;
   private final Logger logger;
 
@@ -47,6 +61,13 @@ public final class Ja4Server {
 
     FingerprintStore store = new FingerprintStore(config.getTtl(), config.getMaxStoreEntries(),
         logger);
+    ServerMetrics metrics = new ServerMetrics();
+    metrics.bindStore(store);
+    for (Handler handler : Logger.getLogger("").getHandlers()) {
+      if (handler instanceof AsyncLogHandler asyncHandler) {
+        metrics.bindLogHandler(asyncHandler);
+      }
+    }
     AttributeKey<ConnectionState> stateKey = AttributeKey.valueOf("ja4State");
     long serverStartMillis = System.currentTimeMillis();
 
@@ -54,22 +75,92 @@ public final class Ja4Server {
 
     TcpInfoStore tcpInfoStore = null;
     PacketCaptureService captureService = null;
-    if (config.isEnablePcap()) {
+    SharedRingFeeder ringFeeder = null;
+    if (config.getCaptureRing() != null) {
+      // A privileged sidecar captures; this process only correlates.
+      tcpInfoStore = new TcpInfoStore(logger);
+      ringFeeder = new SharedRingFeeder(config.getCaptureRing(), config.getPort(),
+          config.getCaptureSynRate(), config.getCaptureSynBurst(), tcpInfoStore, logger);
+      ringFeeder.start();
+      metrics.bindCapture(null, ringFeeder::getSynRefused);
+    } else if (config.isEnablePcap()) {
       tcpInfoStore = new TcpInfoStore(logger);
       captureService = new PacketCaptureService(config.getPort(), bindAddress.getAddress(),
-          config.getCaptureIface(), tcpInfoStore, logger);
+          config.getCaptureIfaces(), config.getCaptureEngine(), config.getCaptureWorkers(),
+          config.getCaptureSnaplen(), config.getCaptureBufferBytes(), config.getCaptureSynRate(),
+          config.getCaptureSynBurst(), tcpInfoStore, logger);
       captureService.start();
+      metrics.bindCapture(captureService::getStats, captureService::getSynRefused);
+    }
+    if (tcpInfoStore != null) {
+      metrics.bindTcpInfoStore(tcpInfoStore);
     }
     final TcpInfoStore tcpInfoStoreRef = tcpInfoStore;
+    PassiveFingerprinter passive = null;
+    if (!config.getPassivePorts().isEmpty()) {
+      passive = new PassiveFingerprinter(config.getPassivePorts(), config.getCaptureIfaces(),
+          config.getCaptureEngine(), config.getCaptureWorkers(), config.getCaptureSnaplen(),
+          config.getCaptureBufferBytes(), config.getCaptureSynRate(),
+          config.getCaptureSynBurst(), store, logger);
+      passive.start();
+    }
+    HelloArchive archive = null;
+    if (config.getArchiveDir() != null) {
+      archive = new HelloArchive(config.getArchiveDir(), config.getArchiveSegmentBytes(), logger);
+      archive.start();
+    }
+    final HelloArchive archiveRef = archive;
+    AccessLog accessLog = null;
+    if (config.getAccessLogDir() != null) {
+      accessLog = new AccessLog(config.getAccessLogDir(), config.getAccessLogSegmentBytes(),
+          config.getAccessLogMaxSegments(), logger);
+      accessLog.start();
+      metrics.bindAccessLog(accessLog);
+    }
+    final AccessLog accessLogRef = accessLog;
+    ConnectionAdmission admission = new ConnectionAdmission(config.getConnRatePerIp(),
+        config.getConnBurstPerIp(), config.getConnRatePerPrefix(), config.getConnBurstPerPrefix());
+    if (admission.isEnabled()) {
+      metrics.bindAdmission(admission);
+    }
+    Ja4Rules ja4Rules = null;
+    if (config.getJa4RulesPath() != null) {
+      ja4Rules = new Ja4Rules(config.getJa4RulesPath(), logger);
+      ja4Rules.start();
+      metrics.bindJa4Rules(ja4Rules);
+    }
+    final Ja4Rules ja4RulesRef = ja4Rules;
 
     EventLoopGroup bossGroup = new MultiThreadIoEventLoopGroup(1, NioIoHandler.newFactory());
     EventLoopGroup workerGroup = new MultiThreadIoEventLoopGroup(NioIoHandler.newFactory());
+    EventLoopWatchdog watchdog = null;
+    if (config.getLoopStallThresholdMillis() > 0) {
+      watchdog = new EventLoopWatchdog(workerGroup,
+          Duration.ofMillis(config.getLoopStallThresholdMillis()), logger);
+      watchdog.start();
+      metrics.bindWatchdog(watchdog);
+    }
+    OverloadController overload = null;
+    if (config.getShedLoadLagMillis() > 0) {
+      overload = newOverloadController(watchdog, workerGroup, captureService, ringFeeder);
+      overload.start();
+      metrics.bindOverload(overload);
+    }
+    final OverloadController overloadRef = overload;
     try {
       ServerBootstrap bootstrap = new ServerBootstrap();
       bootstrap.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class)
           .childHandler(new ChannelInitializer<SocketChannel>() {
             @Override
             protected void initChannel(SocketChannel ch) {
+              // Before any handler exists: a refused connection costs no SSLEngine.
+              if (overloadRef != null && overloadRef.shed(OverloadController.REFUSE_CONNECTIONS)
+                  || admission.isEnabled() && !admission.admit(ch.remoteAddress())) {
+                // Reset rather than close, so refused connections leave no TIME_WAIT here.
+                ch.config().setSoLinger(0);
+                ch.close();
+                return;
+              }
               int idleTimeoutSeconds = config.getIdleTimeoutSeconds();
               if (idleTimeoutSeconds > 0) {
                 ch.pipeline().addLast("idleState",
@@ -77,28 +168,59 @@ public final class Ja4Server {
                 ch.pipeline().addLast("idleClose", new IdleConnectionHandler(logger));
               }
               ch.pipeline().addLast("state",
-                  new ConnectionStateHandler(stateKey, tcpInfoStoreRef));
-              ch.pipeline().addLast("clientHello", new ClientHelloCaptureHandler(stateKey, logger));
+                  new ConnectionStateHandler(stateKey, tcpInfoStoreRef, overloadRef, metrics));
+              ch.pipeline().addLast("clientHello",
+                  new ClientHelloCaptureHandler(stateKey, logger, archiveRef != null, metrics,
+                      ja4RulesRef));
               ch.pipeline().addLast("ssl", sslContext.newHandler(ch.alloc()));
-              ch.pipeline().addLast("handshake", new HandshakeTimingHandler(stateKey, logger));
+              ch.pipeline().addLast("handshake",
+                  new HandshakeTimingHandler(stateKey, logger, metrics));
               ch.pipeline().addLast("httpCodec", new HttpServerCodec());
               ch.pipeline().addLast("aggregator",
                   new HttpObjectAggregator(config.getMaxContentLength()));
               if (config.getApiUserPassword() != null) {
                 ch.pipeline().addLast(new BasicAuthHandler(config, "/api"));
               }
+              if (config.isEnableMetrics() && config.getMetricsUserPassword() != null) {
+                ch.pipeline().addLast(new BasicAuthHandler(config.getMetricsUserPassword(),
+                    RequestHandler.METRICS_PATH, "metricsrealm"));
+              }
               ch.pipeline().addLast("handler", new RequestHandler(store, stateKey, logger,
-                  serverStartMillis, config.isRequireUuidSessionId(), tcpInfoStoreRef));
+                  serverStartMillis, config.isRequireUuidSessionId(), tcpInfoStoreRef,
+                  archiveRef, accessLogRef, overloadRef, metrics, config.isEnableMetrics(),
+                  config.isLookupTimings()));
             }
           });
 
       Channel channel = bootstrap.bind(bindAddress).sync().channel();
-      logger.info("JA4 server listening on https://" + config.getHost() + ":" + config.getPort());
+      logger.log(Level.INFO, "JA4 server listening on https://{0}:{1}",
+          new Object[] {config.getHost(), String.valueOf(config.getPort())});
       channel.closeFuture().sync();
     } finally {
+      if (overload != null) {
+        overload.stop();
+      }
+      if (watchdog != null) {
+        watchdog.shutdown();
+      }
       if (captureService != null) {
         captureService.stop();
       }
+      if (ringFeeder != null) {
+        ringFeeder.stop();
+      }
+      if (passive != null) {
+        passive.stop();
+      }
+      if (archive != null) {
+        archive.stop();
+      }
+      if (accessLog != null) {
+        accessLog.stop();
+      }
+      if (ja4Rules != null) {
+        ja4Rules.stop();
+      }
       if (tcpInfoStore != null) {
         tcpInfoStore.shutdown();
       }
@@ -108,6 +230,26 @@ public final class Ja4Server {
     }
   }
 
+  /**
+   * Watches the loops, memory and, with capture, the capture ring. The
+   * configuration requires the watchdog when shedding is on.
+   */
+  private OverloadController newOverloadController(EventLoopWatchdog watchdog,
+      EventLoopGroup workerGroup, PacketCaptureService captureService,
+      SharedRingFeeder ringFeeder) {
+    DoubleSupplier captureRingFill = null;
+    if (captureService != null) {
+      captureRingFill = () -> {
+        int capacity = captureService.getRingCapacity();
+        return capacity == 0 ? 0.0 : captureService.getRingOccupancy() / (double) capacity;
+      };
+    } else if (ringFeeder != null) {
+      captureRingFill = ringFeeder::getRingFill;
+    }
+    return OverloadController.forServer(logger, config.getShedLoadLagMillis(),
+        watchdog::currentLagNanos, workerGroup, captureRingFill);
+  }
+
   private Path resolveCertPath(ServerConfig config) {
     Path certPath = config.getCertPath();
     if (certPath != null) {
@@ -0,0 +1,84 @@
+package no.hux.ja4.server;
+
+import java.util.List;
+
+/** Options of the {@code loadgen} command. */
+public final class LoadGenConfig {
+
+  private final String host;
+  private final int port;
+  private final double rate;
+  private final int durationSeconds;
+  private final int maxInFlight;
+  private final double lookupRatio;
+  private final int threads;
+  private final String userPassword;
+  private final List<String> profiles;
+  private final String serverName;
+  private final int reportIntervalSeconds;
+
+  public LoadGenConfig(String host, int port, double rate, int durationSeconds, int maxInFlight,
+      double lookupRatio, int threads, String userPassword, List<String> profiles,
+      String serverName, int reportIntervalSeconds) {
+    this.host = host;
+    this.port = port;
+    this.rate = rate;
+    this.durationSeconds = durationSeconds;
+    this.maxInFlight = maxInFlight;
+    this.lookupRatio = lookupRatio;
+    this.threads = threads;
+    this.userPassword = userPassword;
+    this.profiles = List.copyOf(profiles);
+    this.serverName = serverName;
+    this.reportIntervalSeconds = reportIntervalSeconds;
+  }
+
+  public String getHost() {
+    return host;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  /** Pixel connections opened per second. */
+  public double getRate() {
+    return rate;
+  }
+
+  public int getDurationSeconds() {
+    return durationSeconds;
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  /** Share of pixel requests followed by a lookup, 0 to 1. */
+  public double getLookupRatio() {
+    return lookupRatio;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  /** {@code user:password} for the lookup API, or {@code null}. */
+  public String getUserPassword() {
+    return userPassword;
+  }
+
+  /** Client profile names to mix; empty for all. */
+  public List<String> getProfiles() {
+    return profiles;
+  }
+
+  /** SNI host name, or {@code null} to send none. */
+  public String getServerName() {
+    return serverName;
+  }
+
+  public int getReportIntervalSeconds() {
+    return reportIntervalSeconds;
+  }
+}
@@ -0,0 +1,32 @@
+package no.hux.ja4.server;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/** Options of the {@code refingerprint} offline command. */
+public final class RefingerprintConfig {
+
+  private final List<Path> inputs;
+  private final int threads;
+  private final Path output;
+
+  public RefingerprintConfig(List<Path> inputs, int threads, Path output) {
+    this.inputs = List.copyOf(inputs);
+    this.threads = threads;
+    this.output = output;
+  }
+
+  /** Archive segments, or directories of them. */
+  public List<Path> getInputs() {
+    return inputs;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  /** NDJSON output file, or {@code null} for standard output. */
+  public Path getOutput() {
+    return output;
+  }
+}
@@ -0,0 +1,77 @@
+package no.hux.ja4.server;
+
+/** Options of the {@code replay-capture} command. */
+public final class ReplayCaptureConfig {
+
+  private final int handshakes;
+  private final int interleave;
+  private final double loss;
+  private final double reorder;
+  private final double flood;
+  private final long seed;
+  private final int durationSeconds;
+  private final int warmupSeconds;
+  private final boolean inline;
+  private final int storeEntries;
+
+  public ReplayCaptureConfig(int handshakes, int interleave, double loss, double reorder,
+      double flood, long seed, int durationSeconds, int warmupSeconds, boolean inline,
+      int storeEntries) {
+    this.handshakes = handshakes;
+    this.interleave = interleave;
+    this.loss = loss;
+    this.reorder = reorder;
+    this.flood = flood;
+    this.seed = seed;
+    this.durationSeconds = durationSeconds;
+    this.warmupSeconds = warmupSeconds;
+    this.inline = inline;
+    this.storeEntries = storeEntries;
+  }
+
+  /** Real handshakes in the synthetic trace. */
+  public int getHandshakes() {
+    return handshakes;
+  }
+
+  /** Handshakes in progress at once. */
+  public int getInterleave() {
+    return interleave;
+  }
+
+  /** Share of packets missing from the capture, 0 to 1. */
+  public double getLoss() {
+    return loss;
+  }
+
+  /** Share of packets swapped with their successor, 0 to 1. */
+  public double getReorder() {
+    return reorder;
+  }
+
+  /** Spoofed SYNs per real handshake. */
+  public double getFlood() {
+    return flood;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public int getDurationSeconds() {
+    return durationSeconds;
+  }
+
+  public int getWarmupSeconds() {
+    return warmupSeconds;
+  }
+
+  /** Whether to correlate on the replay thread instead of through a ring. */
+  public boolean isInline() {
+    return inline;
+  }
+
+  public int getStoreEntries() {
+    return storeEntries;
+  }
+}
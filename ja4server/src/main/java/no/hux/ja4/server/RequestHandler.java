@@ -18,6 +18,7 @@ import io.netty.handler.ssl.NotSslRecordException;
 import io.netty.handler.ssl.SslHandshakeTimeoutException;
 import io.netty.util.AttributeKey;
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.URLDecoder;
 import java.nio.channels.ClosedChannelException;
@@ -28,15 +29,23 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLHandshakeException;
-import no.hux.ja4.capture.TcpHandshakeInfo;
+import no.hux.ja4.Json;
+import no.hux.ja4.accesslog.AccessLog;
+import no.hux.ja4.admission.OverloadController;
+import no.hux.ja4.archive.ArchivedHello;
+import no.hux.ja4.archive.HelloArchive;
 import no.hux.ja4.capture.TcpInfoStore;
 import no.hux.ja4.fingerprint.Ja4HttpFingerprint;
 import no.hux.ja4.fingerprint.Ja4LatencyFingerprint;
+import no.hux.ja4.metrics.ServerMetrics;
+import no.hux.ja4.store.ConnectionTimings;
 import no.hux.ja4.store.FingerprintRecord;
 import no.hux.ja4.store.FingerprintStore;
+import no.hux.ja4.store.RecordJson;
 
 public final class RequestHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
   private static final String LOOKUP_PREFIX = "/api/lookup/";
+  static final String METRICS_PATH = "/metrics";
   private static final int MAX_SESSION_ID_LENGTH = 256;
   private static final int CANONICAL_UUID_LENGTH = 36;
   private static final byte[] PIXEL_GIF = new byte[] { 71, 73, 70, 56, 57, 97, 1, 0, 1, 0,
@@ -49,20 +58,44 @@ public final class RequestHandler extends SimpleChannelInboundHandler<FullHttpRe
   private final long serverStartMillis;
   private final boolean requireUuidSessionId;
   private final TcpInfoStore tcpInfoStore;
+  private final HelloArchive archive;
+  private final AccessLog accessLog;
+  private final OverloadController overload;
+  private final ServerMetrics metrics;
+  private final boolean metricsEndpoint;
+  private final boolean lookupTimings;
 
+  /**
+   * @param archive receives each fingerprinted request; {@code null} when archiving is off.
+   * @param accessLog receives an entry per pixel and lookup request; {@code null} when off.
+   * @param overload decides what to shed under load; {@code null} when shedding is off.
+   * @param metricsEndpoint serve the metrics at {@value #METRICS_PATH}; otherwise that path
+   *        is a session ID like any other.
+   * @param lookupTimings store each connection's phase timings with its record and return
+   *        them from lookups.
+   */
   public RequestHandler(FingerprintStore store, AttributeKey<ConnectionState> stateKey,
       Logger logger, long serverStartMillis, boolean requireUuidSessionId,
-      TcpInfoStore tcpInfoStore) {
+      TcpInfoStore tcpInfoStore, HelloArchive archive, AccessLog accessLog,
+      OverloadController overload, ServerMetrics metrics, boolean metricsEndpoint,
+      boolean lookupTimings) {
     this.store = store;
     this.stateKey = stateKey;
     this.logger = logger;
     this.serverStartMillis = serverStartMillis;
     this.requireUuidSessionId = requireUuidSessionId;
     this.tcpInfoStore = tcpInfoStore;
+    this.archive = archive;
+    this.accessLog = accessLog;
+    this.overload = overload;
+    this.metrics = metrics;
+    this.metricsEndpoint = metricsEndpoint;
+    this.lookupTimings = lookupTimings;
   }
 
   @Override
   protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+    long requestAtNanos = System.nanoTime();
     if (HttpUtil.is100ContinueExpected(request)) {
       sendContinue(ctx);
     }
@@ -72,9 +105,11 @@ public final class RequestHandler extends SimpleChannelInboundHandler<FullHttpRe
       String path = decoder.path();
 
       if (path.startsWith(LOOKUP_PREFIX)) {
-        handleLookup(ctx, request, path.substring(LOOKUP_PREFIX.length()));
+        handleLookup(ctx, request, path.substring(LOOKUP_PREFIX.length()), requestAtNanos);
+      } else if (metricsEndpoint && METRICS_PATH.equals(path)) {
+        sendText(ctx, request, metrics.render());
       } else {
-        handleFingerprint(ctx, request, path);
+        handleFingerprint(ctx, request, path, requestAtNanos);
       }
     } catch (Exception ex) {
       logger.log(Level.WARNING, "Request handling failed", ex);
@@ -83,69 +118,181 @@ public final class RequestHandler extends SimpleChannelInboundHandler<FullHttpRe
   }
 
   private void handleLookup(ChannelHandlerContext ctx, FullHttpRequest request,
-      String rawSessionId) {
+      String rawSessionId, long requestAtNanos) {
+    if (overload != null && overload.shed(OverloadController.REJECT_LOOKUPS)) {
+      sendJson(ctx, request, HttpResponseStatus.SERVICE_UNAVAILABLE, errorJson("overloaded"),
+          OverloadController.RETRY_AFTER_SECONDS);
+      logAccess(ctx, AccessLog.KIND_LOOKUP, 503, requestAtNanos, null);
+      return;
+    }
     String sessionId = normalizeSessionId(rawSessionId);
     if (sessionId == null) {
+      metrics.lookupInvalid();
       sendJson(ctx, request, HttpResponseStatus.BAD_REQUEST, errorJson("invalid_session"));
+      logAccess(ctx, AccessLog.KIND_LOOKUP, 400, requestAtNanos, null);
       return;
     }
+    long start = System.nanoTime();
     FingerprintRecord record = store.get(sessionId);
+    metrics.storeGet().recordSince(start);
     if (record == null) {
+      metrics.lookupMiss();
       sendJson(ctx, request, HttpResponseStatus.NOT_FOUND, errorJson("not_found"));
+      logAccess(ctx, AccessLog.KIND_LOOKUP, 404, requestAtNanos, sessionId);
       return;
     }
-    sendJson(ctx, request, HttpResponseStatus.OK, recordToJson(record, uptimeSeconds()));
+    metrics.lookupHit();
+    sendJson(ctx, request, HttpResponseStatus.OK, RecordJson.toJson(record, uptimeSeconds()));
+    logAccess(ctx, AccessLog.KIND_LOOKUP, 200, requestAtNanos, sessionId);
   }
 
-  private void handleFingerprint(ChannelHandlerContext ctx, FullHttpRequest request, String path) {
+  private void handleFingerprint(ChannelHandlerContext ctx, FullHttpRequest request, String path,
+      long requestAtNanos) {
     String sessionId = normalizeSessionId(path.startsWith("/") ? path.substring(1) : path);
     if (sessionId == null) {
       sendJson(ctx, request, HttpResponseStatus.BAD_REQUEST, errorJson("invalid_session"));
+      logAccess(ctx, AccessLog.KIND_FINGERPRINT, 400, requestAtNanos, null);
       return;
     }
 
     ConnectionState state = ctx.channel().attr(stateKey).get();
-    if (state != null) {
-      state.markFirstRequest(System.nanoTime());
+    if (state != null && state.markFirstRequest(requestAtNanos)) {
+      recordConnectionPhases(state);
     }
     String ja4 = state != null ? state.getJa4() : null;
+    FingerprintComputedEvent event = new FingerprintComputedEvent();
+    event.begin();
+    long start = System.nanoTime();
     String ja4h = Ja4HttpFingerprint.compute(request);
-    String ja4l = Ja4LatencyFingerprint.compute(state);
+    metrics.ja4hCompute().recordSince(start);
+    if (event.shouldCommit()) {
+      event.kind = "ja4h";
+      event.commit();
+    }
+    String ja4l = overload != null && overload.shed(OverloadController.SKIP_JA4L)
+        ? null : Ja4LatencyFingerprint.compute(state);
 
     String ip = null;
-    int remotePort = -1;
+    InetAddress client = null;
+    long tcpKey = TcpInfoStore.NO_KEY;
     if (ctx.channel().remoteAddress() instanceof InetSocketAddress remote) {
-      ip = remote.getAddress().getHostAddress();
-      remotePort = remote.getPort();
+      client = remote.getAddress();
+      ip = client.getHostAddress();
+      tcpKey = TcpInfoStore.key(remote);
     }
 
-    // Join out-of-band TCP capture data (JA4T + real JA4L). The handshake record
-    // is normally latched onto the connection at connect time (so it survives
-    // keep-alive reuse and store eviction); fall back to a live store lookup.
-    // A real handshake-timed JA4L overrides the application-level estimate; if
-    // capture is disabled or missed the handshake, the estimate is kept.
-    String ja4t = null;
-    String ja4ls = null;
-    TcpHandshakeInfo handshake = state != null ? state.getHandshake() : null;
-    if (handshake == null && tcpInfoStore != null && ip != null && remotePort >= 0) {
-      handshake = tcpInfoStore.get(ip, remotePort);
-    }
-    if (handshake != null) {
-      ja4t = handshake.getJa4t();
-      String realJa4l = handshake.computeJa4lC();
-      if (realJa4l != null) {
-        ja4l = realJa4l;
+    // Join out-of-band TCP capture data (JA4T + real JA4L). The handshake entry
+    // is normally latched onto the connection at connect time; fall back to a
+    // live store lookup. Strings are formatted from the store only on request
+    // and cached on the connection, JA4T once the SYN was seen and JA4L once
+    // the handshake is complete, so they survive keep-alive reuse past the
+    // store TTL. A real handshake-timed JA4L
+    // overrides the application-level estimate; if capture is disabled or
+    // missed the handshake, the estimate is kept. Under load, only values
+    // already cached on the connection are used.
+    FingerprintComputedEvent tcpEvent = new FingerprintComputedEvent();
+    tcpEvent.begin();
+    String ja4t = state != null ? state.getTcpJa4t() : null;
+    String realJa4l = state != null ? state.getTcpJa4lC() : null;
+    String ja4ls = state != null ? state.getTcpJa4lS() : null;
+    boolean tcpCached = realJa4l != null;
+    if (realJa4l == null && tcpInfoStore != null
+        && (overload == null || !overload.shed(OverloadController.SKIP_CORRELATION))) {
+      long handshake = state != null ? state.getHandshakeHandle() : TcpInfoStore.NO_HANDLE;
+      if (handshake == TcpInfoStore.NO_HANDLE && tcpKey != TcpInfoStore.NO_KEY) {
+        handshake = tcpInfoStore.get(tcpKey);
+      }
+      if (handshake != TcpInfoStore.NO_HANDLE) {
+        if (ja4t == null) {
+          ja4t = tcpInfoStore.ja4t(handshake);
+          if (ja4t != null && state != null) {
+            state.setTcpJa4t(ja4t);
+          }
+        }
+        realJa4l = tcpInfoStore.ja4lC(handshake);
+        ja4ls = tcpInfoStore.ja4lS(handshake);
+        if (realJa4l != null && state != null) {
+          state.setTcpJa4l(realJa4l, ja4ls);
+          long synToSynAck = tcpInfoStore.synToSynAckMicros(handshake);
+          long synAckToAck = tcpInfoStore.synAckToAckMicros(handshake);
+          state.setTcpDeltas(synToSynAck, synAckToAck);
+          if (synToSynAck >= 0L) {
+            metrics.synToSynAck().record(synToSynAck * 1_000L);
+          }
+          if (synAckToAck >= 0L) {
+            metrics.synAckToAck().record(synAckToAck * 1_000L);
+          }
+        }
       }
-      ja4ls = handshake.computeJa4lS();
+    }
+    if (tcpInfoStore != null && tcpEvent.shouldCommit()) {
+      tcpEvent.kind = "tcp";
+      tcpEvent.cacheHit = tcpCached;
+      tcpEvent.commit();
+    }
+    if (realJa4l != null) {
+      ja4l = realJa4l;
     }
 
     String userAgent = request.headers().get("User-Agent");
 
+    ConnectionTimings timings = lookupTimings && state != null
+        ? timings(state, requestAtNanos) : null;
     FingerprintRecord record = new FingerprintRecord(sessionId, Instant.now(), ja4, ja4h, ja4l, ja4ls,
-        ja4t, ip, userAgent);
+        ja4t, ip, userAgent, timings);
+    start = System.nanoTime();
     store.put(record);
+    metrics.storePut().recordSince(start);
+    // Archived once per connection: keep-alive requests repeat the same hello.
+    byte[] rawClientHello = state != null ? state.getRawClientHello() : null;
+    if (archive != null && rawClientHello != null) {
+      state.setRawClientHello(null);
+      archive.offer(ArchivedHello.of(record.timestamp().toEpochMilli(), sessionId, ip, ja4, ja4h,
+          rawClientHello, request));
+    }
 
-    sendGif(ctx, request);
+    sendGif(ctx, request, requestAtNanos);
+    if (accessLog != null) {
+      accessLog.log(AccessLog.KIND_FINGERPRINT, 200, System.nanoTime() - requestAtNanos, client,
+          sessionId, ja4, ja4h, ja4l, ja4ls, ja4t);
+    }
+  }
+
+  /** Logs a request without fingerprints: a lookup, or a rejected pixel request. */
+  private void logAccess(ChannelHandlerContext ctx, byte kind, int status, long requestAtNanos,
+      String sessionId) {
+    if (accessLog == null) {
+      return;
+    }
+    InetAddress client = ctx.channel().remoteAddress() instanceof InetSocketAddress remote
+        ? remote.getAddress() : null;
+    accessLog.log(kind, status, System.nanoTime() - requestAtNanos, client, sessionId, null,
+        null, null, null, null);
+  }
+
+  private void recordConnectionPhases(ConnectionState state) {
+    long hello = state.getClientHelloAtNanos();
+    long handshake = state.getHandshakeAtNanos();
+    if (hello != 0L) {
+      metrics.acceptToClientHello().record(hello - state.getAcceptedAtNanos());
+      if (handshake != 0L) {
+        metrics.clientHelloToHandshake().record(handshake - hello);
+      }
+    }
+    if (handshake != 0L) {
+      metrics.handshakeToRequest().record(state.getFirstRequestAtNanos() - handshake);
+    }
+  }
+
+  private static ConnectionTimings timings(ConnectionState state, long requestAtNanos) {
+    return new ConnectionTimings(sinceAccept(state, state.getClientHelloAtNanos()),
+        sinceAccept(state, state.getHandshakeAtNanos()), sinceAccept(state, requestAtNanos),
+        state.getTcpSynToSynAckMicros(), state.getTcpSynAckToAckMicros());
+  }
+
+  /** Microseconds from accept to {@code nanos}, or -1 for a phase not reached. */
+  private static long sinceAccept(ConnectionState state, long nanos) {
+    return nanos == 0L ? -1L : (nanos - state.getAcceptedAtNanos()) / 1_000L;
   }
 
   private String normalizeSessionId(String raw) {
@@ -188,6 +335,13 @@ public final class RequestHandler extends SimpleChannelInboundHandler<FullHttpRe
 
   private void sendJson(ChannelHandlerContext ctx, FullHttpRequest request,
       HttpResponseStatus status, String body) {
+    sendJson(ctx, request, status, body, 0);
+  }
+
+  /** @param retryAfterSeconds sent as {@code Retry-After} when positive. */
+  private void sendJson(ChannelHandlerContext ctx, FullHttpRequest request,
+      HttpResponseStatus status, String body, int retryAfterSeconds) {
+    metrics.response(status.code());
     ByteBuf content = Unpooled.copiedBuffer(body, StandardCharsets.UTF_8);
     FullHttpResponse response = new io.netty.handler.codec.http.DefaultFullHttpResponse(
         request.protocolVersion(), status, content);
@@ -198,6 +352,9 @@ public final class RequestHandler extends SimpleChannelInboundHandler<FullHttpRe
         "no-store, no-cache, must-revalidate, max-age=0");
     response.headers().set(HttpHeaderNames.PRAGMA, "no-cache");
     response.headers().set(HttpHeaderNames.EXPIRES, "0");
+    if (retryAfterSeconds > 0) {
+      response.headers().setInt(HttpHeaderNames.RETRY_AFTER, retryAfterSeconds);
+    }
     boolean keepAlive = HttpUtil.isKeepAlive(request);
     if (keepAlive) {
       response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
@@ -207,7 +364,25 @@ public final class RequestHandler extends SimpleChannelInboundHandler<FullHttpRe
     }
   }
 
-  private void sendGif(ChannelHandlerContext ctx, FullHttpRequest request) {
+  private void sendText(ChannelHandlerContext ctx, FullHttpRequest request, String body) {
+    metrics.response(HttpResponseStatus.OK.code());
+    ByteBuf content = Unpooled.copiedBuffer(body, StandardCharsets.UTF_8);
+    FullHttpResponse response = new io.netty.handler.codec.http.DefaultFullHttpResponse(
+        request.protocolVersion(), HttpResponseStatus.OK, content);
+    response.headers().set(HttpHeaderNames.CONTENT_TYPE,
+        "text/plain; version=0.0.4; charset=utf-8");
+    response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+    response.headers().set(HttpHeaderNames.CACHE_CONTROL, "no-store");
+    if (HttpUtil.isKeepAlive(request)) {
+      response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+      ctx.writeAndFlush(response);
+    } else {
+      ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+    }
+  }
+
+  private void sendGif(ChannelHandlerContext ctx, FullHttpRequest request, long requestAtNanos) {
+    metrics.response(HttpResponseStatus.OK.code());
     ByteBuf content = Unpooled.wrappedBuffer(PIXEL_GIF);
     FullHttpResponse response = new io.netty.handler.codec.http.DefaultFullHttpResponse(
         request.protocolVersion(), HttpResponseStatus.OK, content);
@@ -223,36 +398,11 @@ public final class RequestHandler extends SimpleChannelInboundHandler<FullHttpRe
     // keep-alive request) to free the socket and per-connection state
     // immediately instead of holding it until the idle timeout.
     response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
-    ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
-  }
-
-  private static String recordToJson(FingerprintRecord record, long uptimeSeconds) {
-    StringBuilder sb = new StringBuilder();
-    sb.append('{');
-    appendField(sb, "sessionId", record.sessionId());
-    sb.append(',');
-    appendField(sb, "timestamp",
-        java.time.format.DateTimeFormatter.ISO_INSTANT.format(record.timestamp()));
-    sb.append(',');
-    appendNumericField(sb, "uptimeSeconds", uptimeSeconds);
-    sb.append(',');
-    appendField(sb, "ip", record.ip());
-    sb.append(',');
-    appendField(sb, "userAgent", record.userAgent());
-    sb.append(',');
-    sb.append("\"fingerprints\":{");
-    appendField(sb, "ja4", record.ja4());
-    sb.append(',');
-    appendField(sb, "ja4h", record.ja4h());
-    sb.append(',');
-    appendField(sb, "ja4l", record.ja4l());
-    sb.append(',');
-    appendField(sb, "ja4ls", record.ja4ls());
-    sb.append(',');
-    appendField(sb, "ja4t", record.ja4t());
-    sb.append('}');
-    sb.append('}');
-    return sb.toString();
+    ctx.writeAndFlush(response).addListener(future -> {
+      if (future.isSuccess()) {
+        metrics.requestToResponse().recordSince(requestAtNanos);
+      }
+    }).addListener(ChannelFutureListener.CLOSE);
   }
 
   private static String errorJson(String message) {
@@ -264,40 +414,8 @@ public final class RequestHandler extends SimpleChannelInboundHandler<FullHttpRe
   }
 
   private static void appendField(StringBuilder sb, String key, String value) {
-    sb.append('"').append(escape(key)).append('"').append(':');
-    if (value == null) {
-      sb.append("null");
-    } else {
-      sb.append('"').append(escape(value)).append('"');
-    }
-  }
-
-  private static void appendNumericField(StringBuilder sb, String key, long value) {
-    sb.append('"').append(escape(key)).append('"').append(':').append(value);
-  }
-
-  private static String escape(String value) {
-    StringBuilder sb = new StringBuilder();
-    for (int i = 0; i < value.length(); i++) {
-      char c = value.charAt(i);
-      switch (c) {
-      case '"' -> sb.append("\\\"");
-      case '\\' -> sb.append("\\\\");
-      case '\b' -> sb.append("\\b");
-      case '\f' -> sb.append("\\f");
-      case '\n' -> sb.append("\\n");
-      case '\r' -> sb.append("\\r");
-      case '\t' -> sb.append("\\t");
-      default -> {
-        if (c < 0x20) {
-          sb.append(String.format("\\u%04x", (int) c));
-        } else {
-          sb.append(c);
-        }
-      }
-      }
-    }
-    return sb.toString();
+    Json.appendString(sb, key).append(':');
+    Json.appendString(sb, value);
   }
 
   private long uptimeSeconds() {
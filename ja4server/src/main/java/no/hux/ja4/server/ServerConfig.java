@@ -2,6 +2,7 @@ package no.hux.ja4.server;
 
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.List;
 import java.util.Locale;
 
 public final class ServerConfig {
@@ -20,12 +21,44 @@ public final class ServerConfig {
   private final String apiUserPassword;
   private final int idleTimeoutSeconds;
   private final boolean enablePcap;
-  private final String captureIface;
+  private final List<String> captureIfaces;
+  private final String captureEngine;
+  private final int captureWorkers;
+  private final int captureSnaplen;
+  private final int captureBufferBytes;
+  private final int captureSynRate;
+  private final int captureSynBurst;
+  private final Path captureRing;
+  private final List<Integer> passivePorts;
+  private final Path archiveDir;
+  private final long archiveSegmentBytes;
+  private final boolean enableMetrics;
+  private final String metricsUserPassword;
+  private final boolean lookupTimings;
+  private final int loopStallThresholdMillis;
+  private final String logFormat;
+  private final int logRatePerKey;
+  private final Path accessLogDir;
+  private final long accessLogSegmentBytes;
+  private final int accessLogMaxSegments;
+  private final int connRatePerIp;
+  private final int connBurstPerIp;
+  private final int connRatePerPrefix;
+  private final int connBurstPerPrefix;
+  private final Path ja4RulesPath;
+  private final int shedLoadLagMillis;
 
   public ServerConfig(String host, int port, String environment, Path certPath, Path keyPath,
       Path letsEncryptDir, String domain, Duration ttl, int maxContentLength,
       int maxStoreEntries, boolean requireUuidSessionId, String apiUserPassword,
-      int idleTimeoutSeconds, boolean enablePcap, String captureIface) {
+      int idleTimeoutSeconds, boolean enablePcap, List<String> captureIfaces,
+      String captureEngine, int captureWorkers, int captureSnaplen, int captureBufferBytes,
+      int captureSynRate, int captureSynBurst, Path captureRing, List<Integer> passivePorts,
+      Path archiveDir, long archiveSegmentBytes, boolean enableMetrics,
+      String metricsUserPassword, boolean lookupTimings, int loopStallThresholdMillis,
+      String logFormat, int logRatePerKey, Path accessLogDir, long accessLogSegmentBytes,
+      int accessLogMaxSegments, int connRatePerIp, int connBurstPerIp, int connRatePerPrefix,
+      int connBurstPerPrefix, Path ja4RulesPath, int shedLoadLagMillis) {
     this.host = host;
     this.port = port;
     this.environment = environment.toLowerCase(Locale.ROOT);
@@ -40,7 +73,32 @@ public final class ServerConfig {
     this.apiUserPassword = apiUserPassword;
     this.idleTimeoutSeconds = idleTimeoutSeconds;
     this.enablePcap = enablePcap;
-    this.captureIface = captureIface;
+    this.captureIfaces = List.copyOf(captureIfaces);
+    this.captureEngine = captureEngine.toLowerCase(Locale.ROOT);
+    this.captureWorkers = captureWorkers;
+    this.captureSnaplen = captureSnaplen;
+    this.captureBufferBytes = captureBufferBytes;
+    this.captureSynRate = captureSynRate;
+    this.captureSynBurst = captureSynBurst;
+    this.captureRing = captureRing;
+    this.passivePorts = List.copyOf(passivePorts);
+    this.archiveDir = archiveDir;
+    this.archiveSegmentBytes = archiveSegmentBytes;
+    this.enableMetrics = enableMetrics;
+    this.metricsUserPassword = metricsUserPassword;
+    this.lookupTimings = lookupTimings;
+    this.loopStallThresholdMillis = loopStallThresholdMillis;
+    this.logFormat = logFormat.toLowerCase(Locale.ROOT);
+    this.logRatePerKey = logRatePerKey;
+    this.accessLogDir = accessLogDir;
+    this.accessLogSegmentBytes = accessLogSegmentBytes;
+    this.accessLogMaxSegments = accessLogMaxSegments;
+    this.connRatePerIp = connRatePerIp;
+    this.connBurstPerIp = connBurstPerIp;
+    this.connRatePerPrefix = connRatePerPrefix;
+    this.connBurstPerPrefix = connBurstPerPrefix;
+    this.ja4RulesPath = ja4RulesPath;
+    this.shedLoadLagMillis = shedLoadLagMillis;
   }
 
   public String getHost() {
@@ -99,8 +157,130 @@ public final class ServerConfig {
     return enablePcap;
   }
 
-  public String getCaptureIface() {
-    return captureIface;
+  public List<String> getCaptureIfaces() {
+    return captureIfaces;
+  }
+
+  public String getCaptureEngine() {
+    return captureEngine;
+  }
+
+  public int getCaptureWorkers() {
+    return captureWorkers;
+  }
+
+  public int getCaptureSnaplen() {
+    return captureSnaplen;
+  }
+
+  public int getCaptureBufferBytes() {
+    return captureBufferBytes;
+  }
+
+  /** New-client SYNs per second per source /24 that capture correlates. */
+  public int getCaptureSynRate() {
+    return captureSynRate;
+  }
+
+  /** SYNs a source /24 may send at once before the SYN rate applies. */
+  public int getCaptureSynBurst() {
+    return captureSynBurst;
+  }
+
+  /** Ring file of a capture sidecar to read handshakes from, or {@code null}. */
+  public Path getCaptureRing() {
+    return captureRing;
+  }
+
+  /** Ports of other servers to fingerprint passively; empty when disabled. */
+  public List<Integer> getPassivePorts() {
+    return passivePorts;
+  }
+
+  /** Directory of the ClientHello archive, or {@code null} when archiving is off. */
+  public Path getArchiveDir() {
+    return archiveDir;
+  }
+
+  /** Uncompressed bytes after which an archive segment is rolled. */
+  public long getArchiveSegmentBytes() {
+    return archiveSegmentBytes;
+  }
+
+  /** Whether {@code /metrics} serves Prometheus metrics. */
+  public boolean isEnableMetrics() {
+    return enableMetrics;
+  }
+
+  /** {@code user:password} protecting {@code /metrics}, or {@code null} for none. */
+  public String getMetricsUserPassword() {
+    return metricsUserPassword;
+  }
+
+  /** Whether lookups return each connection's phase timings. */
+  public boolean isLookupTimings() {
+    return lookupTimings;
+  }
+
+  /** Event loop lag reported as a stall, in milliseconds; 0 disables the watchdog. */
+  public int getLoopStallThresholdMillis() {
+    return loopStallThresholdMillis;
+  }
+
+  /** {@code text} or {@code json} lines. */
+  public String getLogFormat() {
+    return logFormat;
+  }
+
+  /** Log records of one message passed per second before sampling; 0 passes all. */
+  public int getLogRatePerKey() {
+    return logRatePerKey;
+  }
+
+  /** Directory of the binary access log, or {@code null} if it is disabled. */
+  public Path getAccessLogDir() {
+    return accessLogDir;
+  }
+
+  /** Size of an access log segment file. */
+  public long getAccessLogSegmentBytes() {
+    return accessLogSegmentBytes;
+  }
+
+  /** Access log segments kept; 0 keeps all. */
+  public int getAccessLogMaxSegments() {
+    return accessLogMaxSegments;
+  }
+
+  /** New connections admitted per second per client address; 0 disables the limit. */
+  public int getConnRatePerIp() {
+    return connRatePerIp;
+  }
+
+  public int getConnBurstPerIp() {
+    return connBurstPerIp;
+  }
+
+  /** New connections admitted per second per /24 or /64; 0 disables the limit. */
+  public int getConnRatePerPrefix() {
+    return connRatePerPrefix;
+  }
+
+  public int getConnBurstPerPrefix() {
+    return connBurstPerPrefix;
+  }
+
+  /** File of JA4 allow and block rules checked before the TLS handshake, or {@code null}. */
+  public Path getJa4RulesPath() {
+    return ja4RulesPath;
+  }
+
+  /**
+   * Event loop lag at which the overload controller refuses new connections;
+   * 0 disables load shedding.
+   */
+  public int getShedLoadLagMillis() {
+    return shedLoadLagMillis;
   }
 
   public boolean isProd() {
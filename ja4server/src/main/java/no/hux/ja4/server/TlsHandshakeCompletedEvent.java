@@ -0,0 +1,35 @@
+package no.hux.ja4.server;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/** A TLS handshake succeeded or failed. Off unless a recording enables it. */
+@Name("no.hux.ja4.TlsHandshakeCompleted")
+@Label("TLS Handshake Completed")
+@Category({"JA4", "Server"})
+@Enabled(false)
+@StackTrace(false)
+final class TlsHandshakeCompletedEvent extends jdk.jfr.Event {
+
+  @Label("Success")
+  boolean success;
+
+  @Label("Handshake Time")
+  @Description("From TCP accept to handshake completion")
+  @Timespan
+  long handshakeTime;
+
+  @Label("Protocol")
+  String protocol;
+
+  @Label("Cipher Suite")
+  String cipherSuite;
+
+  @Label("Failure")
+  String failure;
+}
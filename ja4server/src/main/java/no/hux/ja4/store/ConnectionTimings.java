@@ -0,0 +1,53 @@
+package no.hux.ja4.store;
+
+/**
+ * When the phases of a fingerprinted connection completed, in microseconds
+ * since the server accepted it, or {@code -1} when a phase was not seen.
+ *
+ * <p>The handshake deltas come from packet capture and are measured on the
+ * wire instead: SYN to SYN/ACK is the server's accept latency plus half the
+ * path, SYN/ACK to ACK the client's round trip. The response is flushed after
+ * the record is stored, so its time is only kept in the phase histograms.
+ */
+public final class ConnectionTimings {
+
+  private final long clientHelloMicros;
+  private final long handshakeMicros;
+  private final long requestMicros;
+  private final long synToSynAckMicros;
+  private final long synAckToAckMicros;
+
+  public ConnectionTimings(long clientHelloMicros, long handshakeMicros, long requestMicros,
+      long synToSynAckMicros, long synAckToAckMicros) {
+    this.clientHelloMicros = clientHelloMicros;
+    this.handshakeMicros = handshakeMicros;
+    this.requestMicros = requestMicros;
+    this.synToSynAckMicros = synToSynAckMicros;
+    this.synAckToAckMicros = synAckToAckMicros;
+  }
+
+  /** The ClientHello was complete and parsed. */
+  public long clientHelloMicros() {
+    return clientHelloMicros;
+  }
+
+  /** The TLS handshake completed. */
+  public long handshakeMicros() {
+    return handshakeMicros;
+  }
+
+  /** The HTTP request was decoded. */
+  public long requestMicros() {
+    return requestMicros;
+  }
+
+  /** Captured SYN to SYN/ACK. */
+  public long synToSynAckMicros() {
+    return synToSynAckMicros;
+  }
+
+  /** Captured SYN/ACK to the client's ACK. */
+  public long synAckToAckMicros() {
+    return synAckToAckMicros;
+  }
+}
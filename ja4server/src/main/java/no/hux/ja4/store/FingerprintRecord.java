@@ -12,7 +12,19 @@ public record FingerprintRecord(
   String ja4ls,
   String ja4t,
   String ip,
-  String userAgent) {
+  String userAgent,
+  ConnectionTimings timings) {
+
+  public FingerprintRecord(String sessionId, Instant timestamp, String ja4, String ja4h,
+      String ja4l, String ja4ls, String ja4t, String ip, String userAgent) {
+    this(sessionId, timestamp, ja4, ja4h, ja4l, ja4ls, ja4t, ip, userAgent, null);
+  }
+
+  /** This record stored under another session id. */
+  public FingerprintRecord withSessionId(String id) {
+    return new FingerprintRecord(id, timestamp, ja4, ja4h, ja4l, ja4ls, ja4t, ip, userAgent,
+        timings);
+  }
 
   public boolean isExpired(Instant now, Duration ttl) {
     return ttl != null && !ttl.isZero() && timestamp().plus(ttl).isBefore(now);
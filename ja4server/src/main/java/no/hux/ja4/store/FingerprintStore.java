@@ -7,6 +7,7 @@ import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,6 +20,8 @@ public final class FingerprintStore {
   private final int maxEntries;
   private final Logger logger;
   private final ScheduledExecutorService scheduler;
+  private final LongAdder evicted = new LongAdder();
+  private final LongAdder expired = new LongAdder();
 
   public FingerprintStore(Duration ttl, Logger logger) {
     this(ttl, DEFAULT_MAX_ENTRIES, logger);
@@ -34,7 +37,11 @@ public final class FingerprintStore {
     this.store = new LinkedHashMap<>(16, 0.75f, false) {
       @Override
       protected boolean removeEldestEntry(Map.Entry<String, FingerprintRecord> eldest) {
-        return size() > FingerprintStore.this.maxEntries;
+        if (size() > FingerprintStore.this.maxEntries) {
+          evicted.increment();
+          return true;
+        }
+        return false;
       }
     };
     this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
@@ -46,27 +53,40 @@ public final class FingerprintStore {
   }
 
   public void put(FingerprintRecord record) {
+    StorePutEvent event = new StorePutEvent();
+    event.begin();
+    boolean replaced;
     synchronized (store) {
       // Remove first so an updated record moves to the tail (newest) in insertion order
       // and survives eldest-entry eviction.
-      store.remove(record.sessionId());
+      replaced = store.remove(record.sessionId()) != null;
       store.put(record.sessionId(), record);
     }
+    if (event.shouldCommit()) {
+      event.replaced = replaced;
+      event.commit();
+    }
   }
 
   public FingerprintRecord get(String sessionId) {
+    StoreLookupEvent event = new StoreLookupEvent();
+    event.begin();
     FingerprintRecord record;
     synchronized (store) {
       record = store.get(sessionId);
     }
-    if (record == null) {
-      return null;
-    }
-    if (record.isExpired(Instant.now(), ttl)) {
+    if (record != null && record.isExpired(Instant.now(), ttl)) {
       synchronized (store) {
-        store.remove(sessionId);
+        if (store.remove(sessionId) != null) {
+          expired.increment();
+        }
       }
-      return null;
+      event.expired = true;
+      record = null;
+    }
+    if (event.shouldCommit()) {
+      event.found = record != null;
+      event.commit();
     }
     return record;
   }
@@ -77,6 +97,16 @@ public final class FingerprintStore {
     }
   }
 
+  /** Records dropped to stay within the entry limit, since creation. */
+  public long getEvicted() {
+    return evicted.sum();
+  }
+
+  /** Records removed after their TTL, since creation. */
+  public long getExpired() {
+    return expired.sum();
+  }
+
   public void shutdown() {
     scheduler.shutdownNow();
   }
@@ -93,8 +123,20 @@ public final class FingerprintStore {
   private void cleanupExpired() {
     try {
       Instant now = Instant.now();
+      StoreCleanupEvent event = new StoreCleanupEvent();
+      event.begin();
+      int before;
+      int removed;
       synchronized (store) {
+        before = store.size();
         store.entrySet().removeIf(e -> e.getValue().isExpired(now, ttl));
+        removed = before - store.size();
+      }
+      expired.add(removed);
+      if (event.shouldCommit()) {
+        event.scanned = before;
+        event.removed = removed;
+        event.commit();
       }
     } catch (Exception ex) {
       logger.log(Level.WARNING, "Failed to cleanup expired fingerprints", ex);
@@ -0,0 +1,74 @@
+package no.hux.ja4.store;
+
+import java.time.format.DateTimeFormatter;
+import no.hux.ja4.Json;
+
+/** The JSON form of a {@link FingerprintRecord}, as lookups return it. */
+public final class RecordJson {
+
+  private RecordJson() {
+  }
+
+  /**
+   * @param uptimeSeconds the server's uptime, reported alongside the record.
+   */
+  public static String toJson(FingerprintRecord record, long uptimeSeconds) {
+    StringBuilder sb = new StringBuilder();
+    sb.append('{');
+    appendField(sb, "sessionId", record.sessionId());
+    sb.append(',');
+    appendField(sb, "timestamp", DateTimeFormatter.ISO_INSTANT.format(record.timestamp()));
+    sb.append(',');
+    appendNumericField(sb, "uptimeSeconds", uptimeSeconds);
+    sb.append(',');
+    appendField(sb, "ip", record.ip());
+    sb.append(',');
+    appendField(sb, "userAgent", record.userAgent());
+    sb.append(',');
+    sb.append("\"fingerprints\":{");
+    appendField(sb, "ja4", record.ja4());
+    sb.append(',');
+    appendField(sb, "ja4h", record.ja4h());
+    sb.append(',');
+    appendField(sb, "ja4l", record.ja4l());
+    sb.append(',');
+    appendField(sb, "ja4ls", record.ja4ls());
+    sb.append(',');
+    appendField(sb, "ja4t", record.ja4t());
+    sb.append('}');
+    ConnectionTimings timings = record.timings();
+    if (timings != null) {
+      sb.append(',');
+      sb.append("\"timings\":{");
+      appendMicrosField(sb, "clientHelloMicros", timings.clientHelloMicros());
+      sb.append(',');
+      appendMicrosField(sb, "handshakeMicros", timings.handshakeMicros());
+      sb.append(',');
+      appendMicrosField(sb, "requestMicros", timings.requestMicros());
+      sb.append(',');
+      appendMicrosField(sb, "synToSynAckMicros", timings.synToSynAckMicros());
+      sb.append(',');
+      appendMicrosField(sb, "synAckToAckMicros", timings.synAckToAckMicros());
+      sb.append('}');
+    }
+    sb.append('}');
+    return sb.toString();
+  }
+
+  private static void appendField(StringBuilder sb, String key, String value) {
+    Json.appendString(sb, key).append(':');
+    Json.appendString(sb, value);
+  }
+
+  private static void appendNumericField(StringBuilder sb, String key, long value) {
+    Json.appendString(sb, key).append(':').append(value);
+  }
+
+  private static void appendMicrosField(StringBuilder sb, String key, long micros) {
+    if (micros < 0L) {
+      appendField(sb, key, null);
+    } else {
+      appendNumericField(sb, key, micros);
+    }
+  }
+}
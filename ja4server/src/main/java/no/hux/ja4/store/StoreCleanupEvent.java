@@ -0,0 +1,26 @@
+package no.hux.ja4.store;
+
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A periodic sweep of expired records; the duration is the time the store
+ * lock was held, during which puts and lookups wait. Off unless a recording
+ * enables it.
+ */
+@Name("no.hux.ja4.StoreCleanup")
+@Label("Store Cleanup")
+@Category({"JA4", "Store"})
+@Enabled(false)
+@StackTrace(false)
+final class StoreCleanupEvent extends jdk.jfr.Event {
+
+  @Label("Scanned")
+  int scanned;
+
+  @Label("Removed")
+  int removed;
+}
@@ -0,0 +1,27 @@
+package no.hux.ja4.store;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A record was looked up; the duration includes waiting for the store lock.
+ * Off unless a recording enables it.
+ */
+@Name("no.hux.ja4.StoreLookup")
+@Label("Store Lookup")
+@Category({"JA4", "Store"})
+@Enabled(false)
+@StackTrace(false)
+final class StoreLookupEvent extends jdk.jfr.Event {
+
+  @Label("Found")
+  boolean found;
+
+  @Label("Expired")
+  @Description("A record was found past its TTL and removed")
+  boolean expired;
+}
@@ -0,0 +1,24 @@
+package no.hux.ja4.store;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A record was stored; the duration includes waiting for the store lock. Off
+ * unless a recording enables it.
+ */
+@Name("no.hux.ja4.StorePut")
+@Label("Store Put")
+@Category({"JA4", "Store"})
+@Enabled(false)
+@StackTrace(false)
+final class StorePutEvent extends jdk.jfr.Event {
+
+  @Label("Replaced")
+  @Description("An earlier record of the same session was replaced")
+  boolean replaced;
+}
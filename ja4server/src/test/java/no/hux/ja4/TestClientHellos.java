@@ -0,0 +1,38 @@
+package no.hux.ja4;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/** ClientHello records for tests that feed handshakes through capture or offline analysis. */
+public final class TestClientHellos {
+
+  private TestClientHellos() {
+  }
+
+  /**
+   * A TLS record holding a minimal TLS 1.3 ClientHello: one cipher suite, SNI
+   * and supported_versions.
+   */
+  public static byte[] clientHello(String serverName) {
+    byte[] name = serverName.getBytes(StandardCharsets.US_ASCII);
+    ByteBuffer ext = ByteBuffer.allocate(64);
+    ext.putShort((short) 0x0000).putShort((short) (name.length + 5))
+        .putShort((short) (name.length + 3)).put((byte) 0).putShort((short) name.length)
+        .put(name);
+    ext.putShort((short) 0x002B).putShort((short) 3).put((byte) 2).putShort((short) 0x0304);
+    int extLength = ext.position();
+
+    ByteBuffer body = ByteBuffer.allocate(128);
+    body.putShort((short) 0x0303).put(new byte[32]).put((byte) 0);
+    body.putShort((short) 2).putShort((short) 0x1301);
+    body.put((byte) 1).put((byte) 0);
+    body.putShort((short) extLength).put(ext.array(), 0, extLength);
+    int bodyLength = body.position();
+
+    ByteBuffer record = ByteBuffer.allocate(9 + bodyLength);
+    record.put((byte) 22).putShort((short) 0x0301).putShort((short) (4 + bodyLength));
+    record.put((byte) 1).put((byte) 0).putShort((short) bodyLength);
+    record.put(body.array(), 0, bodyLength);
+    return record.array();
+  }
+}
@@ -0,0 +1,72 @@
+package no.hux.ja4.accesslog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+class AccessLogTest {
+
+  private static final Logger LOGGER = Logger.getLogger(AccessLogTest.class.getName());
+
+  @Test
+  void writesFixedSizeEntriesAcrossSegments() throws Exception {
+    Path dir = Files.createTempDirectory("ja4-access-log");
+    int capacity = 2 * AccessLog.CHUNK_ENTRIES;
+    long segmentBytes = AccessLog.HEADER_BYTES + (long) capacity * AccessLog.ENTRY_BYTES;
+    AccessLog log = new AccessLog(dir, segmentBytes, 0, LOGGER);
+    InetAddress v4 = InetAddress.getByName("192.0.2.7");
+    InetAddress v6 = InetAddress.getByName("2001:db8::1");
+    for (int i = 0; i < capacity + 10; i++) {
+      log.log(i % 2 == 0 ? AccessLog.KIND_FINGERPRINT : AccessLog.KIND_LOOKUP, 200, 1_500_000L,
+          i % 2 == 0 ? v4 : v6, "session-" + i, i % 2 == 0 ? "t13d1516h2_8daaf6152771" : null,
+          "ge11nn05enus_" + "x".repeat(60), null, null, i == 0 ? "ja4t-\u00e6" : null);
+    }
+    log.stop();
+    assertEquals(capacity + 10, log.getWritten());
+    assertEquals(0, log.getDropped());
+
+    List<Path> segments = AccessLogReader.segments(dir);
+    assertEquals(2, segments.size());
+    AccessLogReader first = AccessLogReader.open(segments.get(0));
+    assertEquals(capacity, first.capacity());
+    assertEquals(capacity, first.claimed());
+    // The rest went to the next segment, which holds a whole claimed chunk.
+    AccessLogReader second = AccessLogReader.open(segments.get(1));
+    assertEquals(AccessLog.CHUNK_ENTRIES, second.claimed());
+    assertEquals("session-" + (capacity + 9), second.read(9).sessionId());
+    assertNull(second.read(10));
+    AccessLogEntry entry = first.read(0);
+    assertEquals(AccessLog.KIND_FINGERPRINT, entry.kind());
+    assertEquals(200, entry.status());
+    assertEquals(1_500, entry.latencyMicros());
+    assertEquals(v4, entry.client());
+    assertEquals("session-0", entry.sessionId());
+    assertEquals("t13d1516h2_8daaf6152771", entry.ja4());
+    // Cut at the field width; non-ASCII written as '?'.
+    assertEquals(AccessLog.JA4L - AccessLog.JA4H, entry.ja4h().length());
+    assertNull(entry.ja4l());
+    assertEquals("ja4t-?", entry.ja4t());
+    assertEquals(v6, first.read(1).client());
+    assertEquals("lookup", first.read(1).kindName());
+    assertTrue(Math.abs(entry.time().toEpochMilli() - System.currentTimeMillis()) < 60_000L);
+
+    StringWriter out = new StringWriter();
+    AccessLogTool.Filter filter = new AccessLogTool.Filter(null, v6, null, 200,
+        AccessLog.KIND_LOOKUP, null, null);
+    long printed = new AccessLogTool(List.of(dir), filter, true, false, out, LOGGER).run();
+    assertEquals((capacity + 10) / 2, printed);
+    String firstLine = out.toString().substring(0, out.toString().indexOf('\n'));
+    assertTrue(firstLine.matches("\\{\"time\":\"[^\"]+\",\"kind\":\"lookup\",\"status\":200,"
+        + "\"latencyMicros\":1500,\"ip\":\"2001:db8:0:0:0:0:0:1\",\"sessionId\":\"session-1\","
+        + "\"ja4\":null,\"ja4h\":\"ge11nn05enus_x+\",\"ja4l\":null,\"ja4ls\":null,"
+        + "\"ja4t\":null\\}"), firstLine);
+  }
+}
@@ -0,0 +1,56 @@
+package no.hux.ja4.admission;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetSocketAddress;
+import org.junit.jupiter.api.Test;
+
+class ConnectionAdmissionTest {
+
+  @Test
+  void limitsEachAddressAndItsPrefix() {
+    // One token a second, so the test never waits long enough for a refill.
+    ConnectionAdmission admission = new ConnectionAdmission(1, 3, 1, 5);
+    InetSocketAddress a = new InetSocketAddress("198.51.100.1", 40000);
+    InetSocketAddress b = new InetSocketAddress("198.51.100.2", 40000);
+    InetSocketAddress other = new InetSocketAddress("203.0.113.1", 40000);
+    for (int i = 0; i < 3; i++) {
+      assertTrue(admission.admit(a));
+    }
+    assertFalse(admission.admit(a));
+    // Same /24: its own address budget, the prefix's remaining two.
+    assertTrue(admission.admit(b));
+    assertTrue(admission.admit(b));
+    assertFalse(admission.admit(b));
+    assertTrue(admission.admit(other));
+    assertEquals(1, admission.getRefusedByAddress());
+    assertEquals(1, admission.getRefusedByPrefix());
+
+    ConnectionAdmission v6 = new ConnectionAdmission(0, 0, 1, 2);
+    assertTrue(v6.admit(new InetSocketAddress("2001:db8:1:2::1", 443)));
+    assertTrue(v6.admit(new InetSocketAddress("2001:db8:1:2::ffff", 443)));
+    assertFalse(v6.admit(new InetSocketAddress("2001:db8:1:2:8000::1", 443)));
+    assertTrue(v6.admit(new InetSocketAddress("2001:db8:1:3::1", 443)));
+  }
+
+  @Test
+  void tableRefillsAndEvictsIdleKeys() {
+    // A single pair of slots, so every key competes for the same two buckets.
+    TokenBucketTable table = new TokenBucketTable(2, 10, 2);
+    long now = 1_000_000L;
+    assertTrue(table.tryAcquire(1L, now));
+    assertTrue(table.tryAcquire(1L, now));
+    assertFalse(table.tryAcquire(1L, now));
+    assertTrue(table.tryAcquire(1L, now + 100_000L));
+    assertTrue(table.tryAcquire(2L, now + 120_000L));
+    assertTrue(table.tryAcquire(2L, now + 120_000L));
+
+    // Key 3 evicts the bucket closer to full; the busier key keeps its state.
+    assertTrue(table.tryAcquire(3L, now + 150_000L));
+    assertFalse(table.tryAcquire(2L, now + 150_000L));
+    table.credit(2L, now + 150_000L);
+    assertTrue(table.tryAcquire(2L, now + 150_000L));
+  }
+}
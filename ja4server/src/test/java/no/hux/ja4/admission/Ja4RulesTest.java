@@ -0,0 +1,70 @@
+package no.hux.ja4.admission;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+class Ja4RulesTest {
+
+  private static final Logger LOGGER = Logger.getLogger(Ja4RulesTest.class.getName());
+  private static final String CHROME = "t13d1516h2_8daaf6152771_02713d6af862";
+  private static final String SCANNER = "t13d1516h2_8daaf6152771_e5627efa2ab1";
+
+  @Test
+  void matchesPartsWithAllowRulesWinningAndReloads() throws IOException {
+    Path file = Files.createTempFile("ja4-rules", ".txt");
+    Files.writeString(file, """
+        # known scanners
+        block ja4_c  e5627efa2ab1
+        block ja4_a  t12i0303h1
+        block ja4_ac t13d1516h2_e5627efa2ab1   # same scanner, more specific
+        allow ja4    t13d1516h2_8daaf6152771_e5627efa2ab1
+        block ja4_b  000000000000
+        """);
+    Ja4Rules rules = new Ja4Rules(file, LOGGER);
+
+    // Allowed in full although two block rules match its parts.
+    assertTrue(rules.match(SCANNER).isAllow());
+    assertNull(rules.match(CHROME));
+    Ja4Rules.Rule rule = rules.match("t12i0303h1_000000000000_000000000000");
+    assertFalse(rule.isAllow());
+    assertEquals("ja4_a", rule.getPart());
+    rule = rules.match("t13d1516h2_1234567890ab_e5627efa2ab1");
+    assertEquals("ja4_ac", rule.getPart());
+    assertEquals("ja4_c", rules.match("t13d0000h2_1234567890ab_e5627efa2ab1").getPart());
+    assertNull(rules.match("not a ja4"));
+    assertEquals(1, rules.rules().get(2).getHits());
+
+    // An allowlist; the scanner's ac rule keeps its count across the reload.
+    Files.writeString(file, """
+        block ja4_ac t13d1516h2_e5627efa2ab1
+        allow ja4_b  8daaf6152771
+        block any
+        """);
+    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10_000L));
+    rules.reloadIfChanged();
+    assertEquals(3, rules.rules().size());
+    assertEquals(1, rules.rules().get(0).getHits());
+    assertTrue(rules.match(CHROME).isAllow());
+    assertEquals("any", rules.match("q13d0312h3_55b375c5d22e_06cda9e17597").getPart());
+    assertEquals("any", rules.match(null).getPart());
+
+    // A broken file keeps the previous rules.
+    Files.writeString(file, "block ja4_b xyz\n");
+    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 20_000L));
+    rules.reloadIfChanged();
+    assertEquals(3, rules.rules().size());
+
+    Files.writeString(file, "deny ja4_a t13d1516h2\n");
+    assertThrows(IllegalArgumentException.class, () -> new Ja4Rules(file, LOGGER));
+  }
+}
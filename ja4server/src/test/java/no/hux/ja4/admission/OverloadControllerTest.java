@@ -0,0 +1,121 @@
+package no.hux.ja4.admission;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultiThreadIoEventLoopGroup;
+import io.netty.channel.nio.NioIoHandler;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+class OverloadControllerTest {
+
+  private static final Logger LOGGER = Logger.getLogger(OverloadControllerTest.class.getName());
+  private static final long HOLD_NANOS =
+      TimeUnit.MILLISECONDS.toNanos(OverloadController.HOLD_MILLIS);
+
+  @Test
+  void risesOnSustainedPressureAndFallsOneLevelPerHold() {
+    double[] lag = {0.0};
+    double[] heap = {0.0};
+    OverloadController overload = new OverloadController(LOGGER);
+    overload.addSignal("loop_lag", () -> lag[0]);
+    overload.addSignal("heap", () -> heap[0]);
+
+    long now = 0L;
+    heap[0] = 0.75;
+    for (int i = 0; i < OverloadController.RISE_SAMPLES; i++) {
+      assertEquals(OverloadController.NORMAL, overload.level());
+      assertFalse(overload.shed(OverloadController.SKIP_JA4L));
+      overload.update(now);
+    }
+    assertEquals(OverloadController.SKIP_JA4L, overload.level());
+
+    // A single stall sheds nothing more; a sustained one goes all the way.
+    lag[0] = 1.2;
+    overload.update(now);
+    lag[0] = 0.0;
+    overload.update(now);
+    assertEquals(OverloadController.SKIP_JA4L, overload.level());
+    lag[0] = 1.2;
+    for (int i = 0; i < OverloadController.RISE_SAMPLES; i++) {
+      overload.update(now);
+    }
+    assertEquals(OverloadController.REFUSE_CONNECTIONS, overload.level());
+    assertTrue(overload.shed(OverloadController.REFUSE_CONNECTIONS));
+    assertTrue(overload.shed(OverloadController.SKIP_JA4L));
+    assertEquals(1.2, (double) overload.pressures().get("loop_lag"));
+
+    // Just under the threshold is not calm enough to step down.
+    lag[0] = 0.95;
+    overload.update(now += HOLD_NANOS);
+    overload.update(now += HOLD_NANOS);
+    assertEquals(OverloadController.REFUSE_CONNECTIONS, overload.level());
+
+    lag[0] = 0.0;
+    heap[0] = 0.0;
+    overload.update(now += 1);
+    overload.update(now += HOLD_NANOS / 2);
+    assertEquals(OverloadController.REFUSE_CONNECTIONS, overload.level());
+    overload.update(now += HOLD_NANOS / 2);
+    assertEquals(OverloadController.REJECT_LOOKUPS, overload.level());
+    for (int i = 0; i < 3; i++) {
+      overload.update(now += HOLD_NANOS);
+    }
+    assertEquals(OverloadController.NORMAL, overload.level());
+    assertFalse(overload.shed(OverloadController.SKIP_JA4L));
+
+    assertEquals(1L, (long) overload.shedCounts().get("connection"));
+    assertEquals(1L, (long) overload.shedCounts().get("ja4l"));
+    assertEquals(0L, (long) overload.shedCounts().get("lookup"));
+  }
+
+  @Test
+  void pressureJustUnderTheFirstThresholdShedsNothing() {
+    double[] lag = {0.69};
+    OverloadController overload = new OverloadController(LOGGER);
+    overload.addSignal("loop_lag", () -> lag[0]);
+    overload.addSignal("heap", () -> 0.5);
+
+    long now = 0L;
+    for (int i = 0; i < 2 * OverloadController.RISE_SAMPLES; i++) {
+      overload.update(now += TimeUnit.MILLISECONDS.toNanos(OverloadController.SAMPLE_MILLIS));
+    }
+    assertEquals(OverloadController.NORMAL, overload.level());
+    assertFalse(overload.shed(OverloadController.SKIP_JA4L));
+    assertEquals(Map.of("loop_lag", 0.69, "heap", 0.5), overload.pressures());
+
+    lag[0] = 0.70;
+    for (int i = 0; i < OverloadController.RISE_SAMPLES; i++) {
+      overload.update(now += TimeUnit.MILLISECONDS.toNanos(OverloadController.SAMPLE_MILLIS));
+    }
+    assertEquals(OverloadController.SKIP_JA4L, overload.level());
+  }
+
+  @Test
+  void serverControllerWatchesLoopsMemoryAndCaptureRing() {
+    EventLoopGroup loops = new MultiThreadIoEventLoopGroup(1, NioIoHandler.newFactory());
+    try {
+      OverloadController withoutCapture = OverloadController.forServer(LOGGER, 50,
+          () -> TimeUnit.MILLISECONDS.toNanos(25), loops, null);
+      assertEquals(List.of("loop_lag", "loop_queue", "heap", "direct_memory"),
+          List.copyOf(withoutCapture.pressures().keySet()));
+      withoutCapture.update(0L);
+      assertEquals(0.5, (double) withoutCapture.pressures().get("loop_lag"));
+
+      OverloadController withCapture = OverloadController.forServer(LOGGER, 50, () -> 0L, loops,
+          () -> 0.25);
+      assertEquals(List.of("loop_lag", "loop_queue", "heap", "direct_memory", "capture_ring"),
+          List.copyOf(withCapture.pressures().keySet()));
+      withCapture.update(0L);
+      assertEquals(0.25, (double) withCapture.pressures().get("capture_ring"));
+    } finally {
+      loops.shutdownGracefully();
+    }
+  }
+}
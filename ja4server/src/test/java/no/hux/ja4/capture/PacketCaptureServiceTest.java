@@ -1,24 +1,32 @@
 package no.hux.ja4.capture;
 
+import static no.hux.ja4.TestClientHellos.clientHello;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.net.Inet4Address;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
+import no.hux.ja4.store.FingerprintRecord;
+import no.hux.ja4.store.FingerprintStore;
 import org.junit.jupiter.api.Test;
 import org.pcap4j.packet.EthernetPacket;
 import org.pcap4j.packet.IpV4Packet;
 import org.pcap4j.packet.IpV4Rfc1349Tos;
-import org.pcap4j.packet.Packet;
 import org.pcap4j.packet.TcpMaximumSegmentSizeOption;
 import org.pcap4j.packet.TcpNoOperationOption;
 import org.pcap4j.packet.TcpPacket;
 import org.pcap4j.packet.TcpPacket.TcpOption;
 import org.pcap4j.packet.TcpWindowScaleOption;
+import org.pcap4j.packet.UnknownPacket;
 import org.pcap4j.packet.namednumber.EtherType;
 import org.pcap4j.packet.namednumber.IpNumber;
 import org.pcap4j.packet.namednumber.IpVersion;
@@ -42,14 +50,14 @@ class PacketCaptureServiceTest {
     PacketCaptureService service = newService(store);
 
     // options: MSS(1460), NOP, WindowScale(6) -> kinds 2-1-3 (8 bytes, 4-byte aligned)
-    Packet syn = buildTcp(CLIENT_IP, CLIENT_PORT, SERVER_IP, SERVER_PORT, true, false, 65535, 64,
+    byte[] syn = buildTcp(CLIENT_IP, CLIENT_PORT, SERVER_IP, SERVER_PORT, true, false, 65535, 64,
         synOptions(1460, (byte) 6));
-    service.handlePacket(syn, 1_000_000L);
+    service.handlePacket(syn, syn.length, 1_000_000L);
 
-    TcpHandshakeInfo info = store.get(CLIENT_IP, CLIENT_PORT);
-    assertNotNull(info);
-    assertEquals("65535_2-1-3_1460_6", info.getJa4t());
-    assertEquals(64, info.getClientTtl());
+    long handle = store.get(clientKey());
+    assertNotEquals(TcpInfoStore.NO_HANDLE, handle);
+    assertEquals("65535_2-1-3_1460_6", store.ja4t(handle));
+    assertEquals(64, store.clientTtl(handle));
   }
 
   @Test
@@ -57,23 +65,23 @@ class PacketCaptureServiceTest {
     TcpInfoStore store = new TcpInfoStore(60L, 1000, Logger.getLogger("test"));
     PacketCaptureService service = newService(store);
 
-    Packet syn = buildTcp(CLIENT_IP, CLIENT_PORT, SERVER_IP, SERVER_PORT, true, false, 65535, 64,
+    byte[] syn = buildTcp(CLIENT_IP, CLIENT_PORT, SERVER_IP, SERVER_PORT, true, false, 65535, 64,
         synOptions(1460, (byte) 6));
-    Packet synAck = buildTcp(SERVER_IP, SERVER_PORT, CLIENT_IP, CLIENT_PORT, true, true, 65535, 64,
+    byte[] synAck = buildTcp(SERVER_IP, SERVER_PORT, CLIENT_IP, CLIENT_PORT, true, true, 65535, 64,
         synOptions(1460, (byte) 6));
-    Packet ack = buildTcp(CLIENT_IP, CLIENT_PORT, SERVER_IP, SERVER_PORT, false, true, 65535, 64,
+    byte[] ack = buildTcp(CLIENT_IP, CLIENT_PORT, SERVER_IP, SERVER_PORT, false, true, 65535, 64,
         new ArrayList<>());
 
-    service.handlePacket(syn, 1_000_000L);
-    service.handlePacket(synAck, 1_010_000L);
-    service.handlePacket(ack, 1_030_000L);
+    service.handlePacket(syn, syn.length, 1_000_000L);
+    service.handlePacket(synAck, synAck.length, 1_010_000L);
+    service.handlePacket(ack, ack.length, 1_030_000L);
 
-    TcpHandshakeInfo info = store.get(CLIENT_IP, CLIENT_PORT);
-    assertNotNull(info);
+    long handle = store.get(clientKey());
+    assertNotEquals(TcpInfoStore.NO_HANDLE, handle);
     // JA4L-C = (ack - synAck) / 2 = (1_030_000 - 1_010_000) / 2 = 10_000 us; client ttl 64.
-    assertEquals("10000_64", info.computeJa4lC());
+    assertEquals("10000_64", store.ja4lC(handle));
     // JA4L-S = (synAck - syn) / 2 = (1_010_000 - 1_000_000) / 2 = 5_000 us; server ttl 64.
-    assertEquals("5000_64", info.computeJa4lS());
+    assertEquals("5000_64", store.ja4lS(handle));
   }
 
   @Test
@@ -81,11 +89,144 @@ class PacketCaptureServiceTest {
     TcpInfoStore store = new TcpInfoStore(60L, 1000, Logger.getLogger("test"));
     PacketCaptureService service = newService(store);
 
-    Packet syn = buildTcp(CLIENT_IP, CLIENT_PORT, SERVER_IP, 1234, true, false, 65535, 64,
+    byte[] syn = buildTcp(CLIENT_IP, CLIENT_PORT, SERVER_IP, 1234, true, false, 65535, 64,
         synOptions(1460, (byte) 6));
-    service.handlePacket(syn, 1_000_000L);
+    service.handlePacket(syn, syn.length, 1_000_000L);
 
-    assertNull(store.get(CLIENT_IP, CLIENT_PORT));
+    assertEquals(TcpInfoStore.NO_HANDLE, store.get(clientKey()));
+  }
+
+  @Test
+  void serverSynAckWithoutClientSynIsIgnored() throws Exception {
+    TcpInfoStore store = new TcpInfoStore(60L, 1000, Logger.getLogger("test"));
+    PacketCaptureService service = newService(store);
+
+    byte[] synAck = buildTcp(SERVER_IP, SERVER_PORT, CLIENT_IP, CLIENT_PORT, true, true, 65535, 64,
+        synOptions(1460, (byte) 6));
+    service.handlePacket(synAck, synAck.length, 1_010_000L);
+
+    assertEquals(TcpInfoStore.NO_HANDLE, store.get(clientKey()));
+  }
+
+  @Test
+  void truncatedFrameIsIgnored() throws Exception {
+    TcpInfoStore store = new TcpInfoStore(60L, 1000, Logger.getLogger("test"));
+    PacketCaptureService service = newService(store);
+
+    byte[] syn = buildTcp(CLIENT_IP, CLIENT_PORT, SERVER_IP, SERVER_PORT, true, false, 65535, 64,
+        synOptions(1460, (byte) 6));
+    // Cut inside the TCP options: the header is incomplete and must not be read.
+    service.handlePacket(syn, 14 + 20 + 24, 1_000_000L);
+
+    assertEquals(TcpInfoStore.NO_HANDLE, store.get(clientKey()));
+  }
+
+  @Test
+  void passiveModeStoresJa4AndJa4tOfAnotherServersClient() throws Exception {
+    FingerprintStore fingerprints = new FingerprintStore(Duration.ofMinutes(1),
+        Logger.getLogger("test"));
+    PassiveFlowTable flows = new PassiveFlowTable(List.of(443), fingerprints);
+    PacketCaptureService service = new PacketCaptureService(List.of(443), List.of(),
+        PacketCaptureService.ENGINE_PCAP, 1, PassiveFingerprinter.MIN_SNAPLEN, 0, flows,
+        Logger.getLogger("test"));
+    try {
+      byte[] syn = buildTcp(CLIENT_IP, CLIENT_PORT, SERVER_IP, 443, true, false, 65535, 64,
+          synOptions(1460, (byte) 6));
+      byte[] synAck = buildTcp(SERVER_IP, 443, CLIENT_IP, CLIENT_PORT, true, true, 65535, 60,
+          synOptions(1460, (byte) 6));
+      byte[] ack = buildTcp(CLIENT_IP, CLIENT_PORT, SERVER_IP, 443, false, true, 65535, 64,
+          new ArrayList<>());
+      byte[] hello = buildTcp(CLIENT_IP, CLIENT_PORT, SERVER_IP, 443, 2, false, true, 65535,
+          64, new ArrayList<>(), clientHello("example.com"));
+
+      // Records carry the SYN's capture time, which the store's TTL applies to.
+      long now = System.currentTimeMillis() * 1000L;
+      service.handlePacket(syn, syn.length, now);
+      service.handlePacket(synAck, synAck.length, now + 10_000L);
+      service.handlePacket(ack, ack.length, now + 30_000L);
+      assertNull(fingerprints.get(CLIENT_IP + ":" + CLIENT_PORT));
+      service.handlePacket(hello, hello.length, now + 31_000L);
+
+      FingerprintRecord record = fingerprints.get(CLIENT_IP + ":" + CLIENT_PORT);
+      assertNotNull(record);
+      assertTrue(record.ja4().startsWith("t13d0102"), record.ja4());
+      assertEquals("65535_2-1-3_1460_6", record.ja4t());
+      assertEquals("10000_64", record.ja4l());
+      assertEquals("5000_60", record.ja4ls());
+      assertEquals(CLIENT_IP, record.ip());
+      assertEquals(1L, flows.fingerprintedCount());
+    } finally {
+      fingerprints.shutdown();
+    }
+  }
+
+  @Test
+  void passiveModeKeepsEarlierFlowsOfAReusedClientPort() throws Exception {
+    FingerprintStore fingerprints = new FingerprintStore(Duration.ofMinutes(1),
+        Logger.getLogger("test"));
+    PassiveFlowTable flows = new PassiveFlowTable(List.of(443), fingerprints);
+    PacketCaptureService service = new PacketCaptureService(List.of(443), List.of(),
+        PacketCaptureService.ENGINE_PCAP, 1, PassiveFingerprinter.MIN_SNAPLEN, 0, flows,
+        Logger.getLogger("test"));
+    try {
+      long first = System.currentTimeMillis() * 1000L;
+      long second = first + 2_000_000L;
+      for (long syn : new long[] {first, second}) {
+        for (byte[] frame : List.of(
+            buildTcp(CLIENT_IP, CLIENT_PORT, SERVER_IP, 443, true, false, 65535, 64,
+                synOptions(1460, (byte) 6)),
+            buildTcp(SERVER_IP, 443, CLIENT_IP, CLIENT_PORT, true, true, 65535, 60,
+                synOptions(1460, (byte) 6)),
+            buildTcp(CLIENT_IP, CLIENT_PORT, SERVER_IP, 443, false, true, 65535, 64,
+                new ArrayList<>()),
+            buildTcp(CLIENT_IP, CLIENT_PORT, SERVER_IP, 443, 2, false, true, 65535, 64,
+                new ArrayList<>(), clientHello("example.com")))) {
+          service.handlePacket(frame, frame.length, syn);
+          syn += 10_000L;
+        }
+      }
+
+      String endpoint = CLIENT_IP + ":" + CLIENT_PORT;
+      assertEquals(second / 1000L, fingerprints.get(endpoint).timestamp().toEpochMilli());
+      FingerprintRecord earlier = fingerprints.get(endpoint + ":1");
+      assertNotNull(earlier);
+      assertEquals(endpoint + ":1", earlier.sessionId());
+      assertEquals(first / 1000L, earlier.timestamp().toEpochMilli());
+      assertNull(fingerprints.get(endpoint + ":2"));
+      assertEquals(2L, flows.fingerprintedCount());
+    } finally {
+      fingerprints.shutdown();
+    }
+  }
+
+  @Test
+  void syntheticReplayCorrelatesEveryCompleteHandshake() throws Exception {
+    CaptureReplay replay = new CaptureReplay(4096, 32, 0.02, 0.0, 0.5, 7L, 1, 0, false,
+        TcpInfoStore.DEFAULT_MAX_ENTRIES, Logger.getLogger("test"));
+    CaptureReplay.Result result = replay.replayOnce();
+
+    assertTrue(result.correlatable() > 0);
+    assertTrue(result.correlatable() < result.packets() / 3, "loss leaves handshakes incomplete");
+    assertEquals(result.correlatable(), result.correlated());
+    assertEquals(1.0, result.hitRate());
+    assertEquals(0, result.synRefused());
+  }
+
+  @Test
+  void syntheticTraceRejectsFramesPastTheArrayLimit() {
+    int handshakes = SyntheticHandshakes.MAX_PACKETS / 3;
+    int floods = SyntheticHandshakes.MAX_PACKETS - handshakes * 3;
+    assertEquals(SyntheticHandshakes.MAX_PACKETS,
+        SyntheticHandshakes.packets(handshakes, (double) floods / handshakes));
+    assertThrows(IllegalArgumentException.class,
+        () -> new SyntheticHandshakes(handshakes, 1, 0, 0, (floods + 1.0) / handshakes, 1L));
+    // 9M handshakes used to overflow the int frame size into a negative array length.
+    assertThrows(IllegalArgumentException.class,
+        () -> new SyntheticHandshakes(9_000_000, 1, 0, 0, 0, 1L));
+  }
+
+  private static long clientKey() throws Exception {
+    return TcpInfoStore.key(new InetSocketAddress(InetAddress.getByName(CLIENT_IP), CLIENT_PORT));
   }
 
   private static List<TcpOption> synOptions(int mss, byte windowScale) {
@@ -100,8 +241,14 @@ class PacketCaptureServiceTest {
     return options;
   }
 
-  private static Packet buildTcp(String srcIp, int srcPort, String dstIp, int dstPort,
+  private static byte[] buildTcp(String srcIp, int srcPort, String dstIp, int dstPort,
       boolean syn, boolean ack, int window, int ttl, List<TcpOption> options) throws Exception {
+    return buildTcp(srcIp, srcPort, dstIp, dstPort, 1, syn, ack, window, ttl, options, null);
+  }
+
+  private static byte[] buildTcp(String srcIp, int srcPort, String dstIp, int dstPort, int seq,
+      boolean syn, boolean ack, int window, int ttl, List<TcpOption> options, byte[] payload)
+      throws Exception {
     Inet4Address src = (Inet4Address) InetAddress.getByName(srcIp);
     Inet4Address dst = (Inet4Address) InetAddress.getByName(dstIp);
 
@@ -110,7 +257,7 @@ class PacketCaptureServiceTest {
         .dstPort(TcpPort.getInstance((short) dstPort))
         .srcAddr(src)
         .dstAddr(dst)
-        .sequenceNumber(1)
+        .sequenceNumber(seq)
         .acknowledgmentNumber(ack ? 1 : 0)
         .syn(syn)
         .ack(ack)
@@ -118,6 +265,9 @@ class PacketCaptureServiceTest {
         .options(options)
         .correctChecksumAtBuild(true)
         .correctLengthAtBuild(true);
+    if (payload != null) {
+      tcp.payloadBuilder(new UnknownPacket.Builder().rawData(payload));
+    }
 
     IpV4Packet.Builder ip = new IpV4Packet.Builder()
         .version(IpVersion.IPV4)
@@ -138,11 +288,7 @@ class PacketCaptureServiceTest {
         .payloadBuilder(ip)
         .paddingAtBuild(true);
 
-    // Round-trip through raw bytes to mirror exactly what libpcap delivers at
-    // capture time. This exercises the pcap4j packet factory: if the factory
-    // dependency is missing, dissection yields a null IpV4Packet and the
-    // assertions below fail (guarding against silent capture breakage).
-    byte[] raw = eth.build().getRawData();
-    return EthernetPacket.newPacket(raw, 0, raw.length);
+    // The capture path consumes exactly these bytes, as libpcap delivers them.
+    return eth.build().getRawData();
   }
 }
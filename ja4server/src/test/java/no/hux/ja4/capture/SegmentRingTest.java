@@ -0,0 +1,139 @@
+package no.hux.ja4.capture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SegmentRingTest {
+
+  @Test
+  void drainsInOrderAndFreesSlots() {
+    SegmentRing ring = new SegmentRing(4);
+    TcpPacketDecoder decoder = decoderFor(51000);
+    for (long micros = 1; micros <= 3; micros++) {
+      assertTrue(ring.offer(decoder, micros));
+    }
+    assertEquals(3, ring.occupancy());
+
+    List<Long> seen = new ArrayList<>();
+    assertEquals(2, ring.drain(s -> seen.add(s.getMicros()), 2));
+    assertEquals(1, ring.drain(s -> seen.add(s.getMicros()), 10));
+    assertEquals(List.of(1L, 2L, 3L), seen);
+    assertEquals(0, ring.occupancy());
+    assertEquals(0, ring.drain(s -> seen.add(s.getMicros()), 10));
+  }
+
+  @Test
+  void fullRingDropsAndCounts() {
+    SegmentRing ring = new SegmentRing(3);
+    TcpPacketDecoder decoder = decoderFor(51000);
+    assertEquals(4, ring.capacity());
+    for (int i = 0; i < 4; i++) {
+      assertTrue(ring.offer(decoder, i));
+    }
+
+    assertFalse(ring.offer(decoder, 4));
+    assertFalse(ring.offer(decoder, 5));
+    assertEquals(2L, ring.overflows());
+
+    ring.drain(s -> { }, 1);
+    assertTrue(ring.offer(decoder, 6));
+    List<Integer> ports = new ArrayList<>();
+    ring.drain(s -> ports.add(s.getSrcPort()), 10);
+    assertEquals(4, ports.size());
+  }
+
+  @Test
+  void sharedRingCarriesSummariesBetweenMappings() throws Exception {
+    Path file = Files.createTempFile("ja4-capture", ".ring");
+    file.toFile().deleteOnExit();
+    SharedSegmentRing writer = SharedSegmentRing.create(file, 4);
+    SharedSegmentRing reader = SharedSegmentRing.open(file);
+    SegmentSummary summary = new SegmentSummary();
+    summary.copyFrom(decoderFor(51000), 7L);
+    writer.publish(summary);
+
+    List<String> seen = new ArrayList<>();
+    SegmentSummary scratch = new SegmentSummary();
+    assertEquals(1, reader.poll(scratch, s -> seen.add(s.getSrcPort() + "/" + s.getDstPort()
+        + "/" + s.getMicros() + "/" + s.getTtl() + "/" + s.isSyn()), 10));
+    assertEquals(List.of("51000/8443/7/64/true"), seen);
+    assertEquals(0, reader.poll(scratch, s -> true, 10));
+  }
+
+  @Test
+  void sharedRingReaderSkipsWhatWasOverwritten() throws Exception {
+    Path file = Files.createTempFile("ja4-capture", ".ring");
+    file.toFile().deleteOnExit();
+    SharedSegmentRing writer = SharedSegmentRing.create(file, 4);
+    SharedSegmentRing reader = SharedSegmentRing.open(file);
+    SegmentSummary summary = new SegmentSummary();
+    for (long micros = 1; micros <= 6; micros++) {
+      summary.copyFrom(decoderFor(51000), micros);
+      writer.publish(summary);
+    }
+
+    List<Long> seen = new ArrayList<>();
+    reader.poll(new SegmentSummary(), s -> seen.add(s.getMicros()), 10);
+    assertEquals(List.of(3L, 4L, 5L, 6L), seen);
+    assertEquals(2L, reader.lost());
+
+    // A restarted writer begins at zero again; the reader follows it.
+    SharedSegmentRing restarted = SharedSegmentRing.create(file, 4);
+    assertEquals(0, reader.poll(new SegmentSummary(), s -> true, 10));
+    summary.copyFrom(decoderFor(51001), 9L);
+    restarted.publish(summary);
+    seen.clear();
+    reader.poll(new SegmentSummary(), s -> seen.add(s.getMicros()), 10);
+    assertEquals(List.of(9L), seen);
+  }
+
+  @Test
+  void sharedRingIsCreatedPrivateAndNeverThroughALink() throws Exception {
+    Path dir = Files.createTempDirectory("ja4-ring");
+    Path file = dir.resolve("ja4-capture.ring");
+    SharedSegmentRing.create(file, 4);
+    assertEquals("rw-r-----", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+
+    Path target = dir.resolve("target");
+    Files.writeString(target, "keep");
+    Path link = Files.createSymbolicLink(dir.resolve("link.ring"), target);
+    assertThrows(IOException.class, () -> SharedSegmentRing.create(link, 4));
+    assertEquals("keep", Files.readString(target));
+
+    Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-rw-rw-"));
+    assertThrows(IOException.class, () -> SharedSegmentRing.create(file, 4));
+    for (Path p : List.of(link, target, file, dir)) {
+      Files.deleteIfExists(p);
+    }
+    assertFalse(Files.exists(dir, LinkOption.NOFOLLOW_LINKS));
+  }
+
+  private static TcpPacketDecoder decoderFor(int srcPort) {
+    // Minimal IPv4 + TCP SYN without options, starting at the IP header.
+    byte[] frame = new byte[40];
+    frame[0] = 0x45;
+    frame[3] = 40;
+    frame[8] = 64;
+    frame[9] = 6;
+    frame[20] = (byte) (srcPort >>> 8);
+    frame[21] = (byte) srcPort;
+    frame[22] = (byte) (8443 >>> 8);
+    frame[23] = (byte) 8443;
+    frame[32] = 0x50;
+    frame[33] = 0x02;
+    TcpPacketDecoder decoder = new TcpPacketDecoder(TcpPacketDecoder.LINK_RAW);
+    assertTrue(decoder.decode(frame, frame.length));
+    return decoder;
+  }
+}
@@ -0,0 +1,47 @@
+package no.hux.ja4.capture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class SynAdmissionTest {
+
+  private static final int FLOODER = 0xC6336401;
+  private static final int NEIGHBOUR = 0xC6336402;
+
+  @Test
+  void prefixBucketRefusesBeyondBurstAndRefills() {
+    SynAdmission admission = new SynAdmission(10, 3);
+    long now = 1_000_000L;
+    for (int port = 1; port <= 3; port++) {
+      assertTrue(admission.admitSyn(FLOODER, TcpInfoStore.key(FLOODER, port), now));
+    }
+
+    // Same /24, different host: shares the exhausted bucket.
+    assertFalse(admission.admitSyn(NEIGHBOUR, TcpInfoStore.key(NEIGHBOUR, 1), now));
+    assertEquals(1, admission.refusedCount());
+
+    // 10 per second: one token after 100 ms.
+    assertTrue(admission.admitSyn(NEIGHBOUR, TcpInfoStore.key(NEIGHBOUR, 2), now + 100_000L));
+    assertFalse(admission.admitSyn(NEIGHBOUR, TcpInfoStore.key(NEIGHBOUR, 3), now + 100_000L));
+  }
+
+  @Test
+  void ackForRefusedSynVerifiesSource() {
+    SynAdmission admission = new SynAdmission(1, 1);
+    long now = 1_000_000L;
+    assertTrue(admission.admitSyn(FLOODER, TcpInfoStore.key(FLOODER, 1), now));
+    long refusedFlow = TcpInfoStore.key(NEIGHBOUR, 40000);
+    assertFalse(admission.admitSyn(NEIGHBOUR, refusedFlow, now));
+
+    // A spoofed source never ACKs; a real one does and is admitted from then on.
+    admission.unmatchedAck(NEIGHBOUR, refusedFlow, now + 1_000L);
+    assertTrue(admission.admitSyn(NEIGHBOUR, TcpInfoStore.key(NEIGHBOUR, 40001), now + 2_000L));
+    assertTrue(admission.admitSyn(NEIGHBOUR, TcpInfoStore.key(NEIGHBOUR, 40002), now + 3_000L));
+    // The prefix was credited one token; unverified hosts in it get no more.
+    assertTrue(admission.admitSyn(FLOODER, TcpInfoStore.key(FLOODER, 2), now + 3_000L));
+    assertFalse(admission.admitSyn(FLOODER, TcpInfoStore.key(FLOODER, 3), now + 3_000L));
+  }
+}
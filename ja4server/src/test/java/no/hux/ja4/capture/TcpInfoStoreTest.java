@@ -0,0 +1,141 @@
+package no.hux.ja4.capture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+class TcpInfoStoreTest {
+
+  @Test
+  void packsAddressAndPort() throws Exception {
+    long key = TcpInfoStore.key(
+        new InetSocketAddress(InetAddress.getByName("203.0.113.10"), 51000));
+    assertEquals(TcpInfoStore.key(0xCB00710A, 51000), key);
+    assertEquals(0xCB00710AL << 16 | 51000, key);
+    assertEquals(TcpInfoStore.NO_KEY,
+        TcpInfoStore.key(new InetSocketAddress(InetAddress.getByName("::1"), 51000)));
+  }
+
+  @Test
+  void getOrCreateReturnsSameHandle() {
+    TcpInfoStore store = new TcpInfoStore(60L, 1000, Logger.getLogger("test"));
+    long key = TcpInfoStore.key(0x0A000001, 40000);
+
+    assertEquals(TcpInfoStore.NO_HANDLE, store.get(key));
+    long created = store.getOrCreate(key);
+    assertNotEquals(TcpInfoStore.NO_HANDLE, created);
+    assertEquals(created, store.getOrCreate(key));
+    assertEquals(created, store.get(key));
+    assertEquals(TcpInfoStore.NO_HANDLE, store.get(TcpInfoStore.key(0x0A000001, 40001)));
+    store.shutdown();
+  }
+
+  @Test
+  void fullTableEvictsInsteadOfGrowing() {
+    TcpInfoStore store = new TcpInfoStore(60L, 16, Logger.getLogger("test"));
+    long newest = 0L;
+    for (int port = 1; port <= 1000; port++) {
+      newest = TcpInfoStore.key(0x0A000001, port);
+      store.getOrCreate(newest);
+    }
+
+    assertEquals(16, store.size());
+    assertNotEquals(TcpInfoStore.NO_HANDLE, store.get(newest));
+    store.shutdown();
+  }
+
+  @Test
+  void reusedSlotInvalidatesOldHandle() {
+    TcpInfoStore store = new TcpInfoStore(60L, 1, Logger.getLogger("test"));
+    long first = store.getOrCreate(TcpInfoStore.key(0x0A000001, 1));
+    SegmentSummary syn = new SegmentSummary();
+    syn.copyFrom(new TcpPacketDecoder(TcpPacketDecoder.LINK_RAW), 1_000_000L);
+    store.recordSyn(first, syn);
+    assertEquals("0_00_00_00", store.ja4t(first));
+
+    // One bucket of WAYS slots: filling it evicts the first entry.
+    for (int port = 2; port <= TcpInfoStore.WAYS + 1; port++) {
+      store.getOrCreate(TcpInfoStore.key(0x0A000001, port));
+    }
+
+    assertEquals(TcpInfoStore.NO_HANDLE, store.get(TcpInfoStore.key(0x0A000001, 1)));
+    assertNull(store.ja4t(first));
+    assertEquals(-1, store.clientTtl(first));
+    store.shutdown();
+  }
+
+  @Test
+  void fullBucketEvictsHalfOpenBeforeCompleted() {
+    TcpInfoStore store = new TcpInfoStore(60L, 1, Logger.getLogger("test"));
+    long completedKey = TcpInfoStore.key(0x0A000001, 1);
+    long completed = store.getOrCreate(completedKey);
+    store.recordSynAck(completed, 64, 1_000L);
+    store.recordAck(completed, 2_000L);
+
+    // A flood of half-open SYNs cycles through the other slots only.
+    for (int port = 2; port <= 100; port++) {
+      store.getOrCreate(TcpInfoStore.key(0x0A000002, port));
+    }
+
+    assertEquals(completed, store.get(completedKey));
+    assertEquals("500_0", store.ja4lC(completed));
+    assertEquals(1_000L, store.synAckToAckMicros(completed));
+    // No SYN was recorded.
+    assertEquals(-1L, store.synToSynAckMicros(completed));
+    store.shutdown();
+  }
+
+  @Test
+  void retransmittedSynIsNeverReadHalfWritten() throws Exception {
+    TcpInfoStore store = new TcpInfoStore(60L, 1, Logger.getLogger("test"));
+    long handle = store.getOrCreate(TcpInfoStore.key(0x0A000001, 1));
+    SegmentSummary first = syn(64, 65535, 1460, 7, 2, 1, 3, 4, 8);
+    SegmentSummary second = syn(128, 8192, 1400, 0, 2);
+    store.recordSyn(handle, second);
+    String secondJa4t = store.ja4t(handle);
+    store.recordSyn(handle, first);
+    String firstJa4t = store.ja4t(handle);
+
+    AtomicBoolean done = new AtomicBoolean();
+    Thread writer = new Thread(() -> {
+      for (int i = 0; !done.get(); i++) {
+        store.recordSyn(handle, (i & 1) == 0 ? second : first);
+      }
+    });
+    writer.start();
+    try {
+      for (int i = 0; i < 200_000; i++) {
+        String ja4t = store.ja4t(handle);
+        assertTrue(ja4t == null || ja4t.equals(firstJa4t) || ja4t.equals(secondJa4t), ja4t);
+        int ttl = store.clientTtl(handle);
+        assertTrue(ttl == -1 || ttl == 64 || ttl == 128, Integer.toString(ttl));
+      }
+    } finally {
+      done.set(true);
+      writer.join();
+      store.shutdown();
+    }
+  }
+
+  private static SegmentSummary syn(int ttl, int window, int mss, int windowScale,
+      int... optionKinds) {
+    ByteBuffer b = ByteBuffer.allocate(28 + optionKinds.length);
+    b.putLong(0, 1_000_000L).put(20, (byte) 0x02).put(21, (byte) ttl)
+        .putShort(22, (short) window).putShort(24, (short) mss).put(26, (byte) windowScale)
+        .put(27, (byte) optionKinds.length);
+    for (int i = 0; i < optionKinds.length; i++) {
+      b.put(28 + i, (byte) optionKinds[i]);
+    }
+    SegmentSummary syn = new SegmentSummary();
+    syn.readFrom(b, 0);
+    return syn;
+  }
+}
@@ -0,0 +1,143 @@
+package no.hux.ja4.capture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import org.junit.jupiter.api.Test;
+
+class TcpPacketDecoderTest {
+
+  // macOS-style SYN options: MSS(1460), NOP, WS(6), NOP, NOP, TS, SACK-permitted,
+  // EOL, EOL -> 24 bytes.
+  private static final int[] MAC_OPTIONS = {
+      2, 4, 0x05, 0xB4, 1, 3, 3, 6, 1, 1, 8, 10, 0, 0, 0, 1, 0, 0, 0, 0, 4, 2, 0, 0 };
+
+  @Test
+  void decodesEthernetSynHeaderFields() {
+    byte[] frame = frame(ethernet(0x0800), ipv4(64, 0), tcp(51000, 8443, 0x02, 65535,
+        MAC_OPTIONS));
+    TcpPacketDecoder decoder = new TcpPacketDecoder(TcpPacketDecoder.LINK_ETHERNET);
+
+    assertTrue(decoder.decode(frame, frame.length));
+    assertEquals("203.0.113.10", TcpPacketDecoder.formatIpv4(decoder.getSrcAddr()));
+    assertEquals("198.51.100.5", TcpPacketDecoder.formatIpv4(decoder.getDstAddr()));
+    assertEquals(51000, decoder.getSrcPort());
+    assertEquals(8443, decoder.getDstPort());
+    assertEquals(64, decoder.getTtl());
+    assertTrue(decoder.isSyn());
+    assertFalse(decoder.isAck());
+    assertEquals(65535, decoder.getWindow());
+    assertEquals(1460, decoder.getMss());
+    assertEquals(6, decoder.getWindowScale());
+    assertArrayEquals(new int[] {2, 1, 3, 1, 1, 8, 4, 0, 0}, decoder.copyOptionKinds());
+    assertEquals(0, decoder.getPayloadLength());
+  }
+
+  @Test
+  void skipsVlanTags() {
+    byte[] frame = frame(ethernet(0x88A8, 0x8100, 0x0800), ipv4(128, 0),
+        tcp(51000, 8443, 0x02, 64240, new int[] {2, 4, 0x05, 0xB4}));
+    TcpPacketDecoder decoder = new TcpPacketDecoder(TcpPacketDecoder.LINK_ETHERNET);
+
+    assertTrue(decoder.decode(frame, frame.length));
+    assertEquals(128, decoder.getTtl());
+    assertEquals(1460, decoder.getMss());
+  }
+
+  @Test
+  void decodesBsdLoopbackInEitherByteOrder() {
+    byte[] tcp = tcp(51000, 8443, 0x12, 65535, new int[0]);
+    TcpPacketDecoder decoder = new TcpPacketDecoder(TcpPacketDecoder.LINK_NULL);
+
+    byte[] littleEndian = frame(new byte[] {2, 0, 0, 0}, ipv4(64, 0), tcp);
+    assertTrue(decoder.decode(littleEndian, littleEndian.length));
+    assertTrue(decoder.isSyn());
+    assertTrue(decoder.isAck());
+
+    byte[] bigEndian = frame(new byte[] {0, 0, 0, 2}, ipv4(64, 0), tcp);
+    assertTrue(decoder.decode(bigEndian, bigEndian.length));
+  }
+
+  @Test
+  void rejectsNonIpv4AndLaterFragments() {
+    TcpPacketDecoder decoder = new TcpPacketDecoder(TcpPacketDecoder.LINK_ETHERNET);
+    byte[] tcp = tcp(51000, 8443, 0x02, 65535, new int[0]);
+
+    byte[] ipv6 = frame(ethernet(0x86DD), ipv4(64, 0), tcp);
+    assertFalse(decoder.decode(ipv6, ipv6.length));
+
+    byte[] fragment = frame(ethernet(0x0800), ipv4(64, 185), tcp);
+    assertFalse(decoder.decode(fragment, fragment.length));
+  }
+
+  @Test
+  void reportsPayloadFromIpTotalLength() {
+    byte[] header = frame(ethernet(0x0800), ipv4(64, 0, 517), tcp(51000, 8443, 0x18, 502,
+        new int[0]));
+    TcpPacketDecoder decoder = new TcpPacketDecoder(TcpPacketDecoder.LINK_ETHERNET);
+
+    // Snaplen cut the payload entirely; the header is still decodable.
+    assertTrue(decoder.decode(header, header.length));
+    assertEquals(517, decoder.getPayloadLength());
+    assertEquals(14 + 20 + 20, decoder.getPayloadOffset());
+  }
+
+  private static byte[] ethernet(int... etherTypes) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.writeBytes(new byte[12]);
+    for (int i = 0; i < etherTypes.length; i++) {
+      out.write(etherTypes[i] >>> 8);
+      out.write(etherTypes[i]);
+      if (i < etherTypes.length - 1) {
+        // VLAN TCI
+        out.write(0);
+        out.write(1);
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] ipv4(int ttl, int fragmentOffset) {
+    return ipv4(ttl, fragmentOffset, 0);
+  }
+
+  private static byte[] ipv4(int ttl, int fragmentOffset, int payloadLength) {
+    int total = 20 + 20 + payloadLength;
+    return new byte[] {0x45, 0, (byte) (total >>> 8), (byte) total, 0, 1,
+        (byte) (fragmentOffset >>> 8), (byte) fragmentOffset, (byte) ttl, 6, 0, 0,
+        (byte) 203, 0, 113, 10, (byte) 198, 51, 100, 5};
+  }
+
+  private static byte[] tcp(int srcPort, int dstPort, int flags, int window, int[] options) {
+    int headerLength = 20 + options.length;
+    byte[] tcp = new byte[headerLength];
+    tcp[0] = (byte) (srcPort >>> 8);
+    tcp[1] = (byte) srcPort;
+    tcp[2] = (byte) (dstPort >>> 8);
+    tcp[3] = (byte) dstPort;
+    tcp[12] = (byte) ((headerLength / 4) << 4);
+    tcp[13] = (byte) flags;
+    tcp[14] = (byte) (window >>> 8);
+    tcp[15] = (byte) window;
+    for (int i = 0; i < options.length; i++) {
+      tcp[20 + i] = (byte) options[i];
+    }
+    return tcp;
+  }
+
+  private static byte[] frame(byte[] link, byte[] ip, byte[] tcp) {
+    // Keep the IP total length consistent with the actual TCP header size.
+    byte[] ipCopy = ip.clone();
+    int total = ((ipCopy[2] & 0xFF) << 8 | (ipCopy[3] & 0xFF)) - 20 + tcp.length;
+    ipCopy[2] = (byte) (total >>> 8);
+    ipCopy[3] = (byte) total;
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.writeBytes(link);
+    out.writeBytes(ipCopy);
+    out.writeBytes(tcp);
+    return out.toByteArray();
+  }
+}
@@ -2,6 +2,7 @@ package no.hux.ja4.fingerprint;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.Arrays;
 import org.junit.jupiter.api.Test;
 
 class Ja4TcpFingerprintTest {
@@ -51,4 +52,24 @@ class Ja4TcpFingerprintTest {
     String ja4t = Ja4TcpFingerprint.compute(5840, new int[] {2}, 1460, 0);
     assertEquals("5840_2_1460_00", ja4t);
   }
+
+  @Test
+  void byteKindsAtOffsetMatchIntKinds() {
+    // macOS example, 9 kinds spanning both halves of the packed layout key.
+    byte[] buffer = {99, 2, 1, 3, 1, 1, 8, 4, 0, 0, 99};
+    String first = Ja4TcpFingerprint.compute(65535, buffer, 1, 9, 1460, 6);
+    String cached = Ja4TcpFingerprint.compute(65535, buffer, 1, 9, 1460, 6);
+    assertEquals("65535_2-1-3-1-1-8-4-0-0_1460_6", first);
+    assertEquals(first, cached);
+    assertEquals(first, Ja4TcpFingerprint.compute(65535,
+        new int[] {2, 1, 3, 1, 1, 8, 4, 0, 0}, 1460, 6));
+  }
+
+  @Test
+  void longOptionListIsRenderedInFull() {
+    byte[] nops = new byte[20];
+    Arrays.fill(nops, (byte) 1);
+    String ja4t = Ja4TcpFingerprint.compute(1024, nops, 0, nops.length, 5, 0);
+    assertEquals("1024_" + "1-".repeat(19) + "1_05_00", ja4t);
+  }
 }
@@ -0,0 +1,44 @@
+package no.hux.ja4.loadgen;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+  @Test
+  void percentilesStayWithinBucketPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long micros = 1; micros <= 10_000; micros++) {
+      histogram.record(micros * 1_000);
+    }
+
+    assertEquals(10_000, histogram.count());
+    assertEquals(10_000_000, histogram.max());
+    assertWithin(5_000_000, histogram.percentile(50));
+    assertWithin(9_900_000, histogram.percentile(99));
+    assertWithin(9_990_000, histogram.percentile(99.9));
+    assertEquals(10_000_000, histogram.percentile(100));
+    assertWithin(5_000_500, (long) histogram.mean());
+  }
+
+  @Test
+  void addMergesCounts() {
+    LatencyHistogram a = new LatencyHistogram();
+    LatencyHistogram b = new LatencyHistogram();
+    a.record(100);
+    b.record(1_000_000);
+    b.record(-5);
+    a.add(b);
+
+    assertEquals(3, a.count());
+    assertEquals(0, a.percentile(1));
+    assertWithin(1_000_000, a.max());
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue(Math.abs(actual - expected) <= expected / 64 + 1,
+        "expected ~" + expected + " but was " + actual);
+  }
+}
@@ -0,0 +1,78 @@
+package no.hux.ja4.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import org.junit.jupiter.api.Test;
+
+class AsyncLogHandlerTest {
+
+  @Test
+  void rateLimitsEachMessageKeyAndWritesJsonLines() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    AsyncLogHandler handler = new AsyncLogHandler(out, true, 5);
+    Instant now = Instant.parse("2026-01-01T12:00:00Z");
+    for (int i = 0; i < 5 + AsyncLogHandler.SAMPLE_EVERY; i++) {
+      LogRecord record = new LogRecord(Level.WARNING, "TLS handshake failed");
+      record.setInstant(now);
+      record.setLoggerName("test");
+      record.setThrown(new IOException("reset \"by\" peer"));
+      handler.publish(record);
+    }
+    LogRecord other = new LogRecord(Level.INFO, "Listening on {0}");
+    other.setInstant(now);
+    other.setParameters(new Object[] {"0.0.0.0:8443"});
+    handler.publish(other);
+    handler.close();
+
+    String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+    // Five pass, then every 100th of the rest; the other key has its own budget.
+    assertEquals(7, lines.length);
+    assertEquals(AsyncLogHandler.SAMPLE_EVERY - 1, handler.getSuppressed());
+    assertEquals(0, handler.getDropped());
+    assertTrue(lines[0].startsWith("{\"time\":\"2026-01-01T12:00:00Z\",\"level\":\"WARNING\","
+        + "\"logger\":\"test\",\"thread\":"), lines[0]);
+    assertTrue(lines[0].contains("\"error\":{\"class\":\"java.io.IOException\","
+        + "\"message\":\"reset \\\"by\\\" peer\",\"stack\":\"java.io.IOException"), lines[0]);
+    assertTrue(lines[5].contains("\"suppressed\":99"), lines[5]);
+    assertTrue(lines[6].contains("\"message\":\"Listening on 0.0.0.0:8443\"}"), lines[6]);
+  }
+
+  @Test
+  void keysOnLoggerAndPatternAndReusesIdleSlots() {
+    AsyncLogHandler handler = new AsyncLogHandler(OutputStream.nullOutputStream(), true, 1);
+    Instant start = Instant.parse("2026-01-01T12:00:00Z");
+    // Far more distinct messages than the table has slots: every slot is taken.
+    for (int i = 0; i < 20_000; i++) {
+      handler.publish(record("test", "Concatenated message " + i, start));
+    }
+    Instant later = start.plusSeconds(AsyncLogHandler.IDLE_SECONDS);
+    long suppressed = handler.getSuppressed();
+
+    handler.publish(record("test", "Listening on {0}", later, "0.0.0.0:8443"));
+    assertEquals(suppressed, handler.getSuppressed());
+    // Other parameters are the same key, already used up this second.
+    handler.publish(record("test", "Listening on {0}", later, "0.0.0.0:9443"));
+    assertEquals(suppressed + 1, handler.getSuppressed());
+    // Another logger is another key, with a budget of its own.
+    handler.publish(record("other", "Listening on {0}", later, "0.0.0.0:8443"));
+    assertEquals(suppressed + 1, handler.getSuppressed());
+    handler.close();
+  }
+
+  private static LogRecord record(String logger, String pattern, Instant instant,
+      Object... parameters) {
+    LogRecord record = new LogRecord(Level.INFO, pattern);
+    record.setInstant(instant);
+    record.setLoggerName(logger);
+    record.setParameters(parameters);
+    return record;
+  }
+}
@@ -0,0 +1,68 @@
+package no.hux.ja4.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultiThreadIoEventLoopGroup;
+import io.netty.channel.nio.NioIoHandler;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+class EventLoopWatchdogTest {
+
+  private static final long DEADLINE_MILLIS = 5_000L;
+
+  @Test
+  void samplesTheStackOfAStalledLoop() throws Exception {
+    EventLoopGroup group = new MultiThreadIoEventLoopGroup(1, NioIoHandler.newFactory());
+    EventLoopWatchdog watchdog = new EventLoopWatchdog(group, Duration.ofMillis(20),
+        Logger.getLogger("test"));
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      // The first heartbeat learns the loop's thread.
+      watchdog.check();
+      awaitTrue(() -> watchdog.lag().snapshot().count() == 1);
+      group.next().execute(() -> blockLoop(release));
+      // Queued behind the blocked task; sampled once it is overdue.
+      awaitTrue(() -> {
+        watchdog.check();
+        return watchdog.stalls() > 0;
+      });
+      watchdog.check();
+
+      assertEquals(1, watchdog.stalls());
+      assertEquals(Long.valueOf(1),
+          watchdog.stallFrames().get(EventLoopWatchdogTest.class.getName() + ".blockLoop"),
+          watchdog.stallFrames().toString());
+
+      release.countDown();
+      awaitTrue(() -> watchdog.lag().snapshot().count() == 2);
+      // The second heartbeat waited out the stall.
+      assertEquals(1, watchdog.lag().snapshot().countAtOrBelow(20_000_000));
+    } finally {
+      release.countDown();
+      watchdog.shutdown();
+      group.shutdownGracefully();
+    }
+  }
+
+  private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.nanoTime() + DEADLINE_MILLIS * 1_000_000L;
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.nanoTime() < deadline, "condition not met in " + DEADLINE_MILLIS + " ms");
+      Thread.sleep(1);
+    }
+  }
+
+  private static void blockLoop(CountDownLatch release) {
+    try {
+      release.await();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package no.hux.ja4.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class HistogramTest {
+
+  @Test
+  void bucketsAreContiguousAndCoverTheirValues() {
+    for (int bits : new int[] {Histogram.DEFAULT_SUB_BUCKET_BITS, 6}) {
+      for (long value = 0; value < 1 << 20; value += 7) {
+        int index = Histogram.index(value, bits);
+        assertTrue(Histogram.highestEquivalent(index, bits) >= value, "value " + value);
+        assertTrue(index == 0 || Histogram.highestEquivalent(index - 1, bits) < value,
+            "value " + value);
+      }
+      assertEquals(Histogram.MAX_VALUE,
+          Histogram.highestEquivalent(Histogram.index(Histogram.MAX_VALUE, bits), bits));
+    }
+  }
+
+  @Test
+  void finerPrecisionNarrowsPercentiles() {
+    Histogram coarse = new Histogram();
+    Histogram fine = new Histogram(6);
+    for (long micros = 1; micros <= 10_000; micros++) {
+      coarse.record(micros * 1_000);
+      fine.record(micros * 1_000);
+    }
+
+    long coarseP50 = coarse.snapshot().valueAtPercentile(50);
+    long fineP50 = fine.snapshot().valueAtPercentile(50);
+    assertTrue(Math.abs(coarseP50 - 5_000_000) <= 5_000_000 / 16, "coarse " + coarseP50);
+    assertTrue(Math.abs(fineP50 - 5_000_000) <= 5_000_000 / 64, "fine " + fineP50);
+    assertEquals(0, new Histogram().snapshot().valueAtPercentile(99));
+
+    Histogram merged = new Histogram(6);
+    merged.add(fine);
+    assertEquals(10_000, merged.snapshot().count());
+    assertEquals(fine.snapshot().sum(), merged.snapshot().sum());
+    assertThrows(IllegalArgumentException.class, () -> merged.add(coarse));
+  }
+}
@@ -0,0 +1,67 @@
+package no.hux.ja4.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.logging.Logger;
+import no.hux.ja4.store.FingerprintStore;
+import org.junit.jupiter.api.Test;
+
+class ServerMetricsTest {
+
+  @Test
+  void histogramSumsShardsOfAllThreads() throws Exception {
+    Histogram histogram = new Histogram();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 1; i <= 1000; i++) {
+          histogram.record(i * 1_000L);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Histogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(4000, snapshot.count());
+    assertEquals(4 * 1000L * 1001 / 2 * 1_000L, snapshot.sum());
+    assertEquals(4000, snapshot.countAtOrBelow(1_100_000));
+    // Values spread evenly, so interpolating within a bucket is close to exact.
+    long half = snapshot.countAtOrBelow(500_000);
+    assertTrue(Math.abs(half - 2000) <= 8, "count at or below 500us: " + half);
+  }
+
+  @Test
+  void rendersPrometheusTextFormat() {
+    ServerMetrics metrics = new ServerMetrics();
+    FingerprintStore store = new FingerprintStore(Duration.ofMinutes(1), 10,
+        Logger.getLogger("test"));
+    try {
+      metrics.bindStore(store);
+      metrics.connectionAccepted();
+      metrics.lookupHit();
+      metrics.lookupMiss();
+      metrics.response(404);
+      metrics.tlsHandshake().record(3_000_000);
+
+      String text = metrics.render();
+      assertTrue(text.contains("# TYPE ja4_connections_accepted_total counter\n"
+          + "ja4_connections_accepted_total 1\n"), text);
+      assertTrue(text.contains("ja4_lookups_total{result=\"hit\"} 1\n"), text);
+      assertTrue(text.contains("ja4_lookups_total{result=\"miss\"} 1\n"), text);
+      assertTrue(text.contains("ja4_http_responses_total{code=\"404\"} 1\n"), text);
+      assertTrue(text.contains("ja4_tls_handshake_seconds_bucket{le=\"0.0025\"} 0\n"), text);
+      assertTrue(text.contains("ja4_tls_handshake_seconds_bucket{le=\"0.005\"} 1\n"), text);
+      assertTrue(text.contains("ja4_tls_handshake_seconds_bucket{le=\"+Inf\"} 1\n"), text);
+      assertTrue(text.contains("ja4_tls_handshake_seconds_sum 0.003\n"), text);
+      assertTrue(text.contains("ja4_fingerprint_compute_seconds_count{kind=\"ja4h\"} 0\n"), text);
+      assertTrue(text.contains("ja4_store_entries 0\n"), text);
+    } finally {
+      store.shutdown();
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package no.hux.ja4.offline;
+
+import static no.hux.ja4.TestClientHellos.clientHello;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+class OfflineAnalyzerTest {
+
+  private static final int CLIENT = 0xCB00710A; // 203.0.113.10
+  private static final int SERVER = 0xC6336405; // 198.51.100.5
+  private static final int CLIENT_PORT = 51000;
+  private static final int SERVER_PORT = 443;
+  private static final int SYN = 0x02;
+  private static final int ACK = 0x10;
+  private static final int PSH = 0x08;
+
+  @Test
+  void handshakeAndSplitClientHelloBecomeOneRecord() throws Exception {
+    byte[] hello = clientHello("example.com");
+    int split = 40;
+    byte[] first = Arrays.copyOfRange(hello, 0, split);
+    byte[] second = Arrays.copyOfRange(hello, split, hello.length);
+    int isn = 1000;
+
+    ByteArrayOutputStream pcap = new ByteArrayOutputStream();
+    pcapHeader(pcap);
+    record(pcap, 1_000_000L, tcp(CLIENT, CLIENT_PORT, SERVER, SERVER_PORT, isn, SYN, 64,
+        new byte[] {2, 4, 0x05, (byte) 0xB4, 1, 3, 3, 7}, new byte[0]));
+    record(pcap, 1_010_000L, tcp(SERVER, SERVER_PORT, CLIENT, CLIENT_PORT, 5000, SYN | ACK, 60,
+        new byte[0], new byte[0]));
+    record(pcap, 1_030_000L, tcp(CLIENT, CLIENT_PORT, SERVER, SERVER_PORT, isn + 1, ACK, 64,
+        new byte[0], new byte[0]));
+    // Second half first: it must wait for the gap to fill.
+    record(pcap, 1_031_000L, tcp(CLIENT, CLIENT_PORT, SERVER, SERVER_PORT, isn + 1 + split,
+        ACK | PSH, 64, new byte[0], second));
+    record(pcap, 1_032_000L, tcp(CLIENT, CLIENT_PORT, SERVER, SERVER_PORT, isn + 1,
+        ACK | PSH, 64, new byte[0], first));
+
+    Path in = Files.createTempFile("ja4-offline", ".pcap");
+    Path out = Files.createTempFile("ja4-offline", ".ndjson");
+    in.toFile().deleteOnExit();
+    out.toFile().deleteOnExit();
+    Files.write(in, pcap.toByteArray());
+
+    OfflineAnalyzer.Result result = new OfflineAnalyzer(List.of(in), 2, List.of(SERVER_PORT),
+        out, Logger.getLogger("test")).run();
+
+    assertEquals(5L, result.packets());
+    List<String> lines = Files.readAllLines(out);
+    assertEquals(1, lines.size());
+    String line = lines.get(0);
+    assertTrue(line.contains("\"clientIp\":\"203.0.113.10\",\"clientPort\":51000"), line);
+    assertTrue(line.contains("\"serverName\":\"example.com\""), line);
+    assertTrue(line.contains("\"ja4\":\"t13d0102"), line);
+    // JA4L-C = (30_000 - 10_000) / 2 us with the client's TTL; JA4L-S likewise.
+    assertTrue(line.contains("\"ja4l\":\"10000_64\""), line);
+    assertTrue(line.contains("\"ja4ls\":\"5000_60\""), line);
+    assertTrue(line.contains("\"ja4t\":\"65535_2-1-3_1460_7\""), line);
+  }
+
+  private static byte[] tcp(int src, int srcPort, int dst, int dstPort, int seq, int flags,
+      int ttl, byte[] options, byte[] payload) {
+    int tcpLength = 20 + options.length;
+    int total = 20 + tcpLength + payload.length;
+    ByteBuffer b = ByteBuffer.allocate(total);
+    b.put((byte) 0x45).put((byte) 0).putShort((short) total).putInt(0);
+    b.put((byte) ttl).put((byte) 6).putShort((short) 0).putInt(src).putInt(dst);
+    b.putShort((short) srcPort).putShort((short) dstPort).putInt(seq).putInt(0);
+    b.put((byte) ((tcpLength / 4) << 4)).put((byte) flags).putShort((short) 65535);
+    b.putInt(0);
+    b.put(options).put(payload);
+    return b.array();
+  }
+
+  private static void pcapHeader(ByteArrayOutputStream out) {
+    ByteBuffer b = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+    b.putInt(0xA1B2C3D4).putShort((short) 2).putShort((short) 4).putInt(0).putInt(0)
+        .putInt(65535).putInt(101);
+    out.writeBytes(b.array());
+  }
+
+  private static void record(ByteArrayOutputStream out, long micros, byte[] frame) {
+    ByteBuffer b = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+    b.putInt((int) (micros / 1_000_000L)).putInt((int) (micros % 1_000_000L))
+        .putInt(frame.length).putInt(frame.length);
+    out.writeBytes(b.array());
+    out.writeBytes(frame);
+  }
+}
@@ -0,0 +1,113 @@
+package no.hux.ja4.offline;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import no.hux.ja4.capture.TcpPacketDecoder;
+import org.junit.jupiter.api.Test;
+
+class PcapFileReaderTest {
+
+  private static final long SECONDS = 1_700_000_000L;
+  private static final byte[] FRAME = {0x45, 0x00, 0x00, 0x14, 0x7F};
+
+  @Test
+  void readsBigEndianNanosecondPcap() throws Exception {
+    ByteBuffer b = ByteBuffer.allocate(24 + 16 + FRAME.length).order(ByteOrder.BIG_ENDIAN);
+    b.putInt(0xA1B23C4D).putShort((short) 2).putShort((short) 4).putInt(0).putInt(0)
+        .putInt(65535).putInt(101);
+    b.putInt((int) SECONDS).putInt(123_456_789).putInt(FRAME.length).putInt(FRAME.length)
+        .put(FRAME);
+
+    try (PcapFileReader reader = PcapFileReader.open(write(b.array(), ".pcap"))) {
+      assertTrue(reader.next());
+      assertEquals(TcpPacketDecoder.LINK_RAW, reader.linkType());
+      assertEquals(SECONDS * 1_000_000L + 123_456L, reader.micros());
+      assertArrayEquals(FRAME, frame(reader));
+      assertFalse(reader.next());
+    }
+  }
+
+  @Test
+  void readsPcapngSectionsInEitherByteOrder() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    // Little-endian section: raw IP in nanoseconds, then a skipped name
+    // resolution block ahead of the packet.
+    ByteOrder le = ByteOrder.LITTLE_ENDIAN;
+    out.write(sectionHeader(le));
+    out.write(interfaceBlock(le, 101, 9));
+    out.write(block(le, 4, new byte[4]));
+    long nanos = SECONDS * 1_000_000_000L + 987_654_321L;
+    out.write(enhancedPacket(le, 0, nanos, FRAME));
+    // Big-endian section: interface ids start over, Ethernet in microseconds.
+    ByteOrder be = ByteOrder.BIG_ENDIAN;
+    out.write(sectionHeader(be));
+    out.write(interfaceBlock(be, 1, -1));
+    out.write(enhancedPacket(be, 0, SECONDS * 1_000_000L + 5L, FRAME));
+
+    try (PcapFileReader reader = PcapFileReader.open(write(out.toByteArray(), ".pcapng"))) {
+      assertTrue(reader.next());
+      assertEquals(TcpPacketDecoder.LINK_RAW, reader.linkType());
+      assertEquals(SECONDS * 1_000_000L + 987_654L, reader.micros());
+      assertArrayEquals(FRAME, frame(reader));
+
+      assertTrue(reader.next());
+      assertEquals(TcpPacketDecoder.LINK_ETHERNET, reader.linkType());
+      assertEquals(SECONDS * 1_000_000L + 5L, reader.micros());
+      assertArrayEquals(FRAME, frame(reader));
+      assertFalse(reader.next());
+    }
+  }
+
+  private static byte[] frame(PcapFileReader reader) {
+    byte[] frame = new byte[reader.length()];
+    reader.buffer().get(reader.offset(), frame);
+    return frame;
+  }
+
+  private static byte[] sectionHeader(ByteOrder order) {
+    ByteBuffer body = ByteBuffer.allocate(16).order(order);
+    body.putInt(0x1A2B3C4D).putShort((short) 1).putShort((short) 0).putLong(-1L);
+    return block(order, 0x0A0D0D0A, body.array());
+  }
+
+  /** An interface description block; {@code tsresol} below zero leaves the default. */
+  private static byte[] interfaceBlock(ByteOrder order, int linkType, int tsresol) {
+    ByteBuffer body = ByteBuffer.allocate(tsresol < 0 ? 8 : 20).order(order);
+    body.putShort((short) linkType).putShort((short) 0).putInt(65535);
+    if (tsresol >= 0) {
+      body.putShort((short) 9).putShort((short) 1).put((byte) tsresol).put(new byte[3]);
+      body.putShort((short) 0).putShort((short) 0);
+    }
+    return block(order, 1, body.array());
+  }
+
+  private static byte[] enhancedPacket(ByteOrder order, int ifId, long ts, byte[] frame) {
+    int padded = (frame.length + 3) & ~3;
+    ByteBuffer body = ByteBuffer.allocate(20 + padded).order(order);
+    body.putInt(ifId).putInt((int) (ts >>> 32)).putInt((int) ts).putInt(frame.length)
+        .putInt(frame.length).put(frame);
+    return block(order, 6, body.array());
+  }
+
+  private static byte[] block(ByteOrder order, int type, byte[] body) {
+    int length = 12 + body.length;
+    ByteBuffer b = ByteBuffer.allocate(length).order(order);
+    b.putInt(type).putInt(length).put(body).putInt(length);
+    return b.array();
+  }
+
+  private static Path write(byte[] bytes, String suffix) throws Exception {
+    Path file = Files.createTempFile("ja4-reader", suffix);
+    file.toFile().deleteOnExit();
+    Files.write(file, bytes);
+    return file;
+  }
+}
@@ -0,0 +1,97 @@
+package no.hux.ja4.offline;
+
+import static no.hux.ja4.TestClientHellos.clientHello;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpVersion;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.Logger;
+import no.hux.ja4.archive.ArchivedHello;
+import no.hux.ja4.archive.HelloArchive;
+import no.hux.ja4.archive.HelloArchiveReader;
+import no.hux.ja4.fingerprint.Ja4HttpFingerprint;
+import org.junit.jupiter.api.Test;
+
+class RefingerprinterTest {
+
+  @Test
+  void archivedHellosAreRefingerprintedAcrossRolledSegments() throws Exception {
+    Path dir = Files.createTempDirectory("ja4-archive");
+    Path out = Files.createTempFile("ja4-refingerprint", ".ndjson");
+    out.toFile().deleteOnExit();
+    FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET,
+        "/session");
+    request.headers().add("Host", "example.com").add("Accept-Language", "en-US,en;q=0.9")
+        .add("Cookie", "b=2; a=1");
+    String ja4h = Ja4HttpFingerprint.compute(request);
+    byte[] hello = clientHello("example.com");
+    String ja4 = ArchivedHello.of(0, "s", null, null, null, hello, request).computeJa4();
+
+    // A tiny segment size rolls a segment after every record.
+    HelloArchive archive = new HelloArchive(dir, 1, Logger.getLogger("test"));
+    archive.start();
+    assertTrue(archive.offer(ArchivedHello.of(1_000L, "s1", "203.0.113.10", ja4, ja4h, hello,
+        request)));
+    assertTrue(archive.offer(ArchivedHello.of(2_000L, "s2", "203.0.113.10", "stale", ja4h, hello,
+        request)));
+    archive.stop();
+    request.release();
+
+    List<Path> segments = HelloArchiveReader.segments(List.of(dir));
+    assertEquals(2, segments.size());
+    Refingerprinter.Result result = new Refingerprinter(List.of(dir), 2, out,
+        Logger.getLogger("test")).run();
+
+    assertEquals(2L, result.records());
+    assertEquals(1L, result.changed());
+    List<String> lines = Files.readAllLines(out);
+    assertEquals(2, lines.size());
+    String unchanged = lines.stream().filter(l -> l.contains("\"sessionId\":\"s1\""))
+        .findFirst().orElseThrow();
+    assertTrue(unchanged.contains("\"ja4\":\"" + ja4 + "\""), unchanged);
+    assertTrue(unchanged.contains("\"ja4h\":\"" + ja4h + "\""), unchanged);
+    assertTrue(unchanged.contains("\"changed\":false"), unchanged);
+    for (Path segment : segments) {
+      Files.delete(segment);
+    }
+    Files.delete(dir);
+  }
+
+  @Test
+  void segmentsListInWriteOrderAndKeepLongStrings() throws Exception {
+    Path dir = Files.createTempDirectory("ja4-archive");
+    FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET,
+        "/session");
+    // Longer than the 64 KiB a modified UTF-8 length can express.
+    String language = "en-US,".repeat(12_000) + "\u00e6";
+    request.headers().add("Host", "example.com").add("Accept-Language", language);
+    byte[] hello = clientHello("example.com");
+
+    HelloArchive archive = new HelloArchive(dir, 1, Logger.getLogger("test"));
+    archive.start();
+    for (int i = 0; i < 12; i++) {
+      assertTrue(archive.offer(ArchivedHello.of(i, "s" + i, null, null, null, hello, request)));
+    }
+    archive.stop();
+    request.release();
+
+    List<Path> segments = HelloArchiveReader.segments(List.of(dir));
+    assertEquals(12, segments.size());
+    for (int i = 0; i < segments.size(); i++) {
+      List<ArchivedHello> records = HelloArchiveReader.readAll(segments.get(i));
+      assertEquals(1, records.size());
+      assertEquals("s" + i, records.get(0).sessionId());
+      assertEquals(language, records.get(0).acceptLanguage());
+    }
+    for (Path segment : segments) {
+      Files.delete(segment);
+    }
+    Files.delete(dir);
+  }
+}
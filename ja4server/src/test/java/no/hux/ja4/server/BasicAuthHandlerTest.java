@@ -0,0 +1,56 @@
+package no.hux.ja4.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+
+class BasicAuthHandlerTest {
+
+  @Test
+  void protectsEncodedSpellingsOfThePath() {
+    BasicAuthHandler handler = new BasicAuthHandler("user:secret", "/metrics", "metricsrealm");
+    assertTrue(handler.isProtected("/metrics"));
+    assertTrue(handler.isProtected("/%6Detrics"));
+    assertTrue(handler.isProtected("/metrics?format=text"));
+    assertTrue(handler.isProtected("/metrics/x"));
+    assertFalse(handler.isProtected("/metricsabc"));
+    assertFalse(handler.isProtected("/abc"));
+
+    EmbeddedChannel channel = new EmbeddedChannel(handler);
+    channel.writeInbound(request("/%6Detrics", null));
+    FullHttpResponse response = channel.readOutbound();
+    assertEquals(HttpResponseStatus.UNAUTHORIZED, response.status());
+    assertNull(channel.readInbound());
+    response.release();
+
+    channel = new EmbeddedChannel(
+        new BasicAuthHandler("user:secret", "/metrics", "metricsrealm"));
+    channel.writeInbound(request("/%6Detrics", "user:secret"));
+    FullHttpRequest passed = channel.readInbound();
+    assertEquals("/%6Detrics", passed.uri());
+    passed.release();
+  }
+
+  private static FullHttpRequest request(String uri, String userPassword) {
+    FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET,
+        uri);
+    if (userPassword != null) {
+      request.headers().set(HttpHeaderNames.AUTHORIZATION, "Basic " + Base64.getEncoder()
+          .encodeToString(userPassword.getBytes(StandardCharsets.UTF_8)));
+    }
+    return request;
+  }
+}
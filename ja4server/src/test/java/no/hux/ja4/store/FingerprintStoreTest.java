@@ -0,0 +1,46 @@
+package no.hux.ja4.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.logging.Logger;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+class FingerprintStoreTest {
+
+  @Test
+  void emitsStoreEventsOnlyWhenARecordingEnablesThem() throws Exception {
+    FingerprintStore store = new FingerprintStore(Duration.ofMinutes(1), 10,
+        Logger.getLogger("test"));
+    Path file = Files.createTempFile("store", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable("no.hux.ja4.StoreLookup").withThreshold(Duration.ZERO);
+      recording.start();
+      store.put(new FingerprintRecord("a", Instant.now(), "ja4", "ja4h", null, null, null,
+          "127.0.0.1", "test"));
+      store.get("a");
+      store.get("b");
+      recording.stop();
+      recording.dump(file);
+
+      List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+      // StorePut was not enabled: only the two lookups are recorded.
+      assertEquals(2, events.size());
+      assertEquals("no.hux.ja4.StoreLookup", events.get(0).getEventType().getName());
+      assertTrue(events.get(0).getBoolean("found"));
+      assertFalse(events.get(1).getBoolean("found"));
+    } finally {
+      store.shutdown();
+      Files.deleteIfExists(file);
+    }
+  }
+}